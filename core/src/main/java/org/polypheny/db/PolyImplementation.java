@@ -215,6 +215,9 @@ public ResultIterator execute( Statement statement, int batch ) {
 
 
     public ResultIterator execute( Statement statement, int batch, boolean isAnalyzed, boolean isTimed, boolean isIndex ) {
+        if ( batch > 0 ) {
+            statement.getDataContext().addAll( Map.of( DataContext.Variable.FETCH_SIZE.camelName, batch ) );
+        }
         return new ResultIterator(
                 createIterator( getBindable(), statement, isAnalyzed ),
                 statement,
@@ -148,6 +148,15 @@ public Expression getNamespaceAsExpression( long id ) {
     public abstract void rollback( PolyXid xid );
 
 
+    /**
+     * Whether reads on this adapter only ever see committed data of a single point in time and do not block
+     * or get blocked by concurrent writers. Only then may read-only queries on its placements skip locking.
+     */
+    public boolean supportsConsistentReads() {
+        return false;
+    }
+
+
     public List<AbstractAdapterSetting> getAvailableSettings( Class<?> clazz ) {
         return AbstractAdapterSetting.fromAnnotations( clazz.getAnnotations(), properties );
     }
@@ -151,6 +151,12 @@ enum Variable {
          */
         TIMEOUT( "timeout", Long.class ),
 
+        /**
+         * Number of rows the consumer of the result fetches at once. Adapters can use it as a hint for how many rows to
+         * request from the underlying store. When the whole result is fetched at once, the value is not present.
+         */
+        FETCH_SIZE( "fetchSize", Integer.class ),
+
         /**
          * Advisor that suggests completion hints for language statements.
          */
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.algebra.operators.OperatorName;
+import org.polypheny.db.algebra.type.DocumentType;
+import org.polypheny.db.catalog.entity.physical.PhysicalEntity;
+import org.polypheny.db.languages.OperatorRegistry;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.rex.RexNameRef;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.schema.trait.ModelTrait;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Translates equality conditions of a document filter into conditions on the substitution table of a collection, which
+ * are evaluated by the store.
+ * <p>
+ * Documents are stored as typed JSON, where the fields of a document are written as {@code ["key",{"@type":...,"value":...}]}.
+ * A document can only be equal to a string on a field, if its JSON contains the key and the serialized string, also if
+ * the field is an array which contains the string. This is checked with {@code LIKE}, which every store supports. The
+ * result is a superset of the matching documents, the filter itself is still applied afterward.
+ */
+final class DocumentFilterSubstitute {
+
+    // Column of the substitution table, see Scannable#createCollectionSubstitute
+    private static final int DATA = 1;
+    private static final String ESCAPE = "\\";
+
+    private final AlgBuilder builder;
+    private final PhysicalEntity table;
+
+
+    DocumentFilterSubstitute( PhysicalEntity table, AlgBuilder builder ) {
+        this.builder = builder;
+        this.table = table;
+    }
+
+
+    /**
+     * Builds the substitute of the collection for the given filter condition.
+     *
+     * @return the substitute or {@code null} if no part of the condition can be evaluated by the store
+     */
+    @Nullable
+    AlgNode build( RexNode condition ) {
+        builder.clear();
+        builder.relScan( table );
+
+        List<RexNode> conditions = new ArrayList<>();
+        for ( RexNode operand : condition.isA( Kind.AND ) ? ((RexCall) condition).operands : List.of( condition ) ) {
+            conditions.addAll( translate( operand ) );
+        }
+        if ( conditions.isEmpty() ) {
+            builder.clear();
+            return null;
+        }
+
+        builder.filter( conditions );
+        builder.transform( ModelTrait.DOCUMENT, DocumentType.ofId(), false, null );
+        return builder.build();
+    }
+
+
+    private List<RexNode> translate( RexNode node ) {
+        if ( !(node instanceof RexCall call) || call.op.getOperatorName() != OperatorName.MQL_EQUALS ) {
+            return List.of();
+        }
+        if ( !(call.operands.get( 0 ) instanceof RexNameRef name) || !(call.operands.get( 1 ) instanceof RexLiteral literal) ) {
+            return List.of();
+        }
+        if ( literal.value == null || !literal.value.isString() || name.names.isEmpty() || name.names.get( 0 ).equals( DocumentType.DOCUMENT_ID ) ) {
+            // the id is not necessarily part of the stored data
+            return List.of();
+        }
+        String field = name.names.get( name.names.size() - 1 );
+        if ( field.isEmpty() || field.chars().allMatch( Character::isDigit ) || field.startsWith( "$" ) ) {
+            // array positions are not stored as keys
+            return List.of();
+        }
+
+        try {
+            String key = PolyValue.JSON_WRAPPER.writeValueAsString( field );
+            String value = PolyValue.JSON_WRAPPER.writeValueAsString( literal.value.asString().value );
+            return List.of( like( "[" + key + "," ), like( "\"value\":" + value ) );
+        } catch ( JsonProcessingException e ) {
+            return List.of();
+        }
+    }
+
+
+    private RexNode like( String contained ) {
+        String pattern = "%" + contained
+                .replace( ESCAPE, ESCAPE + ESCAPE )
+                .replace( "%", ESCAPE + "%" )
+                .replace( "_", ESCAPE + "_" ) + "%";
+        return builder.call(
+                OperatorRegistry.get( OperatorName.LIKE ),
+                builder.field( DATA ),
+                builder.literal( pattern ),
+                builder.literal( ESCAPE ) );
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.JoinAlgType;
+import org.polypheny.db.algebra.type.GraphType;
+import org.polypheny.db.catalog.entity.physical.PhysicalEntity;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.schema.trait.ModelTrait;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.graph.PolyEdge;
+import org.polypheny.db.type.entity.graph.PolyEdge.EdgeDirection;
+import org.polypheny.db.type.entity.graph.PolyNode;
+import org.polypheny.db.type.entity.graph.PolyPath;
+
+
+/**
+ * Translates the patterns of a graph match into joins over the substitution tables of a graph, which select only the
+ * nodes and edges that can take part in a match. Labels, property values and the endpoints of fixed-length paths are
+ * evaluated by the store, the resulting graph is still matched in memory.
+ * <p>
+ * The selected graph is a superset of the matching elements: a node with additional labels is selected as well and is
+ * only rejected by the match itself.
+ */
+final class GraphMatchSubstitute {
+
+    // Columns of the substitution tables, see Scannable#createGraphSubstitute
+    private static final int ID = 0;
+    private static final int LABEL = 1;
+    private static final int KEY = 1;
+    private static final int VALUE = 2;
+    private static final int SOURCE = 2;
+    private static final int TARGET = 3;
+
+    private final AlgBuilder builder;
+    private final PhysicalEntity nodes;
+    private final PhysicalEntity nodeProperties;
+    private final PhysicalEntity edges;
+    private final PhysicalEntity edgeProperties;
+
+
+    GraphMatchSubstitute( List<PhysicalEntity> physicals, AlgBuilder builder ) {
+        this.builder = builder;
+        this.nodes = physicals.get( 0 );
+        this.nodeProperties = physicals.get( 1 );
+        this.edges = physicals.get( 2 );
+        this.edgeProperties = physicals.get( 3 );
+    }
+
+
+    /**
+     * Builds the substitute of the graph for the given matches.
+     *
+     * @return the substitute or {@code null} if one of the matches requires the whole graph
+     */
+    @Nullable
+    AlgNode build( List<RexCall> matches ) {
+        builder.clear();
+        // ids of matching nodes and (id, source, target) of matching edges
+        List<AlgNode> nodeIds = new ArrayList<>();
+        List<AlgNode> edgeIds = new ArrayList<>();
+        for ( RexCall match : matches ) {
+            switch ( match.op.getOperatorName() ) {
+                case CYPHER_NODE_MATCH -> {
+                    if ( !pushNodeIds( getElement( match ).asNode() ) ) {
+                        return null;
+                    }
+                    nodeIds.add( builder.build() );
+                }
+                case CYPHER_PATH_MATCH -> {
+                    if ( !pushEdgeIds( getElement( match ).asPath() ) ) {
+                        return null;
+                    }
+                    edgeIds.add( builder.build() );
+                }
+                default -> {
+                    // extracting all nodes
+                    return null;
+                }
+            }
+        }
+
+        AlgNode selectedEdges = null;
+        if ( !edgeIds.isEmpty() ) {
+            edgeIds.forEach( builder::push );
+            selectedEdges = builder.union( true, edgeIds.size() ).distinct().build();
+            // the endpoints of all selected edges are required to match paths
+            nodeIds.add( builder.push( selectedEdges ).project( builder.field( SOURCE - 1 ) ).build() );
+            nodeIds.add( builder.push( selectedEdges ).project( builder.field( TARGET - 1 ) ).build() );
+        }
+        nodeIds.forEach( builder::push );
+        AlgNode selectedNodes = builder.union( true, nodeIds.size() ).distinct().build();
+
+        // the same inputs as the full scan of the substitute, restricted to the selected elements
+        builder.relScan( nodes );
+        builder.push( selectedNodes );
+        semiJoin( nodes );
+        builder.relScan( nodeProperties );
+        builder.push( selectedNodes );
+        semiJoin( nodeProperties );
+
+        if ( selectedEdges == null ) {
+            builder.relScan( edges ).empty();
+            builder.relScan( edgeProperties ).empty();
+        } else {
+            builder.relScan( edges );
+            builder.push( selectedEdges );
+            semiJoin( edges );
+            builder.relScan( edgeProperties );
+            builder.push( selectedEdges );
+            semiJoin( edgeProperties );
+        }
+
+        builder.transform( ModelTrait.GRAPH, GraphType.of(), false, null );
+        return builder.build();
+    }
+
+
+    private static PolyValue getElement( RexCall match ) {
+        return ((RexLiteral) match.operands.get( 1 )).getValue();
+    }
+
+
+    /**
+     * Keeps the rows of the table below the top of the stack, whose id is contained in the first column of the top.
+     */
+    private void semiJoin( PhysicalEntity table ) {
+        builder.join( JoinAlgType.INNER, builder.equals( builder.field( 2, 0, ID ), builder.field( 2, 1, 0 ) ) );
+        List<RexNode> fields = new ArrayList<>();
+        for ( int i = 0; i < table.getTupleType().getFieldCount(); i++ ) {
+            fields.add( builder.field( i ) );
+        }
+        builder.project( fields );
+    }
+
+
+    /**
+     * Pushes the ids of the nodes, which have all labels and properties of the given node.
+     *
+     * @return false if the node matches all nodes, nothing is pushed in this case
+     */
+    private boolean pushNodeIds( PolyNode node ) {
+        int inputs = 0;
+        for ( PolyString label : node.labels ) {
+            builder.relScan( nodes )
+                    .filter( builder.equals( builder.field( LABEL ), builder.literal( label.value ) ) )
+                    .project( builder.field( ID ) );
+            inputs++;
+        }
+        inputs += pushPropertyIds( nodeProperties, node.properties.entrySet() );
+        if ( inputs == 0 ) {
+            return false;
+        }
+        for ( int i = 1; i < inputs; i++ ) {
+            builder.join( JoinAlgType.INNER, builder.equals( builder.field( 2, 0, 0 ), builder.field( 2, 1, 0 ) ) )
+                    .project( builder.field( 0 ) );
+        }
+        return true;
+    }
+
+
+    private int pushPropertyIds( PhysicalEntity table, Iterable<Entry<PolyString, PolyValue>> properties ) {
+        int inputs = 0;
+        for ( Entry<PolyString, PolyValue> property : properties ) {
+            // properties are compared by their string representation, see GraphPropertyHolder#matchesProperties
+            builder.relScan( table )
+                    .filter( builder.and(
+                            builder.equals( builder.field( KEY ), builder.literal( property.getKey().value ) ),
+                            builder.equals( builder.field( VALUE ), builder.literal( property.getValue().toString() ) ) ) )
+                    .project( builder.field( ID ) );
+            inputs++;
+        }
+        return inputs;
+    }
+
+
+    /**
+     * Pushes the id, source and target of the edges, which can be part of the given path.
+     *
+     * @return false if the path can contain any edge or has a variable length, nothing is pushed in this case
+     */
+    private boolean pushEdgeIds( PolyPath path ) {
+        List<PolyNode> pathNodes = path.getNodes();
+        List<PolyEdge> pathEdges = path.getEdges();
+        for ( int i = 0; i < pathEdges.size(); i++ ) {
+            PolyEdge edge = pathEdges.get( i );
+            if ( edge.fromTo != null ) {
+                return false;
+            }
+            if ( !isRestricted( edge ) && !isRestricted( pathNodes.get( i ) ) && !isRestricted( pathNodes.get( i + 1 ) ) ) {
+                return false;
+            }
+        }
+
+        int inputs = 0;
+        for ( int i = 0; i < pathEdges.size(); i++ ) {
+            PolyEdge edge = pathEdges.get( i );
+            PolyNode left = pathNodes.get( i );
+            PolyNode right = pathNodes.get( i + 1 );
+            if ( edge.direction != EdgeDirection.RIGHT_TO_LEFT ) {
+                pushEdgeIds( edge, left, right );
+                inputs++;
+            }
+            if ( edge.direction != EdgeDirection.LEFT_TO_RIGHT ) {
+                pushEdgeIds( edge, right, left );
+                inputs++;
+            }
+        }
+        builder.union( true, inputs );
+        return true;
+    }
+
+
+    private void pushEdgeIds( PolyEdge edge, PolyNode source, PolyNode target ) {
+        builder.relScan( edges );
+        for ( PolyString label : edge.labels ) {
+            builder.filter( builder.equals( builder.field( LABEL ), builder.literal( label.value ) ) );
+        }
+        builder.project( builder.field( ID ), builder.field( SOURCE ), builder.field( TARGET ) );
+
+        int properties = pushPropertyIds( edgeProperties, edge.properties.entrySet() );
+        for ( int i = 0; i < properties; i++ ) {
+            restrict( 0 );
+        }
+        if ( pushNodeIds( source ) ) {
+            restrict( SOURCE - 1 );
+        }
+        if ( pushNodeIds( target ) ) {
+            restrict( TARGET - 1 );
+        }
+    }
+
+
+    /**
+     * Keeps the edges below the top of the stack, whose given column is contained in the ids on top of the stack.
+     */
+    private void restrict( int column ) {
+        builder.join( JoinAlgType.INNER, builder.equals( builder.field( 2, 0, column ), builder.field( 2, 1, 0 ) ) )
+                .project( builder.field( 0 ), builder.field( 1 ), builder.field( 2 ) );
+    }
+
+
+    private static boolean isRestricted( PolyNode node ) {
+        return !node.labels.isEmpty() || !node.properties.isEmpty();
+    }
+
+
+    private static boolean isRestricted( PolyEdge edge ) {
+        return !edge.labels.isEmpty() || !edge.properties.isEmpty();
+    }
+
+}
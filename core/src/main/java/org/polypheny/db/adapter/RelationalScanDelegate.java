@@ -30,6 +30,8 @@
 import org.polypheny.db.catalog.entity.logical.LogicalTableWrapper;
 import org.polypheny.db.catalog.entity.physical.PhysicalEntity;
 import org.polypheny.db.prepare.Context;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexNode;
 import org.polypheny.db.tools.AlgBuilder;
 
 @AllArgsConstructor
@@ -47,12 +49,24 @@ public AlgNode getGraphScan( long allocId, AlgBuilder builder ) {
     }
 
 
+    @Override
+    public AlgNode getGraphMatchScan( long allocId, List<RexCall> matches, AlgBuilder builder ) {
+        return Scannable.getGraphMatchScanSubstitute( scannable, allocId, matches, builder );
+    }
+
+
     @Override
     public AlgNode getDocumentScan( long allocId, AlgBuilder builder ) {
         return Scannable.getDocumentScanSubstitute( scannable, allocId, builder );
     }
 
 
+    @Override
+    public AlgNode getDocumentFilterScan( long allocId, RexNode condition, AlgBuilder builder ) {
+        return Scannable.getDocumentFilterScanSubstitute( scannable, allocId, condition, builder );
+    }
+
+
     @Override
     public List<PhysicalEntity> createTable( Context context, LogicalTableWrapper logical, AllocationTableWrapper allocation ) {
         return scannable.createTable( context, logical, allocation );
@@ -18,6 +18,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import org.jetbrains.annotations.Nullable;
 import org.polypheny.db.algebra.AlgNode;
 import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.algebra.type.DocumentType;
@@ -42,6 +43,8 @@
 import org.polypheny.db.catalog.logistic.Collation;
 import org.polypheny.db.catalog.logistic.PlacementType;
 import org.polypheny.db.prepare.Context;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexNode;
 import org.polypheny.db.schema.trait.ModelTrait;
 import org.polypheny.db.tools.AlgBuilder;
 import org.polypheny.db.type.PolyType;
@@ -120,12 +123,43 @@ static AlgNode getGraphScanSubstitute( Scannable scannable, long allocId, AlgBui
     }
 
 
+    /**
+     * Returns a scan of the graph, which only contains the nodes and edges that can take part in one of the given matches.
+     *
+     * @return the restricted scan or {@code null} if the adapter does not support restricting the graph
+     */
+    @Nullable
+    default AlgNode getGraphMatchScan( long allocId, List<RexCall> matches, AlgBuilder builder ) {
+        return null;
+    }
+
+
+    static AlgNode getGraphMatchScanSubstitute( Scannable scannable, long allocId, List<RexCall> matches, AlgBuilder builder ) {
+        List<PhysicalEntity> physicals = scannable.getCatalog().getPhysicalsFromAllocs( allocId );
+        if ( physicals == null ) {
+            throw new GenericRuntimeException( "This should not happen." );
+        }
+        return new GraphMatchSubstitute( physicals, builder ).build( matches );
+    }
+
+
     default AlgNode getDocumentScan( long allocId, AlgBuilder builder ) {
         PhysicalEntity entity = getCatalog().getPhysicalsFromAllocs( allocId ).get( 0 );
         return builder.documentScan( entity ).build();
     }
 
 
+    /**
+     * Returns a scan of the collection, which only contains the documents that can fulfill the given filter condition.
+     *
+     * @return the restricted scan or {@code null} if the adapter does not support restricting the collection
+     */
+    @Nullable
+    default AlgNode getDocumentFilterScan( long allocId, RexNode condition, AlgBuilder builder ) {
+        return null;
+    }
+
+
     default List<List<PhysicalEntity>> createTable( Context context, LogicalTableWrapper logical, List<AllocationTableWrapper> allocations ) {
         List<List<PhysicalEntity>> entities = new ArrayList<>();
         for ( AllocationTableWrapper allocation : allocations ) {
@@ -145,6 +179,12 @@ static AlgNode getDocumentScanSubstitute( Scannable scannable, long allocId, Alg
     }
 
 
+    static AlgNode getDocumentFilterScanSubstitute( Scannable scannable, long allocId, RexNode condition, AlgBuilder builder ) {
+        PhysicalEntity table = scannable.getCatalog().getPhysicalsFromAllocs( allocId ).get( 0 ).unwrap( PhysicalEntity.class ).orElseThrow();
+        return new DocumentFilterSubstitute( table, builder ).build( condition );
+    }
+
+
     List<PhysicalEntity> createTable( Context context, LogicalTableWrapper logical, AllocationTableWrapper allocation );
 
 
@@ -19,6 +19,7 @@
 
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -228,6 +229,20 @@ void deleteAllPrimary( final Iterable<Pair<List<PolyValue>, List<PolyValue>>> va
 
     public abstract Values getAsValues( final PolyXid xid, AlgBuilder builder, AlgDataType rowType, final List<PolyValue> key );
 
+
+    /**
+     * Returns the entries for the given keys. The default implementation looks up every key on its own.
+     * Implementations may choose to override this method.
+     */
+    public Values getAsValues( final PolyXid xid, AlgBuilder builder, AlgDataType rowType, final Collection<List<PolyValue>> keys ) {
+        final List<ImmutableList<RexLiteral>> tuples = new ArrayList<>();
+        for ( final List<PolyValue> key : keys ) {
+            tuples.addAll( getAsValues( xid, builder, rowType, key ).tuples );
+        }
+        return (Values) builder.values( ImmutableList.copyOf( tuples ), rowType ).build();
+    }
+
+
     abstract Map<?, ?> getRaw();
 
 
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.type.PolySerializable;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.util.Pair;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+
+
+/**
+ * Stores checkpoints of polystore indexes, one file per index.
+ * <p>
+ * A checkpoint consists of a header {@code [magic][version][fingerprint][entries][crc32]} followed by the entries of the
+ * index as {@code (key, primary)} pairs. The fingerprint identifies the catalog definition of the index and its columns;
+ * a checkpoint with a different fingerprint or checksum is ignored and the index is rebuilt instead.
+ * <p>
+ * While a transaction modifies an index, a marker file next to the checkpoint signals that the underlying data might be
+ * ahead of the checkpoint. Committed changes are not checkpointed right away, the index is only remembered as pending
+ * and checkpointed later in the background. The marker is removed after the changes have been checkpointed or rolled
+ * back, so a crash in between leads to a rebuild on the next start.
+ */
+@Slf4j
+class IndexFileStore {
+
+    private static final int MAGIC = 0x50494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 3;
+
+    private final File folder;
+    // Number of open transactions which modify an index, guarded by this
+    private final Map<Long, Integer> writers = new HashMap<>();
+    // Indexes with committed changes which are not yet checkpointed, guarded by this
+    private final Set<Long> pending = new HashSet<>();
+    // Orders the checkpoints of an index, so an older state never overwrites a newer one
+    private final Object checkpointLock = new Object();
+
+
+    IndexFileStore( File folder ) {
+        this.folder = folder;
+    }
+
+
+    static IndexFileStore create() {
+        return new IndexFileStore( PolyphenyHomeDirManager.getInstance().registerNewFolder( "indexes" ) );
+    }
+
+
+    synchronized void markDirty( Index index ) {
+        if ( writers.merge( index.getId(), 1, Integer::sum ) > 1 || pending.contains( index.getId() ) ) {
+            // the marker is already there
+            return;
+        }
+        try ( FileChannel channel = FileChannel.open( markerPath( index.getId() ), StandardOpenOption.CREATE, StandardOpenOption.WRITE ) ) {
+            channel.force( true );
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( "Unable to mark index " + index.getName() + " as modified", e );
+        }
+    }
+
+
+    /**
+     * Called when a transaction which modified the index rolled back.
+     */
+    synchronized void markClean( Index index ) {
+        release( index.getId() );
+        removeMarkerIfClean( index );
+    }
+
+
+    /**
+     * Called when a transaction which modified the index committed. The marker is kept until the index is checkpointed.
+     */
+    synchronized void markCommitted( Index index ) {
+        release( index.getId() );
+        pending.add( index.getId() );
+    }
+
+
+    /**
+     * Returns the indexes with committed changes since their last checkpoint and forgets about them.
+     */
+    synchronized Set<Long> takePending() {
+        final Set<Long> ids = Set.copyOf( pending );
+        pending.clear();
+        return ids;
+    }
+
+
+    /**
+     * Writes the current committed state of the index and removes its marker, unless it was modified in the meantime.
+     * The new checkpoint is written next to the old one and moved in place afterward, so there is a complete checkpoint
+     * at any time. The index is only locked while its entries are encoded.
+     */
+    void checkpoint( Index index, long fingerprint ) {
+        synchronized ( checkpointLock ) {
+            final byte[] body;
+            final long entries;
+            synchronized ( index ) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                entries = encode( index, bytes );
+                body = bytes.toByteArray();
+            }
+            write( index, fingerprint, entries, body );
+        }
+        synchronized ( this ) {
+            removeMarkerIfClean( index );
+        }
+    }
+
+
+    private void release( long indexId ) {
+        writers.computeIfPresent( indexId, ( id, count ) -> count > 1 ? count - 1 : null );
+    }
+
+
+    private void removeMarkerIfClean( Index index ) {
+        if ( writers.containsKey( index.getId() ) || pending.contains( index.getId() ) ) {
+            return;
+        }
+        try {
+            Files.deleteIfExists( markerPath( index.getId() ) );
+        } catch ( IOException e ) {
+            log.warn( "Unable to remove the modification marker of index {}", index.getName(), e );
+        }
+    }
+
+
+    private static long encode( Index index, ByteArrayOutputStream bytes ) {
+        long entries = 0;
+        try ( DataOutputStream out = new DataOutputStream( bytes ) ) {
+            final byte[] scratch = new byte[PolySerializable.BUFFER_SIZE];
+            for ( final Map.Entry<?, ?> entry : index.getRaw().entrySet() ) {
+                final List<?> key = (List<?>) entry.getKey();
+                if ( entry.getValue() instanceof Set<?> primaries ) {
+                    for ( final Object primary : primaries ) {
+                        writeList( out, scratch, key );
+                        writeList( out, scratch, (List<?>) primary );
+                        entries++;
+                    }
+                } else {
+                    writeList( out, scratch, key );
+                    writeList( out, scratch, (List<?>) entry.getValue() );
+                    entries++;
+                }
+            }
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( e );
+        }
+        return entries;
+    }
+
+
+    private void write( Index index, long fingerprint, long entries, byte[] body ) {
+        final CRC32 crc = new CRC32();
+        crc.update( body );
+
+        final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+        header.putInt( MAGIC ).putInt( VERSION ).putLong( fingerprint ).putLong( entries ).putLong( crc.getValue() ).flip();
+
+        final Path target = indexPath( index.getId() );
+        final Path tmp = target.resolveSibling( target.getFileName() + ".tmp" );
+        try {
+            try ( FileChannel channel = FileChannel.open( tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                writeFully( channel, header );
+                writeFully( channel, ByteBuffer.wrap( body ) );
+                channel.force( true );
+            }
+            Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( "Unable to checkpoint index " + index.getName(), e );
+        }
+    }
+
+
+    /**
+     * Loads the index from its checkpoint.
+     *
+     * @return Whether the checkpoint was valid and the index has been loaded
+     */
+    synchronized boolean load( Index index, long fingerprint ) {
+        final Path path = indexPath( index.getId() );
+        if ( Files.exists( markerPath( index.getId() ) ) ) {
+            log.info( "Index {} was modified without a subsequent checkpoint, it has to be rebuilt.", index.getName() );
+            return false;
+        }
+        if ( !Files.exists( path ) ) {
+            return false;
+        }
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            if ( channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE ) {
+                log.warn( "Checkpoint of index {} has an invalid size, it has to be rebuilt.", index.getName() );
+                return false;
+            }
+            final MappedByteBuffer buffer = channel.map( MapMode.READ_ONLY, 0, channel.size() );
+            if ( buffer.getInt() != MAGIC || buffer.getInt() != VERSION ) {
+                log.warn( "Checkpoint of index {} has an unknown format, it has to be rebuilt.", index.getName() );
+                return false;
+            }
+            if ( buffer.getLong() != fingerprint ) {
+                log.info( "Definition of index {} changed since its checkpoint, it has to be rebuilt.", index.getName() );
+                return false;
+            }
+            final long entries = buffer.getLong();
+            final long checksum = buffer.getLong();
+            final CRC32 crc = new CRC32();
+            crc.update( buffer.slice() );
+            if ( crc.getValue() != checksum ) {
+                log.warn( "Checkpoint of index {} is corrupted, it has to be rebuilt.", index.getName() );
+                return false;
+            }
+
+            final List<Pair<List<PolyValue>, List<PolyValue>>> kv = new ArrayList<>( (int) Math.min( entries, Integer.MAX_VALUE ) );
+            byte[] scratch = new byte[0];
+            for ( long i = 0; i < entries; i++ ) {
+                final List<PolyValue> key = new ArrayList<>();
+                scratch = readList( buffer, scratch, key );
+                final List<PolyValue> primary = new ArrayList<>();
+                scratch = readList( buffer, scratch, primary );
+                kv.add( new Pair<>( key, primary ) );
+            }
+            index.clear();
+            index.insertAll( kv );
+            index.initialize();
+            return true;
+        } catch ( IOException | RuntimeException e ) {
+            log.warn( "Unable to load the checkpoint of index {}, it has to be rebuilt.", index.getName(), e );
+            return false;
+        }
+    }
+
+
+    synchronized void delete( long indexId ) {
+        writers.remove( indexId );
+        pending.remove( indexId );
+        try {
+            Files.deleteIfExists( indexPath( indexId ) );
+            Files.deleteIfExists( markerPath( indexId ) );
+        } catch ( IOException e ) {
+            log.warn( "Unable to delete the checkpoint of index {}", indexId, e );
+        }
+    }
+
+
+    /**
+     * Removes the files of all indexes which are not part of the given set, e.g. because the index was dropped or the
+     * transaction creating it did not commit.
+     */
+    synchronized void retain( Set<Long> indexIds ) {
+        final File[] files = folder.listFiles();
+        if ( files == null ) {
+            return;
+        }
+        for ( final File file : files ) {
+            final String id = file.getName().split( "\\." )[0];
+            try {
+                if ( !indexIds.contains( Long.parseLong( id ) ) ) {
+                    Files.deleteIfExists( file.toPath() );
+                }
+            } catch ( NumberFormatException | IOException e ) {
+                log.warn( "Unable to clean up index file {}", file.getName(), e );
+            }
+        }
+    }
+
+
+    private Path indexPath( long indexId ) {
+        return new File( folder, indexId + ".idx" ).toPath();
+    }
+
+
+    private Path markerPath( long indexId ) {
+        return new File( folder, indexId + ".dirty" ).toPath();
+    }
+
+
+    private static void writeList( DataOutputStream out, byte[] scratch, List<?> values ) throws IOException {
+        out.writeInt( values.size() );
+        for ( final Object value : values ) {
+            if ( value == null ) {
+                out.writeInt( -1 );
+                continue;
+            }
+            final int length = PolyValue.serializer.encode( scratch, 0, (PolyValue) value );
+            out.writeInt( length );
+            out.write( scratch, 0, length );
+        }
+    }
+
+
+    private static byte[] readList( ByteBuffer buffer, byte[] scratch, List<PolyValue> values ) {
+        final int size = buffer.getInt();
+        for ( int i = 0; i < size; i++ ) {
+            final int length = buffer.getInt();
+            if ( length < 0 ) {
+                values.add( null );
+                continue;
+            }
+            if ( scratch.length < length ) {
+                scratch = new byte[Math.max( length, scratch.length * 2 )];
+            }
+            buffer.get( scratch, 0, length );
+            values.add( PolyValue.serializer.decode( scratch, 0 ) );
+        }
+        return scratch;
+    }
+
+
+    private static void writeFully( FileChannel channel, ByteBuffer buffer ) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            channel.write( buffer );
+        }
+    }
+
+}
@@ -18,23 +18,31 @@
 
 
 import com.google.common.collect.ImmutableList;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.adapter.DataStore.IndexMethodModel;
 import org.polypheny.db.adapter.index.Index.IndexFactory;
 import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.entity.logical.LogicalColumn;
 import org.polypheny.db.catalog.entity.logical.LogicalIndex;
 import org.polypheny.db.catalog.entity.logical.LogicalKey;
 import org.polypheny.db.catalog.entity.logical.LogicalNamespace;
 import org.polypheny.db.catalog.entity.logical.LogicalPrimaryKey;
 import org.polypheny.db.catalog.entity.logical.LogicalTable;
+import org.polypheny.db.catalog.snapshot.Snapshot;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.InformationAction;
 import org.polypheny.db.information.InformationGraph;
@@ -51,8 +59,12 @@
 import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.transaction.TransactionException;
 import org.polypheny.db.transaction.TransactionManager;
+import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
+import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
+import org.polypheny.db.util.background.BackgroundTaskManager;
 
 
+@Slf4j
 public class IndexManager {
 
     public static final String POLYPHENY = "POLYPHENY";
@@ -64,13 +76,17 @@ public class IndexManager {
 
     private static final List<IndexFactory> INDEX_FACTORIES = Arrays.asList(
             new CoWHashIndex.Factory(),
-            new CowMultiHashIndex.Factory()
+            new CowMultiHashIndex.Factory(),
+            new MvccHashIndex.Factory(),
+            new SkipListIndex.Factory()
     );
 
-    private final Map<Long, Index> indexById = new HashMap<>();
-    private final Map<String, Index> indexByName = new HashMap<>();
-    private final Map<PolyXid, List<Index>> openTransactions = new HashMap<>();
+    private final Map<Long, Index> indexById = new ConcurrentHashMap<>();
+    private final Map<String, Index> indexByName = new ConcurrentHashMap<>();
+    private final Map<PolyXid, List<Index>> openTransactions = new ConcurrentHashMap<>();
     private TransactionManager transactionManager = null;
+    // Checkpoints of the indexes, only available once the index manager has been initialized
+    private IndexFileStore store = null;
 
 
     public static IndexManager getInstance() {
@@ -85,7 +101,9 @@ private IndexManager() {
 
     public static List<IndexMethodModel> getAvailableIndexMethods() {
         return ImmutableList.of(
-                new IndexMethodModel( "hash", "HASH" )
+                new IndexMethodModel( "hash", "HASH" ),
+                new IndexMethodModel( "mvcc_hash", "MVCC HASH" ),
+                new IndexMethodModel( "skiplist", "SKIP LIST (ORDERED)" )
         );
     }
 
@@ -96,10 +114,10 @@ public static IndexMethodModel getDefaultIndexMethod() {
 
 
     void begin( PolyXid xid, Index index ) {
-        if ( !openTransactions.containsKey( xid ) ) {
-            openTransactions.put( xid, new ArrayList<>() );
+        if ( isPersisting() ) {
+            store.markDirty( index );
         }
-        openTransactions.get( xid ).add( index );
+        openTransactions.computeIfAbsent( xid, k -> new CopyOnWriteArrayList<>() ).add( index );
     }
 
 
@@ -123,7 +141,39 @@ public void commit( PolyXid xid ) {
             idx.barrier( xid );
         }
         for ( final Index idx : idxs ) {
-            idx.commit( xid );
+            if ( !isPersisting() ) {
+                idx.commit( xid );
+                continue;
+            }
+            synchronized ( idx ) {
+                idx.commit( xid );
+            }
+            // the index is checkpointed in the background, until then it is rebuilt after a crash
+            store.markCommitted( idx );
+        }
+    }
+
+
+    /**
+     * Checkpoints all indexes with committed changes since their last checkpoint.
+     * Runs periodically in the background and on shutdown, so a commit never has to write a whole index.
+     */
+    public void checkpoint() {
+        if ( !isPersisting() ) {
+            return;
+        }
+        final Snapshot snapshot = Catalog.getInstance().getSnapshot();
+        for ( final long id : store.takePending() ) {
+            final Index index = indexById.get( id );
+            if ( index == null ) {
+                continue;
+            }
+            try {
+                store.checkpoint( index, fingerprint( index, snapshot ) );
+            } catch ( RuntimeException e ) {
+                // the marker stays, so the index is rebuilt on the next start if no later checkpoint succeeds
+                log.warn( "Unable to checkpoint index {}", index.getName(), e );
+            }
         }
     }
 
@@ -135,20 +185,49 @@ public void rollback( PolyXid xid ) {
         }
         for ( final Index idx : idxs ) {
             idx.rollback( xid );
+            if ( isPersisting() ) {
+                store.markClean( idx );
+            }
         }
     }
 
 
     public void initialize( final TransactionManager transactionManager ) {
         this.transactionManager = transactionManager;
+        this.store = IndexFileStore.create();
+        BackgroundTaskManager.INSTANCE.registerTask(
+                this::checkpoint,
+                "Checkpoint modified polystore indexes",
+                TaskPriority.LOW,
+                TaskSchedulingType.EVERY_TEN_SECONDS );
+        Runtime.getRuntime().addShutdownHook( new Thread( this::checkpoint ) );
     }
 
 
+    /**
+     * Restores the polystore indexes of the catalog. Indexes with a valid checkpoint are loaded from it, all other
+     * indexes are rebuilt from the underlying tables.
+     */
     public void restoreIndexes() throws TransactionException {
-        for ( final LogicalIndex index : Catalog.getInstance().getSnapshot().rel().getIndexes() ) {
-            if ( index.location < 0 ) {
-                addIndex( index );
+        final Snapshot snapshot = Catalog.getInstance().getSnapshot();
+        final List<LogicalIndex> indexes = snapshot.rel().getIndexes().stream().filter( index -> index.location < 0 ).toList();
+        if ( isPersisting() ) {
+            store.retain( indexes.stream().map( index -> index.id ).collect( Collectors.toSet() ) );
+        }
+        Transaction transaction = null;
+        for ( final LogicalIndex logicalIndex : indexes ) {
+            final Index index = createIndex( logicalIndex.id, logicalIndex.name, logicalIndex.key, logicalIndex.method, logicalIndex.unique, null, snapshot );
+            if ( isPersisting() && store.load( index, fingerprint( index, snapshot ) ) ) {
+                log.debug( "Loaded index {} from its checkpoint.", index.getName() );
+                continue;
+            }
+            if ( transaction == null ) {
+                transaction = transactionManager.startTransaction( Catalog.defaultUserId, false, "Index Manager" );
             }
+            rebuild( index, transaction );
+        }
+        if ( transaction != null ) {
+            transaction.commit();
         }
     }
 
@@ -164,12 +243,23 @@ public void addIndex( final LogicalIndex index, final Statement statement ) thro
 
 
     protected void addIndex( final long id, final String name, final LogicalKey key, final String method, final Boolean unique, final Boolean persistent, final Statement statement ) throws TransactionException {
+        if ( statement != null ) {
+            rebuild( createIndex( id, name, key, method, unique, persistent, statement.getTransaction().getSnapshot() ), statement.getTransaction() );
+            return;
+        }
+        final Transaction transaction = transactionManager.startTransaction( Catalog.defaultUserId, false, "Index Manager" );
+        rebuild( createIndex( id, name, key, method, unique, persistent, Catalog.getInstance().getSnapshot() ), transaction );
+        transaction.commit();
+    }
+
+
+    private Index createIndex( final long id, final String name, final LogicalKey key, final String method, final Boolean unique, final Boolean persistent, final Snapshot snapshot ) {
         final IndexFactory factory = INDEX_FACTORIES.stream()
                 .filter( it -> it.canProvide( method, unique, persistent ) )
                 .findFirst()
                 .orElseThrow( IllegalArgumentException::new );
-        final LogicalTable table = statement.getTransaction().getSnapshot().rel().getTable( key.entityId ).orElseThrow();
-        final LogicalPrimaryKey pk = statement.getTransaction().getSnapshot().rel().getPrimaryKey( table.primaryKey ).orElseThrow();
+        final LogicalTable table = snapshot.rel().getTable( key.entityId ).orElseThrow();
+        final LogicalPrimaryKey pk = snapshot.rel().getPrimaryKey( table.primaryKey ).orElseThrow();
         final Index index = factory.create(
                 id,
                 name,
@@ -182,8 +272,15 @@ protected void addIndex( final long id, final String name, final LogicalKey key,
                 pk.getFieldNames() );
         indexById.put( id, index );
         indexByName.put( name, index );
-        final Transaction tx = statement.getTransaction();
-        index.rebuild( tx );
+        return index;
+    }
+
+
+    private void rebuild( final Index index, final Transaction transaction ) {
+        index.rebuild( transaction );
+        if ( isPersisting() ) {
+            store.checkpoint( index, fingerprint( index, transaction.getSnapshot() ) );
+        }
     }
 
 
@@ -195,6 +292,39 @@ public void deleteIndex( final LogicalIndex index ) {
     public void deleteIndex( final long indexId ) {
         final Index idx = indexById.remove( indexId );
         indexByName.remove( idx.name );
+        if ( store != null ) {
+            store.delete( indexId );
+        }
+    }
+
+
+    private boolean isPersisting() {
+        return store != null && RuntimeConfig.POLYSTORE_INDEXES_PERSISTENT.getBoolean();
+    }
+
+
+    /**
+     * Identifies the definition of an index together with the columns of its table. A checkpoint is only valid for the
+     * definition it was written for.
+     */
+    static long fingerprint( final Index index, final Snapshot snapshot ) {
+        final CRC32 crc = new CRC32();
+        final StringBuilder sb = new StringBuilder()
+                .append( index.getId() ).append( ';' )
+                .append( index.getMethod() ).append( ';' )
+                .append( index.isUnique() ).append( ';' )
+                .append( index.getTable().id ).append( ';' )
+                .append( index.getColumns() ).append( ';' )
+                .append( index.getTargetColumns() );
+        final Set<String> columns = new HashSet<>( index.getColumns() );
+        columns.addAll( index.getTargetColumns() );
+        for ( final LogicalColumn column : snapshot.rel().getColumns( index.getTable().id ) ) {
+            if ( columns.contains( column.name ) ) {
+                sb.append( ';' ).append( column.name ).append( ':' ).append( column.type );
+            }
+        }
+        crc.update( sb.toString().getBytes( StandardCharsets.UTF_8 ) );
+        return crc.getValue();
     }
 
 
@@ -220,6 +350,21 @@ public Index getIndex( LogicalNamespace schema, LogicalTable table, List<String>
     }
 
 
+    /**
+     * Returns an initialized ordered index whose leading column is the given column and which covers all given columns.
+     */
+    public Index getOrderedIndex( LogicalNamespace schema, LogicalTable table, String leadingColumn, Collection<String> columns ) {
+        return this.indexById.values().stream().filter( index ->
+                index instanceof OrderedIndex
+                        && index.schema.equals( schema )
+                        && index.table.equals( table )
+                        && index.columns.get( 0 ).equals( leadingColumn )
+                        && index.columns.containsAll( columns )
+                        && index.isInitialized()
+        ).findFirst().orElse( null );
+    }
+
+
     public List<Index> getIndices( LogicalNamespace schema, LogicalTable table ) {
         return this.indexById.values().stream()
                 .filter( index -> index.schema.equals( schema ) && index.table.equals( table ) )
@@ -264,6 +409,7 @@ private void registerMonitoringPage() {
         generalGroup.setRefreshFunction( () -> {
             generalKv.putPair( "Status", RuntimeConfig.POLYSTORE_INDEXES_ENABLED.getBoolean() ? "Active" : "Disabled" );
             generalKv.putPair( "Simplification", RuntimeConfig.POLYSTORE_INDEXES_SIMPLIFY.getBoolean() ? "Active" : "Disabled" );
+            generalKv.putPair( "Persistence", RuntimeConfig.POLYSTORE_INDEXES_PERSISTENT.getBoolean() ? "Active" : "Disabled" );
             generalKv.putPair( "Number of Indexes", String.valueOf( indexById.keySet().size() ) );
             generalKv.putPair( "Total Index Entries", String.valueOf( indexById.values().stream().map( Index::size ).reduce( Integer::sum ).orElse( 0 ) ) );
         } );
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Range on the leading column of an {@link OrderedIndex}. A missing bound is unbounded.
+ * Keys whose leading column is null are only part of the unbounded range.
+ */
+public record KeyRange(@Nullable PolyValue lower, boolean lowerInclusive, @Nullable PolyValue upper, boolean upperInclusive) {
+
+    public static final KeyRange ALL = new KeyRange( null, false, null, false );
+
+    /**
+     * Orders keys column by column, a shorter key is smaller than all keys it is a prefix of. Nulls are sorted last.
+     */
+    public static final Comparator<List<PolyValue>> KEY_COMPARATOR = ( a, b ) -> {
+        for ( int i = 0; i < Math.min( a.size(), b.size() ); i++ ) {
+            final int c = compareValues( a.get( i ), b.get( i ) );
+            if ( c != 0 ) {
+                return c;
+            }
+        }
+        return Integer.compare( a.size(), b.size() );
+    };
+
+
+    public static KeyRange equalTo( PolyValue value ) {
+        return new KeyRange( value, true, value, true );
+    }
+
+
+    /**
+     * Returns the range of all strings starting with the given prefix.
+     */
+    public static KeyRange prefix( String prefix ) {
+        final char last = prefix.charAt( prefix.length() - 1 );
+        if ( last == Character.MAX_VALUE ) {
+            return new KeyRange( PolyString.of( prefix ), true, null, false );
+        }
+        final String next = prefix.substring( 0, prefix.length() - 1 ) + (char) (last + 1);
+        return new KeyRange( PolyString.of( prefix ), true, PolyString.of( next ), false );
+    }
+
+
+    public boolean isAll() {
+        return lower == null && upper == null;
+    }
+
+
+    public boolean isEmpty() {
+        if ( lower == null || upper == null ) {
+            return false;
+        }
+        final int c = compareValues( lower, upper );
+        return c > 0 || (c == 0 && !(lowerInclusive && upperInclusive));
+    }
+
+
+    /**
+     * Returns the intersection of this and the given range.
+     */
+    public KeyRange intersect( KeyRange other ) {
+        PolyValue lower = this.lower;
+        boolean lowerInclusive = this.lowerInclusive;
+        if ( other.lower != null ) {
+            final int c = lower == null ? -1 : compareValues( lower, other.lower );
+            if ( c < 0 || (c == 0 && !other.lowerInclusive) ) {
+                lower = other.lower;
+                lowerInclusive = other.lowerInclusive;
+            }
+        }
+        PolyValue upper = this.upper;
+        boolean upperInclusive = this.upperInclusive;
+        if ( other.upper != null ) {
+            final int c = upper == null ? 1 : compareValues( upper, other.upper );
+            if ( c > 0 || (c == 0 && !other.upperInclusive) ) {
+                upper = other.upper;
+                upperInclusive = other.upperInclusive;
+            }
+        }
+        return new KeyRange( lower, lowerInclusive, upper, upperInclusive );
+    }
+
+
+    public boolean contains( PolyValue value ) {
+        if ( isAll() ) {
+            return true;
+        }
+        if ( value == null || value.isNull() ) {
+            return false;
+        }
+        if ( lower != null ) {
+            final int c = compareValues( value, lower );
+            if ( c < 0 || (c == 0 && !lowerInclusive) ) {
+                return false;
+            }
+        }
+        if ( upper != null ) {
+            final int c = compareValues( value, upper );
+            return c < 0 || (c == 0 && upperInclusive);
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns whether the given value is larger than every value within this range.
+     */
+    public boolean isAbove( PolyValue value ) {
+        if ( upper == null ) {
+            return false;
+        }
+        final int c = compareValues( value, upper );
+        return c > 0 || (c == 0 && !upperInclusive);
+    }
+
+
+    static int compareValues( PolyValue a, PolyValue b ) {
+        final boolean aNull = a == null || a.isNull();
+        final boolean bNull = b == null || b.isNull();
+        if ( aNull || bNull ) {
+            return Boolean.compare( aNull, bNull );
+        }
+        return a.compareTo( b );
+    }
+
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.polypheny.db.algebra.core.Values;
+import org.polypheny.db.algebra.exceptions.ConstraintViolationException;
+import org.polypheny.db.algebra.type.AlgDataType;
+import org.polypheny.db.catalog.entity.logical.LogicalNamespace;
+import org.polypheny.db.catalog.entity.logical.LogicalTable;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.transaction.PolyXid;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.util.Pair;
+
+
+/**
+ * Hash index which keeps a chain of committed versions per key. Readers never block: they pin the commit
+ * timestamp at the time of the lookup and walk the version chain of a key to the newest version not younger
+ * than that timestamp. Writers buffer their changes per transaction, exactly like the copy-on-write indexes,
+ * and install new versions at commit. Versions which are no longer visible to any active reader are pruned
+ * after every commit.
+ */
+public class MvccHashIndex extends Index {
+
+    private final boolean unique;
+
+    private final ConcurrentHashMap<List<PolyValue>, Version> index = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong( 0 );
+    private final AtomicInteger size = new AtomicInteger( 0 );
+    private volatile boolean initialized = false;
+
+    // Serializes the installation of new versions; readers never acquire it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Set<ReadView> activeReads = ConcurrentHashMap.newKeySet();
+    // Keys whose version chain has more than one element and might be pruned
+    private final Set<List<PolyValue>> retired = new HashSet<>();
+
+    private final Map<PolyXid, PendingChanges> pending = new ConcurrentHashMap<>();
+
+
+    public MvccHashIndex( long id, String name, boolean unique, LogicalNamespace schema, LogicalTable table, List<String> columns, List<String> targetColumns ) {
+        this.id = id;
+        this.name = name;
+        this.unique = unique;
+        this.schema = schema;
+        this.table = table;
+        this.columns = ImmutableList.copyOf( columns );
+        this.targetColumns = ImmutableList.copyOf( targetColumns );
+    }
+
+
+    public MvccHashIndex( long id, String name, boolean unique, LogicalNamespace schema, LogicalTable table, String[] columns, String[] targetColumns ) {
+        this( id, name, unique, schema, table, Arrays.asList( columns ), Arrays.asList( targetColumns ) );
+    }
+
+
+    @Override
+    public String getMethod() {
+        return "mvcc_hash";
+    }
+
+
+    @Override
+    public boolean isUnique() {
+        return unique;
+    }
+
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+
+    protected PendingChanges begin( PolyXid xid ) {
+        PendingChanges changes = pending.get( xid );
+        if ( changes == null ) {
+            IndexManager.getInstance().begin( xid, this );
+            changes = pending.computeIfAbsent( xid, k -> new PendingChanges() );
+        }
+        return changes;
+    }
+
+
+    @Override
+    void commit( PolyXid xid ) {
+        final PendingChanges changes = pending.get( xid );
+        if ( changes == null ) {
+            return;
+        }
+        if ( !changes.buffered.isEmpty() ) {
+            throw new IllegalStateException( "Attempted index commit without invoking barrier first" );
+        }
+        install( changes.log );
+        rollback( xid );
+    }
+
+
+    @Override
+    public void barrier( PolyXid xid ) {
+        final PendingChanges changes = begin( xid );
+        final Map<List<PolyValue>, Set<List<PolyValue>>> staged = new HashMap<>();
+        for ( final Operation op : changes.buffered ) {
+            final Set<List<PolyValue>> primaries = staged.computeIfAbsent( op.key(), key -> new HashSet<>( visible( changes, key ) ) );
+            if ( op.insert() ) {
+                if ( unique && !primaries.isEmpty() ) {
+                    throw new ConstraintViolationException(
+                            String.format( "Attempt to add duplicate key [%s] to unique index %s", op.key(), name )
+                    );
+                }
+                primaries.add( op.primary() );
+            } else if ( op.primary() == null ) {
+                primaries.clear();
+            } else {
+                primaries.remove( op.primary() );
+            }
+        }
+        // Only publish the changes once all of them passed the constraint checks
+        changes.applied.putAll( staged );
+        changes.log.addAll( changes.buffered );
+        changes.buffered.clear();
+    }
+
+
+    @Override
+    void rollback( PolyXid xid ) {
+        pending.remove( xid );
+    }
+
+
+    @Override
+    protected void clear() {
+        writeLock.lock();
+        try {
+            index.clear();
+            retired.clear();
+            pending.clear();
+            size.set( 0 );
+            initialized = false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    @Override
+    boolean isInitialized() {
+        return initialized;
+    }
+
+
+    @Override
+    void initialize() {
+        initialized = true;
+    }
+
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+
+    @Override
+    public void insert( PolyXid xid, List<PolyValue> key, List<PolyValue> primary ) {
+        begin( xid ).buffered.add( new Operation( key, primary, true ) );
+    }
+
+
+    @Override
+    void insert( List<PolyValue> key, List<PolyValue> primary ) {
+        install( List.of( new Operation( key, primary, true ) ) );
+    }
+
+
+    @Override
+    void insertAll( Iterable<Pair<List<PolyValue>, List<PolyValue>>> values ) {
+        final List<Operation> ops = new ArrayList<>();
+        for ( final Pair<List<PolyValue>, List<PolyValue>> row : values ) {
+            ops.add( new Operation( row.getKey(), row.getValue(), true ) );
+        }
+        install( ops );
+    }
+
+
+    @Override
+    public void delete( PolyXid xid, List<PolyValue> key ) {
+        begin( xid ).buffered.add( new Operation( key, null, false ) );
+    }
+
+
+    @Override
+    void deletePrimary( PolyXid xid, List<PolyValue> key, List<PolyValue> primary ) {
+        begin( xid ).buffered.add( new Operation( key, primary, false ) );
+    }
+
+
+    @Override
+    void delete( List<PolyValue> key ) {
+        install( List.of( new Operation( key, null, false ) ) );
+    }
+
+
+    @Override
+    void deletePrimary( List<PolyValue> key, List<PolyValue> primary ) {
+        install( List.of( new Operation( key, primary, false ) ) );
+    }
+
+
+    @Override
+    public boolean contains( PolyXid xid, List<PolyValue> value ) {
+        final PendingChanges changes = pending.get( xid );
+        if ( changes != null && changes.applied.containsKey( value ) ) {
+            return !changes.applied.get( value ).isEmpty();
+        }
+        return read( timestamp -> !primariesAt( value, timestamp ).isEmpty() );
+    }
+
+
+    @Override
+    public boolean containsAny( PolyXid xid, Iterable<List<PolyValue>> values ) {
+        for ( final List<PolyValue> tuple : values ) {
+            if ( contains( xid, tuple ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    public boolean containsAll( PolyXid xid, Iterable<List<PolyValue>> values ) {
+        for ( final List<PolyValue> tuple : values ) {
+            if ( !contains( xid, tuple ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    public Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType ) {
+        final PendingChanges changes = pending.get( xid );
+        final Map<List<PolyValue>, Set<List<PolyValue>>> overlay = changes != null ? changes.applied : Map.of();
+        final RexBuilder rexBuilder = builder.getRexBuilder();
+        final List<ImmutableList<RexLiteral>> tuples = new ArrayList<>( size.get() + overlay.size() );
+        for ( Map.Entry<List<PolyValue>, Set<List<PolyValue>>> entry : overlay.entrySet() ) {
+            addRows( tuples, rowType, rexBuilder, entry.getKey(), entry.getValue() );
+        }
+        read( timestamp -> {
+            for ( Map.Entry<List<PolyValue>, Version> entry : index.entrySet() ) {
+                if ( overlay.containsKey( entry.getKey() ) ) {
+                    // Key was modified by this transaction
+                    continue;
+                }
+                final Version version = entry.getValue().at( timestamp );
+                if ( version != null ) {
+                    addRows( tuples, rowType, rexBuilder, entry.getKey(), version.primaries );
+                }
+            }
+            return null;
+        } );
+        return (Values) builder.values( ImmutableList.copyOf( tuples ), rowType ).build();
+    }
+
+
+    @Override
+    public Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType, List<PolyValue> key ) {
+        return getAsValues( xid, builder, rowType, List.of( key ) );
+    }
+
+
+    @Override
+    public Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType, Collection<List<PolyValue>> keys ) {
+        final PendingChanges changes = pending.get( xid );
+        final RexBuilder rexBuilder = builder.getRexBuilder();
+        final List<ImmutableList<RexLiteral>> tuples = new ArrayList<>( keys.size() );
+        read( timestamp -> {
+            for ( final List<PolyValue> key : keys ) {
+                final Set<List<PolyValue>> primaries = changes != null && changes.applied.containsKey( key )
+                        ? changes.applied.get( key )
+                        : primariesAt( key, timestamp );
+                addRows( tuples, rowType, rexBuilder, key, primaries );
+            }
+            return null;
+        } );
+        return (Values) builder.values( ImmutableList.copyOf( tuples ), rowType ).build();
+    }
+
+
+    @Override
+    Map<List<PolyValue>, ?> getRaw() {
+        return read( timestamp -> {
+            final Map<List<PolyValue>, Object> raw = new HashMap<>();
+            for ( Map.Entry<List<PolyValue>, Version> entry : index.entrySet() ) {
+                final Version version = entry.getValue().at( timestamp );
+                if ( version != null ) {
+                    raw.put( entry.getKey(), unique ? version.primaries.iterator().next() : version.primaries );
+                }
+            }
+            return raw;
+        } );
+    }
+
+
+    private void addRows( List<ImmutableList<RexLiteral>> tuples, AlgDataType rowType, RexBuilder rexBuilder, List<PolyValue> key, Set<List<PolyValue>> primaries ) {
+        if ( primaries.isEmpty() ) {
+            return;
+        }
+        final ImmutableList<RexLiteral> row = makeRexRow( rowType, rexBuilder, key );
+        final int count = unique ? 1 : primaries.size();
+        for ( int i = 0; i < count; ++i ) {
+            tuples.add( row );
+        }
+    }
+
+
+    /**
+     * Returns the primaries of the given key which are visible to the given transaction, taking its own changes into account.
+     */
+    private Set<List<PolyValue>> visible( PendingChanges changes, List<PolyValue> key ) {
+        if ( changes.applied.containsKey( key ) ) {
+            return changes.applied.get( key );
+        }
+        return read( timestamp -> primariesAt( key, timestamp ) );
+    }
+
+
+    private Set<List<PolyValue>> primariesAt( List<PolyValue> key, long timestamp ) {
+        final Version head = index.get( key );
+        if ( head == null ) {
+            return Set.of();
+        }
+        final Version version = head.at( timestamp );
+        return version == null ? Set.of() : version.primaries;
+    }
+
+
+    /**
+     * Pins the current commit timestamp for the duration of the given read. The read view is registered before the
+     * timestamp is taken, so that a concurrent pruning either sees the pinned timestamp or skips pruning altogether.
+     */
+    private <T> T read( Function<Long, T> reader ) {
+        final ReadView view = new ReadView();
+        activeReads.add( view );
+        try {
+            view.timestamp = clock.get();
+            return reader.apply( view.timestamp );
+        } finally {
+            activeReads.remove( view );
+        }
+    }
+
+
+    /**
+     * Applies the given operations to the latest committed state and installs the result as a new version.
+     */
+    private void install( List<Operation> ops ) {
+        if ( ops.isEmpty() ) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            final long timestamp = clock.get() + 1;
+            final Map<List<PolyValue>, Set<List<PolyValue>>> staged = new HashMap<>();
+            for ( final Operation op : ops ) {
+                final Set<List<PolyValue>> primaries = staged.computeIfAbsent( op.key(), key -> {
+                    final Version head = index.get( key );
+                    return head == null ? new HashSet<>() : new HashSet<>( head.primaries );
+                } );
+                if ( op.insert() ) {
+                    if ( unique ) {
+                        primaries.clear();
+                    }
+                    primaries.add( op.primary() );
+                } else if ( op.primary() == null ) {
+                    primaries.clear();
+                } else {
+                    primaries.remove( op.primary() );
+                }
+            }
+            for ( Map.Entry<List<PolyValue>, Set<List<PolyValue>>> entry : staged.entrySet() ) {
+                final Version head = index.get( entry.getKey() );
+                final boolean wasLive = head != null && !head.primaries.isEmpty();
+                final boolean isLive = !entry.getValue().isEmpty();
+                if ( head == null && !isLive ) {
+                    continue;
+                }
+                index.put( entry.getKey(), new Version( timestamp, Collections.unmodifiableSet( entry.getValue() ), head ) );
+                if ( head != null ) {
+                    retired.add( entry.getKey() );
+                }
+                if ( wasLive != isLive ) {
+                    size.addAndGet( isLive ? 1 : -1 );
+                }
+            }
+            // Publish the new versions
+            clock.set( timestamp );
+            prune();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Cuts all versions which are older than the oldest version still visible to an active reader.
+     * Has to be called while holding the write lock.
+     */
+    private void prune() {
+        long horizon = clock.get();
+        for ( final ReadView view : activeReads ) {
+            final long timestamp = view.timestamp;
+            if ( timestamp < 0 ) {
+                // A reader is about to pin its timestamp, try again after the next commit
+                return;
+            }
+            horizon = Math.min( horizon, timestamp );
+        }
+        final Iterator<List<PolyValue>> iterator = retired.iterator();
+        while ( iterator.hasNext() ) {
+            final List<PolyValue> key = iterator.next();
+            final Version head = index.get( key );
+            final Version oldest = head == null ? null : head.find( horizon );
+            if ( oldest != null ) {
+                oldest.previous = null;
+            }
+            if ( head != null && head.timestamp <= horizon && head.primaries.isEmpty() ) {
+                // Deleted and no longer visible to anyone
+                index.remove( key, head );
+            }
+            if ( head == null || head.timestamp <= horizon || head.previous == null ) {
+                iterator.remove();
+            }
+        }
+    }
+
+
+    private record Operation(List<PolyValue> key, List<PolyValue> primary, boolean insert) {
+
+    }
+
+
+    private static class Version {
+
+        final long timestamp;
+        // An empty set marks the key as deleted
+        final Set<List<PolyValue>> primaries;
+        volatile Version previous;
+
+
+        Version( long timestamp, Set<List<PolyValue>> primaries, Version previous ) {
+            this.timestamp = timestamp;
+            this.primaries = primaries;
+            this.previous = previous;
+        }
+
+
+        /**
+         * Returns the newest version which was committed at or before the given timestamp.
+         */
+        Version find( long timestamp ) {
+            Version version = this;
+            while ( version != null && version.timestamp > timestamp ) {
+                version = version.previous;
+            }
+            return version;
+        }
+
+
+        /**
+         * Like {@link #find(long)}, but returns {@code null} if the key was deleted at that time.
+         */
+        Version at( long timestamp ) {
+            final Version version = find( timestamp );
+            return version == null || version.primaries.isEmpty() ? null : version;
+        }
+
+    }
+
+
+    private static class ReadView {
+
+        volatile long timestamp = -1;
+
+    }
+
+
+    private static class PendingChanges {
+
+        // Operations since the last barrier
+        final List<Operation> buffered = new ArrayList<>();
+        // State of all keys modified by the transaction, as seen by the transaction itself
+        final Map<List<PolyValue>, Set<List<PolyValue>>> applied = new HashMap<>();
+        // Operations which passed a barrier, replayed against the latest committed state at commit
+        final List<Operation> log = new ArrayList<>();
+
+    }
+
+
+    static class Factory implements IndexFactory {
+
+        @Override
+        public boolean canProvide( String method, Boolean unique, Boolean persistent ) {
+            return method != null && method.equals( "mvcc_hash" )
+                    && (persistent == null || !persistent);
+        }
+
+
+        @Override
+        public Index create(
+                long id,
+                String name,
+                String method,
+                Boolean unique,
+                Boolean persistent,
+                LogicalNamespace schema,
+                LogicalTable table,
+                List<String> columns,
+                List<String> targetColumns ) {
+            return new MvccHashIndex( id, name, unique != null && unique, schema, table, columns, targetColumns );
+        }
+
+    }
+
+}
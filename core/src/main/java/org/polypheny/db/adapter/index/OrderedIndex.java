@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import org.polypheny.db.algebra.core.Values;
+import org.polypheny.db.algebra.type.AlgDataType;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.transaction.PolyXid;
+
+
+/**
+ * Index which keeps its keys sorted by {@link KeyRange#KEY_COMPARATOR} and is therefore able to answer range queries.
+ */
+public interface OrderedIndex {
+
+    /**
+     * Returns the entries whose leading column lies within the given range, in key order.
+     *
+     * @param descending Whether to return the entries in descending key order
+     * @param limit Maximal number of rows to return, a negative value returns all matching rows
+     */
+    Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType, KeyRange range, boolean descending, int limit );
+
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
+import org.polypheny.db.algebra.core.Values;
+import org.polypheny.db.algebra.exceptions.ConstraintViolationException;
+import org.polypheny.db.algebra.type.AlgDataType;
+import org.polypheny.db.catalog.entity.logical.LogicalNamespace;
+import org.polypheny.db.catalog.entity.logical.LogicalTable;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.transaction.PolyXid;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.util.Pair;
+
+
+/**
+ * Copy-on-write index which keeps its keys ordered in a skip list, allowing range scans and ordered reads on the
+ * leading index column. Modified keys are kept in a sorted per-transaction map which is merged with the committed
+ * entries on read.
+ */
+public class SkipListIndex extends Index implements OrderedIndex {
+
+    private final boolean unique;
+
+    // An empty set of primaries marks a key as deleted in a transaction
+    private final ConcurrentSkipListMap<List<PolyValue>, Set<List<PolyValue>>> index = new ConcurrentSkipListMap<>( KeyRange.KEY_COMPARATOR );
+    private volatile boolean initialized = false;
+
+    private final Map<PolyXid, NavigableMap<List<PolyValue>, Set<List<PolyValue>>>> cowIndex = new ConcurrentHashMap<>();
+    private final Map<PolyXid, List<DeferredIndexUpdate>> cowOpLog = new ConcurrentHashMap<>();
+    private final Map<PolyXid, List<Triple<List<PolyValue>, List<PolyValue>, Boolean>>> barrierIndex = new ConcurrentHashMap<>();
+
+
+    public SkipListIndex( long id, String name, boolean unique, LogicalNamespace schema, LogicalTable table, List<String> columns, List<String> targetColumns ) {
+        this.id = id;
+        this.name = name;
+        this.unique = unique;
+        this.schema = schema;
+        this.table = table;
+        this.columns = ImmutableList.copyOf( columns );
+        this.targetColumns = ImmutableList.copyOf( targetColumns );
+    }
+
+
+    public SkipListIndex( long id, String name, boolean unique, LogicalNamespace schema, LogicalTable table, String[] columns, String[] targetColumns ) {
+        this( id, name, unique, schema, table, Arrays.asList( columns ), Arrays.asList( targetColumns ) );
+    }
+
+
+    @Override
+    public String getMethod() {
+        return "skiplist";
+    }
+
+
+    @Override
+    public boolean isUnique() {
+        return unique;
+    }
+
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+
+    @Override
+    void commit( PolyXid xid ) {
+        begin( xid );
+        if ( !barrierIndex.get( xid ).isEmpty() ) {
+            throw new IllegalStateException( "Attempted index commit without invoking barrier first" );
+        }
+        for ( final DeferredIndexUpdate update : this.cowOpLog.get( xid ) ) {
+            update.execute( this );
+        }
+        rollback( xid );
+    }
+
+
+    @Override
+    public void barrier( PolyXid xid ) {
+        begin( xid );
+        final NavigableMap<List<PolyValue>, Set<List<PolyValue>>> staged = new TreeMap<>( KeyRange.KEY_COMPARATOR );
+        for ( final Triple<List<PolyValue>, List<PolyValue>, Boolean> tuple : barrierIndex.get( xid ) ) {
+            postBarrier( xid, staged, tuple.getLeft(), tuple.getMiddle(), tuple.getRight() );
+        }
+        // Only publish the changes once all of them passed the constraint checks
+        cowIndex.get( xid ).putAll( staged );
+        barrierIndex.get( xid ).clear();
+    }
+
+
+    @Override
+    void rollback( PolyXid xid ) {
+        this.cowIndex.remove( xid );
+        this.cowOpLog.remove( xid );
+        this.barrierIndex.remove( xid );
+    }
+
+
+    @Override
+    protected void clear() {
+        index.clear();
+        cowIndex.clear();
+        cowOpLog.clear();
+        barrierIndex.clear();
+        initialized = false;
+    }
+
+
+    @Override
+    boolean isInitialized() {
+        return initialized;
+    }
+
+
+    @Override
+    void initialize() {
+        initialized = true;
+    }
+
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+
+    protected void begin( PolyXid xid ) {
+        if ( !cowIndex.containsKey( xid ) ) {
+            IndexManager.getInstance().begin( xid, this );
+            cowIndex.put( xid, new TreeMap<>( KeyRange.KEY_COMPARATOR ) );
+            cowOpLog.put( xid, new ArrayList<>() );
+            barrierIndex.put( xid, new ArrayList<>() );
+        }
+    }
+
+
+    @Override
+    public boolean contains( PolyXid xid, List<PolyValue> value ) {
+        return !lookup( cowIndex.get( xid ), value ).isEmpty();
+    }
+
+
+    @Override
+    public boolean containsAny( PolyXid xid, Iterable<List<PolyValue>> values ) {
+        for ( final List<PolyValue> tuple : values ) {
+            if ( contains( xid, tuple ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    public boolean containsAll( PolyXid xid, Iterable<List<PolyValue>> values ) {
+        for ( final List<PolyValue> tuple : values ) {
+            if ( !contains( xid, tuple ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    public Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType ) {
+        return getAsValues( xid, builder, rowType, KeyRange.ALL, false, -1 );
+    }
+
+
+    @Override
+    public Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType, List<PolyValue> key ) {
+        final List<List<PolyValue>> keys = new ArrayList<>();
+        addKeys( keys, key, lookup( cowIndex.get( xid ), key ), -1 );
+        return toValues( builder, rowType, keys );
+    }
+
+
+    @Override
+    public Values getAsValues( PolyXid xid, AlgBuilder builder, AlgDataType rowType, KeyRange range, boolean descending, int limit ) {
+        return toValues( builder, rowType, getSlice( xid, range, descending, limit ) );
+    }
+
+
+    /**
+     * Returns the keys within the given range as seen by the given transaction. Keys of a non-unique index are
+     * repeated for every primary.
+     */
+    List<List<PolyValue>> getSlice( PolyXid xid, KeyRange range, boolean descending, int limit ) {
+        final NavigableMap<List<PolyValue>, Set<List<PolyValue>>> ci = cowIndex.get( xid );
+        final List<List<PolyValue>> keys = new ArrayList<>();
+        final Comparator<List<PolyValue>> comparator = descending ? KeyRange.KEY_COMPARATOR.reversed() : KeyRange.KEY_COMPARATOR;
+
+        // Merge the committed entries with the entries modified by the transaction, the latter take precedence
+        final Iterator<Entry<List<PolyValue>, Set<List<PolyValue>>>> committed = slice( index, range, descending ).entrySet().iterator();
+        final Iterator<Entry<List<PolyValue>, Set<List<PolyValue>>>> modified = ci == null
+                ? Collections.emptyIterator()
+                : slice( ci, range, descending ).entrySet().iterator();
+        Entry<List<PolyValue>, Set<List<PolyValue>>> c = committed.hasNext() ? committed.next() : null;
+        Entry<List<PolyValue>, Set<List<PolyValue>>> m = modified.hasNext() ? modified.next() : null;
+        while ( (c != null || m != null) && (limit < 0 || keys.size() < limit) ) {
+            final Entry<List<PolyValue>, Set<List<PolyValue>>> entry;
+            final int order = c == null ? 1 : m == null ? -1 : comparator.compare( c.getKey(), m.getKey() );
+            if ( order < 0 ) {
+                entry = c;
+                c = committed.hasNext() ? committed.next() : null;
+            } else {
+                if ( order == 0 ) {
+                    c = committed.hasNext() ? committed.next() : null;
+                }
+                entry = m;
+                m = modified.hasNext() ? modified.next() : null;
+            }
+            // The slice contains keys equal to exclusive bounds
+            if ( range.contains( entry.getKey().get( 0 ) ) ) {
+                addKeys( keys, entry.getKey(), entry.getValue(), limit < 0 ? -1 : limit - keys.size() );
+            }
+        }
+        return keys;
+    }
+
+
+    @Override
+    NavigableMap<List<PolyValue>, Set<List<PolyValue>>> getRaw() {
+        return index;
+    }
+
+
+    private Set<List<PolyValue>> lookup( NavigableMap<List<PolyValue>, Set<List<PolyValue>>> ci, List<PolyValue> key ) {
+        Set<List<PolyValue>> primaries = ci != null ? ci.get( key ) : null;
+        if ( primaries == null ) {
+            primaries = index.get( key );
+        }
+        return primaries == null ? Set.of() : primaries;
+    }
+
+
+    private void addKeys( List<List<PolyValue>> keys, List<PolyValue> key, Set<List<PolyValue>> primaries, int limit ) {
+        int count = unique ? Math.min( 1, primaries.size() ) : primaries.size();
+        if ( limit >= 0 ) {
+            count = Math.min( count, limit );
+        }
+        for ( int i = 0; i < count; ++i ) {
+            keys.add( key );
+        }
+    }
+
+
+    private Values toValues( AlgBuilder builder, AlgDataType rowType, List<List<PolyValue>> keys ) {
+        final RexBuilder rexBuilder = builder.getRexBuilder();
+        final List<ImmutableList<RexLiteral>> tuples = new ArrayList<>( keys.size() );
+        for ( final List<PolyValue> key : keys ) {
+            tuples.add( makeRexRow( rowType, rexBuilder, key ) );
+        }
+        return (Values) builder.values( ImmutableList.copyOf( tuples ), rowType ).build();
+    }
+
+
+    /**
+     * Returns the part of the given map whose leading column lies within the range. Keys equal to an exclusive
+     * bound are not removed, as a multi-column key cannot be bounded exactly by a key prefix.
+     */
+    private static <V> NavigableMap<List<PolyValue>, V> slice( NavigableMap<List<PolyValue>, V> map, KeyRange range, boolean descending ) {
+        if ( range.isEmpty() ) {
+            return Collections.emptyNavigableMap();
+        }
+        NavigableMap<List<PolyValue>, V> sub = map;
+        if ( range.lower() != null ) {
+            sub = sub.tailMap( List.of( range.lower() ), true );
+        }
+        if ( range.upper() != null ) {
+            for ( final List<PolyValue> key : sub.tailMap( List.of( range.upper() ), true ).keySet() ) {
+                if ( range.isAbove( key.get( 0 ) ) ) {
+                    sub = sub.headMap( key, false );
+                    break;
+                }
+            }
+        }
+        return descending ? sub.descendingMap() : sub;
+    }
+
+
+    @Override
+    public void insertAll( PolyXid xid, final Iterable<Pair<List<PolyValue>, List<PolyValue>>> values ) {
+        begin( xid );
+        List<DeferredIndexUpdate> log = cowOpLog.get( xid );
+        for ( final Pair<List<PolyValue>, List<PolyValue>> row : values ) {
+            _insert( xid, row.getKey(), row.getValue() );
+        }
+        log.add( DeferredIndexUpdate.createInsert( values ) );
+    }
+
+
+    @Override
+    public void insert( PolyXid xid, List<PolyValue> key, List<PolyValue> primary ) {
+        begin( xid );
+        List<DeferredIndexUpdate> log = cowOpLog.get( xid );
+        _insert( xid, key, primary );
+        log.add( DeferredIndexUpdate.createInsert( Collections.singleton( new Pair<>( key, primary ) ) ) );
+    }
+
+
+    protected void _insert( PolyXid xid, List<PolyValue> key, List<PolyValue> primary ) {
+        barrierIndex.get( xid ).add( new ImmutableTriple<>( key, primary, true ) );
+    }
+
+
+    protected void postBarrier( PolyXid xid, NavigableMap<List<PolyValue>, Set<List<PolyValue>>> staged, List<PolyValue> key, List<PolyValue> primary, boolean insert ) {
+        Set<List<PolyValue>> primaries = staged.get( key );
+        if ( primaries == null ) {
+            primaries = new HashSet<>( lookup( cowIndex.get( xid ), key ) );
+            staged.put( key, primaries );
+        }
+        if ( insert ) {
+            if ( unique && !primaries.isEmpty() ) {
+                throw new ConstraintViolationException(
+                        String.format( "Attempt to add duplicate key [%s] to unique index %s", key, name )
+                );
+            }
+            primaries.add( primary );
+        } else if ( primary == null ) {
+            primaries.clear();
+        } else {
+            primaries.remove( primary );
+        }
+    }
+
+
+    @Override
+    void insert( List<PolyValue> key, List<PolyValue> primary ) {
+        if ( unique ) {
+            index.put( key, Set.of( primary ) );
+        } else {
+            index.computeIfAbsent( key, k -> ConcurrentHashMap.newKeySet() ).add( primary );
+        }
+    }
+
+
+    @Override
+    public void delete( PolyXid xid, List<PolyValue> key ) {
+        begin( xid );
+        List<DeferredIndexUpdate> log = cowOpLog.get( xid );
+
+        _delete( xid, key, null );
+        log.add( DeferredIndexUpdate.createDelete( Collections.singleton( key ) ) );
+    }
+
+
+    @Override
+    public void deletePrimary( PolyXid xid, List<PolyValue> key, List<PolyValue> primary ) {
+        begin( xid );
+        List<DeferredIndexUpdate> log = cowOpLog.get( xid );
+
+        _delete( xid, key, primary );
+        log.add( DeferredIndexUpdate.createDeletePrimary( Collections.singleton( new Pair<>( key, primary ) ) ) );
+    }
+
+
+    protected void _delete( PolyXid xid, List<PolyValue> key, List<PolyValue> primary ) {
+        barrierIndex.get( xid ).add( new ImmutableTriple<>( key, primary, false ) );
+    }
+
+
+    @Override
+    public void deleteAllPrimary( PolyXid xid, final Iterable<Pair<List<PolyValue>, List<PolyValue>>> values ) {
+        begin( xid );
+        List<DeferredIndexUpdate> log = cowOpLog.get( xid );
+
+        for ( final Pair<List<PolyValue>, List<PolyValue>> value : values ) {
+            _delete( xid, value.left, value.right );
+        }
+        log.add( DeferredIndexUpdate.createDeletePrimary( values ) );
+    }
+
+
+    @Override
+    public void deleteAll( PolyXid xid, final Iterable<List<PolyValue>> values ) {
+        begin( xid );
+        List<DeferredIndexUpdate> log = cowOpLog.get( xid );
+
+        for ( final List<PolyValue> value : values ) {
+            _delete( xid, value, null );
+        }
+        log.add( DeferredIndexUpdate.createDelete( values ) );
+    }
+
+
+    @Override
+    void delete( List<PolyValue> key ) {
+        index.remove( key );
+    }
+
+
+    @Override
+    void deletePrimary( List<PolyValue> key, List<PolyValue> primary ) {
+        index.computeIfPresent( key, ( k, primaries ) -> {
+            if ( unique ) {
+                return primaries.contains( primary ) ? null : primaries;
+            }
+            primaries.remove( primary );
+            return primaries.isEmpty() ? null : primaries;
+        } );
+    }
+
+
+    static class Factory implements IndexFactory {
+
+        @Override
+        public boolean canProvide( String method, Boolean unique, Boolean persistent ) {
+            return method != null && method.equals( "skiplist" )
+                    && (persistent == null || !persistent);
+        }
+
+
+        @Override
+        public Index create(
+                long id,
+                String name,
+                String method,
+                Boolean unique,
+                Boolean persistent,
+                LogicalNamespace schema,
+                LogicalTable table,
+                List<String> columns,
+                List<String> targetColumns ) {
+            return new SkipListIndex( id, name, unique != null && unique, schema, table, columns, targetColumns );
+        }
+
+    }
+
+}
@@ -65,6 +65,7 @@
 import org.polypheny.db.plan.AlgTraitSet;
 import org.polypheny.db.plan.ConventionTraitDef;
 import org.polypheny.db.plugins.PolyPluginManager;
+import org.polypheny.db.processing.caching.PersistentCodeCache;
 import org.polypheny.db.runtime.ArrayBindable;
 import org.polypheny.db.runtime.Bindable;
 import org.polypheny.db.runtime.Hook;
@@ -114,18 +115,37 @@ public static <T> Pair<Bindable<T>, String> toBindable(
             EnumerableAlg alg,
             EnumerableAlg.Prefer prefer,
             Statement statement ) {
+        final Pair<ClassDeclaration, String> code = generate( parameters, alg, prefer );
+        return new Pair<>( compile( code.left, code.right, alg.getTupleType().getFieldCount() ), code.right );
+    }
+
+
+    /**
+     * Generates the Java code implementing an enumerable plan, without compiling it.
+     *
+     * @return The class declaration and its source code
+     */
+    public static Pair<ClassDeclaration, String> generate( Map<String, Object> parameters, EnumerableAlg alg, EnumerableAlg.Prefer prefer ) {
         EnumerableAlgImplementor algImplementor = new EnumerableAlgImplementor( alg.getCluster().getRexBuilder(), parameters );
 
         final ClassDeclaration expr = algImplementor.implementRoot( alg, prefer );
         String s = Expressions.toString( expr.memberDeclarations, "\n", false );
 
-       if ( RuntimeConfig.DEBUG.getBoolean() ) {
-           Util.debugCode( System.out, s );
-       }
+        if ( RuntimeConfig.DEBUG.getBoolean() ) {
+            Util.debugCode( System.out, s );
+        }
 
         Hook.JAVA_PLAN.run( s );
+        return Pair.of( expr, s );
+    }
+
+
+    /**
+     * Compiles code generated by {@link #generate}.
+     */
+    public static <T> Bindable<T> compile( ClassDeclaration expr, String s, int fieldCount ) {
         try {
-            return new Pair<>( getBindable( expr, s, alg.getTupleType().getFieldCount() ), s );
+            return getBindable( expr, s, fieldCount );
         } catch ( Exception e ) {
             throw Helper.INSTANCE.wrap( "Error while compiling generated Java code:\n" + s, e );
         }
@@ -133,6 +153,12 @@ public static <T> Pair<Bindable<T>, String> toBindable(
 
 
     static <T> Bindable<T> getBindable( ClassDeclaration expr, String s, int fieldCount ) throws CompileException, IOException {
+        if ( RuntimeConfig.PERSISTENT_CODE_CACHE.getBoolean() ) {
+            final Bindable<T> cached = PersistentCodeCache.INSTANCE.getOrCompile( expr.name, s, fieldCount );
+            if ( cached != null ) {
+                return cached;
+            }
+        }
         ICompilerFactory compilerFactory;
         try {
             compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
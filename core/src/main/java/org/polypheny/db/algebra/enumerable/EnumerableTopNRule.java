@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.algebra.enumerable;
+
+
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.Sort;
+import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.plan.AlgOptRule;
+import org.polypheny.db.plan.AlgOptRuleCall;
+
+
+/**
+ * Rule to convert a {@link Sort} that has a sort key and {@code fetch} set to an {@link EnumerableTopN}, which competes
+ * with the {@link EnumerableLimit} on top of a "pure" {@link EnumerableSort} created by {@link EnumerableLimitRule}.
+ */
+public class EnumerableTopNRule extends AlgOptRule {
+
+    EnumerableTopNRule() {
+        super( operand( Sort.class, any() ), "EnumerableTopNRule" );
+    }
+
+
+    @Override
+    public void onMatch( AlgOptRuleCall call ) {
+        final Sort sort = call.alg( 0 );
+        if ( sort instanceof EnumerableTopN || sort.getModel() != DataModel.RELATIONAL ) {
+            return;
+        }
+        if ( sort.fetch == null || sort.getCollation().getFieldCollations().isEmpty() ) {
+            // nothing to bound, handled by EnumerableSortRule and EnumerableLimitRule
+            return;
+        }
+        final AlgNode input = sort.getInput();
+        final AlgNode x = convert( input, input.getTraitSet().replace( EnumerableConvention.INSTANCE ) );
+        call.transformTo( EnumerableTopN.create( x, sort.getCollation(), sort.offset, sort.fetch ) );
+    }
+
+}
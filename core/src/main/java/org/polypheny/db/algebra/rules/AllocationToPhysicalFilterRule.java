@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.algebra.rules;
+
+import java.util.List;
+import java.util.Optional;
+import org.polypheny.db.adapter.AdapterManager;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.AlgFactories;
+import org.polypheny.db.algebra.logical.document.LogicalDocumentFilter;
+import org.polypheny.db.algebra.logical.document.LogicalDocumentScan;
+import org.polypheny.db.catalog.entity.allocation.AllocationEntity;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.plan.AlgOptRule;
+import org.polypheny.db.plan.AlgOptRuleCall;
+
+
+/**
+ * Rule which replaces the scan below a document filter with a scan that only contains the documents which can fulfill
+ * the filter, if the adapter of the allocation supports it. For collections on relational stores, this evaluates a
+ * pre-filter in the store instead of reading the whole collection. The filter itself is kept on top of the restricted scan.
+ * The original filter is kept, the planner chooses between the full and the restricted scan by their cost.
+ */
+public class AllocationToPhysicalFilterRule extends AlgOptRule {
+
+    public static final AllocationToPhysicalFilterRule INSTANCE = new AllocationToPhysicalFilterRule();
+
+
+    private AllocationToPhysicalFilterRule() {
+        super( operand( LogicalDocumentFilter.class, operand( LogicalDocumentScan.class, none() ) ), AlgFactories.LOGICAL_BUILDER, AllocationToPhysicalFilterRule.class.getSimpleName() );
+    }
+
+
+    @Override
+    public void onMatch( AlgOptRuleCall call ) {
+        if ( !RuntimeConfig.DOCUMENT_FILTER_PUSHDOWN.getBoolean() ) {
+            return;
+        }
+        LogicalDocumentFilter filter = call.alg( 0 );
+        LogicalDocumentScan scan = call.alg( 1 );
+        Optional<AllocationEntity> oAlloc = scan.entity.unwrap( AllocationEntity.class );
+        if ( oAlloc.isEmpty() || scan.getModel() != scan.entity.dataModel ) {
+            return;
+        }
+
+        AllocationEntity alloc = oAlloc.get();
+        AlgNode restricted = AdapterManager.getInstance().getAdapter( alloc.adapterId ).orElseThrow().getDocumentFilterScan( alloc.id, filter.condition, call.builder() );
+        if ( restricted == null ) {
+            return;
+        }
+        call.transformTo( filter.copy( filter.getTraitSet(), List.of( restricted ) ) );
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.algebra.rules;
+
+import java.util.List;
+import java.util.Optional;
+import org.polypheny.db.adapter.AdapterManager;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.AlgFactories;
+import org.polypheny.db.algebra.logical.lpg.LogicalLpgMatch;
+import org.polypheny.db.algebra.logical.lpg.LogicalLpgScan;
+import org.polypheny.db.catalog.entity.allocation.AllocationEntity;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.plan.AlgOptRule;
+import org.polypheny.db.plan.AlgOptRuleCall;
+
+
+/**
+ * Rule which replaces the scan below a graph match with a scan that only contains the nodes and edges which can take
+ * part in the match, if the adapter of the allocation supports it. For graphs on relational stores, this pushes the
+ * labels and properties of the pattern down to the store instead of reading the whole graph.
+ * The original match is kept, the planner chooses between the full and the restricted scan by their cost.
+ */
+public class AllocationToPhysicalMatchRule extends AlgOptRule {
+
+    public static final AllocationToPhysicalMatchRule INSTANCE = new AllocationToPhysicalMatchRule();
+
+
+    private AllocationToPhysicalMatchRule() {
+        super( operand( LogicalLpgMatch.class, operand( LogicalLpgScan.class, none() ) ), AlgFactories.LOGICAL_BUILDER, AllocationToPhysicalMatchRule.class.getSimpleName() );
+    }
+
+
+    @Override
+    public void onMatch( AlgOptRuleCall call ) {
+        if ( !RuntimeConfig.GRAPH_MATCH_PUSHDOWN.getBoolean() ) {
+            return;
+        }
+        LogicalLpgMatch match = call.alg( 0 );
+        LogicalLpgScan scan = call.alg( 1 );
+        Optional<AllocationEntity> oAlloc = scan.entity.unwrap( AllocationEntity.class );
+        if ( oAlloc.isEmpty() || scan.getModel() != scan.entity.dataModel ) {
+            return;
+        }
+
+        AllocationEntity alloc = oAlloc.get();
+        AlgNode restricted = AdapterManager.getInstance().getAdapter( alloc.adapterId ).orElseThrow().getGraphMatchScan( alloc.id, match.getMatches(), call.builder() );
+        if ( restricted == null ) {
+            return;
+        }
+        call.transformTo( match.copy( match.getTraitSet(), List.of( restricted ) ) );
+    }
+
+}
@@ -130,7 +130,8 @@ public static void afterInit( Runnable action ) {
 
 
     /**
-     * Adds a listener which gets notified on updates
+     * Adds a listener which gets notified on updates. The listener is called on the thread which commits or rolls back
+     * the change, not when a reader materializes a new snapshot.
      *
      * @param listener which gets added
      */
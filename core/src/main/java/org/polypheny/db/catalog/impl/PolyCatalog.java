@@ -21,15 +21,19 @@
 import io.activej.serializer.annotations.Deserialize;
 import io.activej.serializer.annotations.Serialize;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.adapter.AbstractAdapterSetting;
@@ -63,11 +67,14 @@
 import org.polypheny.db.catalog.impl.logical.GraphCatalog;
 import org.polypheny.db.catalog.impl.logical.RelationalCatalog;
 import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.catalog.persistance.CatalogDelta;
+import org.polypheny.db.catalog.persistance.CatalogDelta.Kind;
 import org.polypheny.db.catalog.persistance.FilePersister;
 import org.polypheny.db.catalog.persistance.InMemoryPersister;
 import org.polypheny.db.catalog.persistance.Persister;
 import org.polypheny.db.catalog.snapshot.Snapshot;
 import org.polypheny.db.catalog.snapshot.impl.SnapshotBuilder;
+import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.iface.QueryInterfaceManager.QueryInterfaceTemplate;
 import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.type.PolySerializable;
@@ -80,6 +87,8 @@
 @Slf4j
 public class PolyCatalog extends Catalog implements PolySerializable {
 
+    private static final Map<Class<?>, BinarySerializer<?>> SERIALIZERS = new ConcurrentHashMap<>();
+
     @Getter
     private final BinarySerializer<PolyCatalog> serializer = PolySerializable.buildSerializer( PolyCatalog.class );
 
@@ -122,14 +131,40 @@ public class PolyCatalog extends Catalog implements PolySerializable {
     public final IdBuilder idBuilder = IdBuilder.getInstance();
     private final Persister persister;
 
-    @Getter
-    private Snapshot snapshot;
-    private String backup;
+    private volatile Snapshot snapshot;
+
+    /**
+     * If changes were announced since the snapshot was materialized, it is rebuilt once it is requested.
+     */
+    private volatile boolean snapshotStale = false;
+    private final Set<DataModel> staleModels = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean staleAllocations = new AtomicBoolean( false );
+
+    /**
+     * State of the sub-catalogs as of the last commit, which is used to revert single namespaces on rollback.
+     */
+    private final Map<Long, CatalogDelta> committedLogical = new ConcurrentHashMap<>();
+    private final Map<Long, CatalogDelta> committedAllocation = new ConcurrentHashMap<>();
+    private final Map<Long, CatalogDelta> committedRestore = new ConcurrentHashMap<>();
+    private Map<Long, LogicalUser> committedUsers;
+    private Map<Long, LogicalAdapter> committedAdapters;
+    private Map<Long, LogicalQueryInterface> committedInterfaces;
 
+    /**
+     * Namespaces whose sub-catalogs were handed out or changed since the last commit.
+     */
+    private final Set<Long> dirtyNamespaces = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dirtyRoot = new AtomicBoolean( false );
     private final AtomicBoolean dirty = new AtomicBoolean( false );
 
+    private boolean checkpointed = false;
+    private int logLength = 0;
+
     @Getter
-    PropertyChangeListener changeListener = evt -> dirty.set( true );
+    PropertyChangeListener changeListener = evt -> {
+        markDirty( evt.getSource() );
+        dirty.set( true );
+    };
 
 
     public PolyCatalog() {
@@ -144,6 +179,21 @@ public PolyCatalog() {
     }
 
 
+    /**
+     * Creates an empty catalog, which persists its state with the given persister instead of the default one.
+     */
+    public PolyCatalog( Persister persister ) {
+        this(
+                Map.of(),
+                Map.of(),
+                Map.of(),
+                Map.of(),
+                Map.of(),
+                Map.of(),
+                persister );
+    }
+
+
     public PolyCatalog(
             @Deserialize("users") Map<Long, LogicalUser> users,
             @Deserialize("logicalCatalogs") Map<Long, LogicalCatalog> logicalCatalogs,
@@ -151,6 +201,18 @@ public PolyCatalog(
             @Deserialize("adapterRestore") Map<Long, AdapterRestore> adapterRestore,
             @Deserialize("adapters") Map<Long, LogicalAdapter> adapters,
             @Deserialize("interfaces") Map<Long, LogicalQueryInterface> interfaces ) {
+        this( users, logicalCatalogs, allocationCatalogs, adapterRestore, adapters, interfaces, memoryCatalog ? new InMemoryPersister() : new FilePersister() );
+    }
+
+
+    private PolyCatalog(
+            Map<Long, LogicalUser> users,
+            Map<Long, LogicalCatalog> logicalCatalogs,
+            Map<Long, AllocationCatalog> allocationCatalogs,
+            Map<Long, AdapterRestore> adapterRestore,
+            Map<Long, LogicalAdapter> adapters,
+            Map<Long, LogicalQueryInterface> interfaces,
+            Persister persister ) {
         // persistent data
         this.users = new ConcurrentHashMap<>( users );
         this.logicalCatalogs = new ConcurrentHashMap<>( logicalCatalogs );
@@ -164,14 +226,19 @@ public PolyCatalog(
         this.adapterCatalogs = new ConcurrentHashMap<>();
         this.interfaceTemplates = new ConcurrentHashMap<>();
 
-        this.persister = memoryCatalog ? new InMemoryPersister() : new FilePersister();
+        this.committedUsers = Map.copyOf( this.users );
+        this.committedAdapters = Map.copyOf( this.adapters );
+        this.committedInterfaces = Map.copyOf( this.interfaces );
+
+        this.persister = persister;
 
     }
 
 
     @Override
     public void init() {
-        updateSnapshot();
+        invalidateSnapshot();
+        refreshSnapshot();
 
         Catalog.afterInit.forEach( Runnable::run );
     }
@@ -179,12 +246,74 @@ public void init() {
 
     @Override
     public void updateSnapshot() {
-        this.snapshot = SnapshotBuilder.createSnapshot( idBuilder.getNewSnapshotId(), this, logicalCatalogs, allocationCatalogs );
+        // the snapshot is materialized on the next request, so a batch of changes only leads to one rebuild
+        this.snapshotStale = true;
+    }
 
+
+    @Override
+    public Snapshot getSnapshot() {
+        if ( snapshotStale ) {
+            materializeSnapshot();
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Materializes the snapshot right away and notifies the observers of the catalog.
+     * This happens on init, commit, rollback and restore, so observers are always notified on the thread which
+     * changed the catalog. Snapshots materialized lazily by readers do not notify the observers.
+     */
+    private void refreshSnapshot() {
+        updateSnapshot();
+        materializeSnapshot();
         this.listeners.firePropertyChange( "snapshot", null, this.snapshot );
     }
 
 
+    private synchronized void materializeSnapshot() {
+        if ( !snapshotStale ) {
+            return;
+        }
+        // reset before reading the catalogs, changes which happen during the build lead to another one
+        snapshotStale = false;
+        Set<DataModel> changedModels = EnumSet.noneOf( DataModel.class );
+        for ( DataModel model : DataModel.values() ) {
+            if ( staleModels.remove( model ) ) {
+                changedModels.add( model );
+            }
+        }
+        boolean allocationsChanged = staleAllocations.getAndSet( false );
+
+        this.snapshot = SnapshotBuilder.createSnapshot( idBuilder.getNewSnapshotId(), this, logicalCatalogs, allocationCatalogs, snapshot, changedModels, allocationsChanged );
+    }
+
+
+    /**
+     * Marks all sub-snapshots as outdated, so they are rebuilt from scratch on the next materialization.
+     */
+    private void invalidateSnapshot() {
+        staleModels.addAll( EnumSet.allOf( DataModel.class ) );
+        staleAllocations.set( true );
+    }
+
+
+    private void markStale( long namespaceId, boolean logical, boolean allocation ) {
+        LogicalCatalog catalog = logicalCatalogs.get( namespaceId );
+        if ( logical ) {
+            if ( catalog == null ) {
+                staleModels.addAll( EnumSet.allOf( DataModel.class ) );
+            } else {
+                staleModels.add( catalog.getLogicalNamespace().dataModel );
+            }
+        }
+        if ( allocation ) {
+            staleAllocations.set( true );
+        }
+    }
+
+
     @Override
     public void change() {
         // empty for now
@@ -218,31 +347,211 @@ public synchronized void commit() {
             this.adapterRestore.put( id, new AdapterRestore( id, restore, catalog.allocations ) );
         } );
 
-        this.backup = serialize();
+        List<CatalogDelta> deltas = collectDeltas();
 
-        updateSnapshot();
-        persister.write( backup );
+        refreshSnapshot();
+        persist( deltas );
         this.dirty.set( false );
         this.commitConstraints.clear();
     }
 
 
-    public void rollback() {
-        long id = snapshot.id();
-        restoreLastState();
+    /**
+     * Serializes the sub-catalogs which changed since the last commit and remembers them as committed state.
+     */
+    private List<CatalogDelta> collectDeltas() {
+        List<CatalogDelta> deltas = new ArrayList<>();
+        for ( long id : dirtyNamespaces ) {
+            collectDelta( deltas, committedLogical, logicalDelta( id, logicalCatalogs.get( id ) ) );
+            collectDelta( deltas, committedAllocation, allocationDelta( id, allocationCatalogs.get( id ) ) );
+        }
+
+        for ( Map.Entry<Long, AdapterRestore> entry : adapterRestore.entrySet() ) {
+            collectDelta( deltas, committedRestore, new CatalogDelta( Kind.ADAPTER_RESTORE, entry.getKey(), null, PolySerializable.serialize( restoreSerializer(), entry.getValue() ) ) );
+        }
+        for ( long id : List.copyOf( committedRestore.keySet() ) ) {
+            if ( !adapterRestore.containsKey( id ) ) {
+                collectDelta( deltas, committedRestore, new CatalogDelta( Kind.ADAPTER_RESTORE, id, null, null ) );
+            }
+        }
+
+        if ( dirtyRoot.get() ) {
+            committedUsers = Map.copyOf( users );
+            committedAdapters = Map.copyOf( adapters );
+            committedInterfaces = Map.copyOf( interfaces );
+        }
+        return deltas;
+    }
+
+
+    private static void collectDelta( List<CatalogDelta> deltas, Map<Long, CatalogDelta> committed, CatalogDelta delta ) {
+        CatalogDelta last = committed.get( delta.id() );
+        if ( delta.isRemoval() ) {
+            if ( last == null ) {
+                return;
+            }
+            committed.remove( delta.id() );
+        } else {
+            if ( last != null && delta.data().equals( last.data() ) ) {
+                return;
+            }
+            committed.put( delta.id(), delta );
+        }
+        deltas.add( delta );
+    }
+
+
+    /**
+     * Appends the changes to the change log and compacts the log into a new checkpoint if it grew too long.
+     * Users, adapters and query interfaces are only part of the checkpoint, so changing them always leads to a new checkpoint.
+     */
+    private void persist( List<CatalogDelta> deltas ) {
+        boolean checkpoint = !checkpointed
+                || dirtyRoot.get()
+                || logLength + deltas.size() > RuntimeConfig.CATALOG_CHECKPOINT_INTERVAL.getInteger();
+
+        // the log records are written first, so replaying a log which could not be truncated after a checkpoint never reverts a newer state
+        if ( !checkpoint || logLength > 0 ) {
+            persister.append( deltas );
+            logLength += deltas.size();
+        }
+        if ( checkpoint ) {
+            persister.write( serialize() );
+            logLength = 0;
+            checkpointed = true;
+        }
+
+        dirtyNamespaces.clear();
+        dirtyRoot.set( false );
+    }
+
+
+    public synchronized void rollback() {
+        boolean reverted = revertDirtyState();
 
         log.debug( "rollback" );
 
-        if ( id != snapshot.id() ) {
-            updateSnapshot();
+        if ( reverted ) {
+            refreshSnapshot();
+        }
+
+    }
+
+
+    /**
+     * Reverts the sub-catalogs which changed since the last commit to their committed state.
+     *
+     * @return if anything had to be reverted
+     */
+    private boolean revertDirtyState() {
+        boolean reverted = !dirtyNamespaces.isEmpty() || dirtyRoot.get();
+
+        for ( long id : dirtyNamespaces ) {
+            markStale( id, true, true );
+            Optional.ofNullable( committedLogical.get( id ) ).ifPresentOrElse( this::replay, () -> logicalCatalogs.remove( id ) );
+            Optional.ofNullable( committedAllocation.get( id ) ).ifPresentOrElse( this::replay, () -> allocationCatalogs.remove( id ) );
+        }
+        dirtyNamespaces.clear();
+
+        if ( dirtyRoot.getAndSet( false ) ) {
+            users.clear();
+            users.putAll( committedUsers );
+            adapters.clear();
+            adapters.putAll( committedAdapters );
+            interfaces.clear();
+            interfaces.putAll( committedInterfaces );
+            staleAllocations.set( true );
+        }
+        return reverted;
+    }
+
+
+    private void replay( CatalogDelta delta ) {
+        long id = delta.id();
+        switch ( delta.kind() ) {
+            case LOGICAL -> {
+                markStale( id, true, false );
+                if ( delta.isRemoval() ) {
+                    logicalCatalogs.remove( id );
+                } else {
+                    logicalCatalogs.put( id, switch ( delta.dataModel() ) {
+                        case RELATIONAL -> deserialize( delta.data(), RelationalCatalog.class );
+                        case DOCUMENT -> deserialize( delta.data(), DocumentCatalog.class );
+                        case GRAPH -> deserialize( delta.data(), GraphCatalog.class );
+                    } );
+                }
+            }
+            case ALLOCATION -> {
+                markStale( id, false, true );
+                if ( delta.isRemoval() ) {
+                    allocationCatalogs.remove( id );
+                } else {
+                    allocationCatalogs.put( id, switch ( delta.dataModel() ) {
+                        case RELATIONAL -> deserialize( delta.data(), PolyAllocRelCatalog.class );
+                        case DOCUMENT -> deserialize( delta.data(), PolyAllocDocCatalog.class );
+                        case GRAPH -> deserialize( delta.data(), PolyAllocGraphCatalog.class );
+                    } );
+                }
+            }
+            case ADAPTER_RESTORE -> {
+                if ( delta.isRemoval() ) {
+                    adapterRestore.remove( id );
+                } else {
+                    adapterRestore.put( id, restoreSerializer().decode( delta.data().getBytes( PolySerializable.SERIALIZAION_CHARSET ), 0 ) );
+                }
+            }
+        }
+    }
+
+
+    private void markDirty( Object source ) {
+        // sub-catalogs of other catalog instances report to the same listener
+        if ( source instanceof LogicalCatalog catalog && logicalCatalogs.get( catalog.getLogicalNamespace().id ) == source ) {
+            dirtyNamespaces.add( catalog.getLogicalNamespace().id );
+            staleModels.add( catalog.getLogicalNamespace().dataModel );
+        } else if ( source instanceof AllocationCatalog catalog && allocationCatalogs.get( catalog.getNamespace().id ) == source ) {
+            dirtyNamespaces.add( catalog.getNamespace().id );
+            staleAllocations.set( true );
+        }
+    }
+
+
+    private static CatalogDelta logicalDelta( long id, @Nullable LogicalCatalog catalog ) {
+        if ( catalog == null ) {
+            return new CatalogDelta( Kind.LOGICAL, id, null, null );
         }
+        return new CatalogDelta( Kind.LOGICAL, id, catalog.getLogicalNamespace().dataModel, ((PolySerializable) catalog).serialize() );
+    }
+
+
+    private static CatalogDelta allocationDelta( long id, @Nullable AllocationCatalog catalog ) {
+        if ( catalog == null ) {
+            return new CatalogDelta( Kind.ALLOCATION, id, null, null );
+        }
+        return new CatalogDelta( Kind.ALLOCATION, id, catalog.getNamespace().dataModel, ((PolySerializable) catalog).serialize() );
+    }
 
+
+    @SuppressWarnings("unchecked")
+    private static <T> BinarySerializer<T> serializerOf( Class<T> clazz ) {
+        return (BinarySerializer<T>) SERIALIZERS.computeIfAbsent( clazz, c -> PolySerializable.buildSerializer( c ) );
     }
 
 
-    private void restoreLastState() {
-        PolyCatalog old = PolySerializable.deserialize( backup, getSerializer() );
+    private static <T extends PolySerializable> T deserialize( String data, Class<T> clazz ) {
+        return PolySerializable.deserialize( data, serializerOf( clazz ) );
+    }
+
 
+    private static BinarySerializer<AdapterRestore> restoreSerializer() {
+        return serializerOf( AdapterRestore.class );
+    }
+
+
+    /**
+     * Takes over the complete state of the given catalog, which was read from the checkpoint.
+     */
+    private void restoreCheckpoint( PolyCatalog old ) {
         users.clear();
         users.putAll( old.users );
         logicalCatalogs.clear();
@@ -258,6 +567,24 @@ private void restoreLastState() {
     }
 
 
+    /**
+     * Remembers the current state as committed, after the catalog was restored.
+     */
+    private void initCommittedState() {
+        committedLogical.clear();
+        committedAllocation.clear();
+        committedRestore.clear();
+        logicalCatalogs.forEach( ( id, catalog ) -> committedLogical.put( id, logicalDelta( id, catalog ) ) );
+        allocationCatalogs.forEach( ( id, catalog ) -> committedAllocation.put( id, allocationDelta( id, catalog ) ) );
+        adapterRestore.forEach( ( id, restore ) -> committedRestore.put( id, new CatalogDelta( Kind.ADAPTER_RESTORE, id, null, PolySerializable.serialize( restoreSerializer(), restore ) ) ) );
+        committedUsers = Map.copyOf( users );
+        committedAdapters = Map.copyOf( adapters );
+        committedInterfaces = Map.copyOf( interfaces );
+        dirtyNamespaces.clear();
+        dirtyRoot.set( false );
+    }
+
+
     private void validateNamespaceType( long id, DataModel type ) {
         if ( logicalCatalogs.get( id ).getLogicalNamespace().dataModel != type ) {
             throw new GenericRuntimeException( "Error while retrieving namespace type" );
@@ -268,6 +595,8 @@ private void validateNamespaceType( long id, DataModel type ) {
     @Override
     public LogicalRelationalCatalog getLogicalRel( long namespaceId ) {
         validateNamespaceType( namespaceId, DataModel.RELATIONAL );
+        dirtyNamespaces.add( namespaceId );
+        staleModels.add( DataModel.RELATIONAL );
         return (LogicalRelationalCatalog) logicalCatalogs.get( namespaceId );
     }
 
@@ -275,6 +604,8 @@ public LogicalRelationalCatalog getLogicalRel( long namespaceId ) {
     @Override
     public LogicalDocumentCatalog getLogicalDoc( long namespaceId ) {
         validateNamespaceType( namespaceId, DataModel.DOCUMENT );
+        dirtyNamespaces.add( namespaceId );
+        staleModels.add( DataModel.DOCUMENT );
         return (LogicalDocumentCatalog) logicalCatalogs.get( namespaceId );
     }
 
@@ -282,6 +613,8 @@ public LogicalDocumentCatalog getLogicalDoc( long namespaceId ) {
     @Override
     public LogicalGraphCatalog getLogicalGraph( long namespaceId ) {
         validateNamespaceType( namespaceId, DataModel.GRAPH );
+        dirtyNamespaces.add( namespaceId );
+        staleModels.add( DataModel.GRAPH );
         return (LogicalGraphCatalog) logicalCatalogs.get( namespaceId );
     }
 
@@ -289,6 +622,8 @@ public LogicalGraphCatalog getLogicalGraph( long namespaceId ) {
     @Override
     public AllocationRelationalCatalog getAllocRel( long namespaceId ) {
         validateNamespaceType( namespaceId, DataModel.RELATIONAL );
+        dirtyNamespaces.add( namespaceId );
+        staleAllocations.set( true );
         return (AllocationRelationalCatalog) allocationCatalogs.get( namespaceId );
     }
 
@@ -296,6 +631,8 @@ public AllocationRelationalCatalog getAllocRel( long namespaceId ) {
     @Override
     public AllocationDocumentCatalog getAllocDoc( long namespaceId ) {
         validateNamespaceType( namespaceId, DataModel.DOCUMENT );
+        dirtyNamespaces.add( namespaceId );
+        staleAllocations.set( true );
         return (AllocationDocumentCatalog) allocationCatalogs.get( namespaceId );
     }
 
@@ -303,6 +640,8 @@ public AllocationDocumentCatalog getAllocDoc( long namespaceId ) {
     @Override
     public AllocationGraphCatalog getAllocGraph( long namespaceId ) {
         validateNamespaceType( namespaceId, DataModel.GRAPH );
+        dirtyNamespaces.add( namespaceId );
+        staleAllocations.set( true );
         return (AllocationGraphCatalog) allocationCatalogs.get( namespaceId );
     }
 
@@ -323,6 +662,7 @@ public void addStoreSnapshot( AdapterCatalog snapshot ) {
     public long createUser( String name, String password ) {
         long id = idBuilder.getNewUserId();
         users.put( id, new LogicalUser( id, name, password ) );
+        dirtyRoot.set( true );
         return id;
     }
 
@@ -346,6 +686,8 @@ public long createNamespace( String name, DataModel dataModel, boolean caseSensi
                 allocationCatalogs.put( id, new PolyAllocGraphCatalog( namespace ) );
                 break;
         }
+        dirtyNamespaces.add( id );
+        markStale( id, true, true );
         change();
         return id;
     }
@@ -358,6 +700,8 @@ public void renameNamespace( long id, String name ) {
         }
 
         logicalCatalogs.put( id, logicalCatalogs.get( id ).withLogicalNamespace( logicalCatalogs.get( id ).getLogicalNamespace().withName( name ) ) );
+        dirtyNamespaces.add( id );
+        markStale( id, true, true );
 
         change();
     }
@@ -365,7 +709,9 @@ public void renameNamespace( long id, String name ) {
 
     @Override
     public void dropNamespace( long id ) {
+        markStale( id, true, true );
         logicalCatalogs.remove( id );
+        dirtyNamespaces.add( id );
 
         change();
     }
@@ -375,6 +721,8 @@ public void dropNamespace( long id ) {
     public long createAdapter( String uniqueName, String clazz, AdapterType type, Map<String, String> settings, DeployMode mode ) {
         long id = idBuilder.getNewAdapterId();
         adapters.put( id, new LogicalAdapter( id, uniqueName, clazz, type, mode, settings ) );
+        dirtyRoot.set( true );
+        staleAllocations.set( true );
         change();
         return id;
     }
@@ -386,6 +734,8 @@ public void updateAdapterSettings( long adapterId, Map<String, String> newSettin
             return;
         }
         adapters.put( adapterId, adapters.get( adapterId ).toBuilder().settings( ImmutableMap.copyOf( newSettings ) ).build() );
+        dirtyRoot.set( true );
+        staleAllocations.set( true );
         change();
     }
 
@@ -393,6 +743,8 @@ public void updateAdapterSettings( long adapterId, Map<String, String> newSettin
     @Override
     public void dropAdapter( long id ) {
         adapters.remove( id );
+        dirtyRoot.set( true );
+        staleAllocations.set( true );
         change();
     }
 
@@ -402,6 +754,7 @@ public long createQueryInterface( String uniqueName, String clazz, Map<String, S
         long id = idBuilder.getNewInterfaceId();
 
         interfaces.put( id, new LogicalQueryInterface( id, uniqueName, clazz, settings ) );
+        dirtyRoot.set( true );
 
         change();
         return id;
@@ -411,6 +764,7 @@ public long createQueryInterface( String uniqueName, String clazz, Map<String, S
     @Override
     public void dropQueryInterface( long id ) {
         interfaces.remove( id );
+        dirtyRoot.set( true );
         change();
     }
 
@@ -447,15 +801,22 @@ public void dropAdapterTemplate( long templateId ) {
 
     @Override
     public void restore( Transaction transaction ) {
-        this.backup = persister.read();
-        if ( this.backup == null || this.backup.isEmpty() ) {
+        String checkpoint = persister.read();
+        if ( checkpoint == null || checkpoint.isEmpty() ) {
             log.warn( "No file found to restore" );
             return;
         }
         // set old state;
-        restoreLastState();
+        restoreCheckpoint( PolySerializable.deserialize( checkpoint, getSerializer() ) );
+        List<CatalogDelta> deltas = persister.readLog();
+        deltas.forEach( this::replay );
+        initCommittedState();
+        this.checkpointed = true;
+        this.logLength = deltas.size();
         // only for templates
         this.snapshot = SnapshotBuilder.createSnapshot( idBuilder.getNewSnapshotId(), this, Map.of(), Map.of() );
+        this.snapshotStale = false;
+        invalidateSnapshot();
         AdapterManager.getInstance().restoreAdapters( List.copyOf( adapters.values() ) );
 
         adapterRestore.forEach( ( id, restore ) -> {
@@ -463,7 +824,7 @@ public void restore( Transaction transaction ) {
             restore.activate( adapter, transaction.createStatement().getPrepareContext() );
         } );
 
-        updateSnapshot();
+        refreshSnapshot();
     }
 
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.polypheny.db.catalog.persistance;
+
+import javax.annotation.Nullable;
+import org.polypheny.db.catalog.logistic.DataModel;
+
+
+/**
+ * Record of the change log, which holds the committed state of a single sub-catalog.
+ * As every record contains the full state of its sub-catalog, replaying the log is idempotent.
+ *
+ * @param kind the type of the sub-catalog
+ * @param id the id of the namespace or adapter the sub-catalog belongs to
+ * @param dataModel the data model of the namespace, null for adapter records
+ * @param data the serialized sub-catalog, null if it was removed
+ */
+public record CatalogDelta( Kind kind, long id, @Nullable DataModel dataModel, @Nullable String data ) {
+
+    public boolean isRemoval() {
+        return data == null;
+    }
+
+
+    public enum Kind {
+        LOGICAL,
+        ALLOCATION,
+        ADAPTER_RESTORE
+    }
+
+}
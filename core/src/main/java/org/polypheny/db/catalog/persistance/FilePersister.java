@@ -20,24 +20,54 @@
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.catalog.persistance.CatalogDelta.Kind;
 import org.polypheny.db.util.PolyphenyHomeDirManager;
 
+/**
+ * Persists the catalog as a checkpoint file and an append-only change log next to it.
+ * Every commit is appended to the log as one frame of {@code [length][crc32][records]} and forced to disk.
+ * A frame which was not written completely, e.g. because of a crash, fails the checksum and is cut off on the next read.
+ */
+@Slf4j
 public class FilePersister implements Persister {
 
-    ExecutorService service = Executors.newSingleThreadExecutor();
-
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + Long.BYTES;
 
     private final File backup;
+    private final File changeLog;
+    private FileChannel logChannel;
 
 
     public FilePersister() {
         this.backup = initBackupFile();
+        this.changeLog = PolyphenyHomeDirManager.getInstance().registerNewFile( "catalog/catalog.log" );
+    }
+
+
+    /**
+     * Creates a persister which keeps the checkpoint and the change log in the given folder instead of the home directory.
+     */
+    public FilePersister( File folder ) {
+        if ( !folder.isDirectory() ) {
+            throw new GenericRuntimeException( "The catalog folder " + folder + " does not exist." );
+        }
+        this.backup = new File( folder, "catalog.poly" );
+        this.changeLog = new File( folder, "catalog.log" );
     }
 
 
@@ -53,18 +83,33 @@ private static File initBackupFile() {
     }
 
 
+    private FileChannel getLogChannel() throws IOException {
+        if ( logChannel == null || !logChannel.isOpen() ) {
+            logChannel = FileChannel.open( changeLog.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        }
+        return logChannel;
+    }
+
+
     @Override
     public synchronized void write( String data ) {
-        service.execute( () -> {
-            try {
-                FileWriter writer = new FileWriter( backup, Charsets.ISO_8859_1 );
-                writer.write( data );
-                writer.flush();
-                writer.close();
-            } catch ( IOException e ) {
-                throw new GenericRuntimeException( e );
+        // write the new checkpoint next to the old one and swap it in, so there is a valid checkpoint at any time
+        Path target = backup.toPath();
+        Path tmp = target.resolveSibling( backup.getName() + ".tmp" );
+        try {
+            try ( FileChannel channel = FileChannel.open( tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                writeFully( channel, ByteBuffer.wrap( data.getBytes( Charsets.ISO_8859_1 ) ), 0 );
+                channel.force( true );
             }
-        } );
+            Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+            // the log only contains states which are included in the new checkpoint
+            FileChannel channel = getLogChannel();
+            channel.truncate( 0 );
+            channel.force( true );
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( e );
+        }
     }
 
 
@@ -84,4 +129,117 @@ public synchronized String read() {
         return data.toString();
     }
 
+
+    @Override
+    public synchronized void append( List<CatalogDelta> deltas ) {
+        if ( deltas.isEmpty() ) {
+            return;
+        }
+        ByteBuffer records = encode( deltas );
+        CRC32 crc = new CRC32();
+        crc.update( records.duplicate() );
+
+        ByteBuffer frame = ByteBuffer.allocate( FRAME_HEADER_SIZE + records.remaining() );
+        frame.putInt( records.remaining() );
+        frame.putLong( crc.getValue() );
+        frame.put( records );
+        frame.flip();
+
+        try {
+            FileChannel channel = getLogChannel();
+            writeFully( channel, frame, channel.size() );
+            channel.force( false );
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( e );
+        }
+    }
+
+
+    @Override
+    public synchronized List<CatalogDelta> readLog() {
+        List<CatalogDelta> deltas = new ArrayList<>();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( changeLog.toPath() ) );
+            while ( buffer.remaining() >= FRAME_HEADER_SIZE ) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                long checksum = buffer.getLong();
+                if ( length < 0 || length > buffer.remaining() ) {
+                    buffer.position( start );
+                    break;
+                }
+                ByteBuffer records = buffer.slice( buffer.position(), length );
+                CRC32 crc = new CRC32();
+                crc.update( records.duplicate() );
+                if ( crc.getValue() != checksum ) {
+                    buffer.position( start );
+                    break;
+                }
+                deltas.addAll( decode( records ) );
+                buffer.position( buffer.position() + length );
+            }
+            if ( buffer.hasRemaining() ) {
+                log.warn( "Discarding incomplete catalog change log entry at position {}.", buffer.position() );
+                FileChannel channel = getLogChannel();
+                channel.truncate( buffer.position() );
+                channel.force( true );
+            }
+        } catch ( IOException | BufferUnderflowException e ) {
+            throw new GenericRuntimeException( e );
+        }
+        return deltas;
+    }
+
+
+    private static ByteBuffer encode( List<CatalogDelta> deltas ) {
+        List<byte[]> data = deltas.stream().map( d -> d.isRemoval() ? null : d.data().getBytes( Charsets.ISO_8859_1 ) ).toList();
+        int size = Integer.BYTES;
+        for ( byte[] bytes : data ) {
+            size += Byte.BYTES + Long.BYTES + Byte.BYTES + Integer.BYTES + (bytes == null ? 0 : bytes.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate( size );
+        buffer.putInt( deltas.size() );
+        for ( int i = 0; i < deltas.size(); i++ ) {
+            CatalogDelta delta = deltas.get( i );
+            byte[] bytes = data.get( i );
+            buffer.put( (byte) delta.kind().ordinal() );
+            buffer.putLong( delta.id() );
+            buffer.put( (byte) (delta.dataModel() == null ? -1 : delta.dataModel().ordinal()) );
+            buffer.putInt( bytes == null ? -1 : bytes.length );
+            if ( bytes != null ) {
+                buffer.put( bytes );
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+
+    private static List<CatalogDelta> decode( ByteBuffer buffer ) {
+        int count = buffer.getInt();
+        List<CatalogDelta> deltas = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ ) {
+            Kind kind = Kind.values()[buffer.get()];
+            long id = buffer.getLong();
+            byte model = buffer.get();
+            int length = buffer.getInt();
+            String data = null;
+            if ( length >= 0 ) {
+                byte[] bytes = new byte[length];
+                buffer.get( bytes );
+                data = new String( bytes, Charsets.ISO_8859_1 );
+            }
+            deltas.add( new CatalogDelta( kind, id, model < 0 ? null : DataModel.values()[model], data ) );
+        }
+        return deltas;
+    }
+
+
+    private static void writeFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            position += channel.write( buffer, position );
+        }
+    }
+
 }
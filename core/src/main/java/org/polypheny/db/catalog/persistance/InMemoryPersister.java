@@ -16,14 +16,20 @@
 
 package org.polypheny.db.catalog.persistance;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class InMemoryPersister implements Persister {
 
     String backup = "";
 
+    final List<CatalogDelta> log = new ArrayList<>();
+
 
     @Override
     public synchronized void write( String data ) {
         backup = data;
+        log.clear();
     }
 
 
@@ -32,4 +38,16 @@ public synchronized String read() {
         return backup;
     }
 
+
+    @Override
+    public synchronized void append( List<CatalogDelta> deltas ) {
+        log.addAll( deltas );
+    }
+
+
+    @Override
+    public synchronized List<CatalogDelta> readLog() {
+        return List.copyOf( log );
+    }
+
 }
@@ -13,13 +13,30 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.polypheny.db.catalog.persistance;
 
+import java.util.List;
+
 public interface Persister {
 
+    /**
+     * Replaces the checkpoint with the given state and discards the change log.
+     */
     void write( String data );
 
+    /**
+     * Reads the last checkpoint.
+     */
     String read();
 
+    /**
+     * Durably appends the changes of one commit to the change log.
+     */
+    void append( List<CatalogDelta> deltas );
+
+    /**
+     * Reads all complete records of the change log, in the order they were appended.
+     */
+    List<CatalogDelta> readLog();
+
 }
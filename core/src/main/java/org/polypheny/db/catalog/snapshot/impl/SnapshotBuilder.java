@@ -16,9 +16,12 @@
 
 package org.polypheny.db.catalog.snapshot.impl;
 
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.catalogs.AllocationCatalog;
 import org.polypheny.db.catalog.catalogs.LogicalCatalog;
@@ -37,11 +40,24 @@
 public class SnapshotBuilder {
 
     public static Snapshot createSnapshot( long id, Catalog catalog, Map<Long, LogicalCatalog> logicalCatalogs, Map<Long, AllocationCatalog> allocationCatalogs ) {
-        LogicalRelSnapshot rels = buildRelSnapshots( logicalCatalogs );
-        LogicalDocSnapshot docs = buildDocSnapshots( logicalCatalogs );
-        LogicalGraphSnapshot graphs = buildGraphSnapshots( logicalCatalogs );
+        return createSnapshot( id, catalog, logicalCatalogs, allocationCatalogs, null, EnumSet.allOf( DataModel.class ), true );
+    }
+
+
+    /**
+     * Creates a new snapshot, which shares the sub-snapshots of the previous snapshot that are not affected by the changes.
+     * As sub-snapshots are immutable, only the ones of changed data models and the allocations have to be rebuilt.
+     *
+     * @param previous the last snapshot, null if all sub-snapshots have to be built
+     * @param changedModels the data models of the logical namespaces which changed since the previous snapshot
+     * @param allocationsChanged if any allocation catalog or adapter changed since the previous snapshot
+     */
+    public static Snapshot createSnapshot( long id, Catalog catalog, Map<Long, LogicalCatalog> logicalCatalogs, Map<Long, AllocationCatalog> allocationCatalogs, @Nullable Snapshot previous, Set<DataModel> changedModels, boolean allocationsChanged ) {
+        LogicalRelSnapshot rels = previous == null || changedModels.contains( DataModel.RELATIONAL ) ? buildRelSnapshots( logicalCatalogs ) : previous.rel();
+        LogicalDocSnapshot docs = previous == null || changedModels.contains( DataModel.DOCUMENT ) ? buildDocSnapshots( logicalCatalogs ) : previous.doc();
+        LogicalGraphSnapshot graphs = previous == null || changedModels.contains( DataModel.GRAPH ) ? buildGraphSnapshots( logicalCatalogs ) : previous.graph();
 
-        AllocSnapshot alloc = buildAlloc( allocationCatalogs, catalog.getAdapters() );
+        AllocSnapshot alloc = previous == null || allocationsChanged ? buildAlloc( allocationCatalogs, catalog.getAdapters() ) : previous.alloc();
         Map<Long, LogicalNamespace> namespaces = logicalCatalogs.entrySet().stream().collect( Collectors.toMap( Entry::getKey, e -> e.getValue().getLogicalNamespace() ) );
 
         return new SnapshotImpl( id, catalog, namespaces, rels, docs, graphs, alloc );
@@ -27,6 +27,8 @@
 import org.polypheny.db.config.Config.ConfigListener;
 import org.polypheny.db.ddl.DdlManager.DefaultIndexPlacementStrategy;
 import org.polypheny.db.processing.ConstraintStrategy;
+import org.polypheny.db.transaction.DeadlockDetection;
+import org.polypheny.db.transaction.LockingStrategy;
 import org.polypheny.db.util.background.BackgroundTask;
 import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
 
@@ -154,6 +156,20 @@ public enum RuntimeConfig {
             ConfigType.BOOLEAN,
             "planningGroup" ),
 
+    GRAPH_MATCH_PUSHDOWN(
+            "runtime/graphMatchPushdown",
+            "Read only the nodes and edges which can take part in a graph pattern match from stores which do not support graphs natively.",
+            true,
+            ConfigType.BOOLEAN,
+            "planningGroup" ),
+
+    DOCUMENT_FILTER_PUSHDOWN(
+            "runtime/documentFilterPushdown",
+            "Pre-filter documents in stores which do not support documents natively, instead of reading the whole collection.",
+            true,
+            ConfigType.BOOLEAN,
+            "planningGroup" ),
+
     VALIDATE_MM_CONTENT_TYPE(
             "validation/validateMultimediaContentType",
             "Validate multimedia data by checking its content-type.",
@@ -162,6 +178,20 @@ public enum RuntimeConfig {
             "validationGroup"
     ),
 
+    JDBC_STATEMENT_CACHE_SIZE(
+            "runtime/jdbcStatementCacheSize",
+            "Number of prepared statements kept open per connection to a JDBC data store. 0 disables caching.",
+            100,
+            ConfigType.INTEGER,
+            "processingExecutionGroup" ),
+
+    PREFETCH_RESULT_FRAMES(
+            "runtime/prefetchResultFrames",
+            "Produce the next frame of a result requested via the JDBC interface in the background while the current frame is sent to the client.",
+            false,
+            ConfigType.BOOLEAN,
+            "processingExecutionGroup" ),
+
     TWO_PC_MODE(
             "runtime/twoPcMode",
             "Use two-phase commit protocol for committing queries on data stores.",
@@ -169,6 +199,34 @@ public enum RuntimeConfig {
             ConfigType.BOOLEAN ),
     // "processingExecutionGroup" ),
 
+    LOCKING_STRATEGY(
+            "runtime/lockingStrategy",
+            "Implementation of entity locks. FAST_PATH grants shared locks without blocking as long as no exclusive lock is held or requested. Only affects locks created after the change.",
+            LockingStrategy.FAIR,
+            ConfigType.ENUM,
+            "processingExecutionGroup" ),
+
+    DEADLOCK_DETECTION(
+            "runtime/deadlockDetection",
+            "When to search for deadlocks between transactions waiting for locks.",
+            DeadlockDetection.ON_WAIT,
+            ConfigType.ENUM,
+            "processingExecutionGroup" ),
+
+    SNAPSHOT_READS(
+            "runtime/snapshotReads",
+            "Read-only queries of transactions which have not written anything skip locking and read from a stable catalog snapshot, if all placements of the accessed entities are on stores supporting consistent reads.",
+            false,
+            ConfigType.BOOLEAN,
+            "processingExecutionGroup" ),
+
+    LOCK_WAIT_TIMEOUT(
+            "runtime/lockWaitTimeout",
+            "Time in milliseconds after which a statement waiting for a lock is aborted. 0 means infinite. Can be overwritten per statement.",
+            0,
+            ConfigType.INTEGER,
+            "processingExecutionGroup" ),
+
     DYNAMIC_QUERYING(
             "statistics/useDynamicQuerying",
             "Use statistics for query assistance.",
@@ -275,6 +333,20 @@ public enum RuntimeConfig {
             true,
             ConfigType.BOOLEAN ),
 
+    FRONTEND_QUERY_CACHING(
+            "runtime/frontendQueryCaching",
+            "Cache the translated logical plans of queries by their text and skip parsing, validation and translation for repeated queries which only differ in their literals.",
+            true,
+            ConfigType.BOOLEAN,
+            "parsingGroup" ),
+
+    FRONTEND_QUERY_CACHING_SIZE(
+            "runtime/frontendQueryCachingSize",
+            "Size of the front-end query cache. If the limit is reached, the least recently used entry is removed.",
+            1000,
+            ConfigType.INTEGER,
+            "parsingGroup" ),
+
     QUERY_PLAN_CACHING(
             "runtime/queryPlanCaching",
             "Cache planned and optimized query plans.",
@@ -312,11 +384,53 @@ public enum RuntimeConfig {
 
     IMPLEMENTATION_CACHING_SIZE(
             "runtime/implementationCachingSize",
-            "Size of the implementation cache. If the limit is reached, the least recently used entry is removed.",
+            "Size of the implementation cache. If the limit is reached, the entry which is the cheapest to implement relative to its size and has not been used recently is removed.",
             1000,
             ConfigType.INTEGER,
             "implementationCachingGroup" ),
 
+    TIERED_EXECUTION(
+            "runtime/tieredExecution",
+            "Compile the generated code of cacheable queries in the background and interpret them until the compiled code is available.",
+            false,
+            ConfigType.BOOLEAN,
+            "implementationCachingGroup" ),
+
+    TIERED_EXECUTION_THREADS(
+            "runtime/tieredExecutionThreads",
+            "Number of threads compiling generated code in the background.",
+            2,
+            ConfigType.INTEGER,
+            "implementationCachingGroup" ),
+
+    PERSISTENT_CODE_CACHE(
+            "runtime/persistentCodeCache",
+            "Store the classes compiled from generated code in the Polypheny home directory, so they do not have to be compiled again after a restart.",
+            false,
+            ConfigType.BOOLEAN,
+            "implementationCachingGroup" ),
+
+    PERSISTENT_CODE_CACHE_SIZE(
+            "runtime/persistentCodeCacheSize",
+            "Maximum number of stored classes of the persistent code cache. If the limit is reached, the least recently used entries are removed.",
+            10000,
+            ConfigType.INTEGER,
+            "implementationCachingGroup" ),
+
+    IMPLEMENTATION_CACHING_MEMORY(
+            "runtime/implementationCachingMemory",
+            "Maximum estimated memory in MB held by the implementation cache, mainly consisting of generated code.",
+            256,
+            ConfigType.INTEGER,
+            "implementationCachingGroup" ),
+
+    ENTITY_SCOPED_CACHE_INVALIDATION(
+            "runtime/entityScopedCacheInvalidation",
+            "On schema and placement changes, only invalidate the cached query plans, implementations and routing plans of the changed entities instead of all entries.",
+            true,
+            ConfigType.BOOLEAN,
+            "implementationCachingGroup" ),
+
     ROUTING_PLAN_CACHING(
             "runtime/routingPlanCaching",
             "Caching of routing plans.",
@@ -407,6 +521,13 @@ public enum RuntimeConfig {
             ConfigType.BOOLEAN,
             "polystoreIndexGroup" ),
 
+    POLYSTORE_INDEXES_PERSISTENT(
+            "runtime/polystoreIndexesPersistent",
+            "Checkpoint polystore level indexes in the background and on shutdown and load them at startup instead of rebuilding them.",
+            true,
+            ConfigType.BOOLEAN,
+            "polystoreIndexGroup" ),
+
     DOCKER_INSTANCES(
             "runtime/dockerInstances",
             "Configure different docker instances, which can be used to place adapters on.",
@@ -428,6 +549,13 @@ public enum RuntimeConfig {
             ConfigType.INTEGER,
             "processingExecutionGroup" ),
 
+    FILE_ZONE_MAP_PRUNING(
+            "runtime/fileZoneMapPruning",
+            "Skip segments of the file adapter whose zone maps rule out a match of the filter. Only applies to stores using the segment storage format.",
+            true,
+            ConfigType.BOOLEAN,
+            "processingExecutionGroup" ),
+
     MONITORING_QUEUE_ACTIVE(
             "runtime/monitoringQueueActive",
             "Enables automatic monitoring of executed events in workload monitoring. If disabled no events are captured, hence the queue remains empty. This also effects routing!",
@@ -505,6 +633,11 @@ public enum RuntimeConfig {
             "runtime/serialization",
             "How big the buffersize for catalog objects should be.",
             200000,
+            ConfigType.INTEGER ),
+    CATALOG_CHECKPOINT_INTERVAL(
+            "runtime/catalogCheckpointInterval",
+            "Number of change records appended to the catalog change log before it is compacted into a new checkpoint. If set to 0, every commit writes a full checkpoint.",
+            256,
             ConfigType.INTEGER );
 
 
@@ -34,14 +34,17 @@
 package org.polypheny.db.interpreter;
 
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import org.polypheny.db.algebra.AlgFieldCollation;
 import org.polypheny.db.algebra.core.Sort;
 import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.runtime.Enumerables;
 
 
 /**
@@ -83,6 +86,18 @@ public void run() throws InterruptedException {
                     sink.send( row );
                 }
             }
+        } else if ( fetch >= 0 ) {
+            // Retain only the first offset + fetch rows, instead of sorting all rows.
+            final Iterator<Row> rows = new AbstractIterator<>() {
+                @Override
+                protected Row computeNext() {
+                    final Row next = source.receive();
+                    return next == null ? endOfData() : next;
+                }
+            };
+            for ( Row top : Enumerables.topN( rows, comparator(), offset, fetch ) ) {
+                sink.send( top );
+            }
         } else {
             // Build a sorted collection.
             final List<Row> list = new ArrayList<>();
@@ -90,10 +105,7 @@ public void run() throws InterruptedException {
                 list.add( row );
             }
             list.sort( comparator() );
-            final int end = fetch < 0 || offset + fetch > list.size()
-                    ? list.size()
-                    : offset + fetch;
-            for ( int i = offset; i < end; i++ ) {
+            for ( int i = offset; i < list.size(); i++ ) {
                 sink.send( list.get( i ) );
             }
         }
@@ -36,6 +36,7 @@
 import org.polypheny.db.processing.Processor;
 import org.polypheny.db.processing.QueryContext;
 import org.polypheny.db.processing.QueryContext.ParsedQueryContext;
+import org.polypheny.db.processing.caching.FrontendQueryCache;
 import org.polypheny.db.transaction.Statement;
 import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.transaction.TransactionException;
@@ -97,6 +98,14 @@ public List<ImplementationContext> anyPrepareQuery( QueryContext context, Statem
             context.getInformationTarget().accept( statement.getTransaction().getQueryAnalyzer() );
         }
 
+        final boolean useCache = FrontendQueryCache.INSTANCE.isApplicable( context, transaction ) && !context.getQuery().isBlank();
+        if ( useCache ) {
+            AlgRoot cached = FrontendQueryCache.INSTANCE.getIfPresent( context, statement );
+            if ( cached != null ) {
+                return List.of( prepareCached( context, statement, cached ) );
+            }
+        }
+
         if ( transaction.isAnalyze() ) {
             statement.getOverviewDuration().start( "Parsing" );
         }
@@ -189,6 +198,9 @@ public List<ImplementationContext> anyPrepareQuery( QueryContext context, Statem
                     if ( transaction.isAnalyze() ) {
                         statement.getOverviewDuration().stop( "Translation" );
                     }
+                    if ( useCache && parsedQueries.size() == 1 ) {
+                        FrontendQueryCache.INSTANCE.put( context, statement, root );
+                    }
                     implementation = statement.getQueryProcessor().prepareQuery( root, true );
                 }
                 implementationContexts.add( new ImplementationContext( implementation, parsed, statement, null ) );
@@ -208,6 +220,22 @@ public List<ImplementationContext> anyPrepareQuery( QueryContext context, Statem
     }
 
 
+    /**
+     * Prepares a plan of the {@link FrontendQueryCache}, which skips splitting, parsing, validation and translation.
+     */
+    private static ImplementationContext prepareCached( QueryContext context, Statement statement, AlgRoot root ) {
+        ParsedQueryContext parsed = ParsedQueryContext.fromQuery( context.getQuery(), null, context );
+        try {
+            PolyImplementation implementation = statement.getQueryProcessor().prepareQuery( root, true );
+            return new ImplementationContext( implementation, parsed, statement, null );
+        } catch ( Throwable e ) {
+            log.warn( "Caught exception: ", e );
+            cancelTransaction( statement.getTransaction() );
+            return ImplementationContext.ofError( e, parsed, statement );
+        }
+    }
+
+
     @NotNull
     private static List<ImplementationContext> handleParseException( Statement statement, ParsedQueryContext parsed, Transaction transaction, Exception e, List<ImplementationContext> implementationContexts ) {
         if ( transaction.isAnalyze() ) {
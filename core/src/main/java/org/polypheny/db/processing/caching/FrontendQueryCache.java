@@ -0,0 +1,622 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.AlgRoot;
+import org.polypheny.db.algebra.core.Filter;
+import org.polypheny.db.algebra.core.Join;
+import org.polypheny.db.algebra.core.Project;
+import org.polypheny.db.algebra.core.Sort;
+import org.polypheny.db.algebra.core.Values;
+import org.polypheny.db.algebra.core.relational.RelModify;
+import org.polypheny.db.algebra.logical.relational.LogicalRelAggregate;
+import org.polypheny.db.algebra.logical.relational.LogicalRelFilter;
+import org.polypheny.db.algebra.logical.relational.LogicalRelIntersect;
+import org.polypheny.db.algebra.logical.relational.LogicalRelJoin;
+import org.polypheny.db.algebra.logical.relational.LogicalRelMinus;
+import org.polypheny.db.algebra.logical.relational.LogicalRelModify;
+import org.polypheny.db.algebra.logical.relational.LogicalRelProject;
+import org.polypheny.db.algebra.logical.relational.LogicalRelScan;
+import org.polypheny.db.algebra.logical.relational.LogicalRelSort;
+import org.polypheny.db.algebra.logical.relational.LogicalRelUnion;
+import org.polypheny.db.algebra.logical.relational.LogicalRelValues;
+import org.polypheny.db.algebra.type.AlgDataTypeFactory;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationAction;
+import org.polypheny.db.information.InformationGraph;
+import org.polypheny.db.information.InformationGraph.GraphData;
+import org.polypheny.db.information.InformationGraph.GraphType;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationTable;
+import org.polypheny.db.information.InformationText;
+import org.polypheny.db.plan.AlgCluster;
+import org.polypheny.db.plan.AlgPlanner;
+import org.polypheny.db.plan.hep.HepPlanner;
+import org.polypheny.db.plan.hep.HepProgramBuilder;
+import org.polypheny.db.processing.QueryContext;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexCorrelVariable;
+import org.polypheny.db.rex.RexFieldAccess;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.rex.RexShuttle;
+import org.polypheny.db.rex.RexSubQuery;
+import org.polypheny.db.transaction.Statement;
+import org.polypheny.db.transaction.Transaction;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFamily;
+
+
+/**
+ * Caches the logical plans produced by the front end of a query language (splitting, parsing, validation and
+ * translation) by the text of the query.
+ * <p>
+ * The query text is normalized into a template by collapsing whitespace and extracting its string and numeric literals.
+ * A literal which can be found exactly once in the translated plan, as operand of a predicate or as offset or fetch of
+ * a sort, becomes a parameter of the cached plan and is replaced on a hit. All other literals have to match verbatim.
+ * <p>
+ * As nodes are bound to the planner of their cluster, a hit copies the cached plan into a new cluster of the current
+ * statement. Only plans consisting of relational logical nodes are cached. Entries are bound to the id of the snapshot
+ * they were translated with and to the configuration which influences the translation.
+ */
+@Slf4j
+public class FrontendQueryCache {
+
+    public static final FrontendQueryCache INSTANCE = new FrontendQueryCache();
+
+    private static final Set<Class<? extends AlgNode>> CACHEABLE = Set.of(
+            LogicalRelScan.class,
+            LogicalRelFilter.class,
+            LogicalRelProject.class,
+            LogicalRelJoin.class,
+            LogicalRelAggregate.class,
+            LogicalRelSort.class,
+            LogicalRelUnion.class,
+            LogicalRelIntersect.class,
+            LogicalRelMinus.class,
+            LogicalRelValues.class,
+            LogicalRelModify.class );
+
+    // Cached plans are moved to a cluster of their own, so they do not keep the planner of the translating statement alive
+    private static final AlgPlanner TEMPLATE_PLANNER = new HepPlanner( new HepProgramBuilder().build() );
+
+    private final Cache<Key, Entry> queryCache;
+
+    private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
+    private final AtomicLong missesCounter = new AtomicLong(); // Number of requests for which the cache hasn't contained the value
+
+
+    public FrontendQueryCache() {
+        RuntimeConfig.FRONTEND_QUERY_CACHING_SIZE.setRequiresRestart( true );
+        queryCache = CacheBuilder.newBuilder()
+                .maximumSize( RuntimeConfig.FRONTEND_QUERY_CACHING_SIZE.getInteger() )
+                .build();
+        registerMonitoringPage();
+    }
+
+
+    public boolean isApplicable( QueryContext context, Transaction transaction ) {
+        return RuntimeConfig.FRONTEND_QUERY_CACHING.getBoolean()
+                && context.isUsesCache()
+                && transaction.getUseCache()
+                && !transaction.isAnalyze();
+    }
+
+
+    /**
+     * Returns the logical plan of the query, instantiated in a new cluster of the given statement.
+     *
+     * @return The plan or {@code null} if the cache does not contain a matching plan
+     */
+    @Nullable
+    public AlgRoot getIfPresent( QueryContext context, Statement statement ) {
+        final Template template = Template.of( context.getQuery() );
+        final Key key = Key.of( context, template );
+        final Entry entry = queryCache.getIfPresent( key );
+        if ( entry == null ) {
+            missesCounter.incrementAndGet();
+            return null;
+        }
+        if ( entry.snapshotId() != statement.getTransaction().getSnapshot().id() ) {
+            queryCache.invalidate( key );
+            missesCounter.incrementAndGet();
+            return null;
+        }
+
+        final RexBuilder rexBuilder = new RexBuilder( statement.getTransaction().getTypeFactory() );
+        final Map<RexLiteral, RexLiteral> replacements = entry.bind( template.literals(), rexBuilder );
+        if ( replacements == null ) {
+            missesCounter.incrementAndGet();
+            return null;
+        }
+        final AlgRoot root;
+        try {
+            final AlgCluster cluster = AlgCluster.create( statement.getQueryProcessor().getPlanner(), rexBuilder, null, statement.getDataContext().getSnapshot() );
+            root = instantiate( entry.root(), cluster, replacements );
+        } catch ( RuntimeException e ) {
+            log.debug( "Could not instantiate cached plan of query \"{}\"", context.getQuery(), e );
+            missesCounter.incrementAndGet();
+            return null;
+        }
+        hitsCounter.incrementAndGet();
+        return root;
+    }
+
+
+    /**
+     * Caches the translated logical plan of a query. Plans containing nodes which cannot be copied into another cluster
+     * are ignored.
+     */
+    public void put( QueryContext context, Statement statement, AlgRoot root ) {
+        try {
+            final List<Occurrence> occurrences = new ArrayList<>();
+            if ( !collect( root.alg, occurrences ) ) {
+                return;
+            }
+            final Template template = Template.of( context.getQuery() );
+            final Entry entry = Entry.of( template.literals(), occurrences, root.alg.getCluster().getRexBuilder() );
+            final AlgCluster cluster = AlgCluster.create( TEMPLATE_PLANNER, new RexBuilder( AlgDataTypeFactory.DEFAULT ), null, root.alg.getCluster().getSnapshot() );
+            queryCache.put(
+                    Key.of( context, template ),
+                    entry.withRoot( instantiate( root, cluster, Map.of() ), statement.getTransaction().getSnapshot().id() ) );
+        } catch ( RuntimeException e ) {
+            log.debug( "Could not cache plan of query \"{}\"", context.getQuery(), e );
+        }
+    }
+
+
+    public void reset() {
+        queryCache.invalidateAll();
+        hitsCounter.set( 0 );
+        missesCounter.set( 0 );
+    }
+
+
+    /**
+     * Copies a plan into the given cluster, replacing literals by identity.
+     */
+    private static AlgRoot instantiate( AlgRoot root, AlgCluster cluster, Map<RexLiteral, RexLiteral> replacements ) {
+        final RexShuttle shuttle = new RexShuttle() {
+            @Override
+            public RexNode visitLiteral( RexLiteral literal ) {
+                final RexLiteral replacement = replacements.get( literal );
+                return replacement == null ? literal : replacement;
+            }
+        };
+        final AlgNode copy = copy( root.alg, shuttle );
+        copy.replaceCluster( cluster );
+        return root.withAlg( copy );
+    }
+
+
+    private static AlgNode copy( AlgNode node, RexShuttle shuttle ) {
+        final List<AlgNode> inputs = new ArrayList<>( node.getInputs().size() );
+        for ( AlgNode input : node.getInputs() ) {
+            inputs.add( copy( input, shuttle ) );
+        }
+        final AlgNode copy = node instanceof LogicalRelScan scan
+                ? new LogicalRelScan( scan.getCluster(), scan.getTraitSet(), scan.getEntity() )
+                : node.copy( node.getTraitSet(), inputs );
+        return copy.accept( shuttle );
+    }
+
+
+    /**
+     * Collects all literals of a plan.
+     *
+     * @return Whether the plan can be cached
+     */
+    private static boolean collect( AlgNode node, List<Occurrence> occurrences ) {
+        if ( !CACHEABLE.contains( node.getClass() ) ) {
+            return false;
+        }
+        final boolean collected;
+        if ( node instanceof Filter filter ) {
+            collected = collect( filter.getCondition(), false, occurrences );
+        } else if ( node instanceof Project project ) {
+            collected = project.getProjects().stream().allMatch( e -> collect( e, false, occurrences ) );
+        } else if ( node instanceof Join join ) {
+            collected = collect( join.getCondition(), false, occurrences );
+        } else if ( node instanceof Sort sort ) {
+            collected = (sort.offset == null || collect( sort.offset, true, occurrences ))
+                    && (sort.fetch == null || collect( sort.fetch, true, occurrences ));
+        } else if ( node instanceof Values values ) {
+            collected = values.getTuples().stream().flatMap( List::stream ).allMatch( e -> collect( e, false, occurrences ) );
+        } else if ( node instanceof RelModify<?> modify ) {
+            collected = modify.getSourceExpressions() == null
+                    || modify.getSourceExpressions().stream().allMatch( e -> collect( e, false, occurrences ) );
+        } else {
+            collected = true;
+        }
+        return collected && node.getInputs().stream().allMatch( input -> collect( input, occurrences ) );
+    }
+
+
+    /**
+     * @param parameterizable Whether the expression can be replaced by another literal of the same kind without
+     * changing the types of the plan
+     */
+    private static boolean collect( RexNode node, boolean parameterizable, List<Occurrence> occurrences ) {
+        if ( node instanceof RexLiteral literal ) {
+            return occurrences.add( new Occurrence( literal, parameterizable ) );
+        } else if ( node instanceof RexSubQuery || node instanceof RexCorrelVariable ) {
+            return false;
+        } else if ( node instanceof RexFieldAccess access ) {
+            return collect( access.getReferenceExpr(), false, occurrences );
+        } else if ( node instanceof RexCall call ) {
+            // Operands of predicates do not determine the type of the expression
+            final boolean predicate = call.getType().getPolyType() == PolyType.BOOLEAN;
+            return call.getOperands().stream().allMatch( operand -> collect( operand, predicate, occurrences ) );
+        }
+        return true;
+    }
+
+
+    private void registerMonitoringPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Front-end Query Cache" );
+        im.addPage( page );
+
+        // General
+        InformationGroup generalGroup = new InformationGroup( page, "General" ).setOrder( 1 );
+        im.addGroup( generalGroup );
+
+        InformationKeyValue generalKv = new InformationKeyValue( generalGroup );
+        im.registerInformation( generalKv );
+        generalGroup.setRefreshFunction( () -> {
+            generalKv.putPair( "Status", RuntimeConfig.FRONTEND_QUERY_CACHING.getBoolean() ? "Active" : "Disabled" );
+            generalKv.putPair( "Current Cache Size", queryCache.size() + "" );
+            generalKv.putPair( "Maximum Cache Size", RuntimeConfig.FRONTEND_QUERY_CACHING_SIZE.getInteger() + "" );
+        } );
+
+        // Hit ratio
+        InformationGroup hitRatioGroup = new InformationGroup( page, "Hit Ratio" ).setOrder( 2 );
+        im.addGroup( hitRatioGroup );
+
+        InformationGraph hitInfoGraph = new InformationGraph(
+                hitRatioGroup,
+                GraphType.DOUGHNUT,
+                new String[]{ "Hits", "Misses" }
+        );
+        hitInfoGraph.setOrder( 1 );
+        im.registerInformation( hitInfoGraph );
+
+        InformationTable hitInfoTable = new InformationTable(
+                hitRatioGroup,
+                Arrays.asList( "Attribute", "Percent", "Absolute" )
+        );
+        hitInfoTable.setOrder( 2 );
+        im.registerInformation( hitInfoTable );
+
+        hitRatioGroup.setRefreshFunction( () -> {
+            long hits = hitsCounter.longValue();
+            long misses = missesCounter.longValue();
+            long total = hits + misses;
+            double hitPercent = (double) hits / total;
+            double missesPercent = 1.0 - hitPercent;
+
+            hitInfoGraph.updateGraph(
+                    new String[]{ "Misses", "Hits" },
+                    new GraphData<>( "heap-data", new Long[]{ misses, hits } )
+            );
+
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+            symbols.setDecimalSeparator( '.' );
+            DecimalFormat df = new DecimalFormat( "0.0", symbols );
+            hitInfoTable.reset();
+            hitInfoTable.addRow( "Hits", df.format( total == 0 ? 0 : (hitPercent * 100) ) + " %", hits );
+            hitInfoTable.addRow( "Misses", df.format( total == 0 ? 0 : (missesPercent * 100) ) + " %", misses );
+        } );
+
+        // Invalidate cache
+        InformationGroup invalidateGroup = new InformationGroup( page, "Invalidate" ).setOrder( 3 );
+        im.addGroup( invalidateGroup );
+
+        InformationText invalidateText = new InformationText( invalidateGroup, "Invalidate the front-end query cache including the hit and miss counters." );
+        invalidateText.setOrder( 1 );
+        im.registerInformation( invalidateText );
+
+        InformationAction invalidateAction = new InformationAction( invalidateGroup, "Invalidate", parameters -> {
+            reset();
+            generalGroup.refresh();
+            hitRatioGroup.refresh();
+            return "Successfully invalidated the front-end query cache!";
+        } );
+        invalidateAction.setOrder( 2 );
+        im.registerInformation( invalidateAction );
+    }
+
+
+    public long getSize() {
+        return queryCache.size();
+    }
+
+
+    public long getHits() {
+        return hitsCounter.get();
+    }
+
+
+    public long getMisses() {
+        return missesCounter.get();
+    }
+
+
+    /**
+     * @param addDefaultValues Whether the validator added the default values of missing columns to inserts, which
+     * changes the translated plan
+     */
+    private record Key(String language, long namespaceId, String template, boolean addDefaultValues) {
+
+        static Key of( QueryContext context, Template template ) {
+            return new Key(
+                    context.getLanguage().serializedName(),
+                    context.getNamespaceId(),
+                    template.text(),
+                    RuntimeConfig.ADD_DEFAULT_VALUES_IN_INSERTS.getBoolean() );
+        }
+
+    }
+
+
+    private record Occurrence(RexLiteral literal, boolean parameterizable) {
+
+    }
+
+
+    /**
+     * A literal of the query text.
+     *
+     * @param value The unquoted value of a string literal or the digits of a numeric literal
+     */
+    record Literal(String value, boolean string) {
+
+        /**
+         * @return Whether the literal has the given value in the plan
+         */
+        boolean matches( RexLiteral literal ) {
+            if ( literal.getValue() == null ) {
+                return false;
+            }
+            if ( string ) {
+                return literal.getType().getPolyType().getFamily() == PolyTypeFamily.CHARACTER
+                        && literal.getValue().isString()
+                        && literal.getValue().asString().value.equals( value );
+            }
+            return isExact()
+                    && literal.getValue().isNumber()
+                    && literal.getValue().asNumber().bigDecimalValue().compareTo( new BigDecimal( value ) ) == 0;
+        }
+
+
+        boolean isExact() {
+            return !string && value.indexOf( 'e' ) < 0 && value.indexOf( 'E' ) < 0;
+        }
+
+
+        RexLiteral toRex( RexBuilder rexBuilder ) {
+            return string ? rexBuilder.makeLiteral( value ) : rexBuilder.makeExactLiteral( new BigDecimal( value ) );
+        }
+
+
+        private String identity() {
+            return string ? "'" + value : new BigDecimal( value ).stripTrailingZeros().toPlainString();
+        }
+
+    }
+
+
+    /**
+     * A cached plan.
+     *
+     * @param literals The literals of the query the plan was translated from
+     * @param parameters The literal of the plan for every parameterized literal of the query, {@code null} for literals
+     * which have to match verbatim
+     */
+    private record Entry(AlgRoot root, long snapshotId, List<Literal> literals, RexLiteral[] parameters) {
+
+        static Entry of( List<Literal> literals, List<Occurrence> occurrences, RexBuilder rexBuilder ) {
+            final Map<String, Integer> counts = new HashMap<>();
+            literals.stream().filter( l -> l.string() || l.isExact() ).forEach( l -> counts.merge( l.identity(), 1, Integer::sum ) );
+
+            final RexLiteral[] parameters = new RexLiteral[literals.size()];
+            for ( int i = 0; i < literals.size(); i++ ) {
+                final Literal literal = literals.get( i );
+                if ( !(literal.string() || literal.isExact()) || counts.get( literal.identity() ) != 1 ) {
+                    continue;
+                }
+                final List<Occurrence> matches = occurrences.stream().filter( o -> literal.matches( o.literal() ) ).toList();
+                if ( matches.size() != 1 || !matches.get( 0 ).parameterizable() ) {
+                    continue;
+                }
+                // Only parameterize literals which were translated as plain literals of their own type
+                final RexLiteral rex = matches.get( 0 ).literal();
+                if ( literal.toRex( rexBuilder ).getType().equals( rex.getType() ) ) {
+                    parameters[i] = rex;
+                }
+            }
+            return new Entry( null, -1, List.copyOf( literals ), parameters );
+        }
+
+
+        Entry withRoot( AlgRoot root, long snapshotId ) {
+            return new Entry( root, snapshotId, literals, parameters );
+        }
+
+
+        /**
+         * Binds the literals of a query to the parameters of the plan.
+         *
+         * @return The replacements for the literals of the plan or {@code null} if the query does not match the plan
+         */
+        @Nullable
+        Map<RexLiteral, RexLiteral> bind( List<Literal> values, RexBuilder rexBuilder ) {
+            if ( values.size() != literals.size() ) {
+                return null;
+            }
+            final Map<RexLiteral, RexLiteral> replacements = new IdentityHashMap<>();
+            for ( int i = 0; i < values.size(); i++ ) {
+                final Literal value = values.get( i );
+                if ( parameters[i] == null ) {
+                    if ( !value.equals( literals.get( i ) ) ) {
+                        return null;
+                    }
+                    continue;
+                }
+                if ( value.string() != literals.get( i ).string() || !(value.string() || value.isExact()) ) {
+                    return null;
+                }
+                final RexLiteral replacement = value.toRex( rexBuilder );
+                // The length of a string literal is part of its type, as it is only used in predicates this does not matter
+                if ( !value.string() && !replacement.getType().equals( parameters[i].getType() ) ) {
+                    return null;
+                }
+                replacements.put( parameters[i], replacement );
+            }
+            return replacements;
+        }
+
+    }
+
+
+    /**
+     * The normalized text of a query and its extracted literals. Single-quoted strings and numbers which are not part
+     * of an identifier are extracted, whitespace outside of them is collapsed.
+     */
+    record Template(String text, List<Literal> literals) {
+
+        static final char STRING_MARKER = '?';
+        static final char NUMBER_MARKER = '#';
+
+
+        static Template of( String query ) {
+            final StringBuilder text = new StringBuilder( query.length() );
+            final List<Literal> literals = new ArrayList<>();
+            final int length = query.length();
+            int i = 0;
+            while ( i < length ) {
+                final char c = query.charAt( i );
+                if ( c == '\'' ) {
+                    final StringBuilder value = new StringBuilder();
+                    int j = i + 1;
+                    while ( j < length && (query.charAt( j ) != '\'' || (j + 1 < length && query.charAt( j + 1 ) == '\'')) ) {
+                        value.append( query.charAt( j ) );
+                        j += query.charAt( j ) == '\'' ? 2 : 1;
+                    }
+                    if ( j >= length ) {
+                        // Unterminated string, left to the parser
+                        text.append( query, i, length );
+                        break;
+                    }
+                    literals.add( new Literal( value.toString(), true ) );
+                    text.append( STRING_MARKER );
+                    i = j + 1;
+                } else if ( c == '"' ) {
+                    final int end = query.indexOf( '"', i + 1 );
+                    final int next = end < 0 ? length : end + 1;
+                    text.append( query, i, next );
+                    i = next;
+                } else if ( Character.isWhitespace( c ) ) {
+                    while ( i < length && Character.isWhitespace( query.charAt( i ) ) ) {
+                        i++;
+                    }
+                    if ( !text.isEmpty() && i < length ) {
+                        text.append( ' ' );
+                    }
+                } else if ( isDigit( c ) && (i == 0 || !isIdentifierPart( query.charAt( i - 1 ) )) ) {
+                    final int end = scanNumber( query, i );
+                    if ( end < length && isIdentifierPart( query.charAt( end ) ) ) {
+                        int j = end;
+                        while ( j < length && isIdentifierPart( query.charAt( j ) ) ) {
+                            j++;
+                        }
+                        text.append( query, i, j );
+                        i = j;
+                    } else {
+                        literals.add( new Literal( query.substring( i, end ), false ) );
+                        text.append( NUMBER_MARKER );
+                        i = end;
+                    }
+                } else {
+                    text.append( c );
+                    i++;
+                }
+            }
+            return new Template( text.toString(), literals );
+        }
+
+
+        private static int scanNumber( String query, int start ) {
+            final int length = query.length();
+            int i = skipDigits( query, start );
+            if ( i + 1 < length && query.charAt( i ) == '.' && isDigit( query.charAt( i + 1 ) ) ) {
+                i = skipDigits( query, i + 1 );
+            }
+            if ( i + 1 < length && (query.charAt( i ) == 'e' || query.charAt( i ) == 'E') ) {
+                int j = i + 1;
+                if ( (query.charAt( j ) == '+' || query.charAt( j ) == '-') && j + 1 < length ) {
+                    j++;
+                }
+                if ( isDigit( query.charAt( j ) ) ) {
+                    i = skipDigits( query, j );
+                }
+            }
+            return i;
+        }
+
+
+        private static int skipDigits( String query, int i ) {
+            while ( i < query.length() && isDigit( query.charAt( i ) ) ) {
+                i++;
+            }
+            return i;
+        }
+
+
+        private static boolean isDigit( char c ) {
+            return c >= '0' && c <= '9';
+        }
+
+
+        private static boolean isIdentifierPart( char c ) {
+            return Character.isLetterOrDigit( c ) || c == '_' || c == '$';
+        }
+
+    }
+
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Java.CompilationUnit;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.UnitCompiler;
+import org.codehaus.janino.util.ClassFile;
+import org.jetbrains.annotations.Nullable;
+import org.pf4j.PluginWrapper;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationAction;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationText;
+import org.polypheny.db.plugins.PolyPluginManager;
+import org.polypheny.db.runtime.ArrayBindable;
+import org.polypheny.db.runtime.Bindable;
+import org.polypheny.db.runtime.Typed;
+import org.polypheny.db.runtime.Utilities;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+import org.polypheny.db.util.VersionCollector;
+
+
+/**
+ * Cache of the classes compiled from generated code, which is stored in the Polypheny home directory and therefore
+ * survives restarts.
+ * <p>
+ * Entries are keyed by a hash of the generated source code, which completely describes the plan it was generated for.
+ * The bytecode compiled from the same source only differs if the classes it refers to have changed, hence entries are
+ * stored per build of Polypheny and its plugins: Entries of other builds are discarded when the cache is first used.
+ * Every entry contains its source code, which has to match exactly, so entries can never be mixed up.
+ * <p>
+ * The stored entries and their order of use are kept in memory, so the folder is only listed when the cache is first
+ * used. The modification time of the files preserves the order of use across restarts.
+ */
+@Slf4j
+public class PersistentCodeCache {
+
+    public static final PersistentCodeCache INSTANCE = new PersistentCodeCache(
+            () -> PolyphenyHomeDirManager.getInstance().registerNewFolder( FOLDER ),
+            PersistentCodeCache::fingerprint );
+
+    private static final String FOLDER = "codecache";
+    private static final int FORMAT_VERSION = 1;
+
+    private final AtomicLong hitsCounter = new AtomicLong(); // Number of compilations avoided by a stored entry
+    private final AtomicLong missesCounter = new AtomicLong(); // Number of compilations without a stored entry
+    private final AtomicLong discardedCounter = new AtomicLong(); // Number of stored entries which were invalid
+
+    private final Supplier<File> root;
+    private final Supplier<String> fingerprint;
+
+    // Size in bytes of the stored entries, from the least to the most recently used one
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>( 16, 0.75f, true );
+    private long bytes = 0;
+    private volatile File folder;
+
+
+    static {
+        // Loaded plugins are part of the build fingerprint
+        PolyPluginManager.PLUGINS.addListener( e -> INSTANCE.folder = null );
+        INSTANCE.registerMonitoringPage();
+    }
+
+
+    /**
+     * @param root Folder containing the entries of all builds
+     * @param fingerprint Identifies the current build, entries of other builds are discarded
+     */
+    PersistentCodeCache( Supplier<File> root, Supplier<String> fingerprint ) {
+        this.root = root;
+        this.fingerprint = fingerprint;
+    }
+
+
+    /**
+     * Returns an instance of the class compiled from the generated code, either from a stored entry or by compiling the
+     * code and storing the result.
+     *
+     * @return The instance or {@code null} if the class could not be compiled this way
+     */
+    @Nullable
+    public <T> Bindable<T> getOrCompile( String className, String code, int fieldCount ) {
+        try {
+            final File folder = getFolder();
+            final String key = key( code, fieldCount );
+            final File file = new File( folder, key );
+            if ( touch( key ) ) {
+                final Map<String, byte[]> classes = read( file, code, fieldCount );
+                if ( classes != null ) {
+                    hitsCounter.incrementAndGet();
+                    // Restores the order of use after a restart
+                    file.setLastModified( System.currentTimeMillis() );
+                    return instantiate( className, classes );
+                }
+                remove( key );
+                discardedCounter.incrementAndGet();
+                Files.deleteIfExists( file.toPath() );
+            }
+            missesCounter.incrementAndGet();
+            final Map<String, byte[]> classes = compile( className, code, fieldCount );
+            final Bindable<T> bindable = instantiate( className, classes );
+            write( folder, file, code, fieldCount, classes );
+            for ( String evicted : add( key, file.length() ) ) {
+                Files.deleteIfExists( new File( folder, evicted ).toPath() );
+            }
+            return bindable;
+        } catch ( Exception e ) {
+            log.debug( "Could not use the persistent code cache", e );
+            return null;
+        }
+    }
+
+
+    private File getFolder() {
+        File folder = this.folder;
+        if ( folder != null ) {
+            return folder;
+        }
+        synchronized ( this ) {
+            if ( this.folder == null ) {
+                final String fingerprint = this.fingerprint.get();
+                final File root = this.root.get();
+                // Entries of other builds are stale
+                final File[] builds = root.listFiles();
+                if ( builds != null ) {
+                    for ( File build : builds ) {
+                        if ( !build.getName().equals( fingerprint ) ) {
+                            FileUtils.deleteQuietly( build );
+                        }
+                    }
+                }
+                folder = new File( root, fingerprint );
+                if ( !folder.isDirectory() && !folder.mkdirs() ) {
+                    throw new GenericRuntimeException( "Could not create the folder " + folder );
+                }
+                load( folder );
+                this.folder = folder;
+            }
+            return this.folder;
+        }
+    }
+
+
+    /**
+     * Identifies the build of Polypheny and the loaded plugins the generated code refers to.
+     */
+    private static String fingerprint() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append( FORMAT_VERSION ).append( ';' )
+                .append( VersionCollector.INSTANCE.getVersion() ).append( ';' )
+                .append( VersionCollector.INSTANCE.getHash() ).append( ';' )
+                .append( Runtime.version().feature() ).append( ';' )
+                .append( describe( codeSource( Utilities.class ) ) ).append( ';' )
+                .append( describe( codeSource( UnitCompiler.class ) ) );
+        PolyPluginManager.PLUGINS.values().stream()
+                .sorted( Comparator.comparing( PluginWrapper::getPluginId ) )
+                .forEach( p -> builder.append( ';' )
+                        .append( p.getPluginId() ).append( ':' )
+                        .append( p.getDescriptor().getVersion() ).append( ':' )
+                        .append( describe( p.getPluginPath() == null ? null : p.getPluginPath().toFile() ) ) );
+        return hash( builder.toString() ).substring( 0, 16 );
+    }
+
+
+    @Nullable
+    private static File codeSource( Class<?> clazz ) {
+        try {
+            return new File( clazz.getProtectionDomain().getCodeSource().getLocation().toURI() );
+        } catch ( URISyntaxException | RuntimeException e ) {
+            return null;
+        }
+    }
+
+
+    private static String describe( @Nullable File file ) {
+        if ( file == null ) {
+            return "-";
+        }
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+
+    private static String key( String code, int fieldCount ) {
+        return hash( fieldCount + "\n" + code );
+    }
+
+
+    private static String hash( String value ) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            return HexFormat.of().formatHex( digest.digest( value.getBytes( StandardCharsets.UTF_8 ) ) );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+
+    /**
+     * Compiles the generated class body the same way as the class body evaluator does, but keeps the bytecode.
+     */
+    private static Map<String, byte[]> compile( String className, String code, int fieldCount ) throws Exception {
+        final String interfaces = fieldCount == 1
+                ? Bindable.class.getName() + ", " + Typed.class.getName()
+                : ArrayBindable.class.getName();
+        final String source = "public class " + className + " extends " + Utilities.class.getName() + " implements " + interfaces + " {\n" + code + "\n}\n";
+
+        final CompilationUnit unit = new Parser( new Scanner( null, new StringReader( source ) ) ).parseCompilationUnit();
+        final UnitCompiler compiler = new UnitCompiler( unit, new ClassLoaderIClassLoader( parentClassLoader() ) );
+        final boolean debug = RuntimeConfig.DEBUG.getBoolean();
+        final Map<String, byte[]> classes = new HashMap<>();
+        for ( ClassFile classFile : compiler.compileUnit( debug, debug, debug ) ) {
+            classes.put( classFile.getThisClassName(), classFile.toByteArray() );
+        }
+        return classes;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> Bindable<T> instantiate( String className, Map<String, byte[]> classes ) throws ReflectiveOperationException {
+        final ClassLoader loader = new CodeClassLoader( parentClassLoader(), classes );
+        return (Bindable<T>) loader.loadClass( className ).getDeclaredConstructor().newInstance();
+    }
+
+
+    private static ClassLoader parentClassLoader() {
+        // There is no plugin class loader before the first plugin is loaded
+        final ClassLoader loader = PolyPluginManager.getMainClassLoader();
+        return loader != null ? loader : PersistentCodeCache.class.getClassLoader();
+    }
+
+
+    @Nullable
+    private static Map<String, byte[]> read( File file, String code, int fieldCount ) {
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file.toPath() ) ) ) ) {
+            if ( in.readInt() != FORMAT_VERSION || in.readInt() != fieldCount ) {
+                return null;
+            }
+            final byte[] storedCode = new byte[in.readInt()];
+            in.readFully( storedCode );
+            if ( !code.equals( new String( storedCode, StandardCharsets.UTF_8 ) ) ) {
+                return null;
+            }
+            final int count = in.readInt();
+            final Map<String, byte[]> classes = new HashMap<>();
+            for ( int i = 0; i < count; i++ ) {
+                final String name = in.readUTF();
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully( bytes );
+                classes.put( name, bytes );
+            }
+            return classes;
+        } catch ( IOException | RuntimeException e ) {
+            log.debug( "Could not read code cache entry {}", file, e );
+            return null;
+        }
+    }
+
+
+    private static void write( File folder, File file, String code, int fieldCount, Map<String, byte[]> classes ) throws IOException {
+        // Written to a temporary file first, so a concurrent reader never sees an incomplete entry
+        final Path tmp = Files.createTempFile( folder.toPath(), file.getName(), ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( tmp ) ) ) ) {
+            out.writeInt( FORMAT_VERSION );
+            out.writeInt( fieldCount );
+            final byte[] codeBytes = code.getBytes( StandardCharsets.UTF_8 );
+            out.writeInt( codeBytes.length );
+            out.write( codeBytes );
+            out.writeInt( classes.size() );
+            for ( Map.Entry<String, byte[]> entry : classes.entrySet() ) {
+                out.writeUTF( entry.getKey() );
+                out.writeInt( entry.getValue().length );
+                out.write( entry.getValue() );
+            }
+        } catch ( IOException e ) {
+            Files.deleteIfExists( tmp );
+            throw e;
+        }
+        Files.move( tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+
+    /**
+     * Indexes the stored entries of the current build in the order of their last use.
+     */
+    private void load( File folder ) {
+        final File[] files = folder.listFiles();
+        synchronized ( entries ) {
+            entries.clear();
+            bytes = 0;
+            if ( files == null ) {
+                return;
+            }
+            Arrays.stream( files )
+                    .filter( f -> !f.getName().endsWith( ".tmp" ) )
+                    .sorted( Comparator.comparingLong( File::lastModified ) )
+                    .forEach( f -> {
+                        entries.put( f.getName(), f.length() );
+                        bytes += f.length();
+                    } );
+        }
+    }
+
+
+    /**
+     * Marks a stored entry as used.
+     *
+     * @return Whether the entry is stored
+     */
+    private boolean touch( String key ) {
+        synchronized ( entries ) {
+            return entries.get( key ) != null;
+        }
+    }
+
+
+    private void remove( String key ) {
+        synchronized ( entries ) {
+            final Long size = entries.remove( key );
+            if ( size != null ) {
+                bytes -= size;
+            }
+        }
+    }
+
+
+    /**
+     * Adds a stored entry and removes the least recently used entries if the cache has more entries than allowed.
+     *
+     * @return The keys of the removed entries, whose files have to be deleted
+     */
+    private List<String> add( String key, long size ) {
+        final int maximum = RuntimeConfig.PERSISTENT_CODE_CACHE_SIZE.getInteger();
+        final List<String> evicted = new ArrayList<>();
+        synchronized ( entries ) {
+            final Long previous = entries.put( key, size );
+            bytes += size - (previous == null ? 0 : previous);
+            final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+            while ( entries.size() > maximum && iterator.hasNext() ) {
+                final Map.Entry<String, Long> eldest = iterator.next();
+                if ( eldest.getKey().equals( key ) ) {
+                    continue;
+                }
+                evicted.add( eldest.getKey() );
+                bytes -= eldest.getValue();
+                iterator.remove();
+            }
+        }
+        return evicted;
+    }
+
+
+    public long getHits() {
+        return hitsCounter.get();
+    }
+
+
+    public long getMisses() {
+        return missesCounter.get();
+    }
+
+
+    public long getDiscarded() {
+        return discardedCounter.get();
+    }
+
+
+    public long getEntryCount() {
+        synchronized ( entries ) {
+            return entries.size();
+        }
+    }
+
+
+    public long getBytes() {
+        synchronized ( entries ) {
+            return bytes;
+        }
+    }
+
+
+    public synchronized void reset() {
+        if ( folder != null ) {
+            FileUtils.deleteQuietly( root.get() );
+        }
+        folder = null;
+        synchronized ( entries ) {
+            entries.clear();
+            bytes = 0;
+        }
+        hitsCounter.set( 0 );
+        missesCounter.set( 0 );
+        discardedCounter.set( 0 );
+    }
+
+
+    private void registerMonitoringPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Persistent Code Cache" );
+        im.addPage( page );
+
+        // General
+        InformationGroup generalGroup = new InformationGroup( page, "General" ).setOrder( 1 );
+        im.addGroup( generalGroup );
+
+        InformationKeyValue generalKv = new InformationKeyValue( generalGroup );
+        im.registerInformation( generalKv );
+        generalGroup.setRefreshFunction( () -> {
+            generalKv.putPair( "Status", RuntimeConfig.PERSISTENT_CODE_CACHE.getBoolean() ? "Active" : "Disabled" );
+            generalKv.putPair( "Stored Entries", String.valueOf( getEntryCount() ) );
+            generalKv.putPair( "Stored Size", getBytes() / 1024 + " KB" );
+            generalKv.putPair( "Maximum Entries", String.valueOf( RuntimeConfig.PERSISTENT_CODE_CACHE_SIZE.getInteger() ) );
+            generalKv.putPair( "Hits", String.valueOf( hitsCounter.get() ) );
+            generalKv.putPair( "Misses", String.valueOf( missesCounter.get() ) );
+            generalKv.putPair( "Discarded Entries", String.valueOf( discardedCounter.get() ) );
+        } );
+
+        // Invalidate cache
+        InformationGroup invalidateGroup = new InformationGroup( page, "Invalidate" ).setOrder( 2 );
+        im.addGroup( invalidateGroup );
+
+        InformationText invalidateText = new InformationText( invalidateGroup, "Delete all stored classes and reset the counters." );
+        invalidateText.setOrder( 1 );
+        im.registerInformation( invalidateText );
+
+        InformationAction invalidateAction = new InformationAction( invalidateGroup, "Invalidate", parameters -> {
+            reset();
+            generalGroup.refresh();
+            return "Successfully invalidated the persistent code cache!";
+        } );
+        invalidateAction.setOrder( 2 );
+        im.registerInformation( invalidateAction );
+    }
+
+
+    /**
+     * Defines the classes of one entry.
+     */
+    private static class CodeClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+
+        CodeClassLoader( ClassLoader parent, Map<String, byte[]> classes ) {
+            super( parent );
+            this.classes = classes;
+        }
+
+
+        @Override
+        protected Class<?> findClass( String name ) throws ClassNotFoundException {
+            final byte[] bytes = classes.get( name );
+            if ( bytes == null ) {
+                throw new ClassNotFoundException( name );
+            }
+            return defineClass( name, bytes, 0, bytes.length );
+        }
+
+    }
+
+}
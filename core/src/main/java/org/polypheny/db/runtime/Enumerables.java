@@ -34,11 +34,21 @@
 package org.polypheny.db.runtime;
 
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.function.Supplier;
+import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.function.Function1;
+import org.jetbrains.annotations.Nullable;
 import org.polypheny.db.interpreter.Row;
 import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.util.Pair;
 
 
 /**
@@ -75,5 +85,59 @@ public static Supplier<Enumerable<Row<PolyValue>>> toRow( final Supplier<Enumera
         return () -> toRow( supplier.get() );
     }
 
+
+    /**
+     * Sorts the enumerable by the given key and returns {@code fetch} elements after skipping {@code offset} elements.
+     * In contrast to {@link Enumerable#orderBy} followed by {@link Enumerable#skip} and {@link Enumerable#take}, at most
+     * {@code offset + fetch} elements are retained while reading the input.
+     *
+     * @param comparator the comparator of the keys, or {@code null} if the keys are compared by their natural order
+     */
+    @SuppressWarnings("unused")
+    public static <E, K> Enumerable<E> topN( final Enumerable<E> enumerable, final Function1<E, K> keySelector, @Nullable Comparator<K> comparator, final int offset, final int fetch ) {
+        @SuppressWarnings("unchecked") final Comparator<K> keyComparator = comparator == null ? (Comparator<K>) Comparator.naturalOrder() : comparator;
+        return new AbstractEnumerable<>() {
+            @Override
+            public Enumerator<E> enumerator() {
+                final List<Pair<K, E>> result;
+                try ( Enumerator<E> input = enumerable.enumerator() ) {
+                    // the key of an element is only computed once
+                    final Iterator<Pair<K, E>> keyed = Linq4j.enumeratorIterator( Linq4j.transform( input, e -> Pair.of( keySelector.apply( e ), e ) ) );
+                    result = topN( keyed, ( a, b ) -> keyComparator.compare( a.left, b.left ), offset, fetch );
+                }
+                return Linq4j.enumerator( Pair.right( result ) );
+            }
+        };
+    }
+
+
+    /**
+     * Returns {@code fetch} elements after skipping {@code offset} elements of the sorted elements, by keeping only the
+     * smallest {@code offset + fetch} elements in a bounded heap. Equal elements keep their order, like in a stable sort.
+     */
+    public static <E> List<E> topN( Iterator<E> elements, Comparator<? super E> comparator, int offset, int fetch ) {
+        if ( fetch <= 0 ) {
+            return List.of();
+        }
+        final int bound = (int) Math.min( (long) offset + fetch, Integer.MAX_VALUE );
+        // ordered by the given comparator and by arrival, the largest element is on top of the heap
+        final Comparator<Pair<Long, E>> order = Comparator.<Pair<Long, E>, E>comparing( p -> p.right, comparator ).thenComparing( p -> p.left );
+        final PriorityQueue<Pair<Long, E>> heap = new PriorityQueue<>( Math.min( bound, 1024 ), order.reversed() );
+        long sequence = 0;
+        while ( elements.hasNext() ) {
+            final E element = elements.next();
+            if ( heap.size() < bound ) {
+                heap.add( Pair.of( sequence++, element ) );
+            } else if ( comparator.compare( element, heap.peek().right ) < 0 ) {
+                heap.poll();
+                heap.add( Pair.of( sequence++, element ) );
+            }
+        }
+
+        final List<Pair<Long, E>> sorted = new ArrayList<>( heap );
+        sorted.sort( order );
+        return Pair.right( sorted.subList( Math.min( offset, sorted.size() ), sorted.size() ) );
+    }
+
 }
 
@@ -118,7 +118,12 @@ public enum Hook {
      * Called with a query that has been generated to send to a back-end system.
      * The query might be a SQL string (for the JDBC adapter), a list of Mongo pipeline expressions (for the MongoDB adapter), et cetera.
      */
-    QUERY_PLAN;
+    QUERY_PLAN,
+
+    /**
+     * Called with the fetch size set on a statement of a JDBC store, just before the statement is executed.
+     */
+    JDBC_FETCH_SIZE;
 
     private final List<Consumer<Object>> handlers = new CopyOnWriteArrayList<>();
 
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+/**
+ * When the lock manager searches the wait-for graph for deadlocks.
+ */
+public enum DeadlockDetection {
+    /**
+     * Every blocked lock request searches the whole wait-for graph.
+     */
+    ON_WAIT,
+    /**
+     * Every blocked lock request only checks whether its new edges close a cycle.
+     */
+    INCREMENTAL,
+    /**
+     * Blocked lock requests only add edges, a periodic background task searches for cycles and aborts victims.
+     */
+    BACKGROUND
+}
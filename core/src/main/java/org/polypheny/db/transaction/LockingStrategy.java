@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+/**
+ * Implementation used by the lock manager for newly created entity locks.
+ */
+public enum LockingStrategy {
+    /**
+     * Every acquisition goes through a fair monitor and the wait-for graph.
+     */
+    FAIR,
+    /**
+     * Shared acquisitions are granted by compare-and-set on a reader count; only conflicting
+     * requests fall back to the monitor and the wait-for graph.
+     */
+    FAST_PATH
+}
@@ -47,4 +47,11 @@ public interface Statement {
 
     void registerFileInputHandle( FileInputHandle fileInputHandle );
 
+    /**
+     * Time in milliseconds this statement waits for a lock before it is aborted, 0 means infinite.
+     */
+    long getLockWaitTimeout();
+
+    void setLockWaitTimeout( long lockWaitTimeout );
+
 }
@@ -92,6 +92,12 @@ public interface Transaction {
 
     void updateAccessMode( AccessMode accessCandidate );
 
+    /**
+     * Returns the commit watermark at which this transaction started to read without locks
+     * or -1 if it reads under locks.
+     */
+    long getSnapshotTimestamp();
+
     /**
      * Flavor, how multimedia results should be returned from a store.
      */
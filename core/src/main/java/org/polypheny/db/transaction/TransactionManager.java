@@ -36,4 +36,10 @@ public interface TransactionManager {
 
     long getNumberOfTotalTransactions();
 
+    /**
+     * Returns the commit timestamp of the most recently committed writing transaction.
+     * Commit timestamps are strictly increasing.
+     */
+    long getCommitWatermark();
+
 }
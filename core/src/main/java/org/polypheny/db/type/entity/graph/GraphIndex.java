@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.type.entity.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.graph.PolyEdge.EdgeDirection;
+
+
+/**
+ * Adjacency and label index of a {@link PolyGraph}, which allows to match patterns by expanding only the neighbours of
+ * a node instead of scanning all edges.
+ * <p>
+ * Node ids are interned to consecutive integers and the incoming and outgoing edges of every node are stored in
+ * compressed sparse row arrays. All edge and node lists are in the iteration order of the graph, so matches are found
+ * in the same order as with a full scan.
+ * <p>
+ * The index is a snapshot of the graph and is built for every match, as the labels of nodes and edges can be changed
+ * in place.
+ */
+final class GraphIndex {
+
+    private static final int[] NO_EDGES = new int[0];
+
+    private final Map<PolyString, Integer> nodeIds = new HashMap<>();
+    private final PolyEdge[] edges;
+
+    // Edges of node i are outEdges[outOffsets[i]] to outEdges[outOffsets[i + 1] - 1]
+    private final int[] outOffsets;
+    private final int[] outEdges;
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    private final Map<List<PolyString>, List<PolyEdge>> edgesByLabels = new HashMap<>();
+
+
+    GraphIndex( PolyGraph graph ) {
+        for ( PolyNode node : graph.getNodes().values() ) {
+            intern( node.id );
+        }
+
+        edges = graph.getEdges().values().toArray( new PolyEdge[0] );
+        final int[] sources = new int[edges.length];
+        final int[] targets = new int[edges.length];
+        for ( int i = 0; i < edges.length; i++ ) {
+            // Edges may point to nodes which are not part of the graph
+            sources[i] = intern( edges[i].source );
+            targets[i] = intern( edges[i].target );
+            edgesByLabels.computeIfAbsent( List.copyOf( edges[i].labels ), k -> new ArrayList<>() ).add( edges[i] );
+        }
+
+        outOffsets = new int[nodeIds.size() + 1];
+        outEdges = new int[edges.length];
+        fill( sources, outOffsets, outEdges );
+        inOffsets = new int[nodeIds.size() + 1];
+        inEdges = new int[edges.length];
+        fill( targets, inOffsets, inEdges );
+    }
+
+
+    private int intern( PolyString id ) {
+        return nodeIds.computeIfAbsent( id, k -> nodeIds.size() );
+    }
+
+
+    private static void fill( int[] endpoints, int[] offsets, int[] adjacent ) {
+        for ( int endpoint : endpoints ) {
+            offsets[endpoint + 1]++;
+        }
+        for ( int i = 1; i < offsets.length; i++ ) {
+            offsets[i] += offsets[i - 1];
+        }
+        final int[] next = new int[offsets.length - 1];
+        System.arraycopy( offsets, 0, next, 0, next.length );
+        // Edges are added in ascending order
+        for ( int edge = 0; edge < endpoints.length; edge++ ) {
+            adjacent[next[endpoints[edge]]++] = edge;
+        }
+    }
+
+
+    PolyEdge getEdge( int edge ) {
+        return edges[edge];
+    }
+
+
+    /**
+     * Returns the edges which leave ({@link EdgeDirection#LEFT_TO_RIGHT}), enter ({@link EdgeDirection#RIGHT_TO_LEFT})
+     * or touch ({@link EdgeDirection#NONE}) the given node, in ascending order and without duplicates.
+     */
+    int[] getAdjacentEdges( PolyString nodeId, EdgeDirection direction ) {
+        final Integer node = nodeIds.get( nodeId );
+        if ( node == null ) {
+            return NO_EDGES;
+        }
+        return switch ( direction ) {
+            case LEFT_TO_RIGHT -> slice( outEdges, outOffsets, node );
+            case RIGHT_TO_LEFT -> slice( inEdges, inOffsets, node );
+            case NONE -> merge( slice( outEdges, outOffsets, node ), slice( inEdges, inOffsets, node ) );
+        };
+    }
+
+
+    private static int[] slice( int[] adjacent, int[] offsets, int node ) {
+        final int from = offsets[node];
+        final int to = offsets[node + 1];
+        if ( from == to ) {
+            return NO_EDGES;
+        }
+        final int[] slice = new int[to - from];
+        System.arraycopy( adjacent, from, slice, 0, slice.length );
+        return slice;
+    }
+
+
+    private static int[] merge( int[] a, int[] b ) {
+        if ( a.length == 0 ) {
+            return b;
+        }
+        if ( b.length == 0 ) {
+            return a;
+        }
+        final int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while ( i < a.length || j < b.length ) {
+            final int next;
+            if ( j == b.length || (i < a.length && a[i] <= b[j]) ) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            // Loops are both incoming and outgoing
+            if ( k == 0 || merged[k - 1] != next ) {
+                merged[k++] = next;
+            }
+        }
+        return k == merged.length ? merged : Arrays.copyOf( merged, k );
+    }
+
+
+    /**
+     * Returns the edges which can match an edge pattern with the given labels.
+     */
+    List<PolyEdge> getEdgeCandidates( List<PolyString> labels ) {
+        if ( labels.isEmpty() ) {
+            return Arrays.asList( edges );
+        }
+        return edgesByLabels.getOrDefault( List.copyOf( labels ), List.of() );
+    }
+
+}
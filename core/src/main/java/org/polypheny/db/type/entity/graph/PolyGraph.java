@@ -120,7 +120,9 @@ public List<PolyPath> extract( PolyPath pattern ) {
         // Retrieve hop as de-referenced segments, which store the full information of nodes and edges
         List<List<PolySegment>> segments = pattern.getDerefSegments();
 
-        List<List<TreePart>> trees = segments.stream().map( this::buildMatchingTree ).toList();
+        // Built for every match, as labels of the contained elements can be changed in place
+        final GraphIndex index = new GraphIndex( this );
+        List<List<TreePart>> trees = segments.stream().map( s -> buildMatchingTree( s, index ) ).toList();
 
         List<List<Pair<PolyString, PolyString>>> namedPathIds = buildIdPaths( trees );
 
@@ -192,11 +194,11 @@ private List<List<Pair<PolyString, PolyString>>> buildIdPaths( List<List<TreePar
     }
 
 
-    private List<TreePart> buildMatchingTree( List<PolySegment> segments ) {
+    private List<TreePart> buildMatchingTree( List<PolySegment> segments, GraphIndex index ) {
         List<TreePart> root = new ArrayList<>();
 
         // attach empty stubs for root
-        attachEmptyStubs( segments.get( 0 ), root );
+        attachEmptyStubs( segments.get( 0 ), root, index );
 
         List<TreePart> temp = root;
         List<TreePart> last;
@@ -213,8 +215,12 @@ private List<TreePart> buildMatchingTree( List<PolySegment> segments ) {
                                     (( e, p ) -> !p.usedEdgesIds.contains( e.id ) && (e.target.equals( p.targetId ) || e.source.equals( p.targetId )));
 
             for ( TreePart part : last ) {
-                // only loop matching connections
-                for ( PolyEdge edge : edges.values().stream().filter( e -> filter.test( e, part ) ).toList() ) {
+                // only loop matching connections, which are the neighbours of the last node
+                for ( int edgeIndex : index.getAdjacentEdges( part.targetId, segment.direction ) ) {
+                    PolyEdge edge = index.getEdge( edgeIndex );
+                    if ( !filter.test( edge, part ) ) {
+                        continue;
+                    }
                     PolyNode left = nodes.get( edge.source );
                     PolyNode right = nodes.get( edge.target );
                     // then check if it matches pattern of segment either ()->() or ()-() depending if direction is specified
@@ -245,9 +251,10 @@ private List<TreePart> buildMatchingTree( List<PolySegment> segments ) {
     }
 
 
-    private void attachEmptyStubs( PolySegment segment, List<TreePart> root ) {
+    private void attachEmptyStubs( PolySegment segment, List<TreePart> root, GraphIndex index ) {
         Set<Pair<PolyString, PolyString>> usedIds = new HashSet<>();
-        for ( PolyEdge edge : edges.values() ) {
+        // only edges with the labels of the pattern can match
+        for ( PolyEdge edge : index.getEdgeCandidates( segment.edge.labels ) ) {
             PolyNode left = nodes.get( edge.source );
             PolyNode right = nodes.get( edge.target );
             // We attach stubs, which allows ()->() and ()-()
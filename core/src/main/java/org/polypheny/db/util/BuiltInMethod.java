@@ -196,6 +196,7 @@ public enum BuiltInMethod {
     EXCEPT( ExtendedEnumerable.class, "except", Enumerable.class ),
     SKIP( ExtendedEnumerable.class, "skip", int.class ),
     TAKE( ExtendedEnumerable.class, "take", int.class ),
+    TOP_N( Enumerables.class, "topN", Enumerable.class, Function1.class, Comparator.class, int.class, int.class ),
     SINGLETON_ENUMERABLE( Linq4j.class, "singletonEnumerable", Object.class ),
     SINGLETON_ARRAY_ENUMERABLE( Functions.class, "singletonEnumerable", PolyValue.class ),
     EMPTY_ENUMERABLE( Linq4j.class, "emptyEnumerable" ),
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import static org.polypheny.db.adapter.index.CowHashIndexTest.asPolyValues;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.util.Pair;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+import org.polypheny.db.util.RunMode;
+
+
+public class IndexFileStoreTest {
+
+    private static final long FINGERPRINT = 4711L;
+
+    @TempDir
+    File folder;
+
+
+    @BeforeAll
+    public static void init() {
+        if ( PolyphenyHomeDirManager.getMode() == null ) {
+            PolyphenyHomeDirManager.setModeAndGetInstance( RunMode.TEST );
+        }
+    }
+
+
+    @Test
+    public void testRoundTrip() {
+        IndexFileStore store = new IndexFileStore( folder );
+        CoWHashIndex unique = new CoWHashIndex( 1L, "idx_unique", null, null, Collections.emptyList(), Collections.emptyList() );
+        unique.insertAll( Arrays.asList(
+                Pair.of( asPolyValues( 1, 2 ), asPolyValues( 1 ) ),
+                Pair.of( Arrays.<PolyValue>asList( PolyString.of( "a" ), null ), asPolyValues( 2 ) )
+        ) );
+        store.checkpoint( unique, FINGERPRINT );
+
+        CoWHashIndex loaded = new CoWHashIndex( 1L, "idx_unique", null, null, Collections.emptyList(), Collections.emptyList() );
+        Assertions.assertTrue( store.load( loaded, FINGERPRINT ) );
+        Assertions.assertTrue( loaded.isInitialized() );
+        Assertions.assertEquals( unique.getRaw(), loaded.getRaw() );
+
+        SkipListIndex multi = new SkipListIndex( 2L, "idx_multi", false, null, null, Collections.emptyList(), Collections.emptyList() );
+        multi.insertAll( Arrays.asList(
+                Pair.of( asPolyValues( 1 ), asPolyValues( 1 ) ),
+                Pair.of( asPolyValues( 1 ), asPolyValues( 2 ) ),
+                Pair.of( asPolyValues( 3 ), asPolyValues( 3 ) )
+        ) );
+        store.checkpoint( multi, FINGERPRINT );
+
+        SkipListIndex loadedMulti = new SkipListIndex( 2L, "idx_multi", false, null, null, Collections.emptyList(), Collections.emptyList() );
+        Assertions.assertTrue( store.load( loadedMulti, FINGERPRINT ) );
+        Assertions.assertEquals( multi.getRaw(), loadedMulti.getRaw() );
+        Assertions.assertEquals( 3, loadedMulti.size() );
+    }
+
+
+    @Test
+    public void testFingerprintMismatch() {
+        IndexFileStore store = new IndexFileStore( folder );
+        store.checkpoint( filledIndex(), FINGERPRINT );
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT + 1 ) );
+        Assertions.assertTrue( store.load( emptyIndex(), FINGERPRINT ) );
+    }
+
+
+    @Test
+    public void testCorruptedCheckpoint() throws IOException {
+        IndexFileStore store = new IndexFileStore( folder );
+        store.checkpoint( filledIndex(), FINGERPRINT );
+        try ( RandomAccessFile file = new RandomAccessFile( new File( folder, "1.idx" ), "rw" ) ) {
+            file.seek( file.length() - 1 );
+            int last = file.read();
+            file.seek( file.length() - 1 );
+            file.write( last ^ 0xFF );
+        }
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT ) );
+    }
+
+
+    @Test
+    public void testModifiedWithoutCheckpoint() {
+        IndexFileStore store = new IndexFileStore( folder );
+        CoWHashIndex index = filledIndex();
+        store.checkpoint( index, FINGERPRINT );
+
+        // Two concurrent writers, the marker has to remain until the last one is done
+        store.markDirty( index );
+        store.markDirty( index );
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT ) );
+        store.markClean( index );
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT ) );
+        store.markClean( index );
+        Assertions.assertTrue( store.load( emptyIndex(), FINGERPRINT ) );
+    }
+
+
+    @Test
+    public void testCommittedChangesWaitForCheckpoint() {
+        IndexFileStore store = new IndexFileStore( folder );
+        CoWHashIndex index = filledIndex();
+        store.checkpoint( index, FINGERPRINT );
+
+        // A commit does not write the checkpoint, the marker remains until the background checkpoint
+        store.markDirty( index );
+        store.markCommitted( index );
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT ) );
+        Assertions.assertEquals( Set.of( 1L ), store.takePending() );
+        Assertions.assertTrue( store.takePending().isEmpty() );
+
+        // A writer which started before the checkpoint keeps the marker
+        store.markDirty( index );
+        store.checkpoint( index, FINGERPRINT );
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT ) );
+        store.markClean( index );
+        Assertions.assertTrue( store.load( emptyIndex(), FINGERPRINT ) );
+    }
+
+
+    @Test
+    public void testRetain() {
+        IndexFileStore store = new IndexFileStore( folder );
+        store.checkpoint( filledIndex(), FINGERPRINT );
+        store.retain( Set.of( 2L ) );
+        Assertions.assertFalse( new File( folder, "1.idx" ).exists() );
+        Assertions.assertFalse( store.load( emptyIndex(), FINGERPRINT ) );
+    }
+
+
+    private static CoWHashIndex filledIndex() {
+        CoWHashIndex index = emptyIndex();
+        index.insertAll( List.of( Pair.of( asPolyValues( 1 ), asPolyValues( 1 ) ) ) );
+        return index;
+    }
+
+
+    private static CoWHashIndex emptyIndex() {
+        return new CoWHashIndex( 1L, "idx_test", null, null, Collections.emptyList(), Collections.emptyList() );
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import static org.polypheny.db.adapter.index.CowHashIndexTest.asPolyValues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.algebra.exceptions.ConstraintViolationException;
+import org.polypheny.db.transaction.PUID;
+import org.polypheny.db.transaction.PUID.Type;
+import org.polypheny.db.transaction.PolyXid;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.util.Benchmark;
+import org.polypheny.db.util.Pair;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+import org.polypheny.db.util.RunMode;
+
+
+public class MvccHashIndexTest {
+
+    @BeforeAll
+    public static void init() {
+        if ( PolyphenyHomeDirManager.getMode() == null ) {
+            PolyphenyHomeDirManager.setModeAndGetInstance( RunMode.TEST );
+        }
+    }
+
+
+    @Test
+    public void testIsolation() {
+        MvccHashIndex idx = new MvccHashIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+        PolyXid xid1 = newXid();
+        PolyXid xid2 = newXid();
+        Assertions.assertEquals( 0, idx.getRaw().size() );
+        idx.insert( xid1, asPolyValues( 1, 2, 3 ), asPolyValues( 1 ) );
+        idx.insertAll( xid1, Arrays.asList(
+                Pair.of( asPolyValues( 2, 3, 4 ), asPolyValues( 2 ) ),
+                Pair.of( asPolyValues( 3, 4, 5 ), asPolyValues( 3 ) )
+        ) );
+        idx.delete( xid1, asPolyValues( 2, 3, 4 ) );
+        // Nothing is visible before the barrier
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 1, 2, 3 ) ) );
+        Assertions.assertFalse( idx.contains( xid2, asPolyValues( 1, 2, 3 ) ) );
+        idx.barrier( xid1 );
+        // Only visible to the writing transaction
+        Assertions.assertTrue( idx.contains( xid1, asPolyValues( 1, 2, 3 ) ) );
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 2, 3, 4 ) ) );
+        Assertions.assertTrue( idx.contains( xid1, asPolyValues( 3, 4, 5 ) ) );
+        Assertions.assertFalse( idx.contains( xid2, asPolyValues( 1, 2, 3 ) ) );
+        Assertions.assertFalse( idx.contains( xid2, asPolyValues( 3, 4, 5 ) ) );
+        idx.commit( xid1 );
+        // Visible to everyone
+        Assertions.assertTrue( idx.contains( xid2, asPolyValues( 1, 2, 3 ) ) );
+        Assertions.assertFalse( idx.contains( xid2, asPolyValues( 2, 3, 4 ) ) );
+        Assertions.assertTrue( idx.contains( xid2, asPolyValues( 3, 4, 5 ) ) );
+        Assertions.assertEquals( 2, idx.size() );
+        // Delete, then rollback
+        idx.delete( xid1, asPolyValues( 1, 2, 3 ) );
+        idx.barrier( xid1 );
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 1, 2, 3 ) ) );
+        Assertions.assertTrue( idx.contains( xid2, asPolyValues( 1, 2, 3 ) ) );
+        idx.rollback( xid1 );
+        Assertions.assertTrue( idx.contains( xid1, asPolyValues( 1, 2, 3 ) ) );
+        Assertions.assertEquals( 2, idx.size() );
+    }
+
+
+    @Test
+    public void testDuplicateDetection() {
+        MvccHashIndex idx = new MvccHashIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+        PolyXid xid1 = newXid();
+        idx.insert( xid1, asPolyValues( 1, 2, 3 ), asPolyValues( 1 ) );
+        idx.barrier( xid1 );
+        idx.commit( xid1 );
+
+        idx.insert( xid1, asPolyValues( 2, 3, 4 ), asPolyValues( 2 ) );
+        idx.insert( xid1, asPolyValues( 1, 2, 3 ), asPolyValues( 3 ) );
+        Assertions.assertThrows( ConstraintViolationException.class, () -> idx.barrier( xid1 ) );
+        // The barrier did not complete, so none of its changes are visible and the commit has to fail
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 2, 3, 4 ) ) );
+        Assertions.assertThrows( IllegalStateException.class, () -> idx.commit( xid1 ) );
+        idx.rollback( xid1 );
+
+        // Re-inserting a key deleted in the same transaction is fine
+        idx.delete( xid1, asPolyValues( 1, 2, 3 ) );
+        idx.insert( xid1, asPolyValues( 1, 2, 3 ), asPolyValues( 4 ) );
+        idx.barrier( xid1 );
+        idx.commit( xid1 );
+        Assertions.assertEquals( asPolyValues( 4 ), idx.getRaw().get( asPolyValues( 1, 2, 3 ) ) );
+    }
+
+
+    @Test
+    public void testNonUnique() {
+        MvccHashIndex idx = new MvccHashIndex( 42L, "idx_test", false, null, null, Collections.emptyList(), Collections.emptyList() );
+        PolyXid xid1 = newXid();
+        idx.insertAll( xid1, Arrays.asList(
+                Pair.of( asPolyValues( 1 ), asPolyValues( 1 ) ),
+                Pair.of( asPolyValues( 1 ), asPolyValues( 2 ) ),
+                Pair.of( asPolyValues( 2 ), asPolyValues( 3 ) )
+        ) );
+        idx.barrier( xid1 );
+        idx.commit( xid1 );
+        Assertions.assertEquals( 2, idx.size() );
+        Assertions.assertEquals( 2, ((Set<?>) idx.getRaw().get( asPolyValues( 1 ) )).size() );
+
+        idx.deletePrimary( xid1, asPolyValues( 1 ), asPolyValues( 1 ) );
+        idx.deletePrimary( xid1, asPolyValues( 2 ), asPolyValues( 3 ) );
+        idx.barrier( xid1 );
+        idx.commit( xid1 );
+        Assertions.assertEquals( 1, idx.size() );
+        Assertions.assertTrue( idx.contains( xid1, asPolyValues( 1 ) ) );
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 2 ) ) );
+    }
+
+
+    /**
+     * Commits keys in ascending order while other threads read. A reader that sees a key must also see all keys
+     * committed before it.
+     */
+    @Test
+    public void testConcurrentReadersDuringCommits() throws InterruptedException {
+        final int keys = 2_000;
+        MvccHashIndex idx = new MvccHashIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+        AtomicBoolean done = new AtomicBoolean( false );
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for ( int t = 0; t < 4; t++ ) {
+            Thread reader = new Thread( () -> {
+                PolyXid xid = newXid();
+                while ( !done.get() && failure.get() == null ) {
+                    int visible = 0;
+                    while ( visible < keys && idx.contains( xid, asPolyValues( visible ) ) ) {
+                        visible++;
+                    }
+                    for ( int i = visible + 1; i < Math.min( keys, visible + 10 ); i++ ) {
+                        // Commits are only published in order, later keys might have become visible in the meantime
+                        if ( idx.contains( xid, asPolyValues( i ) ) && !idx.contains( xid, asPolyValues( visible ) ) ) {
+                            failure.set( "Key " + i + " is visible, but key " + visible + " is not" );
+                        }
+                    }
+                }
+            } );
+            reader.start();
+            readers.add( reader );
+        }
+
+        PolyXid writer = newXid();
+        for ( int i = 0; i < keys; i++ ) {
+            idx.insert( writer, asPolyValues( i ), asPolyValues( i ) );
+            if ( i > 0 ) {
+                // Keep a few versions around to exercise pruning
+                idx.delete( writer, asPolyValues( i - 1 ) );
+                idx.insert( writer, asPolyValues( i - 1 ), asPolyValues( -i ) );
+            }
+            idx.barrier( writer );
+            idx.commit( writer );
+        }
+        done.set( true );
+        for ( Thread reader : readers ) {
+            reader.join();
+        }
+
+        Assertions.assertNull( failure.get() );
+        Assertions.assertEquals( keys, idx.size() );
+        Assertions.assertEquals( keys, idx.getRaw().size() );
+    }
+
+
+    /**
+     * Compares point lookups and commits of the copy-on-write and the MVCC hash index.
+     */
+    @Test
+    public void testLookupBenchmark() {
+        // Run a much quicker form of the test during regular testing.
+        final int size = Benchmark.enabled() ? 100_000 : 100;
+        final int commits = Benchmark.enabled() ? 1_000 : 10;
+        final List<Pair<List<PolyValue>, List<PolyValue>>> rows = new ArrayList<>();
+        for ( int i = 0; i < size; i++ ) {
+            rows.add( Pair.of( asPolyValues( i ), asPolyValues( i ) ) );
+        }
+        for ( String method : List.of( "hash", "mvcc_hash" ) ) {
+            new Benchmark( "index lookups and commits (" + method + ")", statistician -> {
+                Index idx = method.equals( "hash" )
+                        ? new CoWHashIndex( 42L, "idx_test", null, null, Collections.emptyList(), Collections.emptyList() )
+                        : new MvccHashIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+                idx.insertAll( rows );
+                PolyXid xid = newXid();
+                final long t0 = System.nanoTime();
+                for ( int i = 0; i < size; i++ ) {
+                    Assertions.assertTrue( idx.contains( xid, rows.get( i ).left ) );
+                }
+                for ( int i = 0; i < commits; i++ ) {
+                    idx.insert( xid, asPolyValues( size + i ), asPolyValues( i ) );
+                    idx.barrier( xid );
+                    idx.commit( xid );
+                }
+                statistician.record( t0 );
+                Assertions.assertEquals( size + commits, idx.size() );
+                return null;
+            }, 5 ).run();
+        }
+    }
+
+
+    private static PolyXid newXid() {
+        return PolyXid.generateLocalTransactionIdentifier( PUID.randomPUID( Type.NODE ), PUID.randomPUID( Type.TRANSACTION ) );
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.index;
+
+
+import static org.polypheny.db.adapter.index.CowHashIndexTest.asPolyValues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.algebra.exceptions.ConstraintViolationException;
+import org.polypheny.db.transaction.PUID;
+import org.polypheny.db.transaction.PUID.Type;
+import org.polypheny.db.transaction.PolyXid;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.numerical.PolyInteger;
+import org.polypheny.db.util.Pair;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+import org.polypheny.db.util.RunMode;
+
+
+public class SkipListIndexTest {
+
+    @BeforeAll
+    public static void init() {
+        if ( PolyphenyHomeDirManager.getMode() == null ) {
+            PolyphenyHomeDirManager.setModeAndGetInstance( RunMode.TEST );
+        }
+    }
+
+
+    @Test
+    public void testCopyOnWriteIsolation() {
+        SkipListIndex idx = new SkipListIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+        PolyXid xid1 = newXid();
+        PolyXid xid2 = newXid();
+        idx.insertAll( xid1, Arrays.asList(
+                Pair.of( asPolyValues( 1 ), asPolyValues( 1 ) ),
+                Pair.of( asPolyValues( 2 ), asPolyValues( 2 ) )
+        ) );
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 1 ) ) );
+        idx.barrier( xid1 );
+        Assertions.assertTrue( idx.contains( xid1, asPolyValues( 1 ) ) );
+        Assertions.assertFalse( idx.contains( xid2, asPolyValues( 1 ) ) );
+        idx.commit( xid1 );
+        Assertions.assertTrue( idx.contains( xid2, asPolyValues( 1 ) ) );
+        Assertions.assertEquals( 2, idx.size() );
+
+        idx.delete( xid1, asPolyValues( 2 ) );
+        idx.barrier( xid1 );
+        Assertions.assertFalse( idx.contains( xid1, asPolyValues( 2 ) ) );
+        Assertions.assertTrue( idx.contains( xid2, asPolyValues( 2 ) ) );
+        idx.rollback( xid1 );
+        Assertions.assertTrue( idx.contains( xid1, asPolyValues( 2 ) ) );
+    }
+
+
+    @Test
+    public void testDuplicateDetection() {
+        SkipListIndex idx = new SkipListIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+        PolyXid xid1 = newXid();
+        idx.insert( xid1, asPolyValues( 1, 2 ), asPolyValues( 1 ) );
+        idx.insert( xid1, asPolyValues( 1, 2 ), asPolyValues( 2 ) );
+        Assertions.assertThrows( ConstraintViolationException.class, () -> idx.barrier( xid1 ) );
+        Assertions.assertThrows( IllegalStateException.class, () -> idx.commit( xid1 ) );
+        idx.rollback( xid1 );
+        Assertions.assertEquals( 0, idx.size() );
+    }
+
+
+    @Test
+    public void testRanges() {
+        SkipListIndex idx = new SkipListIndex( 42L, "idx_test", false, null, null, Collections.emptyList(), Collections.emptyList() );
+        List<Pair<List<PolyValue>, List<PolyValue>>> rows = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ ) {
+            // Two entries for every leading value to check that multi-column keys are bounded correctly
+            rows.add( Pair.of( asPolyValues( i, 0 ), asPolyValues( 2 * i ) ) );
+            rows.add( Pair.of( asPolyValues( i, 1 ), asPolyValues( 2 * i + 1 ) ) );
+        }
+        idx.insertAll( rows );
+        PolyXid xid = newXid();
+
+        Assertions.assertEquals( List.of( 3, 3, 4, 4, 5, 5 ), leading( idx, xid, range( 3, true, 5, true ), false, -1 ) );
+        Assertions.assertEquals( List.of( 4, 4 ), leading( idx, xid, range( 3, false, 5, false ), false, -1 ) );
+        Assertions.assertEquals( List.of( 9, 9, 8 ), leading( idx, xid, KeyRange.ALL, true, 3 ) );
+        Assertions.assertEquals( List.of( 2, 2, 1, 1, 0, 0 ), leading( idx, xid, range( null, false, 3, false ), true, -1 ) );
+        Assertions.assertEquals( List.of( 8, 8, 9, 9 ), leading( idx, xid, range( 7, false, null, false ), false, -1 ) );
+        Assertions.assertEquals( List.of( 6, 6 ), leading( idx, xid, KeyRange.equalTo( PolyInteger.of( 6 ) ), false, -1 ) );
+        Assertions.assertEquals( List.of(), leading( idx, xid, range( 5, false, 5, true ), false, -1 ) );
+
+        // Changes of the transaction are merged into the slice
+        idx.delete( xid, asPolyValues( 4, 0 ) );
+        idx.insert( xid, asPolyValues( 4, 2 ), asPolyValues( 100 ) );
+        idx.insert( xid, asPolyValues( 11, 0 ), asPolyValues( 101 ) );
+        idx.barrier( xid );
+        Assertions.assertEquals( List.of( 4, 4, 5, 5 ), leading( idx, xid, range( 4, true, 5, true ), false, -1 ) );
+        Assertions.assertEquals( List.of( 11, 9 ), leading( idx, xid, KeyRange.ALL, true, 2 ) );
+        Assertions.assertEquals( List.of( 9, 9 ), leading( idx, newXid(), KeyRange.ALL, true, 2 ) );
+    }
+
+
+    @Test
+    public void testPrefixRange() {
+        SkipListIndex idx = new SkipListIndex( 42L, "idx_test", true, null, null, Collections.emptyList(), Collections.emptyList() );
+        int i = 0;
+        for ( String value : List.of( "ab", "abc", "abd", "ac", "b", "aa" ) ) {
+            idx.insert( List.of( PolyString.of( value ) ), asPolyValues( i++ ) );
+        }
+        KeyRange range = KeyRange.prefix( "ab" );
+        List<String> matching = idx.getRaw().keySet().stream()
+                .filter( key -> range.contains( key.get( 0 ) ) )
+                .map( key -> key.get( 0 ).asString().value )
+                .toList();
+        Assertions.assertEquals( List.of( "ab", "abc", "abd" ), matching );
+    }
+
+
+    @Test
+    public void testNullsSortedLast() {
+        SkipListIndex idx = new SkipListIndex( 42L, "idx_test", false, null, null, Collections.emptyList(), Collections.emptyList() );
+        idx.insert( Collections.singletonList( null ), asPolyValues( 1 ) );
+        idx.insert( asPolyValues( 5 ), asPolyValues( 2 ) );
+        Assertions.assertEquals( asPolyValues( 5 ), idx.getRaw().firstKey() );
+        Assertions.assertFalse( range( 0, true, null, false ).contains( null ) );
+        Assertions.assertTrue( KeyRange.ALL.contains( null ) );
+    }
+
+
+    private static List<Integer> leading( SkipListIndex idx, PolyXid xid, KeyRange range, boolean descending, int limit ) {
+        return idx.getSlice( xid, range, descending, limit ).stream().map( key -> key.get( 0 ).asNumber().intValue() ).toList();
+    }
+
+
+    private static KeyRange range( Integer lower, boolean lowerInclusive, Integer upper, boolean upperInclusive ) {
+        return new KeyRange(
+                lower == null ? null : PolyInteger.of( lower ),
+                lowerInclusive,
+                upper == null ? null : PolyInteger.of( upper ),
+                upperInclusive );
+    }
+
+
+    private static PolyXid newXid() {
+        return PolyXid.generateLocalTransactionIdentifier( PUID.randomPUID( Type.NODE ), PUID.randomPUID( Type.TRANSACTION ) );
+    }
+
+}
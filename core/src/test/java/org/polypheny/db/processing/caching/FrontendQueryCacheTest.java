@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.processing.caching.FrontendQueryCache.Literal;
+import org.polypheny.db.processing.caching.FrontendQueryCache.Template;
+
+
+/**
+ * Tests for the normalization of query texts by the {@link FrontendQueryCache}.
+ */
+public class FrontendQueryCacheTest {
+
+    @Test
+    public void extractsLiterals() {
+        Template template = Template.of( "SELECT * FROM t WHERE a = 'it''s'  AND\n b > 1.5 LIMIT 10" );
+
+        assertEquals( "SELECT * FROM t WHERE a = ? AND b > # LIMIT #", template.text() );
+        assertEquals(
+                List.of( new Literal( "it's", true ), new Literal( "1.5", false ), new Literal( "10", false ) ),
+                template.literals() );
+    }
+
+
+    @Test
+    public void sameTemplateForDifferentLiterals() {
+        assertEquals(
+                Template.of( "SELECT a FROM t WHERE b = 'x' AND c = 1" ).text(),
+                Template.of( "SELECT a  FROM t WHERE b = 'longer value' AND c = 4711 " ).text() );
+    }
+
+
+    @Test
+    public void keepsIdentifiers() {
+        Template template = Template.of( "SELECT \"col 1\", t2.c3 FROM \"s1\".t2 WHERE x1 = 2" );
+
+        assertEquals( "SELECT \"col 1\", t2.c3 FROM \"s1\".t2 WHERE x1 = #", template.text() );
+        assertEquals( List.of( new Literal( "2", false ) ), template.literals() );
+    }
+
+
+    @Test
+    public void distinguishesLiteralKinds() {
+        assertNotEquals(
+                Template.of( "SELECT a FROM t WHERE b = '1'" ).text(),
+                Template.of( "SELECT a FROM t WHERE b = 1" ).text() );
+        assertNotEquals(
+                Template.of( "SELECT a FROM t WHERE b = ?" ).literals(),
+                Template.of( "SELECT a FROM t WHERE b = 'x'" ).literals() );
+    }
+
+
+    @Test
+    public void keepsUnterminatedString() {
+        Template template = Template.of( "SELECT 'abc" );
+
+        assertEquals( "SELECT 'abc", template.text() );
+        assertEquals( List.of(), template.literals() );
+    }
+
+}
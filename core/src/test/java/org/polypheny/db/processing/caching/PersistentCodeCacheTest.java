@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.runtime.Bindable;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.numerical.PolyInteger;
+
+
+/**
+ * Tests that the {@link PersistentCodeCache} reuses stored classes and discards entries which cannot be trusted.
+ */
+public class PersistentCodeCacheTest {
+
+    private static final String CLASS_NAME = "Baz";
+
+    @TempDir
+    File root;
+
+
+    @AfterEach
+    public void resetConfig() {
+        RuntimeConfig.PERSISTENT_CODE_CACHE_SIZE.setInteger( 10000 );
+    }
+
+
+    @Test
+    public void testRoundTrip() {
+        PersistentCodeCache cache = cache( "build" );
+        assertEquals( 42, execute( cache, code( 42 ) ) );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, cache.getEntryCount() );
+        assertEquals( entries( "build" )[0].length(), cache.getBytes() );
+
+        assertEquals( 42, execute( cache, code( 42 ) ) );
+        assertEquals( 1, cache.getHits() );
+
+        // The stored class is used after a restart
+        PersistentCodeCache restarted = cache( "build" );
+        assertEquals( 42, execute( restarted, code( 42 ) ) );
+        assertEquals( 1, restarted.getHits() );
+        assertEquals( 0, restarted.getMisses() );
+    }
+
+
+    @Test
+    public void testFingerprintMismatch() {
+        execute( cache( "old" ), code( 1 ) );
+        assertTrue( new File( root, "old" ).exists() );
+
+        // Entries of another build are removed and the code is compiled again
+        PersistentCodeCache cache = cache( "new" );
+        assertEquals( 1, execute( cache, code( 1 ) ) );
+        assertEquals( 0, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertFalse( new File( root, "old" ).exists() );
+        assertEquals( 1, entries( "new" ).length );
+    }
+
+
+    @Test
+    public void testTruncatedEntry() throws IOException {
+        execute( cache( "build" ), code( 7 ) );
+        File entry = entries( "build" )[0];
+        byte[] bytes = Files.readAllBytes( entry.toPath() );
+        Files.write( entry.toPath(), Arrays.copyOf( bytes, bytes.length / 2 ) );
+
+        PersistentCodeCache cache = cache( "build" );
+        assertEquals( 7, execute( cache, code( 7 ) ) );
+        assertEquals( 1, cache.getDiscarded() );
+        assertEquals( 1, cache.getMisses() );
+        // The entry was written again
+        assertEquals( bytes.length, entries( "build" )[0].length() );
+    }
+
+
+    @Test
+    public void testCorruptEntry() throws IOException {
+        execute( cache( "build" ), code( 7 ) );
+        File entry = entries( "build" )[0];
+        Files.write( entry.toPath(), new byte[]{ 0, 0, 0, 1, 0, 0, 0, 2, 127, 127, 127, 127 } );
+
+        PersistentCodeCache cache = cache( "build" );
+        assertEquals( 7, execute( cache, code( 7 ) ) );
+        assertEquals( 1, cache.getDiscarded() );
+        assertEquals( 0, cache.getHits() );
+    }
+
+
+    @Test
+    public void testEntryOfOtherCode() throws IOException {
+        // Copies the entry of one code to the file of another one, as it would happen in case of a hash collision
+        execute( cache( "build" ), code( 1 ) );
+        byte[] other = Files.readAllBytes( entries( "build" )[0].toPath() );
+        execute( cache( "build" ), code( 2 ) );
+        for ( File entry : entries( "build" ) ) {
+            Files.write( entry.toPath(), other );
+        }
+
+        PersistentCodeCache cache = cache( "build" );
+        assertEquals( 2, execute( cache, code( 2 ) ) );
+        assertEquals( 1, cache.getDiscarded() );
+        assertEquals( 1, execute( cache, code( 1 ) ) );
+        assertEquals( 1, cache.getHits() );
+    }
+
+
+    @Test
+    public void testEviction() {
+        RuntimeConfig.PERSISTENT_CODE_CACHE_SIZE.setInteger( 2 );
+        PersistentCodeCache cache = cache( "build" );
+        execute( cache, code( 1 ) );
+        execute( cache, code( 2 ) );
+        // Makes the second entry the least recently used one
+        execute( cache, code( 1 ) );
+        execute( cache, code( 3 ) );
+
+        assertEquals( 2, cache.getEntryCount() );
+        assertEquals( 2, entries( "build" ).length );
+        assertEquals( Arrays.stream( entries( "build" ) ).mapToLong( File::length ).sum(), cache.getBytes() );
+
+        execute( cache, code( 1 ) );
+        execute( cache, code( 3 ) );
+        assertEquals( 3, cache.getHits() );
+        execute( cache, code( 2 ) );
+        assertEquals( 4, cache.getMisses() );
+    }
+
+
+    private PersistentCodeCache cache( String fingerprint ) {
+        return new PersistentCodeCache( () -> root, () -> fingerprint );
+    }
+
+
+    private File[] entries( String fingerprint ) {
+        File[] files = new File( root, fingerprint ).listFiles();
+        assertNotNull( files );
+        return files;
+    }
+
+
+    private static int execute( PersistentCodeCache cache, String code ) {
+        Bindable<PolyValue[]> bindable = cache.getOrCompile( CLASS_NAME, code, 2 );
+        assertNotNull( bindable );
+        List<PolyValue[]> rows = bindable.bind( null ).toList();
+        assertEquals( 1, rows.size() );
+        return rows.get( 0 )[0].asInteger().value;
+    }
+
+
+    /**
+     * Generates the body of a class returning a single row with the given value.
+     */
+    private static String code( int value ) {
+        return "public org.apache.calcite.linq4j.Enumerable bind(org.polypheny.db.adapter.DataContext root) {\n"
+                + "  return org.apache.calcite.linq4j.Linq4j.singletonEnumerable(new org.polypheny.db.type.entity.PolyValue[] {\n"
+                + "    " + PolyInteger.class.getName() + ".of(" + value + "), null});\n"
+                + "}\n"
+                + "public Class getElementType() {\n"
+                + "  return org.polypheny.db.type.entity.PolyValue[].class;\n"
+                + "}\n";
+    }
+
+}
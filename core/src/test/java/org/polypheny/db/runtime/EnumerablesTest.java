@@ -41,7 +41,9 @@
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.Linq4j;
@@ -157,6 +159,40 @@ public void testMergeJoin3() {
     }
 
 
+    @Test
+    public void testTopN() {
+        // Employees with equal keys keep their order
+        assertThat(
+                Enumerables.topN( EMPS, e -> e.deptno, null, 0, 3 ).toList().toString(),
+                equalTo( "[Emp(10, Fred), Emp(20, Theodore), Emp(20, Sebastian)]" ) );
+        assertThat(
+                Enumerables.topN( EMPS, e -> e.deptno, Comparator.<Integer>reverseOrder(), 1, 2 ).toList().toString(),
+                equalTo( "[Emp(20, Theodore), Emp(20, Sebastian)]" ) );
+        // Offset and fetch beyond the input
+        assertThat(
+                Enumerables.topN( EMPS, e -> e.deptno, null, 3, 10 ).toList().toString(),
+                equalTo( "[Emp(30, Joe)]" ) );
+        assertThat(
+                Enumerables.topN( EMPS, e -> e.deptno, null, 0, 0 ).toList().toString(),
+                equalTo( "[]" ) );
+    }
+
+
+    @Test
+    public void testTopNMatchesSort() {
+        final List<Integer> values = new ArrayList<>();
+        final Random random = new Random( 42 );
+        for ( int i = 0; i < 1000; i++ ) {
+            values.add( random.nextInt( 100 ) );
+        }
+        final List<Integer> sorted = new ArrayList<>( values );
+        sorted.sort( Comparator.naturalOrder() );
+        assertThat(
+                Enumerables.topN( values.iterator(), Comparator.<Integer>naturalOrder(), 15, 20 ),
+                equalTo( sorted.subList( 15, 35 ) ) );
+    }
+
+
     private static <T extends Comparable<T>> Enumerable<T> intersect( List<T> list0, List<T> list1 ) {
         return EnumerableDefaults.mergeJoin(
                 Linq4j.asEnumerable( list0 ),
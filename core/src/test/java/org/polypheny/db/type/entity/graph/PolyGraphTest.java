@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.type.entity.graph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.type.entity.PolyList;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.graph.PolyEdge.EdgeDirection;
+import org.polypheny.db.type.entity.relational.PolyMap;
+import org.polypheny.db.util.Benchmark;
+import org.polypheny.db.util.Pair;
+
+
+public class PolyGraphTest {
+
+    private static final PolyString PERSON = PolyString.of( "Person" );
+    private static final PolyString CITY = PolyString.of( "City" );
+    private static final PolyString KNOWS = PolyString.of( "KNOWS" );
+    private static final PolyString LIVES_IN = PolyString.of( "LIVES_IN" );
+
+
+    @Test
+    public void testDirectedMatch() {
+        PolyGraph graph = createGraph( 20 );
+
+        // every person knows two others, which again know two others
+        Assertions.assertEquals( 20 * 2 * 2, graph.extract( twoHopPattern( EdgeDirection.LEFT_TO_RIGHT ) ).size() );
+        Assertions.assertEquals( 20 * 2 * 2, graph.extract( twoHopPattern( EdgeDirection.RIGHT_TO_LEFT ) ).size() );
+    }
+
+
+    @Test
+    public void testUndirectedMatch() {
+        PolyGraph graph = createGraph( 20 );
+
+        // every person has four neighbours, edges can not be used twice in a path
+        Assertions.assertEquals( 20 * 4 * 3, graph.extract( twoHopPattern( EdgeDirection.NONE ) ).size() );
+    }
+
+
+    @Test
+    public void testNodeMatch() {
+        PolyGraph graph = createGraph( 20 );
+
+        Assertions.assertEquals( 20, graph.extract( node( "p", PERSON ) ).size() );
+        Assertions.assertEquals( 2, graph.extract( node( "c", CITY ) ).size() );
+        Assertions.assertEquals( 22, graph.extract( new PolyNode( new PolyDictionary(), List.of(), PolyString.of( "n" ) ) ).size() );
+    }
+
+
+    @Test
+    public void testMatchAfterLabelChange() {
+        PolyGraph graph = createGraph( 20 );
+        Assertions.assertEquals( 2, graph.extract( node( "c", CITY ) ).size() );
+        Assertions.assertEquals( 20 * 2 * 2, graph.extract( twoHopPattern( EdgeDirection.LEFT_TO_RIGHT ) ).size() );
+
+        // labels are replaced in place, as done by SET and REMOVE
+        PolyNode city = graph.getNodes().get( PolyString.of( "city0" ) );
+        city.labels.clear();
+        city.setLabels( PolyList.of( PERSON ) );
+        graph.getEdges().get( PolyString.of( "lives0" ) ).setLabels( PolyList.of( KNOWS ) );
+
+        Assertions.assertEquals( 1, graph.extract( node( "c", CITY ) ).size() );
+        Assertions.assertEquals( 21, graph.extract( node( "p", PERSON ) ).size() );
+        // the two persons knowing person0 now also reach the former city
+        Assertions.assertEquals( 20 * 2 * 2 + 2, graph.extract( twoHopPattern( EdgeDirection.LEFT_TO_RIGHT ) ).size() );
+    }
+
+
+    /**
+     * Matches a two hop pattern on graphs of increasing size.
+     */
+    @Test
+    public void testMatchBenchmark() {
+        // Run a much quicker form of the test during regular testing.
+        final List<Integer> sizes = Benchmark.enabled() ? List.of( 1_000, 10_000, 100_000 ) : List.of( 100 );
+        for ( int size : sizes ) {
+            PolyGraph graph = createGraph( size );
+            PolyPath pattern = twoHopPattern( EdgeDirection.LEFT_TO_RIGHT );
+            new Benchmark( "pattern match (" + size + " nodes)", statistician -> {
+                final long t0 = System.nanoTime();
+                List<PolyPath> paths = graph.extract( pattern );
+                statistician.record( t0 );
+                Assertions.assertEquals( size * 2 * 2, paths.size() );
+                return null;
+            }, 5 ).run();
+        }
+    }
+
+
+    /**
+     * Creates a graph with the given number of persons, in which every person knows the next and the seventh next
+     * person and lives in one of two cities.
+     */
+    private static PolyGraph createGraph( int size ) {
+        Map<PolyString, PolyNode> nodes = new HashMap<>();
+        Map<PolyString, PolyEdge> edges = new HashMap<>();
+        for ( int i = 0; i < size; i++ ) {
+            PolyNode person = new PolyNode( personId( i ), new PolyDictionary(), List.of( PERSON ), null );
+            nodes.put( person.id, person );
+        }
+        for ( int i = 0; i < 2; i++ ) {
+            PolyNode city = new PolyNode( PolyString.of( "city" + i ), new PolyDictionary(), List.of( CITY ), null );
+            nodes.put( city.id, city );
+        }
+        for ( int i = 0; i < size; i++ ) {
+            addEdge( edges, "knows" + i + "_1", KNOWS, personId( i ), personId( (i + 1) % size ) );
+            addEdge( edges, "knows" + i + "_7", KNOWS, personId( i ), personId( (i + 7) % size ) );
+            addEdge( edges, "lives" + i, LIVES_IN, personId( i ), PolyString.of( "city" + i % 2 ) );
+        }
+        return new PolyGraph( PolyMap.of( nodes ), PolyMap.of( edges ) );
+    }
+
+
+    private static PolyString personId( int i ) {
+        return PolyString.of( "person" + i );
+    }
+
+
+    private static void addEdge( Map<PolyString, PolyEdge> edges, String id, PolyString label, PolyString source, PolyString target ) {
+        PolyEdge edge = new PolyEdge( PolyString.of( id ), new PolyDictionary(), List.of( label ), source, target, EdgeDirection.LEFT_TO_RIGHT, null );
+        edges.put( edge.id, edge );
+    }
+
+
+    private static PolyNode node( String name, PolyString label ) {
+        return new PolyNode( new PolyDictionary(), List.of( label ), PolyString.of( name ) );
+    }
+
+
+    /**
+     * Creates the pattern {@code (a:Person)-[:KNOWS]-(b:Person)-[:KNOWS]-(c:Person)} with the given direction.
+     */
+    private static PolyPath twoHopPattern( EdgeDirection direction ) {
+        List<Pair<PolyString, PolyNode>> nodes = List.of(
+                Pair.of( PolyString.of( "a" ), node( "a", PERSON ) ),
+                Pair.of( PolyString.of( "b" ), node( "b", PERSON ) ),
+                Pair.of( PolyString.of( "c" ), node( "c", PERSON ) ) );
+        List<Pair<PolyString, PolyEdge>> edges = List.of(
+                Pair.of( PolyString.of( "e1" ), edge( "e1", direction ) ),
+                Pair.of( PolyString.of( "e2" ), edge( "e2", direction ) ) );
+        return PolyPath.create( nodes, edges );
+    }
+
+
+    private static PolyEdge edge( String name, EdgeDirection direction ) {
+        return new PolyEdge( new PolyDictionary(), List.of( KNOWS ), null, null, direction, PolyString.of( name ) );
+    }
+
+}
@@ -78,6 +78,7 @@
 import org.polypheny.db.processing.AlgProcessor;
 import org.polypheny.db.processing.AuthenticatorImpl;
 import org.polypheny.db.processing.ConstraintEnforceAttacher.ConstraintTracker;
+import org.polypheny.db.processing.caching.EntityCacheInvalidator;
 import org.polypheny.db.routing.RoutingManager;
 import org.polypheny.db.transaction.PUID;
 import org.polypheny.db.transaction.Transaction;
@@ -424,6 +425,9 @@ public void join( final long millis ) throws InterruptedException {
         // Initialize DDL Manager
         DdlManager.setAndGetInstance( new DdlManagerImpl( catalog ) );
 
+        // Invalidate cached plans of entities changed by the catalog
+        catalog.addObserver( EntityCacheInvalidator.INSTANCE );
+
         // Add config and monitoring test page for UI testing
         if ( mode == RunMode.TEST ) {
             new UiTestingConfigPage();
@@ -332,7 +332,7 @@ public void dropAdapter( String name, Statement statement ) {
                     // Delete the table
                     catalog.getLogicalRel( allocation.namespaceId ).deleteTable( table.id );
                     // Reset plan cache implementation cache & routing cache
-                    statement.getQueryProcessor().resetCaches();
+                    resetCaches( statement );
                 }
 
 
@@ -428,7 +428,7 @@ public void addColumnToSourceTable( LogicalTable table, String columnPhysicalNam
         // catalog.getAllocRel( catalogTable.namespaceId ).updateColumnPlacementPhysicalPosition( adapterId, addedColumn.id, exportedColumn.physicalPosition );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -517,7 +517,7 @@ public void createColumn( String columnName, LogicalTable table, String beforeCo
 
         catalog.updateSnapshot();
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -763,7 +763,7 @@ public void createAllocationPlacement( LogicalTable table, List<LogicalColumn> n
         dataMigrator.copyData( statement.getTransaction(), catalog.getSnapshot().getAdapter( dataStore.getAdapterId() ).orElseThrow(), table, adjustedColumns, placement );
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
 
     }
 
@@ -891,7 +891,7 @@ public void dropColumn( LogicalTable table, String columnName, Statement stateme
         prepareMonitoring( statement, Kind.DROP_COLUMN, table, column );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1053,7 +1053,7 @@ public void dropPlacement( LogicalTable table, DataStore<?> store, Statement sta
         catalog.getAllocRel( table.namespaceId ).deletePlacement( placement.id );
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1108,7 +1108,7 @@ public void setColumnType( LogicalTable table, String columnName, ColumnTypeInfo
         }
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1125,7 +1125,7 @@ public void setColumnNullable( LogicalTable table, String columnName, boolean nu
         catalog.getLogicalRel( table.namespaceId ).setNullable( logicalColumn.id, nullable );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1176,7 +1176,7 @@ public void setColumnPosition( LogicalTable table, String columnName, String bef
         // Do nothing
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1193,7 +1193,7 @@ public void setColumnCollation( LogicalTable table, String columnName, Collation
         catalog.getLogicalRel( table.namespaceId ).setCollation( logicalColumn.id, collation );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1207,7 +1207,7 @@ public void setDefaultValue( LogicalTable table, String columnName, PolyValue de
         addDefaultValue( table.namespaceId, defaultValue, logicalColumn );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1221,7 +1221,7 @@ public void dropDefaultValue( LogicalTable table, String columnName, Statement s
         catalog.getLogicalRel( table.namespaceId ).deleteDefaultValue( logicalColumn.id );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1263,7 +1263,7 @@ public void modifyPlacement( LogicalTable table, List<Long> columns, List<Intege
         catalog.updateSnapshot();
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1430,7 +1430,7 @@ public void modifyPartitionPlacement( LogicalTable table, List<Long> partitionId
         catalog.updateSnapshot();
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1488,7 +1488,7 @@ public void createColumnPlacement( LogicalTable table, LogicalColumn logicalColu
         catalog.updateSnapshot();
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1533,7 +1533,7 @@ public void dropColumnPlacement( LogicalTable table, LogicalColumn column, DataS
         catalog.updateSnapshot();
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1552,7 +1552,7 @@ public void renameTable( LogicalTable table, String newTableName, Statement stat
         catalog.getLogicalRel( table.namespaceId ).renameTable( table.id, newTableName );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1571,7 +1571,7 @@ public void renameCollection( LogicalCollection collection, String newName, Stat
         catalog.getLogicalDoc( collection.namespaceId ).renameCollection( collection, newName );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1593,7 +1593,7 @@ public void renameColumn( LogicalTable table, String columnName, String newColum
         }
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -1820,7 +1820,7 @@ public long createGraphPlacement( long graphId, List<DataStore<?>> stores, State
         }
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
 
         return graphId;
     }
@@ -1847,7 +1847,7 @@ public void dropGraphPlacement( long graphId, DataStore<?> store, Statement stat
             catalog.getAllocGraph( graphId ).removePlacement( alloc.placementId );
         }
 
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
 
     }
 
@@ -1900,7 +1900,7 @@ public void dropGraph( long graphId, boolean ifExists, Statement statement ) {
         catalog.dropNamespace( graphId );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2195,7 +2195,7 @@ public void dropCollection( LogicalCollection collection, Statement statement )
         catalog.updateSnapshot();
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2260,7 +2260,7 @@ public void dropCollectionPlacement( long namespaceId, LogicalCollection collect
         }
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
 
     }
 
@@ -2366,7 +2366,7 @@ public void createTablePartition( PartitionInformation partitionInfo, List<DataS
 
         catalog.updateSnapshot();
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2666,7 +2666,7 @@ public void dropTablePartition( LogicalTable table, Statement statement ) throws
 
         catalog.updateSnapshot();
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2761,7 +2761,7 @@ public void dropNamespace( String namespaceName, boolean ifExists, Statement sta
         catalog.dropNamespace( logicalNamespace.id );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
 
     }
 
@@ -2790,7 +2790,7 @@ public void dropView( LogicalTable view, Statement statement ) {
         catalog.getLogicalRel( view.namespaceId ).deleteTable( view.id );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2809,7 +2809,7 @@ public void dropMaterializedView( LogicalTable materializedView, Statement state
         dropTable( materializedView, statement );
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2872,7 +2872,7 @@ public void dropTable( LogicalTable table, Statement statement ) {
         statement.getTransaction().getLogicalTables().remove( table );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
 
         catalog.updateSnapshot();
     }
@@ -2885,7 +2885,7 @@ private void deleteAllocation( Statement statement, AllocationEntity allocation
         catalog.getAllocRel( allocation.namespaceId ).deleteAllocation( allocation.id );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        resetCaches( statement );
     }
 
 
@@ -2905,6 +2905,14 @@ public void truncate( LogicalTable table, Statement statement ) {
     }
 
 
+    private void resetCaches( Statement statement ) {
+        // With entity-scoped invalidation, the entries of changed entities are invalidated on the next snapshot
+        if ( !RuntimeConfig.ENTITY_SCOPED_CACHE_INVALIDATION.getBoolean() ) {
+            statement.getQueryProcessor().resetCaches();
+        }
+    }
+
+
     private void prepareMonitoring( Statement statement, Kind kind, LogicalTable catalogTable ) {
         prepareMonitoring( statement, kind, catalogTable, null );
     }
@@ -37,10 +37,13 @@
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.calcite.avatica.Meta.CursorFactory;
+import org.apache.calcite.linq4j.tree.ClassDeclaration;
 import org.apache.commons.lang3.time.StopWatch;
 import org.jetbrains.annotations.NotNull;
 import org.polypheny.db.PolyImplementation;
 import org.polypheny.db.ResultIterator;
+import org.polypheny.db.adapter.Adapter;
+import org.polypheny.db.adapter.AdapterManager;
 import org.polypheny.db.adapter.DataContext;
 import org.polypheny.db.adapter.DataContext.ParameterValue;
 import org.polypheny.db.adapter.index.Index;
@@ -73,15 +76,18 @@
 import org.polypheny.db.algebra.logical.relational.LogicalRelModify;
 import org.polypheny.db.algebra.logical.relational.LogicalRelProject;
 import org.polypheny.db.algebra.logical.relational.LogicalRelScan;
+import org.polypheny.db.algebra.logical.relational.LogicalRelSort;
 import org.polypheny.db.algebra.logical.relational.LogicalRelValues;
 import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.algebra.type.AlgDataTypeField;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.entity.Entity;
+import org.polypheny.db.catalog.entity.allocation.AllocationEntity;
 import org.polypheny.db.catalog.entity.logical.LogicalNamespace;
 import org.polypheny.db.catalog.entity.logical.LogicalTable;
 import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
 import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.catalog.snapshot.Snapshot;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.Information;
 import org.polypheny.db.information.InformationCode;
@@ -103,6 +109,8 @@
 import org.polypheny.db.plan.Convention;
 import org.polypheny.db.prepare.Prepare.PreparedResult;
 import org.polypheny.db.prepare.Prepare.PreparedResultImpl;
+import org.polypheny.db.processing.caching.EntityCacheInvalidator;
+import org.polypheny.db.processing.caching.FrontendQueryCache;
 import org.polypheny.db.processing.caching.ImplementationCache;
 import org.polypheny.db.processing.caching.QueryPlanCache;
 import org.polypheny.db.processing.caching.RoutingPlanCache;
@@ -142,6 +150,7 @@
 import org.polypheny.db.transaction.Lock.LockMode;
 import org.polypheny.db.transaction.LockManager;
 import org.polypheny.db.transaction.Statement;
+import org.polypheny.db.transaction.Transaction.AccessMode;
 import org.polypheny.db.transaction.TransactionImpl;
 import org.polypheny.db.type.PolyType;
 import org.polypheny.db.type.PolyTypeUtil;
@@ -184,9 +193,11 @@ public void executionTime( String reference, long nanoTime ) {
 
     @Override
     public void resetCaches() {
+        FrontendQueryCache.INSTANCE.reset();
         ImplementationCache.INSTANCE.reset();
         QueryPlanCache.INSTANCE.reset();
         RoutingPlanCache.INSTANCE.reset();
+        EntityCacheInvalidator.INSTANCE.reset();
         RoutingManager.getInstance().getRouters().forEach( Router::resetCaches );
     }
 
@@ -312,7 +323,11 @@ private ProposedImplementations prepareQueries( AlgRoot logicalRoot, AlgDataType
                 statement.getProcessingDuration().start( "Locking" );
             }
             if ( lock ) {
-                this.acquireLock( isAnalyze, logicalRoot, logicalQueryInformation.getAccessedPartitions() );
+                Optional<Set<Long>> snapshotReadAdapters = getSnapshotReadAdapters( logicalRoot, logicalQueryInformation );
+                if ( snapshotReadAdapters.isEmpty() || !((TransactionImpl) statement.getTransaction()).startSnapshotRead( snapshotReadAdapters.get() ) ) {
+                    ((TransactionImpl) statement.getTransaction()).endSnapshotRead();
+                    this.acquireLock( isAnalyze, logicalRoot, logicalQueryInformation.getAccessedPartitions() );
+                }
             }
 
             // Index Update
@@ -462,7 +477,7 @@ private ProposedImplementations prepareQueries( AlgRoot logicalRoot, AlgDataType
             plan.optimalNode( optimize( plan.parameterizedRoot(), resultConvention ) );
 
             if ( this.isQueryPlanCachingActive( statement, plan.proposedRoutingPlan().getRoutedRoot() ) ) {
-                QueryPlanCache.INSTANCE.put( plan.parameterizedRoot().alg, plan.optimalNode() );
+                QueryPlanCache.INSTANCE.put( plan.parameterizedRoot().alg, plan.optimalNode(), statement.getTransaction().getSnapshot() );
             }
         }
 
@@ -482,12 +497,21 @@ private ProposedImplementations prepareQueries( AlgRoot logicalRoot, AlgDataType
             final List<Pair<Integer, String>> fields = Pair.zip( PolyTypeUtil.identity( rowType.getFieldCount() ), rowType.getFieldNames() );
             AlgRoot optimalRoot = new AlgRoot( plan.optimalNode(), rowType, plan.parameterizedRoot().kind, fields, algCollation( plan.parameterizedRoot().alg ) );
 
-            PreparedResult<PolyValue> preparedResult = implement( optimalRoot, parameterRowType );
+            // Compiling in the background only pays off if the implementation is cached and executed again
+            boolean cacheable = this.isImplementationCachingActive( statement, plan.proposedRoutingPlan().getRoutedRoot() ) && optimalRoot.alg.isImplementationCacheable();
+            long implementationStart = System.nanoTime();
+            PreparedResult<PolyValue> preparedResult = implement( optimalRoot, parameterRowType, cacheable && RuntimeConfig.TIERED_EXECUTION.getBoolean() );
+            long implementationNanos = System.nanoTime() - implementationStart;
 
             // Cache implementation
             if ( this.isImplementationCachingActive( statement, plan.proposedRoutingPlan().getRoutedRoot() ) ) {
-                if ( optimalRoot.alg.isImplementationCacheable() ) {
-                    ImplementationCache.INSTANCE.put( plan.parameterizedRoot().alg, preparedResult );
+                if ( cacheable ) {
+                    ImplementationCache.INSTANCE.put( plan.parameterizedRoot().alg, preparedResult, implementationNanos, statement.getTransaction().getSnapshot() );
+                    if ( preparedResult.getBindable( null ) instanceof TieredBindable tieredBindable ) {
+                        // The compilation is not part of the implementation time if it happens in the background
+                        AlgNode parameterizedNode = plan.parameterizedRoot().alg;
+                        tieredBindable.whenCompiled( compilationNanos -> ImplementationCache.INSTANCE.addCompilationTime( parameterizedNode, preparedResult, compilationNanos ) );
+                    }
                 } else {
                     ImplementationCache.INSTANCE.countUncacheable();
                 }
@@ -553,6 +577,39 @@ private void flattenPlans( List<Plan> plans ) {
     }
 
 
+    /**
+     * Checks whether the query can skip locking and read from the snapshot of the transaction instead.
+     * This is the case for queries which do not modify anything, issued by transactions which have not written anything
+     * and which only access entities whose placements are all on adapters supporting consistent reads.
+     *
+     * @return the adapters the query reads from or empty if the query has to take locks
+     */
+    private Optional<Set<Long>> getSnapshotReadAdapters( AlgRoot logicalRoot, LogicalQueryInformation logicalQueryInformation ) {
+        if ( !RuntimeConfig.SNAPSHOT_READS.getBoolean() ) {
+            return Optional.empty();
+        }
+        AccessMode accessMode = statement.getTransaction().getAccessMode();
+        if ( accessMode != AccessMode.NO_ACCESS && accessMode != AccessMode.READ_ACCESS ) {
+            return Optional.empty();
+        }
+        if ( logicalRoot.kind.belongsTo( Kind.DML ) || logicalRoot.kind.belongsTo( Kind.DDL ) || !logicalQueryInformation.getAllModifiedEntities().isEmpty() ) {
+            return Optional.empty();
+        }
+        Snapshot snapshot = statement.getTransaction().getSnapshot();
+        Set<Long> adapterIds = new HashSet<>();
+        for ( long entityId : logicalQueryInformation.getAllScannedEntities() ) {
+            for ( AllocationEntity allocation : snapshot.alloc().getFromLogical( entityId ) ) {
+                Optional<Adapter<?>> adapter = AdapterManager.getInstance().getAdapter( allocation.adapterId );
+                if ( adapter.isEmpty() || !adapter.get().supportsConsistentReads() ) {
+                    return Optional.empty();
+                }
+                adapterIds.add( allocation.adapterId );
+            }
+        }
+        return Optional.of( adapterIds );
+    }
+
+
     private void acquireLock( boolean isAnalyze, AlgRoot logicalRoot, Map<Long, List<Long>> accessedPartitions ) {
         // TODO @HENNLO Check if this is this is necessary to pass the partitions explicitly.
         // This currently only works for queries. Since DMLs are evaluated during routing.
@@ -567,7 +624,7 @@ private void acquireLock( boolean isAnalyze, AlgRoot logicalRoot, Map<Long, List
             idAccessMap.add( Pair.of( LockManager.GLOBAL_LOCK, LockMode.SHARED ) );
 
             idAccessMap.addAll( accessMap.getAccessedEntityPair() );
-            LockManager.INSTANCE.lock( idAccessMap, (TransactionImpl) statement.getTransaction() );
+            LockManager.INSTANCE.lock( idAccessMap, (TransactionImpl) statement.getTransaction(), statement.getLockWaitTimeout() );
         } catch ( DeadlockException e ) {
             throw new GenericRuntimeException( e );
         }
@@ -820,10 +877,22 @@ public AlgNode visit( AlgNode node ) {
             };
             newRoot = newRoot.accept( shuttle );
         }
+        final IndexRangeLookup rangeLookup = new IndexRangeLookup( statement, builder );
         final AlgShuttle shuttle2 = new AlgShuttleImpl() {
 
+            @Override
+            public AlgNode visit( LogicalRelSort sort ) {
+                final AlgNode replacement = rangeLookup.visit( sort );
+                return replacement != null ? replacement : super.visit( sort );
+            }
+
+
             @Override
             public AlgNode visit( LogicalRelProject project ) {
+                final AlgNode replacement = rangeLookup.visit( project );
+                if ( replacement != null ) {
+                    return replacement;
+                }
                 if ( project.getInput() instanceof LogicalRelScan scan ) {
                     // Figure out the original column names required for index lookup
                     final List<String> columns = new ArrayList<>( project.getChildExps().size() );
@@ -1062,7 +1131,7 @@ private AlgNode optimize( AlgRoot logicalRoot, Convention resultConvention ) {
     }
 
 
-    private PreparedResult<PolyValue> implement( AlgRoot root, AlgDataType parameterRowType ) {
+    private PreparedResult<PolyValue> implement( AlgRoot root, AlgDataType parameterRowType, boolean tiered ) {
         if ( log.isTraceEnabled() ) {
             log.trace( "Physical query plan: [{}]", AlgOptUtil.dumpPlan( "-- Physical Plan", root.alg, ExplainFormat.TEXT, ExplainLevel.DIGEST_ATTRIBUTES ) );
         }
@@ -1098,13 +1167,20 @@ private PreparedResult<PolyValue> implement( AlgRoot root, AlgDataType parameter
             final Map<String, Object> internalParameters = new LinkedHashMap<>();
             internalParameters.put( "_conformance", conformance );
 
-            Pair<Bindable<PolyValue[]>, String> implementationPair = EnumerableInterpretable.toBindable(
-                    internalParameters,
-                    enumerable,
-                    prefer,
-                    statement );
-            bindable = implementationPair.left;
-            generatedCode = implementationPair.right;
+            if ( tiered && TieredBindable.isApplicable( enumerable ) ) {
+                // Interpret the plan until the generated code is compiled
+                Pair<ClassDeclaration, String> code = EnumerableInterpretable.generate( internalParameters, enumerable, prefer );
+                bindable = TieredBindable.create( enumerable, code.left, code.right, internalParameters );
+                generatedCode = code.right;
+            } else {
+                Pair<Bindable<PolyValue[]>, String> implementationPair = EnumerableInterpretable.toBindable(
+                        internalParameters,
+                        enumerable,
+                        prefer,
+                        statement );
+                bindable = implementationPair.left;
+                generatedCode = implementationPair.right;
+            }
             statement.getDataContext().addAll( internalParameters );
         }
 
@@ -1374,7 +1450,7 @@ private void finalizeAccessedPartitions( StatementEvent eventData ) {
     }
 
 
-    private void cacheRouterPlans( List<ProposedRoutingPlan> proposedRoutingPlans, List<AlgOptCost> approximatedCosts, String queryId, Set<Long> partitionIds ) {
+    private void cacheRouterPlans( List<ProposedRoutingPlan> proposedRoutingPlans, List<AlgOptCost> approximatedCosts, String queryId, Set<Long> partitionIds, Set<Long> entityIds ) {
         List<CachedProposedRoutingPlan> cachedPlans = new ArrayList<>();
         for ( int i = 0; i < proposedRoutingPlans.size(); i++ ) {
             if ( proposedRoutingPlans.get( i ).isCacheable() && !RoutingPlanCache.INSTANCE.isKeyPresent( queryId, partitionIds ) ) {
@@ -1383,7 +1459,7 @@ private void cacheRouterPlans( List<ProposedRoutingPlan> proposedRoutingPlans, L
         }
 
         if ( !cachedPlans.isEmpty() ) {
-            RoutingPlanCache.INSTANCE.put( queryId, partitionIds, cachedPlans );
+            RoutingPlanCache.INSTANCE.put( queryId, partitionIds, cachedPlans, entityIds, statement.getTransaction().getSnapshot() );
         }
     }
 
@@ -1402,7 +1478,8 @@ private Pair<PolyImplementation, ProposedRoutingPlan> selectPlan( ProposedImplem
                     proposedRoutingPlans,
                     approximatedCosts,
                     queryInformation.getQueryHash(),
-                    queryInformation.getAccessedPartitions().values().stream().flatMap( List::stream ).collect( Collectors.toSet() ) );
+                    queryInformation.getAccessedPartitions().values().stream().flatMap( List::stream ).collect( Collectors.toSet() ),
+                    queryInformation.getAllEntities() );
         }
 
         if ( proposed.plans.size() == 1 ) {
@@ -1487,7 +1564,7 @@ public void unlock( Statement statement ) {
     @Override
     public void lock( Statement statement ) {
         try {
-            LockManager.INSTANCE.lock( Collections.singletonList( Pair.of( LockManager.GLOBAL_LOCK, LockMode.SHARED ) ), (TransactionImpl) statement.getTransaction() );
+            LockManager.INSTANCE.lock( Collections.singletonList( Pair.of( LockManager.GLOBAL_LOCK, LockMode.SHARED ) ), (TransactionImpl) statement.getTransaction(), statement.getLockWaitTimeout() );
         } catch ( DeadlockException e ) {
             throw new GenericRuntimeException( "DeadLock while locking to reevaluate statistics", e );
         }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.adapter.index.Index;
+import org.polypheny.db.adapter.index.IndexManager;
+import org.polypheny.db.adapter.index.KeyRange;
+import org.polypheny.db.adapter.index.OrderedIndex;
+import org.polypheny.db.algebra.AlgFieldCollation;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.algebra.core.Values;
+import org.polypheny.db.algebra.logical.relational.LogicalRelFilter;
+import org.polypheny.db.algebra.logical.relational.LogicalRelProject;
+import org.polypheny.db.algebra.logical.relational.LogicalRelScan;
+import org.polypheny.db.algebra.logical.relational.LogicalRelSort;
+import org.polypheny.db.algebra.type.AlgDataType;
+import org.polypheny.db.algebra.type.AlgDataTypeField;
+import org.polypheny.db.catalog.entity.logical.LogicalNamespace;
+import org.polypheny.db.catalog.entity.logical.LogicalTable;
+import org.polypheny.db.plan.AlgOptUtil;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexIndexRef;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.rex.RexShuttle;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.transaction.Statement;
+import org.polypheny.db.util.ImmutableBitSet;
+
+
+/**
+ * Replaces scans of a table by the matching slice of an {@link OrderedIndex}. Handles range predicates
+ * ({@code <}, {@code <=}, {@code >}, {@code >=}, {@code =}, {@code BETWEEN} and prefix {@code LIKE}) on the
+ * leading index column, as well as {@code ORDER BY ... LIMIT} on that column.
+ * <p>
+ * The original filter and sort are kept on top of the slice, the index only narrows down the rows.
+ */
+class IndexRangeLookup {
+
+    private final Statement statement;
+    private final AlgBuilder builder;
+
+
+    IndexRangeLookup( Statement statement, AlgBuilder builder ) {
+        this.statement = statement;
+        this.builder = builder;
+    }
+
+
+    /**
+     * Rewrites {@code Sort(Project(Filter?(Scan)))} with a fetch, sorted by a single column.
+     */
+    @Nullable
+    AlgNode visit( LogicalRelSort sort ) {
+        if ( !(sort.fetch instanceof RexLiteral) || (sort.offset != null && !(sort.offset instanceof RexLiteral)) ) {
+            return null;
+        }
+        if ( sort.collation.getFieldCollations().size() != 1 || !(sort.getInput() instanceof LogicalRelProject project) ) {
+            return null;
+        }
+        final AlgFieldCollation collation = sort.collation.getFieldCollations().get( 0 );
+        if ( collation.nullDirection != collation.direction.defaultNullDirection() ) {
+            // The index sorts nulls last
+            return null;
+        }
+        if ( !(project.getProjects().get( collation.getFieldIndex() ) instanceof RexIndexRef ref) ) {
+            return null;
+        }
+        final int limit = RexLiteral.intValue( sort.fetch ) + (sort.offset == null ? 0 : RexLiteral.intValue( sort.offset ));
+        final AlgNode input = rewrite( project, ref.getIndex(), collation.direction.isDescending(), limit );
+        return input == null ? null : sort.copy( sort.getTraitSet(), List.of( input ) );
+    }
+
+
+    /**
+     * Rewrites {@code Project(Filter(Scan))} if the filter restricts the leading column of an ordered index.
+     */
+    @Nullable
+    AlgNode visit( LogicalRelProject project ) {
+        if ( !(project.getInput() instanceof LogicalRelFilter filter) ) {
+            return null;
+        }
+        for ( final Integer field : toRanges( filter.getCondition() ).ranges.keySet() ) {
+            final AlgNode replacement = rewrite( project, field, false, -1 );
+            if ( replacement != null ) {
+                return replacement;
+            }
+        }
+        return null;
+    }
+
+
+    @Nullable
+    private AlgNode rewrite( LogicalRelProject project, int leadingField, boolean descending, int limit ) {
+        final LogicalRelFilter filter = project.getInput() instanceof LogicalRelFilter f ? f : null;
+        final AlgNode input = filter == null ? project.getInput() : filter.getInput();
+        if ( !(input instanceof LogicalRelScan scan) ) {
+            return null;
+        }
+        final LogicalTable table = scan.getEntity().unwrap( LogicalTable.class ).orElse( null );
+        if ( table == null ) {
+            return null;
+        }
+
+        KeyRange range = KeyRange.ALL;
+        if ( filter != null ) {
+            final Ranges ranges = toRanges( filter.getCondition() );
+            range = ranges.ranges.getOrDefault( leadingField, KeyRange.ALL );
+            if ( limit >= 0 && (!ranges.exact || ranges.ranges.keySet().stream().anyMatch( field -> field != leadingField )) ) {
+                // Rows removed by the filter on top of the slice would be missing from the result
+                return null;
+            }
+        }
+        if ( limit < 0 && range.isAll() ) {
+            return null;
+        }
+
+        final List<AlgDataTypeField> fields = scan.getTupleType().getFields();
+        final ImmutableBitSet used = AlgOptUtil.InputFinder.bits( project.getProjects(), filter == null ? null : filter.getCondition() );
+        final List<String> usedColumns = used.asList().stream().map( i -> fields.get( i ).getName() ).toList();
+        final LogicalNamespace namespace = statement.getTransaction().getSnapshot().getNamespace( table.namespaceId ).orElseThrow();
+        final Index index = IndexManager.getInstance().getOrderedIndex( namespace, table, fields.get( leadingField ).getName(), usedColumns );
+        if ( index == null ) {
+            IndexManager.getInstance().incrementNoIndex();
+            return null;
+        }
+
+        // The values of the slice consist of the index columns, map the scan fields onto them
+        final List<AlgDataType> types = new ArrayList<>();
+        final Map<Integer, Integer> mapping = new HashMap<>();
+        for ( final String column : index.getColumns() ) {
+            final AlgDataTypeField field = scan.getTupleType().getField( column, true, false );
+            mapping.put( field.getIndex(), types.size() );
+            types.add( field.getType() );
+        }
+        final AlgDataType rowType = builder.getTypeFactory().createStructType( null, types, index.getColumns() );
+        final Values values = ((OrderedIndex) index).getAsValues( statement.getTransaction().getXid(), builder, rowType, range, descending, limit );
+
+        final RexBuilder rexBuilder = builder.getRexBuilder();
+        final RexShuttle remap = new RexShuttle() {
+            @Override
+            public RexNode visitIndexRef( RexIndexRef inputRef ) {
+                return rexBuilder.makeInputRef( values, mapping.get( inputRef.getIndex() ) );
+            }
+        };
+        AlgNode replacement = values;
+        if ( filter != null ) {
+            replacement = LogicalRelFilter.create( replacement, filter.getCondition().accept( remap ) );
+        }
+        IndexManager.getInstance().incrementHit();
+        return LogicalRelProject.create( replacement, remap.apply( project.getProjects() ), project.getTupleType() );
+    }
+
+
+    /**
+     * Translates the conjunctions of the given condition into ranges per field.
+     */
+    private static Ranges toRanges( RexNode condition ) {
+        final Ranges ranges = new Ranges();
+        for ( final RexNode conjunction : AlgOptUtil.conjunctions( condition ) ) {
+            final Entry<Integer, KeyRange> range = toRange( conjunction );
+            if ( range == null ) {
+                ranges.exact = false;
+                continue;
+            }
+            ranges.ranges.merge( range.getKey(), range.getValue(), KeyRange::intersect );
+        }
+        return ranges;
+    }
+
+
+    @Nullable
+    private static Entry<Integer, KeyRange> toRange( RexNode node ) {
+        if ( !(node instanceof RexCall call) || call.getOperands().size() != 2 ) {
+            return null;
+        }
+        Kind kind = call.getKind();
+        RexNode left = call.getOperands().get( 0 );
+        RexNode right = call.getOperands().get( 1 );
+        if ( left instanceof RexLiteral && right instanceof RexIndexRef && kind != Kind.LIKE ) {
+            left = call.getOperands().get( 1 );
+            right = call.getOperands().get( 0 );
+            kind = kind.reverse();
+        }
+        if ( !(left instanceof RexIndexRef ref) || !(right instanceof RexLiteral literal) || literal.isNull() ) {
+            return null;
+        }
+        final KeyRange range = switch ( kind ) {
+            case EQUALS -> KeyRange.equalTo( literal.value );
+            case LESS_THAN -> new KeyRange( null, false, literal.value, false );
+            case LESS_THAN_OR_EQUAL -> new KeyRange( null, false, literal.value, true );
+            case GREATER_THAN -> new KeyRange( literal.value, false, null, false );
+            case GREATER_THAN_OR_EQUAL -> new KeyRange( literal.value, true, null, false );
+            case LIKE -> toPrefixRange( literal );
+            default -> null;
+        };
+        return range == null ? null : Map.entry( ref.getIndex(), range );
+    }
+
+
+    @Nullable
+    private static KeyRange toPrefixRange( RexLiteral pattern ) {
+        if ( !pattern.value.isString() ) {
+            return null;
+        }
+        final String value = pattern.value.asString().value;
+        if ( value.length() < 2 || !value.endsWith( "%" ) ) {
+            return null;
+        }
+        final String prefix = value.substring( 0, value.length() - 1 );
+        if ( prefix.contains( "%" ) || prefix.contains( "_" ) || prefix.contains( "\\" ) ) {
+            return null;
+        }
+        return KeyRange.prefix( prefix );
+    }
+
+
+    private static class Ranges {
+
+        final Map<Integer, KeyRange> ranges = new HashMap<>();
+        // Whether the ranges are equivalent to the condition
+        boolean exact = true;
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.tree.ClassDeclaration;
+import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.Aggregate;
+import org.polypheny.db.algebra.core.Calc;
+import org.polypheny.db.algebra.core.Filter;
+import org.polypheny.db.algebra.core.Join;
+import org.polypheny.db.algebra.core.Project;
+import org.polypheny.db.algebra.core.Sort;
+import org.polypheny.db.algebra.core.Union;
+import org.polypheny.db.algebra.core.Values;
+import org.polypheny.db.algebra.core.Window;
+import org.polypheny.db.algebra.core.relational.RelScan;
+import org.polypheny.db.algebra.enumerable.EnumerableAlg;
+import org.polypheny.db.algebra.enumerable.EnumerableInterpretable;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.interpreter.InterpretableAlg;
+import org.polypheny.db.interpreter.Interpreters;
+import org.polypheny.db.processing.caching.ImplementationCache;
+import org.polypheny.db.runtime.ArrayBindable;
+import org.polypheny.db.runtime.Bindable;
+import org.polypheny.db.schema.types.FilterableEntity;
+import org.polypheny.db.schema.types.ProjectableFilterableEntity;
+import org.polypheny.db.schema.types.ScannableEntity;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Bindable which executes a plan with the interpreter until the code generated for the plan has been compiled on a
+ * background thread, and with the compiled code afterward. Together with the implementation cache, this avoids that
+ * the first execution of a query has to wait for the compilation.
+ * <p>
+ * Both tiers produce rows as arrays. The compiled code of plans with a single column is not an {@link ArrayBindable}
+ * and may produce the value of the column instead of a row, which is wrapped into an array of one element.
+ */
+@Slf4j
+class TieredBindable implements ArrayBindable<PolyValue> {
+
+    private static final ExecutorService COMPILER;
+
+    static {
+        RuntimeConfig.TIERED_EXECUTION_THREADS.setRequiresRestart( true );
+        final AtomicInteger threadNumber = new AtomicInteger();
+        COMPILER = Executors.newFixedThreadPool( RuntimeConfig.TIERED_EXECUTION_THREADS.getInteger(), r -> {
+            Thread thread = new Thread( r, "TieredCompiler-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    private final ArrayBindable<PolyValue> interpreted;
+    private final CompletableFuture<Compiled> compiled;
+    private final Map<String, Object> internalParameters;
+    private final boolean singleColumn;
+
+
+    private TieredBindable( ArrayBindable<PolyValue> interpreted, CompletableFuture<Compiled> compiled, Map<String, Object> internalParameters, boolean singleColumn ) {
+        this.interpreted = interpreted;
+        this.compiled = compiled;
+        this.internalParameters = internalParameters;
+        this.singleColumn = singleColumn;
+    }
+
+
+    /**
+     * Starts the compilation of the generated code in the background.
+     *
+     * @param internalParameters The parameters the code was generated with, added to the data context when executing the compiled code
+     */
+    static TieredBindable create( EnumerableAlg alg, ClassDeclaration expr, String code, Map<String, Object> internalParameters ) {
+        final int fieldCount = alg.getTupleType().getFieldCount();
+        final CompletableFuture<Compiled> compiled = CompletableFuture.supplyAsync(
+                () -> {
+                    final long start = System.nanoTime();
+                    final Bindable<Object> bindable = EnumerableInterpretable.compile( expr, code, fieldCount );
+                    return new Compiled( bindable, System.nanoTime() - start );
+                },
+                COMPILER );
+        compiled.exceptionally( e -> {
+            log.warn( "Background compilation failed, the plan is interpreted", e );
+            return null;
+        } );
+        return new TieredBindable( Interpreters.bindable( alg ), compiled, Map.copyOf( internalParameters ), fieldCount == 1 );
+    }
+
+
+    /**
+     * Checks whether the interpreter supports all operators of a plan.
+     */
+    static boolean isApplicable( AlgNode node ) {
+        final boolean supported;
+        if ( node instanceof RelScan<?> scan ) {
+            supported = scan.entity.unwrap( ProjectableFilterableEntity.class ).isPresent()
+                    || scan.entity.unwrap( FilterableEntity.class ).isPresent()
+                    || scan.entity.unwrap( ScannableEntity.class ).isPresent();
+        } else {
+            supported = node instanceof InterpretableAlg
+                    || node instanceof Filter
+                    || node instanceof Project
+                    || node instanceof Calc
+                    || node instanceof Values
+                    || node instanceof Aggregate
+                    || node instanceof Sort
+                    || node instanceof Union
+                    || node instanceof Join
+                    || node instanceof Window;
+        }
+        return supported && node.getInputs().stream().allMatch( TieredBindable::isApplicable );
+    }
+
+
+    /**
+     * Calls the consumer with the time it took to compile the generated code, once it is compiled. The consumer is not
+     * called if the compilation fails.
+     */
+    void whenCompiled( LongConsumer consumer ) {
+        compiled.thenAccept( c -> consumer.accept( c.nanos() ) );
+    }
+
+
+    @Override
+    public Enumerable<PolyValue[]> bind( DataContext dataContext ) {
+        final Compiled c = compiled.isDone() && !compiled.isCompletedExceptionally() ? compiled.join() : null;
+        if ( c == null ) {
+            ImplementationCache.INSTANCE.countTieredExecution( false );
+            return interpreted.bind( dataContext );
+        }
+        ImplementationCache.INSTANCE.countTieredExecution( true );
+        dataContext.addAll( internalParameters );
+        final Enumerable<Object> rows = c.bindable().bind( dataContext );
+        if ( singleColumn ) {
+            return rows.select( row -> row instanceof PolyValue[] array ? array : new PolyValue[]{ (PolyValue) row } );
+        }
+        //noinspection unchecked
+        return (Enumerable<PolyValue[]>) (Enumerable<?>) rows;
+    }
+
+
+    @Override
+    public Class<PolyValue[]> getElementType() {
+        return PolyValue[].class;
+    }
+
+
+    private record Compiled(Bindable<Object> bindable, long nanos) {
+
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.catalog.entity.allocation.AllocationPlacement;
+import org.polypheny.db.catalog.entity.logical.LogicalEntity;
+import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.catalog.snapshot.Snapshot;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationAction;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationTable;
+import org.polypheny.db.information.InformationText;
+import org.polypheny.db.routing.Router;
+import org.polypheny.db.routing.RoutingManager;
+
+
+/**
+ * Invalidates the entries of the {@link QueryPlanCache}, the {@link ImplementationCache} and the
+ * {@link RoutingPlanCache} which depend on entities changed by a new snapshot of the catalog.
+ * <p>
+ * For every entity with cached entries, its catalog state (the entity itself, its columns, keys, constraints, indexes,
+ * placements, partitions and allocations) is kept. When the catalog publishes a new snapshot, only the entries of
+ * entities whose state is no longer equal are invalidated.
+ */
+@Slf4j
+public class EntityCacheInvalidator implements PropertyChangeListener {
+
+    public static final EntityCacheInvalidator INSTANCE = new EntityCacheInvalidator();
+
+    private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+    private final Map<Long, Evictions> evictions = new ConcurrentHashMap<>();
+    // The last snapshot published by the catalog
+    private volatile Snapshot latest = null;
+
+
+    private EntityCacheInvalidator() {
+        registerMonitoringPage();
+    }
+
+
+    /**
+     * Starts tracking the given entities, if not already done. The tracked state is always taken from the latest
+     * published snapshot, so an entry created with an older snapshot cannot register an outdated state.
+     *
+     * @param snapshot The snapshot a cache entry depending on the entities was created with
+     * @return Whether the entities are still in the state of the snapshot
+     */
+    boolean track( Snapshot snapshot, Set<Long> entityIds ) {
+        boolean current = true;
+        for ( long entityId : entityIds ) {
+            final Tracked state = Tracked.of( snapshot, entityId );
+            Snapshot published;
+            Tracked known;
+            do {
+                // A snapshot published while registering has to see the registered state or is applied here
+                published = latest;
+                final Snapshot reference = published == null || published.id() < snapshot.id() ? snapshot : published;
+                known = tracked.compute( entityId, ( id, previous ) -> previous == null || previous.snapshotId() < reference.id()
+                        ? (reference == snapshot ? state : Tracked.of( reference, entityId ))
+                        : previous );
+            } while ( published != latest );
+            if ( !known.state().equals( state.state() ) ) {
+                current = false;
+            }
+        }
+        return current;
+    }
+
+
+    @Override
+    public void propertyChange( PropertyChangeEvent evt ) {
+        if ( !"snapshot".equals( evt.getPropertyName() ) || !(evt.getNewValue() instanceof Snapshot snapshot) ) {
+            return;
+        }
+        // Published before the tracked entities are compared, see track()
+        latest = snapshot;
+        if ( !RuntimeConfig.ENTITY_SCOPED_CACHE_INVALIDATION.getBoolean() ) {
+            return;
+        }
+        boolean changed = false;
+        for ( Map.Entry<Long, Tracked> entry : tracked.entrySet() ) {
+            final Tracked state = Tracked.of( snapshot, entry.getKey() );
+            if ( state.state().equals( entry.getValue().state() ) ) {
+                continue;
+            }
+            // Update the state before invalidating, so entries created concurrently with an older snapshot are rejected
+            if ( state.exists() ) {
+                tracked.put( entry.getKey(), state );
+            } else {
+                tracked.remove( entry.getKey() );
+            }
+            invalidate( entry.getKey(), entry.getValue().name() );
+            changed = true;
+        }
+        if ( changed ) {
+            RoutingManager.getInstance().getRouters().forEach( Router::resetCaches );
+        }
+    }
+
+
+    private void invalidate( long entityId, String name ) {
+        final long plans = QueryPlanCache.INSTANCE.invalidate( entityId );
+        final long implementations = ImplementationCache.INSTANCE.invalidate( entityId );
+        final long routingPlans = RoutingPlanCache.INSTANCE.invalidate( entityId );
+        final Evictions counts = evictions.computeIfAbsent( entityId, id -> new Evictions( name ) );
+        counts.plans().addAndGet( plans );
+        counts.implementations().addAndGet( implementations );
+        counts.routingPlans().addAndGet( routingPlans );
+        log.debug( "Invalidated {} query plans, {} implementations and {} routing plans of entity {}", plans, implementations, routingPlans, name );
+    }
+
+
+    /**
+     * Forgets all tracked entities, used if all caches are reset.
+     */
+    public void reset() {
+        tracked.clear();
+    }
+
+
+    private void registerMonitoringPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Cache Invalidation" );
+        im.addPage( page );
+
+        InformationGroup evictionGroup = new InformationGroup( page, "Evictions per Entity" ).setOrder( 1 );
+        im.addGroup( evictionGroup );
+
+        InformationTable evictionTable = new InformationTable(
+                evictionGroup,
+                Arrays.asList( "Entity", "Query Plans", "Implementations", "Routing Plans" )
+        );
+        evictionTable.setOrder( 1 );
+        im.registerInformation( evictionTable );
+
+        evictionGroup.setRefreshFunction( () -> {
+            evictionTable.reset();
+            List<Map.Entry<Long, Evictions>> entries = new ArrayList<>( evictions.entrySet() );
+            entries.sort( Map.Entry.comparingByKey( Comparator.naturalOrder() ) );
+            for ( Map.Entry<Long, Evictions> entry : entries ) {
+                Evictions counts = entry.getValue();
+                evictionTable.addRow( counts.name() + " (" + entry.getKey() + ")", counts.plans().get(), counts.implementations().get(), counts.routingPlans().get() );
+            }
+        } );
+
+        // Reset counters
+        InformationGroup resetGroup = new InformationGroup( page, "Reset" ).setOrder( 2 );
+        im.addGroup( resetGroup );
+
+        InformationText resetText = new InformationText( resetGroup, "Reset the eviction counters." );
+        resetText.setOrder( 1 );
+        im.registerInformation( resetText );
+
+        InformationAction resetAction = new InformationAction( resetGroup, "Reset", parameters -> {
+            evictions.clear();
+            evictionGroup.refresh();
+            return "Successfully reset the eviction counters!";
+        } );
+        resetAction.setOrder( 2 );
+        im.registerInformation( resetAction );
+    }
+
+
+    /**
+     * @param state The catalog objects the cached entries depend on, compared by equality
+     * @param snapshotId The id of the snapshot the state was taken from
+     */
+    private record Tracked(String name, List<Object> state, long snapshotId, boolean exists) {
+
+        static Tracked of( Snapshot snapshot, long entityId ) {
+            final Optional<? extends LogicalEntity> entity;
+            final List<Object> state = new ArrayList<>();
+            try {
+                entity = snapshot.getLogicalEntity( entityId );
+                if ( entity.isEmpty() ) {
+                    return new Tracked( String.valueOf( entityId ), List.of(), snapshot.id(), false );
+                }
+                state.add( entity.get() );
+                state.add( entity.get().name );
+                state.add( entity.get().namespaceId );
+                state.add( snapshot.alloc().getPartitionProperty( entityId ).orElse( null ) );
+                state.addAll( snapshot.alloc().getFromLogical( entityId ) );
+                state.addAll( snapshot.alloc().getPartitionsFromLogical( entityId ) );
+                for ( AllocationPlacement placement : snapshot.alloc().getPlacementsFromLogical( entityId ) ) {
+                    state.add( placement );
+                    state.addAll( snapshot.alloc().getColumns( placement.id ) );
+                }
+                if ( entity.get().dataModel == DataModel.RELATIONAL ) {
+                    state.addAll( snapshot.rel().getColumns( entityId ) );
+                    state.addAll( snapshot.rel().getTableKeys( entityId ) );
+                    state.addAll( snapshot.rel().getExportedKeys( entityId ) );
+                    state.addAll( snapshot.rel().getConstraints( entityId ) );
+                    state.addAll( snapshot.rel().getIndexes( entityId, false ) );
+                }
+            } catch ( RuntimeException e ) {
+                // The state cannot be determined, which is treated as a change in every snapshot
+                log.debug( "Could not determine the state of entity {}", entityId, e );
+                return new Tracked( String.valueOf( entityId ), List.of( new Object() ), snapshot.id(), true );
+            }
+            return new Tracked( entity.get().name, Collections.unmodifiableList( state ), snapshot.id(), true );
+        }
+
+    }
+
+
+    private record Evictions(String name, AtomicLong plans, AtomicLong implementations, AtomicLong routingPlans) {
+
+        Evictions( String name ) {
+            this( name, new AtomicLong(), new AtomicLong(), new AtomicLong() );
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.catalog.entity.Entity;
+import org.polypheny.db.catalog.entity.allocation.AllocationEntity;
+import org.polypheny.db.catalog.entity.logical.LogicalEntity;
+import org.polypheny.db.catalog.entity.physical.PhysicalEntity;
+import org.polypheny.db.catalog.snapshot.Snapshot;
+
+
+/**
+ * Index from the ids of logical entities to the keys of the cache entries which depend on them.
+ *
+ * @param <K> Type of the cache keys
+ */
+class EntityDependencies<K> {
+
+    private final ConcurrentHashMap<Long, Set<K>> keysByEntity = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, Set<Long>> entitiesByKey = new ConcurrentHashMap<>();
+
+
+    /**
+     * Registers the entities an entry of the cache depends on.
+     *
+     * @param snapshot The snapshot the entry was created with
+     * @return Whether the entities did not change since the snapshot, otherwise the entry has to be invalidated
+     */
+    boolean add( K key, Set<Long> entityIds, Snapshot snapshot ) {
+        entitiesByKey.put( key, entityIds );
+        for ( long entityId : entityIds ) {
+            keysByEntity.computeIfAbsent( entityId, k -> ConcurrentHashMap.newKeySet() ).add( key );
+        }
+        // Checked after registering the entry, so a concurrent invalidation either sees the entry or changed the state
+        return EntityCacheInvalidator.INSTANCE.track( snapshot, entityIds );
+    }
+
+
+    /**
+     * @return The keys of all entries which depend on the entity
+     */
+    Set<K> remove( long entityId ) {
+        final Set<K> keys = keysByEntity.remove( entityId );
+        if ( keys == null ) {
+            return Set.of();
+        }
+        keys.forEach( this::unregister );
+        return keys;
+    }
+
+
+    /**
+     * Keeps the index in sync with entries removed by the cache itself, e.g. because its size limit is reached.
+     */
+    RemovalListener<K, Object> listener() {
+        return notification -> {
+            // A replaced entry has the same key and therefore depends on the same entities
+            if ( notification.getCause() != RemovalCause.REPLACED && notification.getKey() != null ) {
+                unregister( notification.getKey() );
+            }
+        };
+    }
+
+
+    /**
+     * Removes an entry which is no longer cached from the index.
+     */
+    void unregister( K key ) {
+        final Set<Long> entityIds = entitiesByKey.remove( key );
+        if ( entityIds == null ) {
+            return;
+        }
+        for ( long entityId : entityIds ) {
+            keysByEntity.computeIfPresent( entityId, ( id, keys ) -> {
+                keys.remove( key );
+                return keys.isEmpty() ? null : keys;
+            } );
+        }
+    }
+
+
+    void clear() {
+        keysByEntity.clear();
+        entitiesByKey.clear();
+    }
+
+
+    /**
+     * @return The ids of the logical entities accessed by a plan
+     */
+    static Set<Long> of( AlgNode node ) {
+        final Set<Long> entityIds = new HashSet<>();
+        collect( node, entityIds );
+        return entityIds;
+    }
+
+
+    private static void collect( AlgNode node, Set<Long> entityIds ) {
+        final Entity entity = node.getEntity();
+        if ( entity instanceof AllocationEntity allocation ) {
+            entityIds.add( allocation.logicalId );
+        } else if ( entity instanceof PhysicalEntity physical ) {
+            entityIds.add( physical.logicalId );
+        } else if ( entity instanceof LogicalEntity ) {
+            entityIds.add( entity.id );
+        }
+        for ( AlgNode input : node.getInputs() ) {
+            collect( input, entityIds );
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+
+/**
+ * Cache bounded by the number of entries and their total size, which evicts entries according to the GreedyDual-Size
+ * policy: Every entry has a priority of {@code L + cost / size}, which is renewed on every access. The entry with the
+ * lowest priority is evicted first and its priority becomes the new {@code L}. Entries which are expensive to recreate
+ * relative to the memory they occupy are therefore kept longer, while the growing {@code L} ages out entries which are
+ * no longer accessed.
+ * <p>
+ * Lookups do not take the lock of the cache. They only record the renewed priority of the entry, which is applied
+ * when the entry is about to be evicted: an entry accessed since it was queued is queued again with its renewed
+ * priority instead of being evicted.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+class GreedyDualSizeCache<K, V> {
+
+    private final long maximumEntries;
+    private final long maximumBytes;
+    private final Consumer<K> evictionListener;
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final TreeSet<Entry<K, V>> queue = new TreeSet<>( Comparator.<Entry<K, V>>comparingDouble( e -> e.priority ).thenComparingLong( e -> e.sequence ) );
+
+    private volatile double inflation = 0;
+    private long sequence = 0;
+    private long bytes = 0;
+
+
+    /**
+     * @param evictionListener Called with the key of every entry removed to make room for a new one, except for the new entry itself
+     */
+    GreedyDualSizeCache( long maximumEntries, long maximumBytes, Consumer<K> evictionListener ) {
+        this.maximumEntries = maximumEntries;
+        this.maximumBytes = maximumBytes;
+        this.evictionListener = evictionListener;
+    }
+
+
+    Entry<K, V> getIfPresent( K key ) {
+        final Entry<K, V> entry = entries.get( key );
+        if ( entry != null ) {
+            entry.renewed = priority( entry.cost, entry.size );
+        }
+        return entry;
+    }
+
+
+    boolean contains( K key ) {
+        return entries.containsKey( key );
+    }
+
+
+    /**
+     * @param size Estimated size of the entry in bytes
+     * @param cost Cost to recreate the entry, e.g. in nanoseconds
+     * @return Whether the entry is in the cache, which is not the case if it has the lowest priority of all entries
+     * and had to be evicted right away
+     */
+    synchronized boolean put( K key, V value, long size, long cost ) {
+        remove( key );
+        if ( size > maximumBytes ) {
+            return false;
+        }
+        final Entry<K, V> entry = new Entry<>( key, value, Math.max( size, 1 ), Math.max( cost, 1 ) );
+        entry.priority = priority( entry.cost, entry.size );
+        entry.renewed = entry.priority;
+        entry.sequence = sequence++;
+        entries.put( key, entry );
+        queue.add( entry );
+        bytes += entry.size;
+
+        while ( entries.size() > maximumEntries || bytes > maximumBytes ) {
+            final Entry<K, V> victim = queue.pollFirst();
+            if ( victim.renewed > victim.priority ) {
+                // Accessed since it was queued, the renewed priority only changes with the inflation and is applied once
+                victim.priority = victim.renewed;
+                victim.sequence = sequence++;
+                queue.add( victim );
+                continue;
+            }
+            inflation = victim.priority;
+            entries.remove( victim.key );
+            bytes -= victim.size;
+            if ( victim != entry ) {
+                evictionListener.accept( victim.key );
+            }
+        }
+        return entries.containsKey( key );
+    }
+
+
+    /**
+     * Adds to the cost of an entry, for work that only completed after the entry was put.
+     *
+     * @param value The value the cost belongs to, nothing is changed if the entry was replaced in the meantime
+     */
+    synchronized void addCost( K key, V value, long cost ) {
+        final Entry<K, V> entry = entries.get( key );
+        if ( entry == null || entry.value != value || cost <= 0 ) {
+            return;
+        }
+        final double increase = (double) cost / entry.size;
+        queue.remove( entry );
+        entry.cost += cost;
+        entry.priority += increase;
+        entry.renewed = Math.max( entry.renewed + increase, entry.priority );
+        queue.add( entry );
+    }
+
+
+    synchronized void invalidate( K key ) {
+        remove( key );
+    }
+
+
+    synchronized void invalidateAll( Iterable<K> keys ) {
+        keys.forEach( this::remove );
+    }
+
+
+    synchronized void invalidateAll() {
+        entries.clear();
+        queue.clear();
+        inflation = 0;
+        bytes = 0;
+    }
+
+
+    long size() {
+        return entries.size();
+    }
+
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+
+    private void remove( K key ) {
+        final Entry<K, V> entry = entries.remove( key );
+        if ( entry != null ) {
+            queue.remove( entry );
+            bytes -= entry.size;
+        }
+    }
+
+
+    private double priority( long cost, long size ) {
+        return inflation + (double) cost / size;
+    }
+
+
+    static final class Entry<K, V> {
+
+        final K key;
+        final V value;
+        final long size;
+        volatile long cost;
+
+        // Only modified while the entry is not part of the queue
+        private double priority;
+        private long sequence;
+        // Priority as of the last access, which replaces the priority the next time the entry is polled from the queue
+        private volatile double renewed;
+
+
+        private Entry( K key, V value, long size, long cost ) {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+            this.cost = cost;
+        }
+
+    }
+
+}
@@ -16,13 +16,13 @@
 
 package org.polypheny.db.processing.caching;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.catalog.snapshot.Snapshot;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.InformationAction;
 import org.polypheny.db.information.InformationGraph;
@@ -41,35 +41,99 @@ public class ImplementationCache {
 
     public static final ImplementationCache INSTANCE = new ImplementationCache();
 
-    private final Cache<String, PreparedResult<PolyValue>> implementationCache;
+    /**
+     * Rough size of a cached implementation in bytes, besides its generated code
+     */
+    private static final long BASE_SIZE = 4096;
+
+    private final GreedyDualSizeCache<String, PreparedResult<PolyValue>> implementationCache;
+    private final EntityDependencies<String> dependencies = new EntityDependencies<>();
 
     private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
     private final AtomicLong missesCounter = new AtomicLong(); // Number of requests for which the cache hasn't contained the value
     private final AtomicLong uncacheableCounter = new AtomicLong(); // Number of requests for which the cache hasn't contained the value
+    private final AtomicLong evictionsCounter = new AtomicLong(); // Number of entries removed to make room for new ones
+    private final AtomicLong savedNanos = new AtomicLong(); // Implementation time saved by hits
+    private final AtomicLong interpretedCounter = new AtomicLong(); // Number of tiered executions before the code was compiled
+    private final AtomicLong compiledCounter = new AtomicLong(); // Number of tiered executions with the compiled code
 
 
     public ImplementationCache() {
         RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.setRequiresRestart( true );
-        implementationCache = CacheBuilder.newBuilder()
-                .maximumSize( RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.getInteger() )
-                .build();
+        RuntimeConfig.IMPLEMENTATION_CACHING_MEMORY.setRequiresRestart( true );
+        implementationCache = new GreedyDualSizeCache<>(
+                RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.getInteger(),
+                RuntimeConfig.IMPLEMENTATION_CACHING_MEMORY.getInteger() * 1024L * 1024L,
+                key -> {
+                    evictionsCounter.incrementAndGet();
+                    dependencies.unregister( key );
+                } );
         registerMonitoringPage();
     }
 
 
     public PreparedResult<PolyValue> getIfPresent( AlgNode parameterizedNode ) {
-        PreparedResult<PolyValue> preparedResult = implementationCache.getIfPresent( parameterizedNode.algCompareString() );
-        if ( preparedResult == null ) {
+        GreedyDualSizeCache.Entry<String, PreparedResult<PolyValue>> entry = implementationCache.getIfPresent( parameterizedNode.algCompareString() );
+        if ( entry == null ) {
             missesCounter.incrementAndGet();
-        } else {
-            hitsCounter.incrementAndGet();
+            return null;
+        }
+        hitsCounter.incrementAndGet();
+        savedNanos.addAndGet( entry.cost );
+        return entry.value;
+    }
+
+
+    /**
+     * Caches an implementation. Implementations which took long to create relative to their size are kept longer.
+     *
+     * @param implementationNanos The time it took to implement the plan
+     * @param snapshot The snapshot the plan was implemented with
+     */
+    public void put( AlgNode parameterizedNode, PreparedResult<PolyValue> preparedResult, long implementationNanos, Snapshot snapshot ) {
+        String key = parameterizedNode.algCompareString();
+        if ( !implementationCache.put( key, preparedResult, estimateSize( key, preparedResult ), implementationNanos ) ) {
+            // A previous entry with the same key was replaced without notifying the eviction listener
+            dependencies.unregister( key );
+            return;
+        }
+        if ( !dependencies.add( key, EntityDependencies.of( parameterizedNode ), snapshot ) ) {
+            implementationCache.invalidate( key );
+            dependencies.unregister( key );
+        } else if ( !implementationCache.contains( key ) ) {
+            // Evicted before its dependencies were registered, in which case the eviction listener had nothing to remove
+            dependencies.unregister( key );
         }
-        return preparedResult;
     }
 
 
-    public void put( AlgNode parameterizedNode, PreparedResult<PolyValue> preparedResult ) {
-        implementationCache.put( parameterizedNode.algCompareString(), preparedResult );
+    /**
+     * Adds the time it took to compile the code of an implementation in the background to its cost, since hits also
+     * save the compilation.
+     */
+    public void addCompilationTime( AlgNode parameterizedNode, PreparedResult<PolyValue> preparedResult, long compilationNanos ) {
+        implementationCache.addCost( parameterizedNode.algCompareString(), preparedResult, compilationNanos );
+    }
+
+
+    /**
+     * Estimates the memory held by an implementation, which is dominated by its generated code and classes.
+     */
+    private static long estimateSize( String key, PreparedResult<PolyValue> preparedResult ) {
+        String code = preparedResult.getCode();
+        return BASE_SIZE + 2L * key.length() + (code == null ? 0 : 4L * code.length());
+    }
+
+
+    /**
+     * Invalidates all implementations of plans which access the given entity.
+     *
+     * @return The number of invalidated implementations
+     */
+    public long invalidate( long entityId ) {
+        Set<String> keys = dependencies.remove( entityId );
+        implementationCache.invalidateAll( keys );
+        return keys.size();
     }
 
 
@@ -78,11 +142,36 @@ public void countUncacheable() {
     }
 
 
+    /**
+     * Counts an execution of an implementation with tiered execution.
+     *
+     * @param compiled Whether the compiled code was executed or the plan was interpreted
+     */
+    public void countTieredExecution( boolean compiled ) {
+        (compiled ? compiledCounter : interpretedCounter).incrementAndGet();
+    }
+
+
+    public long getInterpretedExecutions() {
+        return interpretedCounter.get();
+    }
+
+
+    public long getCompiledExecutions() {
+        return compiledCounter.get();
+    }
+
+
     public void reset() {
         implementationCache.invalidateAll();
+        dependencies.clear();
         hitsCounter.set( 0 );
         missesCounter.set( 0 );
         uncacheableCounter.set( 0 );
+        evictionsCounter.set( 0 );
+        savedNanos.set( 0 );
+        interpretedCounter.set( 0 );
+        compiledCounter.set( 0 );
     }
 
 
@@ -102,6 +191,10 @@ private void registerMonitoringPage() {
             generalKv.putPair( "Status", RuntimeConfig.IMPLEMENTATION_CACHING.getBoolean() ? "Active" : "Disabled" );
             generalKv.putPair( "Current Cache Size", String.valueOf( implementationCache.size() ) );
             generalKv.putPair( "Maximum Cache Size", String.valueOf( RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.getInteger() ) );
+            generalKv.putPair( "Estimated Memory", implementationCache.bytes() / 1024 + " KB" );
+            generalKv.putPair( "Maximum Memory", RuntimeConfig.IMPLEMENTATION_CACHING_MEMORY.getInteger() + " MB" );
+            generalKv.putPair( "Evictions", String.valueOf( evictionsCounter.get() ) );
+            generalKv.putPair( "Saved Implementation Time", savedNanos.get() / 1_000_000 + " ms" );
         } );
 
         // Hit ratio
@@ -147,11 +240,23 @@ private void registerMonitoringPage() {
             hitInfoTable.addRow( "Uncacheable", df.format( total == 0 ? 0 : (uncacheablePercent * 100) ) + " %", uncacheable );
         } );
 
+        // Tiered execution
+        InformationGroup tieredGroup = new InformationGroup( page, "Tiered Execution" ).setOrder( 3 );
+        im.addGroup( tieredGroup );
+
+        InformationKeyValue tieredKv = new InformationKeyValue( tieredGroup );
+        im.registerInformation( tieredKv );
+        tieredGroup.setRefreshFunction( () -> {
+            tieredKv.putPair( "Status", RuntimeConfig.TIERED_EXECUTION.getBoolean() ? "Active" : "Disabled" );
+            tieredKv.putPair( "Interpreted Executions", String.valueOf( interpretedCounter.get() ) );
+            tieredKv.putPair( "Compiled Executions", String.valueOf( compiledCounter.get() ) );
+        } );
+
         // Invalidate cache
-        InformationGroup invalidateGroup = new InformationGroup( page, "Invalidate" ).setOrder( 3 );
+        InformationGroup invalidateGroup = new InformationGroup( page, "Invalidate" ).setOrder( 4 );
         im.addGroup( invalidateGroup );
 
-        InformationText invalidateText = new InformationText( invalidateGroup, "Invalidate the implementation cache including the hit and miss counters." );
+        InformationText invalidateText = new InformationText( invalidateGroup, "Invalidate the implementation cache including the hit, miss, eviction and execution counters." );
         invalidateText.setOrder( 1 );
         im.registerInformation( invalidateText );
 
@@ -159,6 +264,7 @@ private void registerMonitoringPage() {
             reset();
             generalGroup.refresh();
             hitRatioGroup.refresh();
+            tieredGroup.refresh();
             return "Successfully invalidated the implementation cache!";
         } );
         invalidateAction.setOrder( 2 );
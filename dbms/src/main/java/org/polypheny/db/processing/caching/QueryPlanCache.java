@@ -21,8 +21,10 @@
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.catalog.snapshot.Snapshot;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.InformationAction;
 import org.polypheny.db.information.InformationGraph;
@@ -40,6 +42,7 @@ public class QueryPlanCache {
     public static final QueryPlanCache INSTANCE = new QueryPlanCache();
 
     private final Cache<String, AlgNode> planCache;
+    private final EntityDependencies<String> dependencies = new EntityDependencies<>();
 
     private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
     private final AtomicLong missesCounter = new AtomicLong(); // Number of requests for which the cache hasn't contained the value
@@ -49,6 +52,7 @@ public QueryPlanCache() {
         RuntimeConfig.QUERY_PLAN_CACHING_SIZE.setRequiresRestart( true );
         planCache = CacheBuilder.newBuilder()
                 .maximumSize( RuntimeConfig.QUERY_PLAN_CACHING_SIZE.getInteger() )
+                .removalListener( dependencies.listener() )
                 //  .expireAfterWrite(10, TimeUnit.MINUTES)
                 .build();
         registerMonitoringPage();
@@ -66,14 +70,31 @@ public AlgNode getIfPresent( AlgNode parameterizedNode ) {
     }
 
 
-    public void put( AlgNode parameterizedNode, AlgNode optimalNode ) {
-        planCache.put( parameterizedNode.algCompareString(), optimalNode );
+    public void put( AlgNode parameterizedNode, AlgNode optimalNode, Snapshot snapshot ) {
+        String key = parameterizedNode.algCompareString();
+        planCache.put( key, optimalNode );
+        if ( !dependencies.add( key, EntityDependencies.of( parameterizedNode ), snapshot ) ) {
+            planCache.invalidate( key );
+        }
+    }
+
+
+    /**
+     * Invalidates all plans which access the given entity.
+     *
+     * @return The number of invalidated plans
+     */
+    public long invalidate( long entityId ) {
+        Set<String> keys = dependencies.remove( entityId );
+        planCache.invalidateAll( keys );
+        return keys.size();
     }
 
 
     public void reset() {
         ImplementationCache.INSTANCE.reset();
         planCache.invalidateAll();
+        dependencies.clear();
         hitsCounter.set( 0 );
         missesCounter.set( 0 );
     }
@@ -26,6 +26,7 @@
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.catalog.snapshot.Snapshot;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.InformationAction;
 import org.polypheny.db.information.InformationGraph;
@@ -50,6 +51,7 @@ public class RoutingPlanCache {
 
     public static final RoutingPlanCache INSTANCE = new RoutingPlanCache();
     private final Cache<Pair<String, Set<Long>>, List<CachedProposedRoutingPlan>> planCache;
+    private final EntityDependencies<Pair<String, Set<Long>>> dependencies = new EntityDependencies<>();
 
     private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
     private final AtomicLong missesCounter = new AtomicLong(); // Number of requests when the cache didn't contain the value
@@ -59,6 +61,7 @@ public RoutingPlanCache() {
         RuntimeConfig.ROUTING_PLAN_CACHING_SIZE.setRequiresRestart( true );
         planCache = CacheBuilder.newBuilder()
                 .maximumSize( RuntimeConfig.ROUTING_PLAN_CACHING_SIZE.getInteger() )
+                .removalListener( dependencies.listener() )
                 .build();
         registerMonitoringPage();
     }
@@ -81,13 +84,30 @@ public List<CachedProposedRoutingPlan> getIfPresent( String queryId, Set<Long> p
     }
 
 
-    public void put( String queryId, Set<Long> partitionIds, List<CachedProposedRoutingPlan> routingPlans ) {
-        planCache.put( new Pair<>( queryId, partitionIds ), routingPlans );
+    public void put( String queryId, Set<Long> partitionIds, List<CachedProposedRoutingPlan> routingPlans, Set<Long> entityIds, Snapshot snapshot ) {
+        Pair<String, Set<Long>> key = new Pair<>( queryId, partitionIds );
+        planCache.put( key, routingPlans );
+        if ( !dependencies.add( key, entityIds, snapshot ) ) {
+            planCache.invalidate( key );
+        }
+    }
+
+
+    /**
+     * Invalidates all routing plans of queries which access the given entity.
+     *
+     * @return The number of invalidated routing plans
+     */
+    public long invalidate( long entityId ) {
+        Set<Pair<String, Set<Long>>> keys = dependencies.remove( entityId );
+        planCache.invalidateAll( keys );
+        return keys.size();
     }
 
 
     public void reset() {
         planCache.invalidateAll();
+        dependencies.clear();
         hitsCounter.set( 0 );
         missesCounter.set( 0 );
     }
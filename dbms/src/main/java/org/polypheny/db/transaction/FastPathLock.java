@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.transaction.Transaction.AccessMode;
+
+
+/**
+ * Entity lock which grants shared access by compare-and-set on a reader count. The monitor and the
+ * {@link WaitForGraph} are only involved if an exclusive lock is held or requested.
+ * <p>
+ * The {@code state} is the number of shared holders, or {@link #EXCLUSIVE} if the lock is held exclusively.
+ * Waiting transactions re-check the lock state periodically, as shared holders register themselves
+ * without holding the monitor and are therefore only eventually visible in the wait-for graph.
+ */
+public class FastPathLock implements Lock {
+
+    private static final int EXCLUSIVE = -1;
+    private static final long RECHECK_INTERVAL_MS = 50;
+
+    private final AtomicInteger state = new AtomicInteger( 0 );
+    private final Set<TransactionImpl> exclusiveWaiters = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger waiting = new AtomicInteger( 0 );
+    private final Set<TransactionImpl> owners = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition waiters = lock.newCondition();
+    private final WaitForGraph waitForGraph;
+
+
+    FastPathLock( WaitForGraph waitForGraph ) {
+        this.waitForGraph = waitForGraph;
+    }
+
+
+    @Override
+    public void acquire( TransactionImpl txn, LockMode lockMode, long deadline ) throws InterruptedException, TimeoutException {
+        if ( lockMode == LockMode.SHARED ) {
+            if ( !tryAcquireShared( txn ) ) {
+                acquireSharedSlow( txn, deadline );
+            }
+            txn.updateAccessMode( AccessMode.READ_ACCESS );
+        } else if ( lockMode == LockMode.EXCLUSIVE ) {
+            if ( !tryAcquireExclusive( txn ) ) {
+                acquireExclusiveSlow( txn, deadline );
+            }
+            txn.updateAccessMode( AccessMode.WRITE_ACCESS );
+        } else {
+            throw new GenericRuntimeException( "Lock mode does not exist" );
+        }
+    }
+
+
+    @Override
+    public void release( TransactionImpl txn ) {
+        if ( !owners.remove( txn ) ) {
+            return;
+        }
+        int current;
+        do {
+            current = state.get();
+        } while ( !state.compareAndSet( current, current == EXCLUSIVE || current == 0 ? 0 : current - 1 ) );
+
+        if ( waiting.get() > 0 ) {
+            lock.lock();
+            try {
+                waitForGraph.remove( txn );
+                waiters.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    @Override
+    public void upgrade( TransactionImpl txn, long deadline ) throws InterruptedException, TimeoutException {
+        if ( state.get() == EXCLUSIVE && owners.contains( txn ) ) {
+            return;
+        }
+        if ( state.compareAndSet( 1, EXCLUSIVE ) ) {
+            return;
+        }
+        exclusiveWaiters.add( txn );
+        try {
+            awaitState( txn, () -> state.compareAndSet( 1, EXCLUSIVE ), false, deadline );
+        } finally {
+            exclusiveWaiters.remove( txn );
+        }
+    }
+
+
+    @Override
+    public LockMode getMode() {
+        int current = state.get();
+        if ( current == EXCLUSIVE ) {
+            return LockMode.EXCLUSIVE;
+        } else if ( current > 0 ) {
+            return LockMode.SHARED;
+        }
+        return null;
+    }
+
+
+    @Override
+    public Set<TransactionImpl> getOwners() {
+        return owners;
+    }
+
+
+    private boolean tryAcquireShared( TransactionImpl txn ) {
+        // Yield to waiting writers, otherwise a steady stream of readers starves them
+        while ( exclusiveWaiters.isEmpty() ) {
+            int current = state.get();
+            if ( current == EXCLUSIVE ) {
+                return false;
+            }
+            if ( state.compareAndSet( current, current + 1 ) ) {
+                owners.add( txn );
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private boolean tryAcquireExclusive( TransactionImpl txn ) {
+        if ( state.compareAndSet( 0, EXCLUSIVE ) ) {
+            owners.add( txn );
+            return true;
+        }
+        return false;
+    }
+
+
+    private void acquireSharedSlow( TransactionImpl txn, long deadline ) throws InterruptedException, TimeoutException {
+        awaitState( txn, () -> {
+            int current = state.get();
+            // Queued writers are served first, also for readers which already had to wait
+            if ( exclusiveWaiters.isEmpty() && current != EXCLUSIVE && state.compareAndSet( current, current + 1 ) ) {
+                owners.add( txn );
+                return true;
+            }
+            return false;
+        }, true, deadline );
+    }
+
+
+    private void acquireExclusiveSlow( TransactionImpl txn, long deadline ) throws InterruptedException, TimeoutException {
+        exclusiveWaiters.add( txn );
+        try {
+            awaitState( txn, () -> tryAcquireExclusive( txn ), false, deadline );
+        } finally {
+            exclusiveWaiters.remove( txn );
+        }
+    }
+
+
+    /**
+     * Waits until the transition succeeds.
+     *
+     * @param behindWriters if the waiting transaction is also blocked by queued exclusive waiters, which is the case for shared requests
+     */
+    private void awaitState( TransactionImpl txn, StateTransition transition, boolean behindWriters, long deadline ) throws InterruptedException, TimeoutException {
+        long waitStart = System.nanoTime();
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while ( !transition.tryApply() ) {
+                Set<TransactionImpl> blockers = owners.stream().filter( owner -> !owner.equals( txn ) ).collect( Collectors.toSet() );
+                if ( behindWriters ) {
+                    exclusiveWaiters.stream().filter( writer -> !writer.equals( txn ) ).forEach( blockers::add );
+                }
+                waitForGraph.waitFor( txn, blockers, this::signalWaiters );
+                if ( waitForGraph.isVictim( txn ) ) {
+                    throw new InterruptedException( "Aborted to resolve a deadlock" );
+                }
+                long interval = TimeUnit.MILLISECONDS.toNanos( RECHECK_INTERVAL_MS );
+                waiters.awaitNanos( deadline == NO_DEADLINE ? interval : Math.min( interval, Lock.remainingNanos( deadline ) ) );
+            }
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+            waitForGraph.stopWaiting( txn, System.nanoTime() - waitStart );
+        }
+    }
+
+
+    private void signalWaiters() {
+        lock.lock();
+        try {
+            waiters.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface StateTransition {
+
+        boolean tryApply();
+
+    }
+
+}
@@ -16,150 +16,47 @@
 
 package org.polypheny.db.transaction;
 
-import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
-import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
-import org.polypheny.db.transaction.Transaction.AccessMode;
+import java.util.concurrent.TimeoutException;
 
 
-// Based on code taken from https://github.com/dstibrany/LockManager
-public class Lock {
-
-    private final Set<TransactionImpl> owners = new HashSet<>();
-    private final ReentrantLock lock = new ReentrantLock( true );
-    private final Condition waiters = lock.newCondition();
-    private final WaitForGraph waitForGraph;
-    private int xLockCount = 0;
-    private int sLockCount = 0;
-
-
-    Lock( WaitForGraph waitForGraph ) {
-        this.waitForGraph = waitForGraph;
-    }
-
-
-    void acquire( TransactionImpl txn, LockMode lockMode ) throws InterruptedException {
-        if ( lockMode == LockMode.SHARED ) {
-            acquireSLock( txn );
-            txn.updateAccessMode( AccessMode.READ_ACCESS );
-        } else if ( lockMode == LockMode.EXCLUSIVE ) {
-            acquireXLock( txn );
-            txn.updateAccessMode( AccessMode.WRITE_ACCESS );
-        } else {
-            throw new GenericRuntimeException( "Lock mode does not exist" );
-        }
-    }
-
-
-    void release( TransactionImpl txn ) {
-        lock.lock();
-        try {
-            if ( sLockCount > 0 ) {
-                sLockCount--;
-            }
-            if ( xLockCount == 1 ) {
-                xLockCount = 0;
-            }
-
-            owners.remove( txn );
-            waitForGraph.remove( txn );
-
-            waiters.signalAll();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-
-    void upgrade( TransactionImpl txn ) throws InterruptedException {
-        lock.lock();
-        try {
-            if ( owners.contains( txn ) && isXLocked() ) {
-                return;
-            }
-            while ( isXLocked() || sLockCount > 1 ) {
-                Set<TransactionImpl> ownersWithSelfRemoved = owners.stream().filter( ownerTxn -> !ownerTxn.equals( txn ) ).collect( Collectors.toSet() );
-                waitForGraph.add( txn, ownersWithSelfRemoved );
-                waitForGraph.detectDeadlock( txn );
-                waiters.await();
-            }
-            sLockCount = 0;
-            xLockCount = 1;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-
-    LockMode getMode() {
-        LockMode lockMode = null;
-        lock.lock();
+/**
+ * A lock on a single entity, which can be held by multiple transactions in {@link LockMode#SHARED} mode or
+ * by a single transaction in {@link LockMode#EXCLUSIVE} mode.
+ * <p>
+ * Deadlines are given in {@link System#nanoTime()} time, {@link #NO_DEADLINE} waits without limit.
+ */
+public interface Lock {
 
-        try {
-            if ( isXLocked() ) {
-                lockMode = LockMode.EXCLUSIVE;
-            } else if ( isSLocked() ) {
-                lockMode = LockMode.SHARED;
-            }
-        } finally {
-            lock.unlock();
-        }
+    long NO_DEADLINE = Long.MAX_VALUE;
 
-        return lockMode;
-    }
+    void acquire( TransactionImpl txn, LockMode lockMode, long deadline ) throws InterruptedException, TimeoutException;
 
+    void release( TransactionImpl txn );
 
-    Set<TransactionImpl> getOwners() {
-        return owners;
-    }
+    void upgrade( TransactionImpl txn, long deadline ) throws InterruptedException, TimeoutException;
 
+    /**
+     * Returns the mode the lock is currently held in or {@code null} if it is not held at all.
+     */
+    LockMode getMode();
 
-    private void acquireSLock( TransactionImpl txn ) throws InterruptedException {
-        lock.lock();
-        try {
-            while ( isXLocked() || lock.hasWaiters( waiters ) ) {
-                waitForGraph.add( txn, owners );
-                waitForGraph.detectDeadlock( txn );
-                waiters.await();
-            }
-            sLockCount++;
-            owners.add( txn );
-        } finally {
-            lock.unlock();
-        }
-    }
+    Set<TransactionImpl> getOwners();
 
 
-    private void acquireXLock( TransactionImpl txn ) throws InterruptedException {
-        lock.lock();
-        try {
-            while ( isXLocked() || isSLocked() ) {
-                waitForGraph.add( txn, owners );
-                waitForGraph.detectDeadlock( txn );
-                waiters.await();
-            }
-            xLockCount = 1;
-            owners.add( txn );
-        } finally {
-            lock.unlock();
+    /**
+     * Returns the nanoseconds left until the deadline or throws if it has passed.
+     */
+    static long remainingNanos( long deadline ) throws TimeoutException {
+        long remaining = deadline - System.nanoTime();
+        if ( remaining <= 0 ) {
+            throw new TimeoutException( "Timeout while waiting for a lock" );
         }
+        return remaining;
     }
 
 
-    private boolean isXLocked() {
-        return xLockCount == 1;
-    }
-
-
-    private boolean isSLocked() {
-        return sLockCount > 0;
-    }
-
-
-    public enum LockMode {
+    enum LockMode {
         SHARED,
         EXCLUSIVE
     }
@@ -18,18 +18,26 @@
 
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
 import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier.NamespaceLevel;
 import org.polypheny.db.transaction.Lock.LockMode;
+import org.polypheny.db.transaction.Transaction.AccessMode;
 import org.polypheny.db.util.DeadlockException;
+import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
+import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
+import org.polypheny.db.util.background.BackgroundTaskManager;
 
 
 // Based on code taken from https://github.com/dstibrany/LockManager
@@ -42,20 +50,46 @@ public class LockManager {
     private final ConcurrentHashMap<EntityIdentifier, Lock> lockTable;
     @Getter
     private final WaitForGraph waitForGraph;
+    private final Supplier<LockingStrategy> strategy;
 
 
     private LockManager() {
-        lockTable = new ConcurrentHashMap<>();
-        waitForGraph = new WaitForGraph();
+        this(
+                () -> (LockingStrategy) RuntimeConfig.LOCKING_STRATEGY.getEnum(),
+                () -> (DeadlockDetection) RuntimeConfig.DEADLOCK_DETECTION.getEnum() );
+        waitForGraph.getStatistics().registerMonitoringPage();
+        BackgroundTaskManager.INSTANCE.registerTask(
+                waitForGraph::sweep,
+                "Detect deadlocks between waiting transactions",
+                TaskPriority.HIGH,
+                TaskSchedulingType.EVERY_SECOND_FIXED );
+    }
+
+
+    LockManager( Supplier<LockingStrategy> strategy, Supplier<DeadlockDetection> detection ) {
+        this.lockTable = new ConcurrentHashMap<>();
+        this.waitForGraph = new WaitForGraph( detection );
+        this.strategy = strategy;
     }
 
 
     public void lock( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction ) throws DeadlockException {
+        lock( idAccessMap, transaction, RuntimeConfig.LOCK_WAIT_TIMEOUT.getInteger() );
+    }
+
+
+    /**
+     * Acquires the locks for the given entities.
+     *
+     * @param timeout time in milliseconds to wait for all locks, 0 means infinite
+     */
+    public void lock( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction, long timeout ) throws DeadlockException {
+        long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeout ) : Lock.NO_DEADLINE;
         // Decide on which locking  approach to focus
         if ( transaction.acceptsOutdated() ) {
             handleSecondaryLocks( idAccessMap, transaction );
         } else {
-            handlePrimaryLocks( idAccessMap, transaction );
+            handlePrimaryLocks( idAccessMap, transaction, deadline );
         }
     }
 
@@ -63,35 +97,47 @@ public void lock( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAcces
     /**
      * Used in traditional transactional workload to lck all entities that will eagerly receive any update
      */
-    private void handlePrimaryLocks( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction ) throws DeadlockException {
-        Iterator<Entry<EntityIdentifier, LockMode>> iter = idAccessMap.stream().sorted( ( a, b ) -> Math.toIntExact( a.getKey().entityId - b.getKey().entityId ) ).iterator();
-        Entry<EntityIdentifier, LockMode> pair;
-        while ( iter.hasNext() ) {
-            pair = iter.next();
-            lockTable.putIfAbsent( pair.getKey(), new Lock( waitForGraph ) );
-
-            Lock lock = lockTable.get( pair.getKey() );
+    private void handlePrimaryLocks( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction, long deadline ) throws DeadlockException {
+        // Acquiring the locks in a global order prevents deadlocks between transactions locking the same entities
+        Collection<Entry<EntityIdentifier, LockMode>> ordered = idAccessMap.size() > 1
+                ? idAccessMap.stream().sorted( Comparator.comparingLong( a -> a.getKey().entityId ) ).toList()
+                : idAccessMap;
+        for ( Entry<EntityIdentifier, LockMode> pair : ordered ) {
+            Lock held = transaction.getLock( pair.getKey() );
+            Lock lock = held != null ? held : lockTable.computeIfAbsent( pair.getKey(), k -> createLock() );
 
             try {
-                if ( hasLock( transaction, pair.getKey() ) && pair.getValue() == lock.getMode() ) {
-                    continue;
-                } else if ( pair.getValue() == Lock.LockMode.SHARED && hasLock( transaction, pair.getKey() ) && lock.getMode() == Lock.LockMode.EXCLUSIVE ) {
-                    continue;
-                } else if ( pair.getValue() == Lock.LockMode.EXCLUSIVE && hasLock( transaction, pair.getKey() ) && lock.getMode() == Lock.LockMode.SHARED ) {
-                    lock.upgrade( transaction );
+                if ( held == null ) {
+                    lock.acquire( transaction, pair.getValue(), deadline );
+                } else if ( pair.getValue() == LockMode.EXCLUSIVE && lock.getMode() == LockMode.SHARED ) {
+                    lock.upgrade( transaction, deadline );
+                    transaction.updateAccessMode( AccessMode.WRITE_ACCESS );
                 } else {
-                    lock.acquire( transaction, pair.getValue() );
+                    // Already held in the requested or a stronger mode
+                    continue;
                 }
             } catch ( InterruptedException e ) {
                 removeTransaction( transaction );
                 throw new DeadlockException( e );
+            } catch ( TimeoutException e ) {
+                waitForGraph.getStatistics().recordTimeout();
+                removeTransaction( transaction );
+                throw new DeadlockException( e );
             }
 
-            transaction.addLock( lock );
+            transaction.addLock( pair.getKey(), lock );
         }
     }
 
 
+    private Lock createLock() {
+        return switch ( strategy.get() ) {
+            case FAIR -> new FairLock( waitForGraph );
+            case FAST_PATH -> new FastPathLock( waitForGraph );
+        };
+    }
+
+
     /**
      * Used in freshness related workload to lock all entities that will lazily receive updates (considered secondaries)
      */
@@ -112,34 +158,25 @@ public void unlock( @NonNull Collection<EntityIdentifier> ids, @NonNull Transact
         EntityIdentifier entityIdentifier;
         while ( iter.hasNext() ) {
             entityIdentifier = iter.next();
-            Lock lock = lockTable.get( entityIdentifier );
+            Lock lock = transaction.removeLock( entityIdentifier );
             if ( lock != null ) {
                 lock.release( transaction );
             }
-            transaction.removeLock( lock );
         }
     }
 
 
     public void removeTransaction( @NonNull TransactionImpl transaction ) {
-        Set<Lock> txnLockList = transaction.getLocks();
-        for ( Lock lock : txnLockList ) {
+        for ( Lock lock : transaction.getLocks() ) {
             lock.release( transaction );
         }
+        transaction.clearLocks();
+        waitForGraph.remove( transaction );
     }
 
 
     public boolean hasLock( @NonNull TransactionImpl transaction, @NonNull EntityAccessMap.EntityIdentifier entityIdentifier ) {
-        Set<Lock> locks = transaction.getLocks();
-        if ( locks == null ) {
-            return false;
-        }
-        for ( Lock txnLock : locks ) {
-            if ( txnLock == lockTable.get( entityIdentifier ) ) {
-                return true;
-            }
-        }
-        return false;
+        return transaction.getLock( entityIdentifier ) != null;
     }
 
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationAction;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+
+
+/**
+ * Counters on lock waits and deadlock handling.
+ */
+public class LockStatistics {
+
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder detectionRuns = new LongAdder();
+    private final LongAdder cycles = new LongAdder();
+    private final LongAdder victims = new LongAdder();
+
+
+    void recordWait( long nanos ) {
+        waits.increment();
+        waitNanos.add( nanos );
+        maxWaitNanos.accumulateAndGet( nanos, Math::max );
+    }
+
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+
+    void recordDetectionRun() {
+        detectionRuns.increment();
+    }
+
+
+    void recordCycles( int count ) {
+        cycles.add( count );
+    }
+
+
+    void recordVictim() {
+        victims.increment();
+    }
+
+
+    public long getWaits() {
+        return waits.sum();
+    }
+
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+
+    public long getCycles() {
+        return cycles.sum();
+    }
+
+
+    public long getVictims() {
+        return victims.sum();
+    }
+
+
+    public void reset() {
+        waits.reset();
+        waitNanos.reset();
+        maxWaitNanos.set( 0 );
+        timeouts.reset();
+        detectionRuns.reset();
+        cycles.reset();
+        victims.reset();
+    }
+
+
+    void registerMonitoringPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Locking" );
+        im.addPage( page );
+
+        InformationGroup generalGroup = new InformationGroup( page, "General" ).setOrder( 1 );
+        im.addGroup( generalGroup );
+        InformationKeyValue generalKv = new InformationKeyValue( generalGroup );
+        im.registerInformation( generalKv );
+        generalGroup.setRefreshFunction( () -> {
+            generalKv.putPair( "Locking Strategy", RuntimeConfig.LOCKING_STRATEGY.getEnum().name() );
+            generalKv.putPair( "Deadlock Detection", RuntimeConfig.DEADLOCK_DETECTION.getEnum().name() );
+            generalKv.putPair( "Default Lock Wait Timeout", RuntimeConfig.LOCK_WAIT_TIMEOUT.getInteger() + " ms" );
+        } );
+
+        InformationGroup waitGroup = new InformationGroup( page, "Lock Waits" ).setOrder( 2 );
+        im.addGroup( waitGroup );
+        InformationKeyValue waitKv = new InformationKeyValue( waitGroup );
+        im.registerInformation( waitKv );
+        waitGroup.setRefreshFunction( () -> {
+            long count = waits.sum();
+            long total = TimeUnit.NANOSECONDS.toMillis( waitNanos.sum() );
+            waitKv.putPair( "Blocked Lock Requests", count + "" );
+            waitKv.putPair( "Total Wait Time", total + " ms" );
+            waitKv.putPair( "Average Wait Time", (count == 0 ? 0 : total / count) + " ms" );
+            waitKv.putPair( "Maximum Wait Time", TimeUnit.NANOSECONDS.toMillis( maxWaitNanos.get() ) + " ms" );
+            waitKv.putPair( "Timeouts", timeouts.sum() + "" );
+        } );
+
+        InformationGroup deadlockGroup = new InformationGroup( page, "Deadlocks" ).setOrder( 3 );
+        im.addGroup( deadlockGroup );
+        InformationKeyValue deadlockKv = new InformationKeyValue( deadlockGroup );
+        im.registerInformation( deadlockKv );
+        deadlockGroup.setRefreshFunction( () -> {
+            deadlockKv.putPair( "Detection Runs", detectionRuns.sum() + "" );
+            deadlockKv.putPair( "Detected Cycles", cycles.sum() + "" );
+            deadlockKv.putPair( "Aborted Victims", victims.sum() + "" );
+        } );
+
+        InformationGroup resetGroup = new InformationGroup( page, "Reset" ).setOrder( 4 );
+        im.addGroup( resetGroup );
+        InformationAction resetAction = new InformationAction( resetGroup, "Reset Counters", parameters -> {
+            reset();
+            waitGroup.refresh();
+            deadlockGroup.refresh();
+            return "Successfully reset the lock counters!";
+        } );
+        im.registerInformation( resetAction );
+    }
+
+}
@@ -59,6 +59,8 @@ public class StatementImpl implements Statement {
 
     private StatementEvent statementEvent;
 
+    private Long lockWaitTimeout;
+
 
     StatementImpl( TransactionImpl transaction ) {
         this.id = STATEMENT_COUNTER.getAndIncrement();
@@ -182,4 +184,19 @@ public void registerFileInputHandle( FileInputHandle fileInputHandle ) {
         fileInputHandles.add( fileInputHandle );
     }
 
+
+    @Override
+    public long getLockWaitTimeout() {
+        if ( lockWaitTimeout == null ) {
+            return RuntimeConfig.LOCK_WAIT_TIMEOUT.getInteger();
+        }
+        return lockWaitTimeout;
+    }
+
+
+    @Override
+    public void setLockWaitTimeout( long lockWaitTimeout ) {
+        this.lockWaitTimeout = lockWaitTimeout;
+    }
+
 }
@@ -18,11 +18,13 @@
 
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -56,6 +58,7 @@
 import org.polypheny.db.processing.DataMigratorImpl;
 import org.polypheny.db.processing.Processor;
 import org.polypheny.db.processing.QueryProcessor;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
 import org.polypheny.db.type.entity.category.PolyNumber;
 import org.polypheny.db.view.MaterializedViewManager;
 
@@ -101,13 +104,19 @@ public class TransactionImpl implements Transaction, Comparable<Object> {
     @Getter
     private final List<Adapter<?>> involvedAdapters = new CopyOnWriteArrayList<>();
 
-    private final Set<Lock> lockList = new HashSet<>();
+    private final Map<EntityIdentifier, Lock> locks = new ConcurrentHashMap<>();
     private boolean useCache = true;
 
     private boolean acceptsOutdated = false;
 
     private AccessMode accessMode = AccessMode.NO_ACCESS;
 
+    private Snapshot pinnedSnapshot;
+
+    private long snapshotTimestamp = -1;
+
+    private long snapshotAdapterId = -1;
+
     @Getter
     private final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
 
@@ -133,7 +142,53 @@ public class TransactionImpl implements Transaction, Comparable<Object> {
 
     @Override
     public Snapshot getSnapshot() {
-        return Catalog.getInstance().getSnapshot();
+        Snapshot snapshot = pinnedSnapshot;
+        return snapshot != null ? snapshot : Catalog.getInstance().getSnapshot();
+    }
+
+
+    /**
+     * Pins the current catalog snapshot and commit watermark for the lock-free reads of this transaction.
+     * Subsequent calls keep the first snapshot.
+     * <p>
+     * Adapters only guarantee that a single statement reads committed data. A read spanning several adapters could see a
+     * commit which is already applied on one of them but not yet on another, therefore a transaction only reads without
+     * locks as long as all its lock-free reads go to the same adapter.
+     *
+     * @param adapterIds the adapters the statement reads from
+     * @return false if the statement has to take locks, because it reads from more than one adapter or from another adapter
+     * than the previous lock-free reads of this transaction
+     */
+    public boolean startSnapshotRead( Set<Long> adapterIds ) {
+        if ( adapterIds.size() > 1 ) {
+            return false;
+        }
+        long adapterId = adapterIds.isEmpty() ? snapshotAdapterId : adapterIds.iterator().next();
+        if ( pinnedSnapshot == null ) {
+            snapshotTimestamp = transactionManager.getCommitWatermark();
+            pinnedSnapshot = Catalog.getInstance().getSnapshot();
+        } else if ( snapshotAdapterId != -1 && snapshotAdapterId != adapterId ) {
+            return false;
+        }
+        snapshotAdapterId = adapterId;
+        updateAccessMode( AccessMode.READ_ACCESS );
+        return true;
+    }
+
+
+    /**
+     * Returns to reading the current catalog snapshot, needed as soon as the transaction acquires locks.
+     */
+    public void endSnapshotRead() {
+        pinnedSnapshot = null;
+        snapshotTimestamp = -1;
+        snapshotAdapterId = -1;
+    }
+
+
+    @Override
+    public long getSnapshotTimestamp() {
+        return snapshotTimestamp;
     }
 
 
@@ -204,6 +259,11 @@ public void commit() throws TransactionException {
 
         Catalog.getInstance().commit();
 
+        if ( accessMode == AccessMode.WRITE_ACCESS || accessMode == AccessMode.READWRITE_ACCESS ) {
+            // Publish the commit to snapshot readers before the locks are released
+            transactionManager.nextCommitTimestamp();
+        }
+
         // Free resources hold by statements
         statements.forEach( Statement::close );
 
@@ -383,18 +443,28 @@ public void updateAccessMode( AccessMode accessModeCandidate ) {
     //
 
 
-    Set<Lock> getLocks() {
-        return lockList;
+    Collection<Lock> getLocks() {
+        return locks.values();
+    }
+
+
+    Lock getLock( EntityIdentifier entityIdentifier ) {
+        return locks.get( entityIdentifier );
+    }
+
+
+    void addLock( EntityIdentifier entityIdentifier, Lock lock ) {
+        locks.put( entityIdentifier, lock );
     }
 
 
-    void addLock( Lock lock ) {
-        lockList.add( lock );
+    Lock removeLock( EntityIdentifier entityIdentifier ) {
+        return locks.remove( entityIdentifier );
     }
 
 
-    void removeLock( Lock lock ) {
-        lockList.remove( lock );
+    void clearLocks() {
+        locks.clear();
     }
 
 
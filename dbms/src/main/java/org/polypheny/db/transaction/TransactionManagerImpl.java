@@ -44,6 +44,8 @@ public class TransactionManagerImpl implements TransactionManager {
 
     private final AtomicLong totalTransactions = new AtomicLong( 0 );
 
+    private final AtomicLong commitWatermark = new AtomicLong( 0 );
+
 
     private TransactionManagerImpl() {
         InformationManager im = InformationManager.getInstance();
@@ -54,7 +56,7 @@ private TransactionManagerImpl() {
         im.addGroup( runningTransactionsGroup );
         InformationTable runningTransactionsTable = new InformationTable(
                 runningTransactionsGroup,
-                Arrays.asList( "ID", "XID Hash", "Statements", "Analyze", "Involved Adapters", "Origin" ) );
+                Arrays.asList( "ID", "XID Hash", "Statements", "Analyze", "Involved Adapters", "Origin", "Snapshot" ) );
         im.registerInformation( runningTransactionsTable );
         page.setRefreshFunction( () -> {
             runningTransactionsTable.reset();
@@ -64,7 +66,8 @@ private TransactionManagerImpl() {
                     v.getNumberOfStatements(),
                     v.isAnalyze(),
                     v.getInvolvedAdapters().stream().map( Adapter::getUniqueName ).collect( Collectors.joining( ", " ) ),
-                    v.getOrigin() ) );
+                    v.getOrigin(),
+                    v.getSnapshotTimestamp() < 0 ? "-" : v.getSnapshotTimestamp() ) );
         } );
     }
 
@@ -152,4 +155,15 @@ public long getNumberOfTotalTransactions() {
         return totalTransactions.get();
     }
 
+
+    @Override
+    public long getCommitWatermark() {
+        return commitWatermark.get();
+    }
+
+
+    long nextCommitTimestamp() {
+        return commitWatermark.incrementAndGet();
+    }
+
 }
@@ -16,7 +16,10 @@
 
 package org.polypheny.db.transaction;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,14 +28,118 @@
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import lombok.Getter;
 
 // Based on code taken from https://github.com/dstibrany/LockManager
 public class WaitForGraph {
 
     private final ConcurrentMap<TransactionImpl, Set<TransactionImpl>> adjacencyList = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TransactionImpl, Waiter> waiters = new ConcurrentHashMap<>();
     private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
     private final Lock sharedLock = rwl.readLock();
-    private final Lock exclusiveLock = rwl.readLock();
+    private final Lock exclusiveLock = rwl.writeLock();
+    private final Supplier<DeadlockDetection> detection;
+    @Getter
+    private final LockStatistics statistics = new LockStatistics();
+
+
+    WaitForGraph( Supplier<DeadlockDetection> detection ) {
+        this.detection = detection;
+    }
+
+
+    /**
+     * Registers that the transaction waits for the given owners of a lock and checks for deadlocks according to the
+     * configured {@link DeadlockDetection}. If the transaction is part of a deadlock, it is marked as victim, which
+     * the waiting thread has to check with {@link #isVictim} while holding the lock it waits for.
+     *
+     * @param wakeUp signals the threads waiting for the lock, used to wake up a victim chosen by the background sweep
+     */
+    void waitFor( TransactionImpl txn, Set<TransactionImpl> owners, Runnable wakeUp ) {
+        Waiter waiter = waiters.computeIfAbsent( txn, t -> new Waiter( wakeUp ) );
+        add( txn, owners );
+        switch ( detection.get() ) {
+            case ON_WAIT -> {
+                if ( detectDeadlock( txn ) ) {
+                    waiter.victim = true;
+                }
+            }
+            case INCREMENTAL -> {
+                statistics.recordDetectionRun();
+                if ( isReachable( owners, txn ) ) {
+                    statistics.recordCycles( 1 );
+                    statistics.recordVictim();
+                    waiter.victim = true;
+                }
+            }
+            case BACKGROUND -> {
+                // Cycles are resolved by the periodic sweep
+            }
+        }
+    }
+
+
+    /**
+     * Whether the waiting transaction was chosen to be aborted to resolve a deadlock.
+     */
+    boolean isVictim( TransactionImpl txn ) {
+        Waiter waiter = waiters.get( txn );
+        return waiter != null && waiter.victim;
+    }
+
+
+    /**
+     * Called once the transaction no longer waits, either because it got the lock or because it was aborted.
+     * Its outgoing edges are removed, as a transaction which does not wait cannot be part of a deadlock.
+     */
+    void stopWaiting( TransactionImpl txn, long waitedNanos ) {
+        sharedLock.lock();
+        try {
+            waiters.remove( txn );
+            adjacencyList.remove( txn );
+        } finally {
+            sharedLock.unlock();
+        }
+        statistics.recordWait( waitedNanos );
+    }
+
+
+    /**
+     * Searches the whole graph for cycles and aborts the youngest waiting transaction of every cycle.
+     * Used by {@link DeadlockDetection#BACKGROUND}, does nothing in the other modes.
+     * <p>
+     * Victims are only flagged and woken up. A victim which got its lock in the meantime no longer checks the flag,
+     * so it is never aborted after it stopped waiting.
+     */
+    void sweep() {
+        if ( detection.get() != DeadlockDetection.BACKGROUND || adjacencyList.isEmpty() ) {
+            return;
+        }
+        List<List<TransactionImpl>> cycles = findCycles();
+        statistics.recordDetectionRun();
+        statistics.recordCycles( cycles.size() );
+
+        Set<TransactionImpl> victims = new HashSet<>();
+        for ( List<TransactionImpl> cycle : cycles ) {
+            if ( cycle.stream().anyMatch( victims::contains ) ) {
+                // Already broken by an earlier victim
+                continue;
+            }
+            cycle.stream()
+                    .filter( waiters::containsKey )
+                    .max( Comparator.comparingLong( TransactionImpl::getId ) )
+                    .ifPresent( victims::add );
+        }
+        for ( TransactionImpl victim : victims ) {
+            Waiter waiter = waiters.get( victim );
+            if ( waiter != null && !waiter.victim ) {
+                waiter.victim = true;
+                statistics.recordVictim();
+                waiter.wakeUp.run();
+            }
+        }
+    }
 
 
     void add( TransactionImpl predecessor, Set<TransactionImpl> successors ) {
@@ -50,6 +157,7 @@ void add( TransactionImpl predecessor, Set<TransactionImpl> successors ) {
     void remove( TransactionImpl txn ) {
         sharedLock.lock();
         try {
+            waiters.remove( txn );
             adjacencyList.remove( txn );
             removeSuccessor( txn );
         } finally {
@@ -79,14 +187,44 @@ List<List<TransactionImpl>> findCycles() {
     }
 
 
-    void detectDeadlock( TransactionImpl currentTxn ) {
+    /**
+     * Returns whether the current transaction is part of a cycle.
+     */
+    boolean detectDeadlock( TransactionImpl currentTxn ) {
         List<List<TransactionImpl>> cycles = findCycles();
+        statistics.recordDetectionRun();
+        statistics.recordCycles( cycles.size() );
 
         for ( List<TransactionImpl> cycleGroup : cycles ) {
             if ( cycleGroup.contains( currentTxn ) ) {
-                currentTxn.abort();
+                statistics.recordVictim();
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Checks whether the target can be reached from any of the given transactions. Only the part of the graph
+     * reachable from the start transactions is visited.
+     */
+    private boolean isReachable( Set<TransactionImpl> start, TransactionImpl target ) {
+        Set<TransactionImpl> visited = new HashSet<>();
+        Deque<TransactionImpl> stack = new ArrayDeque<>( start );
+        while ( !stack.isEmpty() ) {
+            TransactionImpl txn = stack.pop();
+            if ( txn.equals( target ) ) {
+                return true;
+            }
+            if ( visited.add( txn ) ) {
+                Set<TransactionImpl> successors = adjacencyList.get( txn );
+                if ( successors != null ) {
+                    stack.addAll( successors );
+                }
             }
         }
+        return false;
     }
 
 
@@ -100,6 +238,19 @@ private void removeSuccessor( TransactionImpl txnToRemove ) {
     }
 
 
+    private static class Waiter {
+
+        private final Runnable wakeUp;
+        private volatile boolean victim;
+
+
+        Waiter( Runnable wakeUp ) {
+            this.wakeUp = wakeUp;
+        }
+
+    }
+
+
     class DepthFirstSearch {
 
         private final Set<TransactionImpl> visited = new HashSet<>();
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter;
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
+
+
+/**
+ * Checks that skipping segments of the file adapter based on their zone maps does not change the results of queries.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Tag("adapter")
+public class FileSegmentPruningTest {
+
+    private static final List<String> QUERIES = List.of(
+            "SELECT * FROM pruning WHERE id = 42",
+            "SELECT * FROM pruning WHERE 42 < id",
+            "SELECT * FROM pruning WHERE id >= 250 AND val < 20",
+            "SELECT * FROM pruning WHERE id < 5 OR id > 395",
+            "SELECT * FROM pruning WHERE id = 1000 OR val IS NULL",
+            "SELECT * FROM pruning WHERE val IS NOT NULL AND name = 'name7'",
+            "SELECT * FROM pruning WHERE val <> 3",
+            "SELECT id FROM pruning WHERE id > 1000" );
+
+
+    @BeforeAll
+    public static void start() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "ALTER ADAPTERS ADD \"pruningfile\" USING 'File' AS 'Store' WITH '{mode:embedded,storageFormat:segments}'" );
+                statement.executeUpdate( "CREATE TABLE pruning( id INTEGER NOT NULL, val INTEGER, name VARCHAR(20), PRIMARY KEY (id) ) ON STORE \"pruningfile\"" );
+                // Every insert is committed on its own and therefore ends up in a separate segment with disjoint ids
+                for ( int segment = 0; segment < 4; segment++ ) {
+                    StringBuilder insert = new StringBuilder( "INSERT INTO pruning VALUES " );
+                    for ( int i = 0; i < 100; i++ ) {
+                        int id = segment * 100 + i;
+                        insert.append( i == 0 ? "" : ", " )
+                                .append( "(" ).append( id ).append( ", " )
+                                .append( id % 7 == 0 ? "null" : String.valueOf( id % 50 ) )
+                                .append( ", 'name" ).append( id % 10 ).append( "')" );
+                    }
+                    statement.executeUpdate( insert.toString() );
+                }
+                // Tombstones must not be revived by skipping or reading a segment
+                statement.executeUpdate( "DELETE FROM pruning WHERE id BETWEEN 40 AND 45" );
+                statement.executeUpdate( "UPDATE pruning SET val = 3 WHERE id = 300" );
+            }
+        }
+    }
+
+
+    @AfterAll
+    public static void stop() throws SQLException {
+        RuntimeConfig.FILE_ZONE_MAP_PRUNING.setBoolean( true );
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DROP TABLE pruning" );
+                statement.executeUpdate( "ALTER ADAPTERS DROP \"pruningfile\"" );
+            }
+        }
+    }
+
+
+    @Test
+    public void pruningKeepsResults() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                for ( String query : QUERIES ) {
+                    RuntimeConfig.FILE_ZONE_MAP_PRUNING.setBoolean( false );
+                    List<Object[]> expected;
+                    try ( ResultSet rs = statement.executeQuery( query ) ) {
+                        expected = TestHelper.convertResultSetToList( rs );
+                    }
+                    if ( !query.contains( "1000" ) ) {
+                        assertFalse( expected.isEmpty(), query );
+                    }
+
+                    RuntimeConfig.FILE_ZONE_MAP_PRUNING.setBoolean( true );
+                    try ( ResultSet rs = statement.executeQuery( query ) ) {
+                        TestHelper.checkResultSet( rs, expected, true );
+                    }
+                }
+            } finally {
+                RuntimeConfig.FILE_ZONE_MAP_PRUNING.setBoolean( true );
+            }
+        }
+    }
+
+}
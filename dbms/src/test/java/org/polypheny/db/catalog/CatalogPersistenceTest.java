@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.polypheny.db.catalog;
+
+import java.io.File;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.catalog.catalogs.LogicalCatalog;
+import org.polypheny.db.catalog.entity.logical.LogicalTable;
+import org.polypheny.db.catalog.impl.PolyCatalog;
+import org.polypheny.db.catalog.impl.logical.RelationalCatalog;
+import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.catalog.logistic.EntityType;
+import org.polypheny.db.catalog.persistance.FilePersister;
+import org.polypheny.db.catalog.persistance.InMemoryPersister;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.util.Benchmark;
+
+
+/**
+ * Tests for the change log based persistence of the {@link PolyCatalog}, including a benchmark of the
+ * DDL commit latency for a growing number of namespaces.
+ */
+public class CatalogPersistenceTest {
+
+    private static final int TABLES_PER_NAMESPACE = 4;
+
+    private static TestHelper helper;
+
+
+    @BeforeAll
+    public static void initClass() {
+        helper = TestHelper.getInstance();
+    }
+
+
+    @AfterAll
+    public static void tearDown() {
+        helper.checkAllTrxClosed();
+    }
+
+
+    @Test
+    public void rollbackOnlyRevertsDirtyNamespaces() {
+        PolyCatalog catalog = new PolyCatalog( new InMemoryPersister() );
+
+        long changedId = catalog.createNamespace( "changed", DataModel.RELATIONAL, false );
+        long untouchedId = catalog.createNamespace( "untouched", DataModel.RELATIONAL, false );
+        addTables( catalog, untouchedId, "untouched", 1 );
+        catalog.commit();
+
+        LogicalCatalog untouched = catalog.logicalCatalogs.get( untouchedId );
+        addTables( catalog, changedId, "changed", 1 );
+        catalog.rollback();
+
+        Assertions.assertSame( untouched, catalog.logicalCatalogs.get( untouchedId ) );
+        Assertions.assertTrue( ((RelationalCatalog) catalog.logicalCatalogs.get( changedId )).tables.isEmpty() );
+        Assertions.assertEquals( 1, ((RelationalCatalog) catalog.logicalCatalogs.get( untouchedId )).tables.size() );
+    }
+
+
+    @Test
+    public void droppedNamespaceIsRestoredOnRollback() {
+        PolyCatalog catalog = new PolyCatalog( new InMemoryPersister() );
+
+        long namespaceId = catalog.createNamespace( "dropped", DataModel.RELATIONAL, false );
+        addTables( catalog, namespaceId, "dropped", 2 );
+        catalog.commit();
+
+        catalog.dropNamespace( namespaceId );
+        catalog.rollback();
+
+        Assertions.assertEquals( 2, ((RelationalCatalog) catalog.logicalCatalogs.get( namespaceId )).tables.size() );
+    }
+
+
+    @Test
+    public void testCommitLatencyBenchmark( @TempDir File folder ) {
+        // Run a much quicker form of the test during regular testing.
+        final int[] sizes = Benchmark.enabled() ? new int[]{ 4, 16, 32 } : new int[]{ 4 };
+        final int commits = Benchmark.enabled() ? 50 : 5;
+        int interval = RuntimeConfig.CATALOG_CHECKPOINT_INTERVAL.getInteger();
+        try {
+            for ( int size : sizes ) {
+                // an interval of 0 writes a full checkpoint on every commit, which was the previous behavior
+                for ( int checkpointInterval : new int[]{ 0, interval } ) {
+                    RuntimeConfig.CATALOG_CHECKPOINT_INTERVAL.setInteger( checkpointInterval );
+                    // the checkpoint and the change log are written to disk, but not to the catalog of the home directory
+                    File catalogFolder = new File( folder, size + "_" + checkpointInterval );
+                    Assertions.assertTrue( catalogFolder.mkdir() );
+                    PolyCatalog catalog = new PolyCatalog( new FilePersister( catalogFolder ) );
+                    for ( int i = 0; i < size; i++ ) {
+                        long namespaceId = catalog.createNamespace( "bench" + size + "_" + i, DataModel.RELATIONAL, false );
+                        addTables( catalog, namespaceId, "t", TABLES_PER_NAMESPACE );
+                    }
+                    catalog.commit();
+                    long namespaceId = catalog.createNamespace( "target" + size, DataModel.RELATIONAL, false );
+                    catalog.commit();
+
+                    int[] counter = { 0 };
+                    new Benchmark( "DDL commit (" + size + " namespaces, checkpoint interval " + checkpointInterval + ")", statistician -> {
+                        addTables( catalog, namespaceId, "c" + counter[0]++, 1 );
+                        catalog.change();
+                        long start = System.nanoTime();
+                        catalog.commit();
+                        statistician.record( start );
+                        return null;
+                    }, commits ).run();
+                }
+            }
+        } finally {
+            RuntimeConfig.CATALOG_CHECKPOINT_INTERVAL.setInteger( interval );
+        }
+    }
+
+
+    private static void addTables( PolyCatalog catalog, long namespaceId, String prefix, int count ) {
+        for ( int i = 0; i < count; i++ ) {
+            LogicalTable table = catalog.getLogicalRel( namespaceId ).addTable( prefix + i, EntityType.ENTITY, true );
+            catalog.getLogicalRel( namespaceId ).addColumn( "id", table.id, 1, PolyType.BIGINT, null, null, null, null, null, false, null );
+            catalog.getLogicalRel( namespaceId ).addColumn( "name", table.id, 2, PolyType.VARCHAR, null, 32, null, null, null, true, null );
+        }
+    }
+
+}
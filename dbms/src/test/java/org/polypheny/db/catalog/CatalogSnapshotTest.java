@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.polypheny.db.catalog;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.catalog.entity.logical.LogicalTable;
+import org.polypheny.db.catalog.impl.PolyCatalog;
+import org.polypheny.db.catalog.logistic.DataModel;
+import org.polypheny.db.catalog.logistic.EntityType;
+import org.polypheny.db.catalog.persistance.InMemoryPersister;
+import org.polypheny.db.catalog.snapshot.Snapshot;
+
+
+/**
+ * Tests for the lazily materialized and incrementally rebuilt snapshots of the {@link PolyCatalog}.
+ */
+public class CatalogSnapshotTest {
+
+    private static TestHelper helper;
+
+
+    @BeforeAll
+    public static void initClass() {
+        helper = TestHelper.getInstance();
+    }
+
+
+    @AfterAll
+    public static void tearDown() {
+        helper.checkAllTrxClosed();
+    }
+
+
+    @Test
+    public void batchedChangesAreMaterializedOnce() {
+        PolyCatalog catalog = new PolyCatalog( new InMemoryPersister() );
+        long namespaceId = catalog.createNamespace( "batched", DataModel.RELATIONAL, false );
+        catalog.commit();
+        Snapshot before = catalog.getSnapshot();
+
+        for ( int i = 0; i < 10; i++ ) {
+            catalog.getLogicalRel( namespaceId ).addTable( "table" + i, EntityType.ENTITY, true );
+            catalog.updateSnapshot();
+        }
+
+        Snapshot after = catalog.getSnapshot();
+        Assertions.assertNotSame( before, after );
+        Assertions.assertSame( after, catalog.getSnapshot() );
+        Assertions.assertEquals( 10, after.rel().getTablesFromNamespace( namespaceId ).size() );
+    }
+
+
+    @Test
+    public void unchangedSubSnapshotsAreShared() {
+        PolyCatalog catalog = new PolyCatalog( new InMemoryPersister() );
+        long relId = catalog.createNamespace( "relational", DataModel.RELATIONAL, false );
+        catalog.createNamespace( "document", DataModel.DOCUMENT, false );
+        catalog.commit();
+        Snapshot before = catalog.getSnapshot();
+
+        LogicalTable table = catalog.getLogicalRel( relId ).addTable( "table", EntityType.ENTITY, true );
+        catalog.updateSnapshot();
+        Snapshot after = catalog.getSnapshot();
+
+        Assertions.assertNotSame( before.rel(), after.rel() );
+        Assertions.assertSame( before.doc(), after.doc() );
+        Assertions.assertSame( before.graph(), after.graph() );
+        Assertions.assertSame( before.alloc(), after.alloc() );
+        Assertions.assertTrue( after.rel().getTable( table.id ).isPresent() );
+        Assertions.assertTrue( before.rel().getTable( table.id ).isEmpty() );
+    }
+
+
+    @Test
+    public void observersAreNotifiedOnCommit() throws InterruptedException {
+        PolyCatalog catalog = new PolyCatalog( new InMemoryPersister() );
+        long namespaceId = catalog.createNamespace( "observed", DataModel.RELATIONAL, false );
+        catalog.commit();
+        List<Thread> notified = new CopyOnWriteArrayList<>();
+        catalog.addObserver( evt -> notified.add( Thread.currentThread() ) );
+
+        catalog.getLogicalRel( namespaceId ).addTable( "table", EntityType.ENTITY, true );
+        catalog.change();
+        // a reader materializing the uncommitted change does not notify
+        Thread reader = new Thread( catalog::getSnapshot );
+        reader.start();
+        reader.join();
+        Assertions.assertTrue( notified.isEmpty() );
+
+        catalog.commit();
+        Assertions.assertEquals( List.of( Thread.currentThread() ), notified );
+    }
+
+}
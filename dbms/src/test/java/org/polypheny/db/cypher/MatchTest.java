@@ -236,6 +236,27 @@ assert containsRows( res, true, false,
                 Row.of( TestNode.from( List.of( "Animal" ), Pair.of( "name", "Kira" ) ) ) );
     }
 
+    @Test
+    public void selectiveHopTest() {
+        execute( SINGLE_EDGE_1 );
+        execute( SINGLE_EDGE_2 );
+        execute( MULTIPLE_HOP_EDGE );
+
+        GraphResult res = execute( "MATCH (a:Animal)<-[:OWNER_OF]-(p:Person {name: 'Max'}) RETURN a" );
+        assertNode( res, 0 );
+        assert containsRows( res, true, false,
+                Row.of( KIRA ),
+                Row.of( TestNode.from( List.of( "Animal" ), Pair.of( "name", "Kira" ) ) ) );
+
+        res = execute( "MATCH (n:Person)-[:FRIEND_OF {since: 1995}]->(p:Person)-[:OWNER_OF]->(a) RETURN a" );
+        assertNode( res, 0 );
+        assert containsRows( res, true, true, Row.of( TestNode.from( List.of( "Animal" ), Pair.of( "name", "Kira" ) ) ) );
+
+        res = execute( "MATCH (n:Person)-[:FRIEND_OF {since: 2000}]->(p:Person)-[:OWNER_OF]->(a) RETURN a" );
+        assertNode( res, 0 );
+        assertEmpty( res );
+    }
+
     ///////////////////////////////////////////////
     ///////// MIXED
     ///////////////////////////////////////////////
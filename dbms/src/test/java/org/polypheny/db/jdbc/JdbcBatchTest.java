@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.jdbc;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+
+
+/**
+ * Tests batches sent via the JDBC interface, i.e. {@code executeBatch} for prepared statements and
+ * {@code prepareAndExecuteBatch} for {@link Statement#addBatch(String)}.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+public class JdbcBatchTest {
+
+    @BeforeAll
+    public static void start() {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @BeforeEach
+    public void createTable() throws SQLException {
+        execute( "CREATE TABLE batchtest( id INTEGER NOT NULL, name VARCHAR(20), val INTEGER, PRIMARY KEY (id) )" );
+    }
+
+
+    @AfterEach
+    public void dropTable() throws SQLException {
+        execute( "DROP TABLE batchtest" );
+    }
+
+
+    @Test
+    public void preparedBatchAutoCommit() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( PreparedStatement insert = connection.prepareStatement( "INSERT INTO batchtest VALUES (?, ?, ?)" ) ) {
+                // The type of the second parameter is derived from the first non-null value
+                addRow( insert, 1, null, 10 );
+                addRow( insert, 2, "b", null );
+                addRow( insert, 3, "c", 30 );
+                assertArrayEquals( new int[]{ 1, 1, 1 }, insert.executeBatch() );
+                // The batch is cleared after the execution
+                assertArrayEquals( new int[]{}, insert.executeBatch() );
+            }
+        }
+        // Committed without an explicit commit, so the rows are visible to a new connection
+        checkRows( List.of( new Object[]{ 1, null, 10 }, new Object[]{ 2, "b", null }, new Object[]{ 3, "c", 30 } ) );
+    }
+
+
+    @Test
+    public void preparedBatchWithoutAutoCommit() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( PreparedStatement insert = connection.prepareStatement( "INSERT INTO batchtest VALUES (?, ?, ?)" ) ) {
+                addRow( insert, 1, "a", 10 );
+                addRow( insert, 2, "b", 20 );
+                assertArrayEquals( new int[]{ 1, 1 }, insert.executeBatch() );
+                connection.rollback();
+
+                addRow( insert, 3, "c", 30 );
+                assertArrayEquals( new int[]{ 1 }, insert.executeBatch() );
+                connection.commit();
+            }
+        }
+        checkRows( List.<Object[]>of( new Object[]{ 3, "c", 30 } ) );
+    }
+
+
+    @Test
+    public void preparedUpdateBatch() throws SQLException {
+        execute( "INSERT INTO batchtest VALUES (1, 'a', 10), (2, 'b', 20), (3, 'c', 30)" );
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( PreparedStatement update = connection.prepareStatement( "UPDATE batchtest SET val = ? WHERE id = ?" ) ) {
+                update.setInt( 1, 11 );
+                update.setInt( 2, 1 );
+                update.addBatch();
+                update.setInt( 1, 33 );
+                update.setInt( 2, 3 );
+                update.addBatch();
+                assertArrayEquals( new int[]{ 1, 1 }, update.executeBatch() );
+            }
+        }
+        checkRows( List.of( new Object[]{ 1, "a", 11 }, new Object[]{ 2, "b", 20 }, new Object[]{ 3, "c", 33 } ) );
+    }
+
+
+    @Test
+    public void statementBatch() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.addBatch( "INSERT INTO batchtest VALUES (1, 'a', 10)" );
+                statement.addBatch( "INSERT INTO batchtest VALUES (2, 'b', 20), (3, 'c', 30)" );
+                statement.addBatch( "UPDATE batchtest SET val = val + 1 WHERE id > 1" );
+                statement.addBatch( "DELETE FROM batchtest WHERE id = 1" );
+                assertArrayEquals( new int[]{ 1, 2, 2, 1 }, statement.executeBatch() );
+            }
+        }
+        checkRows( List.of( new Object[]{ 2, "b", 21 }, new Object[]{ 3, "c", 31 } ) );
+    }
+
+
+    @Test
+    public void statementBatchWithoutAutoCommit() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.addBatch( "INSERT INTO batchtest VALUES (1, 'a', 10)" );
+                statement.addBatch( "INSERT INTO batchtest VALUES (2, 'b', 20)" );
+                assertArrayEquals( new int[]{ 1, 1 }, statement.executeBatch() );
+                connection.rollback();
+
+                statement.addBatch( "INSERT INTO batchtest VALUES (3, 'c', 30)" );
+                assertArrayEquals( new int[]{ 1 }, statement.executeBatch() );
+                connection.commit();
+            }
+        }
+        checkRows( List.<Object[]>of( new Object[]{ 3, "c", 30 } ) );
+    }
+
+
+    private static void addRow( PreparedStatement statement, int id, String name, Integer val ) throws SQLException {
+        statement.setInt( 1, id );
+        if ( name == null ) {
+            statement.setNull( 2, Types.VARCHAR );
+        } else {
+            statement.setString( 2, name );
+        }
+        if ( val == null ) {
+            statement.setNull( 3, Types.INTEGER );
+        } else {
+            statement.setInt( 3, val );
+        }
+        statement.addBatch();
+    }
+
+
+    private static void checkRows( List<Object[]> expected ) throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                TestHelper.checkResultSet( statement.executeQuery( "SELECT id, name, val FROM batchtest ORDER BY id" ), ImmutableList.copyOf( expected ) );
+            }
+        }
+    }
+
+
+    private static void execute( String sql ) throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( sql );
+            }
+        }
+    }
+
+}
@@ -17,8 +17,13 @@
 package org.polypheny.db.jdbc;
 
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import com.google.common.collect.ImmutableList;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import lombok.extern.slf4j.Slf4j;
@@ -27,6 +32,7 @@
 import org.junit.jupiter.api.Test;
 import org.polypheny.db.TestHelper;
 import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
 
 
 @SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
@@ -129,4 +135,50 @@ public void simpleTransactionTest() throws SQLException {
     }
 
 
+    @Test
+    public void prefetchedFramesTest() throws SQLException {
+        final boolean prefetch = RuntimeConfig.PREFETCH_RESULT_FRAMES.getBoolean();
+        RuntimeConfig.PREFETCH_RESULT_FRAMES.setBoolean( true );
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( false ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE prefetchtest( tprimary INTEGER NOT NULL, PRIMARY KEY (tprimary) )" );
+                try {
+                    try ( PreparedStatement insert = connection.prepareStatement( "INSERT INTO prefetchtest VALUES (?)" ) ) {
+                        for ( int i = 0; i < 1050; i++ ) {
+                            insert.setInt( 1, i );
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                    connection.commit();
+
+                    // Several frames, the last one is incomplete
+                    statement.setFetchSize( 100 );
+                    try ( ResultSet resultSet = statement.executeQuery( "SELECT tprimary FROM prefetchtest ORDER BY tprimary" ) ) {
+                        int expected = 0;
+                        while ( resultSet.next() ) {
+                            assertEquals( expected++, resultSet.getInt( 1 ) );
+                        }
+                        assertEquals( 1050, expected );
+                    }
+
+                    // Closing the statement cancels the prefetching
+                    try ( Statement partial = connection.createStatement() ) {
+                        partial.setFetchSize( 10 );
+                        ResultSet resultSet = partial.executeQuery( "SELECT tprimary FROM prefetchtest" );
+                        assertTrue( resultSet.next() );
+                    }
+                    connection.commit();
+                } finally {
+                    statement.executeUpdate( "DROP TABLE prefetchtest" );
+                    connection.commit();
+                }
+            }
+        } finally {
+            RuntimeConfig.PREFETCH_RESULT_FRAMES.setBoolean( prefetch );
+        }
+    }
+
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.jdbc;
+
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.runtime.Hook;
+
+
+/**
+ * Checks that the fetch size of a JDBC statement is passed on to the JDBC stores and that results are complete when
+ * they are split into many frames.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Tag("adapter")
+public class JdbcFetchSizeTest {
+
+    private static final int ROWS = 50;
+
+
+    @BeforeAll
+    public static void start() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE fetchsize( id INTEGER NOT NULL, name VARCHAR(20), PRIMARY KEY (id) ) ON STORE hsqldb" );
+                StringBuilder insert = new StringBuilder( "INSERT INTO fetchsize VALUES " );
+                for ( int i = 0; i < ROWS; i++ ) {
+                    insert.append( i == 0 ? "" : ", " ).append( "(" ).append( i ).append( ", " )
+                            .append( i % 5 == 0 ? "null" : "'name" + i + "'" ).append( ")" );
+                }
+                statement.executeUpdate( insert.toString() );
+            }
+        }
+    }
+
+
+    @AfterAll
+    public static void stop() throws SQLException {
+        RuntimeConfig.PREFETCH_RESULT_FRAMES.setBoolean( false );
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DROP TABLE fetchsize" );
+            }
+        }
+    }
+
+
+    @Test
+    public void fetchSizeReachesStore() throws SQLException {
+        Set<Integer> fetchSizes = ConcurrentHashMap.newKeySet();
+        try ( Hook.Closeable ignored = Hook.JDBC_FETCH_SIZE.add( (Consumer<Integer>) fetchSizes::add );
+                JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.setFetchSize( 7 );
+                try ( ResultSet resultSet = statement.executeQuery( "SELECT id FROM fetchsize" ) ) {
+                    while ( resultSet.next() ) {
+                        // consume all frames
+                    }
+                }
+            }
+        }
+        assertTrue( fetchSizes.contains( 7 ), "Fetch sizes seen by the store: " + fetchSizes );
+    }
+
+
+    @Test
+    public void resultsAcrossFrames() throws SQLException {
+        List<Object[]> expected = new ArrayList<>();
+        for ( int i = 0; i < ROWS; i++ ) {
+            expected.add( new Object[]{ i, i % 5 == 0 ? null : "name" + i } );
+        }
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try {
+                for ( boolean prefetch : new boolean[]{ false, true } ) {
+                    RuntimeConfig.PREFETCH_RESULT_FRAMES.setBoolean( prefetch );
+                    // Frame boundaries inside, at and beyond the end of the result
+                    for ( int fetchSize : new int[]{ 1, 7, 10, ROWS, ROWS + 1, 1000 } ) {
+                        try ( Statement statement = connection.createStatement() ) {
+                            statement.setFetchSize( fetchSize );
+                            try ( ResultSet resultSet = statement.executeQuery( "SELECT id, name FROM fetchsize ORDER BY id" ) ) {
+                                TestHelper.checkResultSet( resultSet, expected );
+                            }
+                        }
+                        try ( PreparedStatement statement = connection.prepareStatement( "SELECT id, name FROM fetchsize WHERE id >= ? ORDER BY id" ) ) {
+                            statement.setFetchSize( fetchSize );
+                            statement.setInt( 1, 10 );
+                            try ( ResultSet resultSet = statement.executeQuery() ) {
+                                TestHelper.checkResultSet( resultSet, expected.subList( 10, ROWS ) );
+                            }
+                        }
+                    }
+                }
+            } finally {
+                RuntimeConfig.PREFETCH_RESULT_FRAMES.setBoolean( false );
+            }
+        }
+    }
+
+}
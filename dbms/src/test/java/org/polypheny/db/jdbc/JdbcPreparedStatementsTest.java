@@ -28,6 +28,7 @@
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.List;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.ColumnMetaData.Rep;
 import org.apache.calcite.avatica.SqlType;
@@ -38,6 +39,8 @@
 import org.junit.jupiter.api.Test;
 import org.polypheny.db.TestHelper;
 import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.util.Benchmark;
 
 
 @SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
@@ -206,6 +209,55 @@ public void batchInsertTest() throws SQLException {
     }
 
 
+    /**
+     * Compares batched inserts into the embedded HSQLDB store with and without caching the prepared statements of the store.
+     */
+    @Test
+    public void batchInsertBenchmark() throws SQLException {
+        // Run a much quicker form of the test during regular testing.
+        final int batches = Benchmark.enabled() ? 200 : 2;
+        final int batchSize = 100;
+        final int cacheSize = RuntimeConfig.JDBC_STATEMENT_CACHE_SIZE.getInteger();
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( false ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE psbench( tinteger INTEGER NOT NULL, tbigint BIGINT NULL, tvarchar VARCHAR(20) NOT NULL, PRIMARY KEY (tinteger) ) ON STORE hsqldb" );
+                try ( PreparedStatement preparedInsert = connection.prepareStatement( "INSERT INTO psbench(tinteger,tbigint,tvarchar) VALUES (?, ?, ?)" ) ) {
+                    final int[] key = { 0 };
+                    for ( int size : List.of( 0, Math.max( cacheSize, 100 ) ) ) {
+                        RuntimeConfig.JDBC_STATEMENT_CACHE_SIZE.setInteger( size );
+                        new Benchmark( "Batched insert of " + batchSize + " rows into HSQLDB (statement cache size: " + size + ")", statistician -> {
+                            try {
+                                final long t0 = System.nanoTime();
+                                for ( int i = 0; i < batchSize; i++ ) {
+                                    preparedInsert.setInt( 1, key[0]++ );
+                                    preparedInsert.setLong( 2, i );
+                                    preparedInsert.setString( 3, "row" + i );
+                                    preparedInsert.addBatch();
+                                }
+                                preparedInsert.executeBatch();
+                                connection.commit();
+                                statistician.record( t0 );
+                            } catch ( SQLException e ) {
+                                throw new RuntimeException( e );
+                            }
+                            return null;
+                        }, batches ).run();
+                    }
+
+                    TestHelper.checkResultSet(
+                            statement.executeQuery( "SELECT COUNT(*) FROM psbench" ),
+                            ImmutableList.of( new Object[]{ key[0] } ) );
+                } finally {
+                    RuntimeConfig.JDBC_STATEMENT_CACHE_SIZE.setInteger( cacheSize );
+                    statement.executeUpdate( "DROP TABLE psbench" );
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+
     @Test
     public void batchInsertDefaultValuesTest() throws SQLException {
         try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( false ) ) {
@@ -240,6 +292,37 @@ public void batchInsertDefaultValuesTest() throws SQLException {
     }
 
 
+    /**
+     * Statements cached by the store must not be reused after the types of the columns they access have changed.
+     */
+    @Test
+    public void statementCacheSchemaChangeTest() throws SQLException {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE psddl( tinteger INTEGER NOT NULL, tbigint BIGINT NULL, PRIMARY KEY (tinteger) ) ON STORE hsqldb" );
+                try {
+                    statement.executeUpdate( "INSERT INTO psddl VALUES (1, 10), (2, 20)" );
+                    try ( PreparedStatement preparedSelect = connection.prepareStatement( "SELECT tinteger, tbigint FROM psddl WHERE tinteger = ?" ) ) {
+                        for ( int i = 0; i < 2; i++ ) {
+                            preparedSelect.setInt( 1, 1 );
+                            TestHelper.checkResultSet( preparedSelect.executeQuery(), ImmutableList.of( new Object[]{ 1, 10L } ) );
+                        }
+
+                        statement.executeUpdate( "ALTER TABLE psddl MODIFY COLUMN tbigint SET TYPE INTEGER" );
+                        for ( int i = 0; i < 2; i++ ) {
+                            preparedSelect.setInt( 1, 2 );
+                            TestHelper.checkResultSet( preparedSelect.executeQuery(), ImmutableList.of( new Object[]{ 2, 20 } ) );
+                        }
+                    }
+                } finally {
+                    statement.executeUpdate( "DROP TABLE psddl" );
+                }
+            }
+        }
+    }
+
+
     @Test
     public void dataTypesTest() throws SQLException {
         try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( false ) ) {
@@ -116,6 +116,36 @@ public void filterSwitchTest() {
     }
 
 
+    @Test
+    public void filterStringPatternTest() {
+        String expected = "{\"test\":\"a_%b\",\"key\":1}";
+        List<String> data = Arrays.asList(
+                expected,
+                "{\"test\":\"axxb\",\"key\":2}",
+                "{\"test\":\"a\\\\b\",\"key\":3}",
+                "{\"sub\":{\"test\":\"a_%b\"},\"key\":4}",
+                "{\"other\":\"a_%b\",\"key\":5}" );
+        insertMany( data );
+
+        // strings which contain wildcards of LIKE must not match other documents
+        DocResult result = find( "{\"test\":\"a_%b\"}", "{}" );
+        assertTrue(
+                MongoConnection.checkDocResultSet(
+                        result,
+                        ImmutableList.of( expected ),
+                        true,
+                        true ) );
+
+        result = find( "{\"sub.test\":\"a_%b\",\"key\":4}", "{}" );
+        assertTrue(
+                MongoConnection.checkDocResultSet(
+                        result,
+                        ImmutableList.of( "{\"sub\":{\"test\":\"a_%b\"},\"key\":4}" ),
+                        true,
+                        true ) );
+    }
+
+
     @Test
     public void projectSingleNumbersTest() {
         List<String> expected = Arrays.asList( "{\"test\":1}", "{\"test\":2}", "{\"test\":3}" );
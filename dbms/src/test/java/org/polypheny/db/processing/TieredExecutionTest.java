@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.processing.caching.ImplementationCache;
+import org.polypheny.db.processing.caching.QueryPlanCache;
+
+
+/**
+ * Checks that interpreting a plan with the {@link TieredBindable} gives the same results as executing its compiled
+ * code, including the types of the columns, nulls and plans with a single column.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+public class TieredExecutionTest {
+
+    private static final String VALUES = "(VALUES (1, 'a', 1.5, CAST(NULL AS INTEGER), TRUE), "
+            + "(2, CAST(NULL AS VARCHAR(10)), 2.25, 20, FALSE), "
+            + "(3, 'c', CAST(NULL AS DECIMAL(3, 2)), 30, CAST(NULL AS BOOLEAN)), "
+            + "(4, 'a', 4.0, 40, TRUE)) AS t(id, name, amount, val, flag)";
+
+    private static final List<String> QUERIES = List.of(
+            "SELECT * FROM " + VALUES,
+            "SELECT id, name, val FROM " + VALUES + " WHERE id > 1 ORDER BY id DESC",
+            "SELECT id * 2, amount + 1, val IS NULL, UPPER(name) FROM " + VALUES,
+            "SELECT name, COUNT(*), SUM(val), MAX(amount) FROM " + VALUES + " GROUP BY name ORDER BY name",
+            // Plans with a single column
+            "SELECT name FROM " + VALUES + " ORDER BY id",
+            "SELECT val FROM " + VALUES + " WHERE flag IS NOT FALSE",
+            "SELECT SUM(amount) FROM " + VALUES );
+
+
+    @BeforeAll
+    public static void start() {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @AfterEach
+    public void reset() {
+        RuntimeConfig.TIERED_EXECUTION.setBoolean( false );
+        resetCaches();
+    }
+
+
+    @Test
+    public void interpretedAndCompiledResultsAreEqual() throws SQLException, InterruptedException {
+        long interpreted = 0;
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                for ( String query : QUERIES ) {
+                    // The generated code is compiled before the first execution
+                    RuntimeConfig.TIERED_EXECUTION.setBoolean( false );
+                    resetCaches();
+                    List<List<Object>> expected = execute( statement, query );
+
+                    // The first execution is interpreted, while the code is compiled in the background
+                    RuntimeConfig.TIERED_EXECUTION.setBoolean( true );
+                    resetCaches();
+                    assertEquals( expected, execute( statement, query ), query );
+
+                    // Executions of the cached implementation switch to the compiled code once it is available
+                    for ( int i = 0; i < 100 && ImplementationCache.INSTANCE.getCompiledExecutions() == 0; i++ ) {
+                        TimeUnit.MILLISECONDS.sleep( 50 );
+                        assertEquals( expected, execute( statement, query ), query );
+                    }
+                    assertTrue( ImplementationCache.INSTANCE.getCompiledExecutions() > 0, query );
+                    interpreted += ImplementationCache.INSTANCE.getInterpretedExecutions();
+                }
+            }
+        }
+        // At least some of the first executions did not wait for the compilation
+        assertTrue( interpreted > 0 );
+    }
+
+
+    /**
+     * Returns the types of the columns, followed by the rows with the class of each value.
+     */
+    private static List<List<Object>> execute( Statement statement, String query ) throws SQLException {
+        List<List<Object>> result = new ArrayList<>();
+        try ( ResultSet resultSet = statement.executeQuery( query ) ) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<Object> types = new ArrayList<>();
+            for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+                types.add( metaData.getColumnTypeName( i ) );
+            }
+            result.add( types );
+            while ( resultSet.next() ) {
+                List<Object> row = new ArrayList<>();
+                for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+                    Object value = resultSet.getObject( i );
+                    row.add( value );
+                    row.add( value == null ? null : value.getClass() );
+                }
+                result.add( row );
+            }
+        }
+        return result;
+    }
+
+
+    private static void resetCaches() {
+        QueryPlanCache.INSTANCE.reset();
+        ImplementationCache.INSTANCE.reset();
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.snapshot.Snapshot;
+
+
+/**
+ * Checks that a change of the catalog only invalidates the cached entries of the changed entity.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+public class EntityCacheInvalidatorTest {
+
+    @BeforeEach
+    public void createTables() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        execute( "CREATE TABLE invalidationa( id INTEGER NOT NULL, val INTEGER, PRIMARY KEY (id) )" );
+        execute( "CREATE TABLE invalidationb( id INTEGER NOT NULL, val INTEGER, PRIMARY KEY (id) )" );
+        execute( "INSERT INTO invalidationa VALUES (1, 10)" );
+        execute( "INSERT INTO invalidationb VALUES (1, 10)" );
+        QueryPlanCache.INSTANCE.reset();
+        RoutingPlanCache.INSTANCE.reset();
+        EntityCacheInvalidator.INSTANCE.reset();
+    }
+
+
+    @AfterEach
+    public void dropTables() throws SQLException {
+        execute( "DROP TABLE invalidationa" );
+        execute( "DROP TABLE invalidationb" );
+    }
+
+
+    @Test
+    public void ddlOnlyInvalidatesChangedEntity() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                for ( String table : new String[]{ "invalidationa", "invalidationb" } ) {
+                    try ( ResultSet resultSet = statement.executeQuery( "SELECT val FROM " + table + " WHERE id = 1" ) ) {
+                        assertTrue( resultSet.next() );
+                    }
+                }
+                statement.executeUpdate( "ALTER TABLE invalidationa ADD COLUMN extra INTEGER" );
+            }
+        }
+
+        // The entries of the changed table are gone, the entries of the other table are still cached
+        assertEquals( 0, QueryPlanCache.INSTANCE.invalidate( tableId( "invalidationa" ) ) );
+        assertEquals( 0, ImplementationCache.INSTANCE.invalidate( tableId( "invalidationa" ) ) );
+        assertTrue( QueryPlanCache.INSTANCE.invalidate( tableId( "invalidationb" ) ) > 0 );
+        assertTrue( ImplementationCache.INSTANCE.invalidate( tableId( "invalidationb" ) ) > 0 );
+    }
+
+
+    @Test
+    public void staleEntryIsRejected() throws SQLException {
+        long a = tableId( "invalidationa" );
+        long b = tableId( "invalidationb" );
+        Snapshot before = Catalog.snapshot();
+        execute( "ALTER TABLE invalidationa ADD COLUMN extra INTEGER" );
+
+        // The entities are first tracked by entries created with the snapshot from before the change
+        assertFalse( EntityCacheInvalidator.INSTANCE.track( before, Set.of( a ) ) );
+        assertTrue( EntityCacheInvalidator.INSTANCE.track( before, Set.of( b ) ) );
+        assertTrue( EntityCacheInvalidator.INSTANCE.track( Catalog.snapshot(), Set.of( a, b ) ) );
+        // The outdated state was not registered
+        assertFalse( EntityCacheInvalidator.INSTANCE.track( before, Set.of( a ) ) );
+    }
+
+
+    @Test
+    public void equalStateKeepsEntries() throws SQLException {
+        long a = tableId( "invalidationa" );
+        Snapshot before = Catalog.snapshot();
+        assertTrue( EntityCacheInvalidator.INSTANCE.track( before, Set.of( a ) ) );
+
+        // Data changes and changes of other entities publish new snapshots without changing the table
+        execute( "INSERT INTO invalidationa VALUES (2, 20)" );
+        execute( "ALTER TABLE invalidationb ADD COLUMN extra INTEGER" );
+        assertTrue( EntityCacheInvalidator.INSTANCE.track( before, Set.of( a ) ) );
+    }
+
+
+    private static long tableId( String name ) {
+        return Catalog.snapshot().rel().getTable( "public", name ).orElseThrow().id;
+    }
+
+
+    private static void execute( String sql ) throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( sql );
+            }
+        }
+    }
+
+}
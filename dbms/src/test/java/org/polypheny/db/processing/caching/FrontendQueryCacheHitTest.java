@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
+
+
+/**
+ * Checks that plans of the {@link FrontendQueryCache} are bound to the literals of the query they are reused for.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+public class FrontendQueryCacheHitTest {
+
+    private static final FrontendQueryCache CACHE = FrontendQueryCache.INSTANCE;
+
+
+    @BeforeAll
+    public static void start() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE frontendcache( id INTEGER NOT NULL, name VARCHAR(20), val INTEGER, PRIMARY KEY (id) )" );
+                statement.executeUpdate( "INSERT INTO frontendcache VALUES (1, 'a', 10), (2, 'b', 20), (3, 'c', null), (4, 'a', 40)" );
+            }
+        }
+    }
+
+
+    @AfterAll
+    public static void stop() throws SQLException {
+        RuntimeConfig.ADD_DEFAULT_VALUES_IN_INSERTS.setBoolean( true );
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DROP TABLE frontendcache" );
+            }
+        }
+    }
+
+
+    @BeforeEach
+    public void reset() {
+        CACHE.reset();
+    }
+
+
+    @Test
+    public void hitBindsPredicateLiterals() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                check( statement, "SELECT name FROM frontendcache WHERE id = 1", ImmutableList.of( new Object[]{ "a" } ) );
+                assertEquals( 0, CACHE.getHits() );
+
+                check( statement, "SELECT name FROM frontendcache WHERE id = 2", ImmutableList.of( new Object[]{ "b" } ) );
+                check( statement, "SELECT name  FROM frontendcache WHERE id =  3", ImmutableList.of( new Object[]{ "c" } ) );
+                assertEquals( 2, CACHE.getHits() );
+
+                check( statement, "SELECT id, val FROM frontendcache WHERE name = 'a' AND val > 15", ImmutableList.of( new Object[]{ 4, 40 } ) );
+                check( statement, "SELECT id, val FROM frontendcache WHERE name = 'b' AND val > 5", ImmutableList.of( new Object[]{ 2, 20 } ) );
+                check( statement, "SELECT id, val FROM frontendcache WHERE name = 'x' AND val > 5", ImmutableList.of() );
+                assertEquals( 4, CACHE.getHits() );
+            }
+        }
+    }
+
+
+    @Test
+    public void hitBindsFetchAndOffset() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                check( statement, "SELECT id FROM frontendcache ORDER BY id LIMIT 1", ImmutableList.of( new Object[]{ 1 } ) );
+                check( statement, "SELECT id FROM frontendcache ORDER BY id LIMIT 3", ImmutableList.of( new Object[]{ 1 }, new Object[]{ 2 }, new Object[]{ 3 } ) );
+                check( statement, "SELECT id FROM frontendcache ORDER BY id LIMIT 2 OFFSET 3", ImmutableList.of( new Object[]{ 4 } ) );
+                assertEquals( 1, CACHE.getHits() );
+            }
+        }
+    }
+
+
+    @Test
+    public void projectedLiteralsMustMatch() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                // Literals in projections determine the type of the result and are not replaced
+                check( statement, "SELECT id + 1 FROM frontendcache WHERE id = 1", ImmutableList.of( new Object[]{ 2 } ) );
+                check( statement, "SELECT id + 5 FROM frontendcache WHERE id = 1", ImmutableList.of( new Object[]{ 6 } ) );
+                assertEquals( 0, CACHE.getHits() );
+                assertEquals( 2, CACHE.getMisses() );
+
+                check( statement, "SELECT id + 5 FROM frontendcache WHERE id = 2", ImmutableList.of( new Object[]{ 7 } ) );
+                assertEquals( 1, CACHE.getHits() );
+            }
+        }
+    }
+
+
+    @Test
+    public void configurationIsPartOfKey() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                check( statement, "SELECT name FROM frontendcache WHERE id = 1", ImmutableList.of( new Object[]{ "a" } ) );
+                RuntimeConfig.ADD_DEFAULT_VALUES_IN_INSERTS.setBoolean( false );
+                check( statement, "SELECT name FROM frontendcache WHERE id = 2", ImmutableList.of( new Object[]{ "b" } ) );
+                assertEquals( 0, CACHE.getHits() );
+
+                RuntimeConfig.ADD_DEFAULT_VALUES_IN_INSERTS.setBoolean( true );
+                check( statement, "SELECT name FROM frontendcache WHERE id = 4", ImmutableList.of( new Object[]{ "a" } ) );
+                assertEquals( 1, CACHE.getHits() );
+            } finally {
+                RuntimeConfig.ADD_DEFAULT_VALUES_IN_INSERTS.setBoolean( true );
+            }
+        }
+    }
+
+
+    private static void check( Statement statement, String query, List<Object[]> expected ) throws SQLException {
+        try ( ResultSet resultSet = statement.executeQuery( query ) ) {
+            TestHelper.checkResultSet( resultSet, expected );
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing.caching;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+public class GreedyDualSizeCacheTest {
+
+    @Test
+    public void evictsCheapestRelativeToSize() {
+        List<String> evicted = new ArrayList<>();
+        GreedyDualSizeCache<String, String> cache = new GreedyDualSizeCache<>( 2, 1000, evicted::add );
+
+        cache.put( "expensive", "a", 100, 10_000 );
+        cache.put( "cheap", "b", 100, 10 );
+        cache.put( "new", "c", 100, 1_000 );
+
+        assertEquals( List.of( "cheap" ), evicted );
+        assertNotNull( cache.getIfPresent( "expensive" ) );
+        assertNull( cache.getIfPresent( "cheap" ) );
+        assertEquals( 2, cache.size() );
+    }
+
+
+    @Test
+    public void boundedByBytes() {
+        List<String> evicted = new ArrayList<>();
+        GreedyDualSizeCache<String, String> cache = new GreedyDualSizeCache<>( 10, 250, evicted::add );
+
+        cache.put( "a", "a", 100, 1_000 );
+        cache.put( "b", "b", 100, 1_000 );
+        cache.put( "c", "c", 100, 1_000 );
+
+        assertEquals( List.of( "a" ), evicted );
+        assertEquals( 200, cache.bytes() );
+        assertFalse( cache.put( "huge", "d", 300, 1_000_000 ) );
+        assertEquals( 200, cache.bytes() );
+    }
+
+
+    @Test
+    public void unusedEntriesAgeOut() {
+        List<String> evicted = new ArrayList<>();
+        GreedyDualSizeCache<String, String> cache = new GreedyDualSizeCache<>( 3, 1000, evicted::add );
+
+        cache.put( "old", "a", 100, 2_000 );
+        cache.put( "used", "b", 100, 1_800 );
+        for ( int i = 0; i < 4; i++ ) {
+            assertTrue( cache.put( "new" + i, "c", 100, 1_500 ) );
+            assertNotNull( cache.getIfPresent( "used" ) );
+        }
+
+        assertTrue( evicted.contains( "old" ) );
+        assertNotNull( cache.getIfPresent( "used" ) );
+    }
+
+
+    @Test
+    public void rejectsNewEntryWithLowestPriority() {
+        List<String> evicted = new ArrayList<>();
+        GreedyDualSizeCache<String, String> cache = new GreedyDualSizeCache<>( 1, 1000, evicted::add );
+
+        cache.put( "expensive", "a", 100, 10_000 );
+
+        assertFalse( cache.put( "cheap", "b", 100, 10 ) );
+        assertEquals( List.of(), evicted );
+        assertNotNull( cache.getIfPresent( "expensive" ) );
+    }
+
+
+    @Test
+    public void accessRenewsPriorityBeforeEviction() {
+        List<String> evicted = new ArrayList<>();
+        GreedyDualSizeCache<String, String> cache = new GreedyDualSizeCache<>( 2, 1000, evicted::add );
+
+        cache.put( "a", "a", 100, 1_000 );
+        cache.put( "b", "b", 100, 1_200 );
+        // Raises the inflation to the priority of "a"
+        cache.put( "c", "c", 100, 1_500 );
+        assertEquals( List.of( "a" ), evicted );
+
+        // "b" has the lowest queued priority, but its access since then renews it above the one of "c"
+        assertNotNull( cache.getIfPresent( "b" ) );
+        cache.put( "d", "d", 100, 1_600 );
+        assertEquals( List.of( "a", "c" ), evicted );
+        assertNotNull( cache.getIfPresent( "b" ) );
+    }
+
+
+    @Test
+    public void addedCostKeepsEntryLonger() {
+        List<String> evicted = new ArrayList<>();
+        GreedyDualSizeCache<String, String> cache = new GreedyDualSizeCache<>( 2, 1000, evicted::add );
+
+        cache.put( "a", "a", 100, 1_000 );
+        cache.put( "b", "b", 100, 2_000 );
+        // Only added for the current value of the entry
+        cache.addCost( "a", "other", 5_000 );
+        cache.addCost( "a", "a", 5_000 );
+        assertEquals( 6_000, cache.getIfPresent( "a" ).cost );
+
+        cache.put( "c", "c", 100, 3_000 );
+        assertEquals( List.of( "b" ), evicted );
+    }
+
+
+    @Test
+    public void concurrentReadsAndPuts() throws InterruptedException {
+        GreedyDualSizeCache<Integer, Integer> cache = new GreedyDualSizeCache<>( 16, 1_000_000, key -> {
+        } );
+        List<Thread> threads = new ArrayList<>();
+        for ( int t = 0; t < 8; t++ ) {
+            final int offset = t;
+            Thread thread = new Thread( () -> {
+                for ( int i = 0; i < 10_000; i++ ) {
+                    int key = (i * 7 + offset) % 64;
+                    GreedyDualSizeCache.Entry<Integer, Integer> entry = cache.getIfPresent( key );
+                    if ( entry == null ) {
+                        cache.put( key, key, 100 + key, 1_000 + key );
+                    } else {
+                        assertEquals( key, entry.value );
+                    }
+                }
+            } );
+            thread.start();
+            threads.add( thread );
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+        assertTrue( cache.size() <= 16 );
+        long bytes = 0;
+        for ( int key = 0; key < 64; key++ ) {
+            GreedyDualSizeCache.Entry<Integer, Integer> entry = cache.getIfPresent( key );
+            bytes += entry == null ? 0 : entry.size;
+        }
+        assertEquals( bytes, cache.bytes() );
+    }
+
+}
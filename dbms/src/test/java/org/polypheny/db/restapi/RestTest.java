@@ -17,6 +17,7 @@
 package org.polypheny.db.restapi;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gson.JsonArray;
@@ -24,8 +25,15 @@
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
@@ -47,6 +55,7 @@
 import org.junit.jupiter.api.Test;
 import org.polypheny.db.TestHelper;
 import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.util.Benchmark;
 
 @SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
 @Slf4j
@@ -116,11 +125,16 @@ private static void deleteOldData() {
     }
 
 
-    private HttpResponse<String> executeRest( HttpRequest<?> request ) {
+    private static void configure( HttpRequest<?> request ) {
         request.basicAuth( "pa", "" );
         request.routeParam( "protocol", "http" );
         request.routeParam( "host", "127.0.0.1" );
         request.routeParam( "port", "8089" );
+    }
+
+
+    private HttpResponse<String> executeRest( HttpRequest<?> request ) {
+        configure( request );
         if ( log.isDebugEnabled() ) {
             log.debug( request.getUrl() );
         }
@@ -241,6 +255,113 @@ public void testOperations() {
     }
 
 
+    @Test
+    @Tag("monetdbExcluded")
+    public void testStreaming() throws SQLException {
+        insertStreamRows( 50 );
+        try {
+            HttpRequest<?> request = Unirest.get( "{protocol}://{host}:{port}/restapi/v1/res/restschema.resttest" )
+                    .queryString( "restschema.resttest.tvarchar", "=stream" );
+            JsonElement expected = JsonParser.parseString( executeRest( request ).getBody() );
+
+            // Chunked JSON has the same content
+            request = Unirest.get( "{protocol}://{host}:{port}/restapi/v1/res/restschema.resttest" )
+                    .queryString( "restschema.resttest.tvarchar", "=stream" )
+                    .queryString( "_stream", "json" );
+            assertEquals( expected, JsonParser.parseString( executeRest( request ).getBody() ) );
+
+            // NDJSON contains one row per line
+            request = Unirest.get( "{protocol}://{host}:{port}/restapi/v1/res/restschema.resttest" )
+                    .queryString( "restschema.resttest.tvarchar", "=stream" )
+                    .header( "Accept", "application/x-ndjson" );
+            JsonArray rows = new JsonArray();
+            executeRest( request ).getBody().lines().forEach( line -> rows.add( JsonParser.parseString( line ) ) );
+            assertEquals( expected.getAsJsonObject().get( "result" ), rows );
+        } finally {
+            deleteStreamRows();
+        }
+    }
+
+
+    /**
+     * Compares the time to the first byte and the heap usage of a large GET request with and without streaming.
+     */
+    @Test
+    @Tag("monetdbExcluded")
+    public void testStreamingBenchmark() throws SQLException {
+        // Run a much quicker form of the test during regular testing.
+        final int size = Benchmark.enabled() ? 200_000 : 100;
+        insertStreamRows( size );
+        try {
+            for ( String mode : List.of( "none", "json", "ndjson" ) ) {
+                new Benchmark( "REST GET of " + size + " rows (streaming: " + mode + ")", statistician -> {
+                    HttpRequest<?> request = Unirest.get( "{protocol}://{host}:{port}/restapi/v1/res/restschema.resttest" )
+                            .queryString( "restschema.resttest.tvarchar", "=stream" )
+                            .header( "Accept-Encoding", "gzip" );
+                    if ( !mode.equals( "none" ) ) {
+                        request.queryString( "_stream", mode );
+                    }
+                    configure( request );
+                    List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream().filter( pool -> pool.getType() == MemoryType.HEAP ).toList();
+                    System.gc();
+                    heapPools.forEach( MemoryPoolMXBean::resetPeakUsage );
+                    final long t0 = System.nanoTime();
+                    final long[] firstByte = { -1 };
+                    final long[] bytes = { 0 };
+                    request.thenConsume( response -> {
+                        try ( InputStream in = response.getContent() ) {
+                            byte[] buffer = new byte[1 << 16];
+                            int read;
+                            while ( (read = in.read( buffer )) >= 0 ) {
+                                if ( firstByte[0] < 0 && read > 0 ) {
+                                    firstByte[0] = System.nanoTime() - t0;
+                                }
+                                bytes[0] += read;
+                            }
+                        } catch ( IOException e ) {
+                            throw new UncheckedIOException( e );
+                        }
+                    } );
+                    statistician.record( t0 );
+                    long peakHeap = heapPools.stream().mapToLong( pool -> pool.getPeakUsage().getUsed() ).sum();
+                    log.debug( "Streaming {}: time to first byte {} ms, {} bytes, peak heap {} MB", mode, firstByte[0] / 1_000_000, bytes[0], peakHeap >> 20 );
+                    assertTrue( bytes[0] > 0 );
+                    return null;
+                }, 3 ).run();
+            }
+        } finally {
+            deleteStreamRows();
+        }
+    }
+
+
+    private static void insertStreamRows( int count ) throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( PreparedStatement statement = connection.prepareStatement( "INSERT INTO restschema.resttest VALUES (?, true, DATE '2020-07-23', 1.5, 2.5, ?, 0.5, 1, TIME '12:05:05', TIMESTAMP '2020-07-23 12:05:05', 1, 'stream')" ) ) {
+                for ( int i = 0; i < count; i++ ) {
+                    statement.setLong( 1, i );
+                    statement.setInt( 2, i );
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            }
+        }
+    }
+
+
+    private static void deleteStreamRows() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DELETE FROM restschema.resttest WHERE tvarchar = 'stream'" );
+                connection.commit();
+            }
+        }
+    }
+
+
     private JsonObject getTestRow() {
         return getTestRow( 0 );
     }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier.NamespaceLevel;
+import org.polypheny.db.transaction.Lock.LockMode;
+import org.polypheny.db.transaction.PUID.Type;
+import org.polypheny.db.transaction.Transaction.AccessMode;
+import org.polypheny.db.util.Benchmark;
+import org.polypheny.db.util.DeadlockException;
+import org.polypheny.db.util.Pair;
+
+
+/**
+ * Tests for the {@link LockManager}, including a contention benchmark in which many concurrent transactions
+ * lock a handful of hot entities, mostly in shared mode.
+ */
+public class LockManagerTest {
+
+    private static final int THREADS = 64;
+    private static final int ENTITIES = 4;
+
+
+    @Test
+    public void testSharedLocksAreCompatible() throws DeadlockException {
+        for ( LockingStrategy strategy : LockingStrategy.values() ) {
+            LockManager lockManager = new LockManager( () -> strategy, () -> DeadlockDetection.ON_WAIT );
+            TransactionImpl first = createTransaction();
+            TransactionImpl second = createTransaction();
+            EntityIdentifier entity = new EntityIdentifier( 1L, 1L, NamespaceLevel.ENTITY_LEVEL );
+
+            lockManager.lock( List.of( Pair.of( entity, LockMode.SHARED ) ), first, 0 );
+            lockManager.lock( List.of( Pair.of( entity, LockMode.SHARED ) ), second, 0 );
+            Assertions.assertTrue( lockManager.hasLock( first, entity ) );
+            Assertions.assertTrue( lockManager.hasLock( second, entity ) );
+            Assertions.assertEquals( LockMode.SHARED, lockManager.getLockMode( entity ) );
+            Assertions.assertEquals( AccessMode.READ_ACCESS, first.getAccessMode() );
+
+            lockManager.removeTransaction( second );
+            lockManager.lock( List.of( Pair.of( entity, LockMode.EXCLUSIVE ) ), first, 0 );
+            Assertions.assertEquals( LockMode.EXCLUSIVE, lockManager.getLockMode( entity ) );
+            Assertions.assertEquals( AccessMode.READWRITE_ACCESS, first.getAccessMode() );
+
+            lockManager.removeTransaction( first );
+            Assertions.assertFalse( lockManager.hasLock( first, entity ) );
+            Assertions.assertNull( lockManager.getLockMode( entity ) );
+        }
+    }
+
+
+    @Test
+    public void testDeadlockIsResolved() throws Exception {
+        for ( LockingStrategy strategy : LockingStrategy.values() ) {
+            for ( DeadlockDetection detection : DeadlockDetection.values() ) {
+                LockManager lockManager = new LockManager( () -> strategy, () -> detection );
+                EntityIdentifier a = new EntityIdentifier( 1L, 1L, NamespaceLevel.ENTITY_LEVEL );
+                EntityIdentifier b = new EntityIdentifier( 2L, 2L, NamespaceLevel.ENTITY_LEVEL );
+                TransactionImpl first = createTransaction();
+                TransactionImpl second = createTransaction();
+                lockManager.lock( List.of( Pair.of( a, LockMode.EXCLUSIVE ) ), first, 0 );
+                lockManager.lock( List.of( Pair.of( b, LockMode.EXCLUSIVE ) ), second, 0 );
+
+                AtomicInteger aborted = new AtomicInteger();
+                AtomicInteger interrupted = new AtomicInteger();
+                List<Thread> threads = List.of(
+                        lockInThread( lockManager, first, b, aborted, interrupted ),
+                        lockInThread( lockManager, second, a, aborted, interrupted ) );
+                while ( threads.stream().anyMatch( Thread::isAlive ) ) {
+                    lockManager.getWaitForGraph().sweep();
+                    Thread.sleep( 10 );
+                }
+                Assertions.assertTrue( aborted.get() >= 1, "No victim was aborted with " + strategy + " and " + detection );
+                Assertions.assertTrue( lockManager.getWaitForGraph().getStatistics().getVictims() >= 1 );
+                // victims are signalled through the wait-for graph, not by interrupting their threads
+                Assertions.assertEquals( 0, interrupted.get() );
+            }
+        }
+    }
+
+
+    @Test
+    public void testFormerWaiterIsNoDeadlock() {
+        for ( DeadlockDetection detection : DeadlockDetection.values() ) {
+            WaitForGraph waitForGraph = new WaitForGraph( () -> detection );
+            TransactionImpl first = createTransaction();
+            TransactionImpl second = createTransaction();
+
+            // the first transaction waited for the second one and then got the lock
+            waitForGraph.waitFor( first, Set.of( second ), () -> {
+            } );
+            waitForGraph.stopWaiting( first, 0 );
+            Assertions.assertFalse( waitForGraph.hasEdge( first, second ) );
+
+            // the second transaction now waits for the first one, which does not wait for anything
+            waitForGraph.waitFor( second, Set.of( first ), () -> {
+            } );
+            waitForGraph.sweep();
+            Assertions.assertFalse( waitForGraph.isVictim( second ), "Deadlock reported with " + detection );
+            Assertions.assertEquals( 0, waitForGraph.getStatistics().getVictims() );
+        }
+    }
+
+
+    @Test
+    public void testLockWaitTimeout() throws DeadlockException {
+        for ( LockingStrategy strategy : LockingStrategy.values() ) {
+            LockManager lockManager = new LockManager( () -> strategy, () -> DeadlockDetection.ON_WAIT );
+            EntityIdentifier entity = new EntityIdentifier( 1L, 1L, NamespaceLevel.ENTITY_LEVEL );
+            TransactionImpl first = createTransaction();
+            TransactionImpl second = createTransaction();
+            lockManager.lock( List.of( Pair.of( entity, LockMode.EXCLUSIVE ) ), first, 0 );
+
+            Assertions.assertThrows( DeadlockException.class, () -> lockManager.lock( List.of( Pair.of( entity, LockMode.SHARED ) ), second, 50 ) );
+            Assertions.assertFalse( lockManager.hasLock( second, entity ) );
+            Assertions.assertEquals( 1, lockManager.getWaitForGraph().getStatistics().getTimeouts() );
+            lockManager.removeTransaction( first );
+        }
+    }
+
+
+    @Test
+    public void testQueuedWriterBlocksNewReaders() throws Exception {
+        LockManager lockManager = new LockManager( () -> LockingStrategy.FAST_PATH, () -> DeadlockDetection.ON_WAIT );
+        EntityIdentifier entity = new EntityIdentifier( 1L, 1L, NamespaceLevel.ENTITY_LEVEL );
+        TransactionImpl reader = createTransaction();
+        TransactionImpl writer = createTransaction();
+        TransactionImpl lateReader = createTransaction();
+        lockManager.lock( List.of( Pair.of( entity, LockMode.SHARED ) ), reader, 0 );
+
+        AtomicInteger aborted = new AtomicInteger();
+        Thread writing = lockInThread( lockManager, writer, entity, aborted, new AtomicInteger() );
+        while ( writing.getState() != Thread.State.TIMED_WAITING ) {
+            Thread.sleep( 5 );
+        }
+
+        // the queued writer is served before readers, which arrive after it
+        Assertions.assertThrows( DeadlockException.class, () -> lockManager.lock( List.of( Pair.of( entity, LockMode.SHARED ) ), lateReader, 100 ) );
+        Assertions.assertFalse( lockManager.hasLock( lateReader, entity ) );
+
+        lockManager.removeTransaction( reader );
+        writing.join();
+        Assertions.assertEquals( 0, aborted.get() );
+    }
+
+
+    /**
+     * Compares the lock implementations under read-heavy load on a few entities.
+     */
+    @Test
+    public void testContentionBenchmark() {
+        // Run a much quicker form of the test during regular testing.
+        final int transactionsPerThread = Benchmark.enabled() ? 10_000 : 20;
+        for ( LockingStrategy strategy : LockingStrategy.values() ) {
+            new Benchmark( "lock contention (" + strategy + ")", statistician -> {
+                LockManager lockManager = new LockManager( () -> strategy, () -> DeadlockDetection.ON_WAIT );
+                List<EntityIdentifier> entities = new ArrayList<>();
+                for ( int i = 0; i < ENTITIES; i++ ) {
+                    entities.add( new EntityIdentifier( i, i, NamespaceLevel.ENTITY_LEVEL ) );
+                }
+                CountDownLatch start = new CountDownLatch( 1 );
+                AtomicInteger committed = new AtomicInteger();
+                List<Thread> threads = new ArrayList<>();
+                for ( int t = 0; t < THREADS; t++ ) {
+                    final Random random = new Random( t );
+                    Thread thread = new Thread( () -> {
+                        try {
+                            start.await();
+                        } catch ( InterruptedException e ) {
+                            return;
+                        }
+                        for ( int i = 0; i < transactionsPerThread; i++ ) {
+                            TransactionImpl transaction = createTransaction();
+                            // 1 in 20 transactions writes the entity it touches
+                            LockMode mode = random.nextInt( 20 ) == 0 ? LockMode.EXCLUSIVE : LockMode.SHARED;
+                            List<Entry<EntityIdentifier, LockMode>> accesses = List.of(
+                                    Pair.of( entities.get( random.nextInt( ENTITIES ) ), mode ),
+                                    Pair.of( LockManager.GLOBAL_LOCK, LockMode.SHARED ) );
+                            try {
+                                lockManager.lock( accesses, transaction, 0 );
+                                committed.incrementAndGet();
+                            } catch ( DeadlockException e ) {
+                                Thread.interrupted();
+                            } finally {
+                                lockManager.removeTransaction( transaction );
+                            }
+                        }
+                    } );
+                    thread.start();
+                    threads.add( thread );
+                }
+                long nanos = System.nanoTime();
+                start.countDown();
+                for ( Thread thread : threads ) {
+                    try {
+                        thread.join();
+                    } catch ( InterruptedException e ) {
+                        throw new RuntimeException( e );
+                    }
+                }
+                statistician.record( nanos );
+                Assertions.assertEquals( THREADS * transactionsPerThread, committed.get() );
+                return null;
+            }, 5 ).run();
+        }
+    }
+
+
+    private static Thread lockInThread( LockManager lockManager, TransactionImpl transaction, EntityIdentifier entity, AtomicInteger aborted, AtomicInteger interrupted ) {
+        Thread thread = new Thread( () -> {
+            try {
+                lockManager.lock( List.of( Pair.of( entity, LockMode.EXCLUSIVE ) ), transaction, 0 );
+            } catch ( DeadlockException e ) {
+                aborted.incrementAndGet();
+            } finally {
+                if ( Thread.interrupted() ) {
+                    interrupted.incrementAndGet();
+                }
+                lockManager.removeTransaction( transaction );
+            }
+        } );
+        thread.start();
+        return thread;
+    }
+
+
+    private static TransactionImpl createTransaction() {
+        PolyXid xid = PolyXid.generateLocalTransactionIdentifier( PUID.randomPUID( Type.NODE ), PUID.randomPUID( Type.TRANSACTION ) );
+        return new TransactionImpl( xid, null, null, null, false, "LockManagerTest", null );
+    }
+
+}
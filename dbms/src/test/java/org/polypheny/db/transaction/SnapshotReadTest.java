@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.PolyImplementation;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.AlgRoot;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Tests that read-only queries only skip locking as long as they read from a single adapter.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Tag("adapter")
+public class SnapshotReadTest {
+
+    private static final String MVCC_SETTINGS = " WITH '{maxConnections:\"25\",trxControlMode:mvcc,trxIsolationLevel:read_committed,type:Memory,tableType:Memory,mode:embedded}'";
+
+
+    @BeforeAll
+    public static void start() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( java.sql.Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "ALTER ADAPTERS ADD \"snapshot1\" USING 'Hsqldb' AS 'Store'" + MVCC_SETTINGS );
+                statement.executeUpdate( "ALTER ADAPTERS ADD \"snapshot2\" USING 'Hsqldb' AS 'Store'" + MVCC_SETTINGS );
+                statement.executeUpdate( "CREATE TABLE snapshotsingle( id INTEGER NOT NULL, val INTEGER, PRIMARY KEY (id) ) ON STORE \"snapshot1\"" );
+                statement.executeUpdate( "INSERT INTO snapshotsingle VALUES (1, 10), (2, 20)" );
+                statement.executeUpdate( "CREATE TABLE snapshotmulti( id INTEGER NOT NULL, val INTEGER, PRIMARY KEY (id) ) ON STORE \"snapshot1\"" );
+                statement.executeUpdate( "INSERT INTO snapshotmulti VALUES (1, 10), (2, 20)" );
+                statement.executeUpdate( "ALTER TABLE snapshotmulti ADD PLACEMENT (val) ON STORE \"snapshot2\"" );
+            }
+        }
+        RuntimeConfig.SNAPSHOT_READS.setBoolean( true );
+    }
+
+
+    @AfterAll
+    public static void stop() throws SQLException {
+        RuntimeConfig.SNAPSHOT_READS.setBoolean( false );
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( true ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( java.sql.Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DROP TABLE snapshotsingle" );
+                statement.executeUpdate( "DROP TABLE snapshotmulti" );
+                statement.executeUpdate( "ALTER ADAPTERS DROP \"snapshot1\"" );
+                statement.executeUpdate( "ALTER ADAPTERS DROP \"snapshot2\"" );
+            }
+        }
+    }
+
+
+    @Test
+    public void singleAdapterReadSkipsLocks() throws TransactionException {
+        TransactionImpl transaction = (TransactionImpl) TestHelper.getInstance().getTransaction();
+        try {
+            assertEquals( 2, scan( transaction, "snapshotsingle" ).size() );
+            assertTrue( transaction.getSnapshotTimestamp() >= 0 );
+            assertTrue( transaction.getSnapshotTimestamp() <= TransactionManagerImpl.getInstance().getCommitWatermark() );
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+
+    @Test
+    public void multiAdapterReadTakesLocks() throws TransactionException {
+        TransactionImpl transaction = (TransactionImpl) TestHelper.getInstance().getTransaction();
+        try {
+            assertEquals( 2, scan( transaction, "snapshotmulti" ).size() );
+            assertEquals( -1, transaction.getSnapshotTimestamp() );
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+
+    @Test
+    public void snapshotReadsStayOnOneAdapter() throws TransactionException {
+        TransactionImpl transaction = (TransactionImpl) TestHelper.getInstance().getTransaction();
+        try {
+            assertFalse( transaction.startSnapshotRead( Set.of( 1L, 2L ) ) );
+
+            assertTrue( transaction.startSnapshotRead( Set.of( 1L ) ) );
+            long timestamp = transaction.getSnapshotTimestamp();
+            assertTrue( timestamp >= 0 );
+            // reads without placements and further reads from the same adapter keep the snapshot
+            assertTrue( transaction.startSnapshotRead( Set.of() ) );
+            assertTrue( transaction.startSnapshotRead( Set.of( 1L ) ) );
+            assertEquals( timestamp, transaction.getSnapshotTimestamp() );
+            // a read from another adapter could see a partially applied commit
+            assertFalse( transaction.startSnapshotRead( Set.of( 2L ) ) );
+
+            transaction.endSnapshotRead();
+            assertEquals( -1, transaction.getSnapshotTimestamp() );
+            assertTrue( transaction.startSnapshotRead( Set.of( 2L ) ) );
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+
+    private static List<List<PolyValue>> scan( Transaction transaction, String table ) {
+        Statement statement = transaction.createStatement();
+        AlgNode scan = AlgBuilder.create( statement ).relScan( "public", table ).build();
+        PolyImplementation implementation = statement.getQueryProcessor().prepareQuery( AlgRoot.of( scan, Kind.SELECT ), false );
+        return implementation.execute( statement, -1 ).getAllRowsAndClose();
+    }
+
+}
@@ -56,7 +56,6 @@
 import org.apache.calcite.avatica.MetaImpl.MetaTypeInfo;
 import org.apache.calcite.avatica.NoSuchStatementException;
 import org.apache.calcite.avatica.QueryState;
-import org.apache.calcite.avatica.proto.Common;
 import org.apache.calcite.avatica.proto.Requests.UpdateBatch;
 import org.apache.calcite.avatica.remote.ProtobufMeta;
 import org.apache.calcite.avatica.remote.TypedValue;
@@ -96,6 +95,7 @@
 import org.polypheny.db.catalog.logistic.EntityType;
 import org.polypheny.db.catalog.logistic.EntityType.PrimitiveTableType;
 import org.polypheny.db.catalog.logistic.Pattern;
+import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.functions.TemporalFunctions;
 import org.polypheny.db.iface.AuthenticationException;
 import org.polypheny.db.iface.Authenticator;
@@ -891,47 +891,11 @@ public ExecuteBatchResult executeBatchProtobuf( final StatementHandle h, final L
                 log.trace( "executeBatchProtobuf( StatementHandle {}, List<UpdateBatch> {} )", h, parameterValues );
             }
 
-            final PolyStatementHandle<?> statementHandle = getPolyphenyDbStatementHandle( h );
-
-            long[] updateCounts = new long[parameterValues.size()];
-            Map<Long, List<PolyValue>> values = new HashMap<>();
-            List<AlgDataType> types = new ArrayList<>();
+            final List<List<TypedValue>> batch = new ArrayList<>( parameterValues.size() );
             for ( UpdateBatch updateBatch : parameterValues ) {
-                List<Common.TypedValue> list = updateBatch.getParameterValuesList();
-                long index = 0;
-                for ( Common.TypedValue v : list ) {
-                    long i = index++;
-                    if ( !values.containsKey( i ) ) {
-                        values.put( i, new ArrayList<>() );
-                    }
-                    if ( v.getType() == Common.Rep.ARRAY ) {
-                        values.get( i ).add( convertList( (List<TypedValue>) TypedValue.fromProto( v ).toLocal() ) );
-                    } else {
-                        values.get( i ).add( toPolyValue( TypedValue.fromProto( v ) ) );
-                    }
-                    types.add( (int) i, toPolyAlgType( TypedValue.fromProto( v ), TYPE_FACTORY ) );
-                }
-            }
-
-            try {
-                if ( values.isEmpty() ) {
-                    // Nothing to execute
-                    return new ExecuteBatchResult( new long[0] );
-                }
-                statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
-                int i = 0;
-                for ( Entry<Long, List<PolyValue>> valuesList : values.entrySet() ) {
-                    statementHandle.getStatement().getDataContext().addParameterValues( valuesList.getKey(), types.get( i++ ), valuesList.getValue() );
-                }
-                prepare( h, statementHandle.getPreparedQuery() );
-                updateCounts[0] = execute( h, connection, statementHandle, -1 ).size();
-            } catch ( Throwable e ) {
-                log.error( "Exception while preparing query", e );
-                String message = e.getLocalizedMessage();
-                throw new GenericRuntimeException( message == null ? "null" : message, -1, "", AvaticaSeverity.ERROR );
+                batch.add( updateBatch.getParameterValuesList().stream().map( TypedValue::fromProto ).toList() );
             }
-
-            return new ExecuteBatchResult( updateCounts );
+            return executeBatch( h, batch, connection );
         }
     }
 
@@ -1053,7 +1017,7 @@ public ExecuteResult prepareAndExecute( final StatementHandle h, final String sq
 
             PolyStatementHandle<?> statementHandle = getPolyphenyDbStatementHandle( h );
             statementHandle.setPreparedQuery( sql );
-            statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
+            statementHandle.setStatement( connection.createStatement() );
             return execute( h, new ArrayList<>(), maxRowsInFirstFrame, connection );
         }
     }
@@ -1074,8 +1038,22 @@ public ExecuteBatchResult prepareAndExecuteBatch( final StatementHandle h, final
                 log.trace( "prepareAndExecuteBatch( StatementHandle {}, List<String> {} )", h, sqlCommands );
             }
 
-            log.error( "[NOT IMPLEMENTED YET] prepareAndExecuteBatch( StatementHandle {}, List<String> {} )", h, sqlCommands );
-            return null;
+            final PolyStatementHandle<?> statementHandle = getPolyphenyDbStatementHandle( h );
+            final long[] updateCounts = new long[sqlCommands.size()];
+            try {
+                for ( int i = 0; i < sqlCommands.size(); i++ ) {
+                    statementHandle.setPreparedQuery( sqlCommands.get( i ) );
+                    statementHandle.setStatement( connection.createStatement() );
+                    prepare( h, statementHandle.getPreparedQuery() );
+                    updateCounts[i] = execute( h, connection, statementHandle, -1 ).get( 0 ).updateCount;
+                    autoCommitIfNecessary( connection, statementHandle );
+                }
+            } catch ( Throwable e ) {
+                log.error( "Exception while executing batch", e );
+                String message = e.getLocalizedMessage();
+                throw new GenericRuntimeException( message == null ? "null" : message, -1, "", AvaticaSeverity.ERROR );
+            }
+            return new ExecuteBatchResult( updateCounts );
         }
     }
 
@@ -1095,8 +1073,56 @@ public ExecuteBatchResult executeBatch( final StatementHandle h, final List<List
                 log.trace( "executeBatch( StatementHandle {}, List<List<TypedValue>> {} )", h, parameterValues );
             }
 
-            log.error( "[NOT IMPLEMENTED YET] executeBatch( StatementHandle {}, List<List<TypedValue>> {} )", h, parameterValues );
-            return null;
+            return executeBatch( h, parameterValues, connection );
+        }
+    }
+
+
+    /**
+     * Executes a prepared statement once for all lists of parameter values. The values are added to the data context as
+     * batch, which allows the stores to execute them as batches as well.
+     */
+    private ExecuteBatchResult executeBatch( StatementHandle h, List<List<TypedValue>> parameterValues, PolyConnectionHandle connection ) throws NoSuchStatementException {
+        final PolyStatementHandle<?> statementHandle = getPolyphenyDbStatementHandle( h );
+        if ( parameterValues.isEmpty() || parameterValues.get( 0 ).isEmpty() ) {
+            // Nothing to execute
+            return new ExecuteBatchResult( new long[0] );
+        }
+
+        final int parameterCount = parameterValues.get( 0 ).size();
+        final List<List<PolyValue>> values = new ArrayList<>( parameterCount );
+        final AlgDataType[] types = new AlgDataType[parameterCount];
+        for ( int i = 0; i < parameterCount; i++ ) {
+            values.add( new ArrayList<>( parameterValues.size() ) );
+        }
+        for ( List<TypedValue> row : parameterValues ) {
+            for ( int i = 0; i < parameterCount; i++ ) {
+                final TypedValue value = row.get( i );
+                values.get( i ).add( toPolyValue( value ) );
+                // The type of a column is derived from its first non-null value
+                if ( types[i] == null || (types[i].getPolyType() == PolyType.NULL && value.value != null) ) {
+                    types[i] = toPolyAlgType( value, TYPE_FACTORY );
+                }
+            }
+        }
+
+        try {
+            statementHandle.setStatement( connection.createStatement() );
+            for ( int i = 0; i < parameterCount; i++ ) {
+                statementHandle.getStatement().getDataContext().addParameterValues( i, types[i], values.get( i ) );
+            }
+            prepare( h, statementHandle.getPreparedQuery() );
+            final long rowsChanged = execute( h, connection, statementHandle, -1 ).get( 0 ).updateCount;
+            autoCommitIfNecessary( connection, statementHandle );
+
+            // The stores only report the total number of changed rows
+            final long[] updateCounts = new long[parameterValues.size()];
+            Arrays.fill( updateCounts, rowsChanged == parameterValues.size() ? 1 : Statement.SUCCESS_NO_INFO );
+            return new ExecuteBatchResult( updateCounts );
+        } catch ( Throwable e ) {
+            log.error( "Exception while executing batch", e );
+            String message = e.getLocalizedMessage();
+            throw new GenericRuntimeException( message == null ? "null" : message, -1, "", AvaticaSeverity.ERROR );
         }
     }
 
@@ -1114,6 +1140,11 @@ public ExecuteBatchResult executeBatch( final StatementHandle h, final List<List
     @Override
     public Frame fetch( final StatementHandle h, final long offset, final int fetchMaxRowCount ) throws NoSuchStatementException {
         final PolyConnectionHandle connection = openConnections.get( h.connectionId );
+        final FramePrefetcher prefetcher = getPolyphenyDbStatementHandle( h ).getPrefetcher();
+        if ( prefetcher != null ) {
+            // The prefetching requires the lock of the connection
+            prefetcher.await();
+        }
         synchronized ( connection ) {
             if ( log.isTraceEnabled() ) {
                 log.trace( "fetch( StatementHandle {}, long {}, int {} )", h, offset, fetchMaxRowCount );
@@ -1128,17 +1159,25 @@ public Frame fetch( final StatementHandle h, final long offset, final int fetchM
                 return new Frame( 0, true, new ArrayList<>() );
             }
             if ( statementHandle.getOpenResultSet() == null ) {
+                if ( fetchMaxRowCount > 0 ) {
+                    // Lets the stores fetch as many rows at once as the client requests per frame
+                    statementHandle.getStatement().getDataContext().addAll( Map.of( DataContext.Variable.FETCH_SIZE.camelName, fetchMaxRowCount ) );
+                }
                 final Iterable<Object> iterable = createExternalIterable( statementHandle.getStatement().getDataContext(), signature );
                 iterator = iterable.iterator();
                 statementHandle.setOpenResultSet( iterator );
                 statementHandle.getExecutionStopWatch().start();
+                statementHandle.getExecutionStopWatch().suspend();
+                if ( RuntimeConfig.PREFETCH_RESULT_FRAMES.getBoolean() && fetchMaxRowCount > 0 ) {
+                    statementHandle.setPrefetcher( new FramePrefetcher( connection, size -> collect( statementHandle, signature, iterator, size ) ) );
+                }
             } else {
                 iterator = statementHandle.getOpenResultSet();
-                statementHandle.getExecutionStopWatch().resume();
             }
 
-            final List<?> rows = MetaImpl.collect( signature.cursorFactory, LimitIterator.of( iterator, fetchMaxRowCount ), new ArrayList<>() );
-            statementHandle.getExecutionStopWatch().suspend();
+            final List<?> rows = statementHandle.getPrefetcher() != null && fetchMaxRowCount > 0
+                    ? statementHandle.getPrefetcher().next( fetchMaxRowCount )
+                    : collect( statementHandle, signature, iterator, fetchMaxRowCount );
             boolean done = fetchMaxRowCount == 0 || rows.size() < fetchMaxRowCount;
 
             if ( done ) {
@@ -1151,12 +1190,25 @@ public Frame fetch( final StatementHandle h, final long offset, final int fetchM
                 } catch ( Exception e ) {
                     log.error( "Exception while closing result iterator", e );
                 }
+            } else if ( statementHandle.getPrefetcher() != null ) {
+                // Produce the next frame while this one is sent to the client
+                statementHandle.getPrefetcher().prefetch( fetchMaxRowCount );
             }
             return new Meta.Frame( offset, done, (Iterable<Object>) rows );
         }
     }
 
 
+    private static List<List<Object>> collect( PolyStatementHandle<Object> statementHandle, PolySignature signature, Iterator<Object> iterator, int maxRowCount ) {
+        statementHandle.getExecutionStopWatch().resume();
+        try {
+            return MetaImpl.collect( signature.cursorFactory, LimitIterator.of( iterator, maxRowCount ), new ArrayList<>() );
+        } finally {
+            statementHandle.getExecutionStopWatch().suspend();
+        }
+    }
+
+
     private Iterable<Object> createExternalIterable( DataContext dataContext, PolySignature signature ) {
         return externalize( signature.enumerable( dataContext ), signature.rowType );
     }
@@ -1198,7 +1250,7 @@ public ExecuteResult execute( final StatementHandle h, final List<TypedValue> pa
                 log.trace( "execute( StatementHandle {}, List<TypedValue> {}, int {} )", h, parameterValues, maxRowsInFirstFrame );
             }
             final PolyStatementHandle<?> statementHandle = getPolyphenyDbStatementHandle( h );
-            statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
+            statementHandle.setStatement( connection.createStatement() );
             return execute( h, parameterValues, maxRowsInFirstFrame, connection );
         }
     }
@@ -1217,15 +1269,7 @@ private ExecuteResult execute( StatementHandle h, List<TypedValue> parameterValu
         try {
             prepare( h, statementHandle.getPreparedQuery() );
             List<MetaResultSet> results = execute( h, connection, statementHandle, maxRowsInFirstFrame );
-            if ( List.of( StatementType.OTHER_DDL, StatementType.OTHER_DDL, StatementType.IS_DML ).contains( statementHandle.getSignature().statementType ) && connection.isAutoCommit() ) {
-                try {
-                    commit( connection.getHandle() );
-                } catch ( Exception e ) {
-                    rollback( connection.getHandle() );
-
-                    throw new GenericRuntimeException( "Error on auto-commit, transaction was rolled back.\n\n" + e );
-                }
-            }
+            autoCommitIfNecessary( connection, statementHandle );
 
             return new ExecuteResult( results );
         } catch ( Throwable e ) {
@@ -1236,6 +1280,19 @@ private ExecuteResult execute( StatementHandle h, List<TypedValue> parameterValu
     }
 
 
+    private void autoCommitIfNecessary( PolyConnectionHandle connection, PolyStatementHandle<?> statementHandle ) {
+        if ( List.of( StatementType.OTHER_DDL, StatementType.OTHER_DDL, StatementType.IS_DML ).contains( statementHandle.getSignature().statementType ) && connection.isAutoCommit() ) {
+            try {
+                commit( connection.getHandle() );
+            } catch ( Exception e ) {
+                rollback( connection.getHandle() );
+
+                throw new GenericRuntimeException( "Error on auto-commit, transaction was rolled back.\n\n" + e );
+            }
+        }
+    }
+
+
     private AlgDataType toPolyAlgType( TypedValue value, JavaTypeFactory typeFactory ) {
         if ( value.value == null ) {
             return typeFactory.createPolyType( PolyType.NULL );
@@ -1524,7 +1581,17 @@ public void openConnection( final ConnectionHandle ch, final Map<String, String>
             throw new GenericRuntimeException( e.getLocalizedMessage(), -1, "", AvaticaSeverity.ERROR );
         }
 
-        openConnections.put( ch.id, new PolyConnectionHandle( ch, user, ch.id, namespace, transactionManager ) );
+        // Time in milliseconds statements of this connection wait for a lock, the runtime config is used if it is not set
+        Long lockWaitTimeout = null;
+        if ( connectionParameters.containsKey( "lockWaitTimeout" ) ) {
+            try {
+                lockWaitTimeout = Long.parseLong( connectionParameters.get( "lockWaitTimeout" ) );
+            } catch ( NumberFormatException e ) {
+                throw new GenericRuntimeException( "Invalid lock wait timeout: " + connectionParameters.get( "lockWaitTimeout" ), -1, "", AvaticaSeverity.ERROR );
+            }
+        }
+
+        openConnections.put( ch.id, new PolyConnectionHandle( ch, user, ch.id, namespace, transactionManager, lockWaitTimeout ) );
     }
 
 
@@ -1534,6 +1601,7 @@ public void openConnection( final ConnectionHandle ch, final Map<String, String>
     @Override
     public void closeConnection( ConnectionHandle ch ) {
         final PolyConnectionHandle connection = getPolyphenyDbConnectionHandle( ch.id );
+        cancelPrefetches( ch.id );
         synchronized ( connection ) {
             if ( log.isTraceEnabled() ) {
                 log.trace( "closeConnection( ConnectionHandle {} )", ch );
@@ -1562,6 +1630,13 @@ public void closeConnection( ConnectionHandle ch ) {
             for ( final String key : openStatements.keySet() ) {
                 if ( key.startsWith( ch.id ) ) {
                     PolyStatementHandle<?> statementHandle = openStatements.remove( key );
+                    if ( statementHandle.getOpenResultSet() instanceof AutoCloseable closeable ) {
+                        try {
+                            closeable.close();
+                        } catch ( Exception e ) {
+                            log.error( "Exception while closing result iterator", e );
+                        }
+                    }
                     statementHandle.unset();
                 }
             }
@@ -1571,6 +1646,20 @@ public void closeConnection( ConnectionHandle ch ) {
     }
 
 
+    /**
+     * Stops prefetching frames for all statements of the connection and waits for the frames which are currently produced.
+     * Must be called without holding the lock of the connection, as the prefetching requires it.
+     */
+    private void cancelPrefetches( String connectionId ) {
+        for ( Map.Entry<String, PolyStatementHandle<Object>> entry : openStatements.entrySet() ) {
+            final FramePrefetcher prefetcher = entry.getValue().getPrefetcher();
+            if ( entry.getKey().startsWith( connectionId + "::" ) && prefetcher != null ) {
+                prefetcher.cancel();
+            }
+        }
+    }
+
+
     private PolyConnectionHandle getPolyphenyDbConnectionHandle( String connectionId ) {
         if ( openConnections.containsKey( connectionId ) ) {
             return openConnections.get( connectionId );
@@ -1613,6 +1702,7 @@ public boolean syncResults( final StatementHandle sh, final QueryState state, fi
     @Override
     public void commit( final ConnectionHandle ch ) {
         final PolyConnectionHandle connection = getPolyphenyDbConnectionHandle( ch.id );
+        cancelPrefetches( ch.id );
         synchronized ( connection ) {
             if ( log.isTraceEnabled() ) {
                 log.trace( "commit( ConnectionHandle {} )", ch );
@@ -1643,6 +1733,7 @@ public void commit( final ConnectionHandle ch ) {
     @Override
     public void rollback( final ConnectionHandle ch ) {
         final PolyConnectionHandle connection = getPolyphenyDbConnectionHandle( ch.id );
+        cancelPrefetches( ch.id );
         synchronized ( connection ) {
             if ( log.isTraceEnabled() ) {
                 log.trace( "rollback( ConnectionHandle {} )", ch );
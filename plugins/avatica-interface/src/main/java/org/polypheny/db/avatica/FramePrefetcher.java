@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.avatica;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+
+
+/**
+ * Produces the next frame of a result on a worker thread while the current frame is transferred to the client. At most
+ * one frame is produced ahead. Rows are produced while holding the lock of the connection, so that producing them never
+ * overlaps with other requests on the same connection.
+ */
+class FramePrefetcher {
+
+    private static final ExecutorService WORKERS;
+
+    static {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        WORKERS = Executors.newCachedThreadPool( r -> {
+            Thread thread = new Thread( r, "FramePrefetcher-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    private final Object lock;
+    private final IntFunction<List<List<Object>>> producer;
+
+    // Rows which have been produced but not yet returned to the client
+    private final Deque<List<Object>> buffer = new ArrayDeque<>();
+    private volatile Prefetch pending;
+    private boolean exhausted = false;
+    private volatile boolean closed = false;
+
+
+    /**
+     * @param lock Lock which is held by all requests on the connection
+     * @param producer Produces at most the given number of rows, fewer only if the result has no more rows
+     */
+    FramePrefetcher( Object lock, IntFunction<List<List<Object>>> producer ) {
+        this.lock = lock;
+        this.producer = producer;
+    }
+
+
+    /**
+     * Waits until the frame which is currently prefetched is available. Must be called without holding the lock.
+     */
+    void await() {
+        final Prefetch prefetch = pending;
+        if ( prefetch != null ) {
+            try {
+                prefetch.rows.get();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            } catch ( ExecutionException | CancellationException e ) {
+                // Reported by next()
+            }
+        }
+    }
+
+
+    /**
+     * Returns the next rows of the result, at most {@code maxRowCount}. Must be called while holding the lock.
+     */
+    List<List<Object>> next( int maxRowCount ) {
+        final Prefetch prefetch = pending;
+        pending = null;
+        if ( prefetch != null ) {
+            if ( prefetch.rows.isDone() && !prefetch.rows.isCancelled() ) {
+                final List<List<Object>> rows;
+                try {
+                    rows = prefetch.rows.join();
+                } catch ( CompletionException e ) {
+                    throw e.getCause() instanceof RuntimeException re ? re : new GenericRuntimeException( e.getCause() );
+                }
+                buffer.addAll( rows );
+                exhausted = rows.size() < prefetch.size;
+            } else {
+                // Not started yet, as the caller holds the lock
+                prefetch.cancelled = true;
+            }
+        }
+
+        final List<List<Object>> rows = new ArrayList<>( Math.min( maxRowCount, buffer.size() ) );
+        while ( rows.size() < maxRowCount && !buffer.isEmpty() ) {
+            rows.add( buffer.removeFirst() );
+        }
+        if ( rows.size() < maxRowCount && !exhausted ) {
+            final int missing = maxRowCount - rows.size();
+            final List<List<Object>> produced = producer.apply( missing );
+            exhausted = produced.size() < missing;
+            rows.addAll( produced );
+        }
+        return rows;
+    }
+
+
+    /**
+     * Starts producing the next frame on a worker thread. Must be called while holding the lock.
+     */
+    void prefetch( int maxRowCount ) {
+        if ( closed || exhausted || pending != null || maxRowCount <= 0 || buffer.size() >= maxRowCount ) {
+            return;
+        }
+        final Prefetch prefetch = new Prefetch( maxRowCount - buffer.size() );
+        pending = prefetch;
+        WORKERS.execute( prefetch );
+    }
+
+
+    /**
+     * Stops the prefetching and waits until a frame which is currently produced is complete, so that no rows are produced
+     * after the transaction of the statement has ended. Rows which have already been produced are kept. Must be called
+     * without holding the lock.
+     */
+    void cancel() {
+        closed = true;
+        final Prefetch prefetch = pending;
+        if ( prefetch != null ) {
+            prefetch.cancelled = true;
+        }
+        await();
+    }
+
+
+    /**
+     * Cancels the prefetching. Rows which have not been returned yet are discarded. Must be called while holding the lock.
+     */
+    void close() {
+        closed = true;
+        final Prefetch prefetch = pending;
+        if ( prefetch != null ) {
+            prefetch.cancelled = true;
+        }
+        buffer.clear();
+    }
+
+
+    private final class Prefetch implements Runnable {
+
+        private final int size;
+        private final CompletableFuture<List<List<Object>>> rows = new CompletableFuture<>();
+        private volatile boolean cancelled = false;
+
+
+        private Prefetch( int size ) {
+            this.size = size;
+        }
+
+
+        @Override
+        public void run() {
+            synchronized ( lock ) {
+                if ( cancelled || closed ) {
+                    rows.cancel( false );
+                    return;
+                }
+                try {
+                    rows.complete( producer.apply( size ) );
+                } catch ( Throwable e ) {
+                    rows.completeExceptionally( e );
+                }
+            }
+        }
+
+    }
+
+}
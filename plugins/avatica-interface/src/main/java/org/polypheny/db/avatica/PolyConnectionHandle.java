@@ -28,6 +28,7 @@
 import org.polypheny.db.catalog.entity.logical.LogicalNamespace;
 import org.polypheny.db.transaction.PUID.ConnectionId;
 import org.polypheny.db.transaction.PUID.UserId;
+import org.polypheny.db.transaction.Statement;
 import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.transaction.TransactionManager;
 
@@ -52,10 +53,16 @@ public class PolyConnectionHandle {
 
     private final TransactionManager transactionManager;
 
+    /**
+     * Lock wait timeout in milliseconds for all statements of this connection, {@code null} to use the runtime config.
+     */
+    @Getter
+    private final Long lockWaitTimeout;
+
     private final ConnectionProperties connectionProperties = new ConnectionPropertiesImpl( true, false, java.sql.Connection.TRANSACTION_SERIALIZABLE, Catalog.DATABASE_NAME, Catalog.DEFAULT_NAMESPACE_NAME );
 
 
-    public PolyConnectionHandle( final ConnectionHandle handle, final LogicalUser logicalUser, final String connectionId, final LogicalNamespace namespace, final TransactionManager transactionManager ) {
+    public PolyConnectionHandle( final ConnectionHandle handle, final LogicalUser logicalUser, final String connectionId, final LogicalNamespace namespace, final TransactionManager transactionManager, final Long lockWaitTimeout ) {
         this.handle = handle;
 
         this.userId = UserId.fromString( logicalUser.name );
@@ -63,6 +70,7 @@ public PolyConnectionHandle( final ConnectionHandle handle, final LogicalUser lo
         this.connectionId = ConnectionId.fromString( connectionId );
         this.namespace = namespace;
         this.transactionManager = transactionManager;
+        this.lockWaitTimeout = lockWaitTimeout;
     }
 
 
@@ -92,6 +100,18 @@ public Transaction getCurrentOrCreateNewTransaction() {
     }
 
 
+    /**
+     * Creates a statement in the current transaction, starting a new one if there is none.
+     */
+    public Statement createStatement() {
+        Statement statement = getCurrentOrCreateNewTransaction().createStatement();
+        if ( lockWaitTimeout != null ) {
+            statement.setLockWaitTimeout( lockWaitTimeout );
+        }
+        return statement;
+    }
+
+
     public void setCurrentOpenResultSet( PolyResultSet resultSet ) {
         this.currentOpenResultSet = resultSet;
     }
@@ -41,6 +41,8 @@
     @Setter
     private Statement statement;
 
+    private volatile transient FramePrefetcher prefetcher;
+
     @Getter
     private final StopWatch executionStopWatch = new StopWatch();
 
@@ -59,11 +61,24 @@ public synchronized void setOpenResultSet( Iterator<E> result ) {
     public synchronized void setSignature( PolySignature signature ) {
         this.signature = signature;
         this.openResultSet = null;
+        setPrefetcher( null );
         executionStopWatch.reset();
     }
 
 
+    /**
+     * Sets the prefetcher of the open result set and cancels the previous one.
+     */
+    public synchronized void setPrefetcher( FramePrefetcher prefetcher ) {
+        if ( this.prefetcher != null ) {
+            this.prefetcher.close();
+        }
+        this.prefetcher = prefetcher;
+    }
+
+
     public void unset() {
+        setPrefetcher( null );
         this.openResultSet = null;
         this.signature = null;
         if ( statement != null ) {
@@ -19,8 +19,11 @@
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntFunction;
 import javax.annotation.Nullable;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -28,6 +31,7 @@
 import org.polypheny.db.adapter.file.Value.DynamicValue;
 import org.polypheny.db.adapter.file.Value.InputValue;
 import org.polypheny.db.adapter.file.Value.LiteralValue;
+import org.polypheny.db.adapter.file.segment.ZoneMap;
 import org.polypheny.db.algebra.constant.Kind;
 import org.polypheny.db.algebra.enumerable.EnumUtils;
 import org.polypheny.db.algebra.type.AlgDataTypeField;
@@ -43,6 +47,16 @@
 
 public class Condition {
 
+    /**
+     * Operators which can be evaluated by a condition and are therefore pushed down to the file adapter
+     */
+    public static final Set<Kind> SUPPORTED_OPERATORS = Set.of(
+            Kind.AND, Kind.OR,
+            Kind.EQUALS, Kind.NOT_EQUALS,
+            Kind.GREATER_THAN, Kind.GREATER_THAN_OR_EQUAL,
+            Kind.LESS_THAN, Kind.LESS_THAN_OR_EQUAL,
+            Kind.IS_NULL, Kind.IS_NOT_NULL );
+
     private final Kind operator;
 
     private List<Value> values = new ArrayList<>();
@@ -191,6 +205,10 @@ public boolean matches( final List<PolyValue> columnValues, final List<AlgDataTy
                 return false;
             }
         } else if ( parameterValues.size() == 2 ) {
+            if ( value == null || value.isNull() || parameterValues.get( 1 ) == null || parameterValues.get( 1 ).isNull() ) {
+                // Comparisons with null are never true
+                return false;
+            }
             comparison = value.compareTo( parameterValues.get( 1 ) );
         } else {
             throw new GenericRuntimeException( "Unsupported number of values in condition: " + values.size() );
@@ -229,6 +247,85 @@ public boolean matches( final List<PolyValue> columnValues, final List<AlgDataTy
     }
 
 
+    /**
+     * Collects the indexes of all columns which are referenced by this condition.
+     */
+    public Set<Integer> getColumnReferences() {
+        final Set<Integer> references = new HashSet<>( getInputRefs() );
+        operands.forEach( operand -> references.addAll( operand.getColumnReferences() ) );
+        return references;
+    }
+
+
+    /**
+     * Determines with the help of zone maps whether any row of a segment could match the condition.
+     * The result is conservative: it is only {@code false} if {@link #matches} is {@code false} for all rows.
+     *
+     * @param zones Provides the zone map for the index of a column
+     * @return {@code False} if no row can match
+     */
+    public boolean mayMatch( final IntFunction<ZoneMap> zones, final DataContext dataContext ) {
+        if ( !operands.isEmpty() ) {
+            return switch ( operator ) {
+                case AND -> operands.stream().allMatch( c -> c.mayMatch( zones, dataContext ) );
+                case OR -> operands.stream().anyMatch( c -> c.mayMatch( zones, dataContext ) );
+                default -> true;
+            };
+        }
+
+        if ( values.size() == 1 && values.get( 0 ) instanceof InputValue input ) {
+            final ZoneMap zone = zones.apply( input.getIndex() );
+            return switch ( operator ) {
+                case IS_NULL -> zone.hasNulls();
+                case IS_NOT_NULL -> !zone.isAllNull();
+                default -> true;
+            };
+        }
+
+        if ( values.size() != 2 || (values.get( 0 ) instanceof InputValue) == (values.get( 1 ) instanceof InputValue) ) {
+            return true;
+        }
+        // Normalize to <column> <operator> <constant>
+        final boolean flipped = values.get( 1 ) instanceof InputValue;
+        final ZoneMap zone = zones.apply( ((InputValue) values.get( flipped ? 1 : 0 )).getIndex() );
+        final PolyValue constant = values.get( flipped ? 0 : 1 ).getValue( List.of(), dataContext, 0 );
+        if ( constant == null || constant.isNull() || zone.isAllNull() ) {
+            return false;
+        }
+        if ( !zone.isBounded() ) {
+            return true;
+        }
+        final int min;
+        final int max;
+        try {
+            min = zone.getMin().compareTo( constant );
+            max = zone.getMax().compareTo( constant );
+        } catch ( RuntimeException e ) {
+            return true;
+        }
+        return switch ( flipped ? flip( operator ) : operator ) {
+            case EQUALS -> min <= 0 && max >= 0;
+            case NOT_EQUALS -> min != 0 || max != 0;
+            case GREATER_THAN -> max > 0;
+            case GREATER_THAN_OR_EQUAL -> max >= 0;
+            case LESS_THAN -> min < 0;
+            case LESS_THAN_OR_EQUAL -> min <= 0;
+            default -> true;
+        };
+    }
+
+
+    private static Kind flip( Kind operator ) {
+        return switch ( operator ) {
+            case GREATER_THAN -> Kind.LESS_THAN;
+            case GREATER_THAN_OR_EQUAL -> Kind.LESS_THAN_OR_EQUAL;
+            case LESS_THAN -> Kind.GREATER_THAN;
+            case LESS_THAN_OR_EQUAL -> Kind.GREATER_THAN_OR_EQUAL;
+            default -> operator;
+        };
+    }
+
+
     public void adjust( Value[] projectionMapping ) {
         operands.forEach( operand -> operand.adjust( projectionMapping ) );
         values.forEach( value -> value.adjust( List.of( projectionMapping ) ) );
@@ -77,6 +77,9 @@ public class FileEnumerator implements Enumerator<PolyValue[]> {
     final Integer[] pkMapping;
     final File hardlinkFolder;
     private boolean ongoing = true;
+    // Columns which are read before and after evaluating the condition of a SELECT
+    private final boolean[] filterColumns;
+    private final boolean[] lateColumns;
 
 
     /**
@@ -151,6 +154,29 @@ public FileEnumerator(
             }
             this.projectedTypes = projectedTypes;
         }
+        // With a condition, a SELECT only reads the columns referenced by the condition first and the remaining
+        // projected columns only for matching rows
+        if ( condition != null && operation == Operation.SELECT ) {
+            this.filterColumns = new boolean[columnIds.length];
+            this.lateColumns = new boolean[columnIds.length];
+            condition.getColumnReferences().forEach( index -> filterColumns[index] = true );
+            if ( projectionMapping == null ) {
+                Arrays.fill( lateColumns, true );
+            } else {
+                for ( Value value : projectionMapping ) {
+                    if ( value.valueType == ValueType.INPUT ) {
+                        lateColumns[((InputValue) value).getIndex()] = true;
+                    }
+                }
+            }
+            for ( int i = 0; i < columnIds.length; i++ ) {
+                lateColumns[i] &= !filterColumns[i];
+            }
+        } else {
+            this.filterColumns = null;
+            this.lateColumns = null;
+        }
+
         // We want to read data where an insert has been prepared and skip data where a deletion has been prepared.
         String xidHash = FileStore.SHA.hashString( dataContext.getStatement().getTransaction().getXid().toString(), FileStore.CHARSET ).toString();
         FileFilter fileFilter = file -> !file.isHidden() && !file.getName().startsWith( "~$" ) && (!file.getName().startsWith( "_" ) || file.getName().startsWith( "_ins_" + xidHash ));
@@ -245,7 +271,26 @@ else if ( fileListPosition < 0 ) {
                 File currentFile = fileList[fileListPosition];
                 List<PolyValue> curr;
 
-                if ( condition != null ) {
+                if ( condition != null && filterColumns != null ) {
+                    curr = new ArrayList<>( Collections.nCopies( numOfCols, null ) );
+                    // If none of the filter columns exist, the complete row decides whether the row exists
+                    if ( readColumns( currentFile, curr, filterColumns ) ) {
+                        if ( !condition.matches( curr, columnTypes, dataContext ) ) {
+                            fileListPosition++;
+                            continue;
+                        }
+                        readColumns( currentFile, curr, lateColumns );
+                    } else {
+                        curr = fileToRow( currentFile );
+                        if ( curr == null ) {
+                            return false;
+                        }
+                        if ( !condition.matches( curr, columnTypes, dataContext ) ) {
+                            fileListPosition++;
+                            continue;
+                        }
+                    }
+                } else if ( condition != null ) {
                     curr = fileToRow( currentFile );
 
                     if ( curr == null ) {
@@ -374,42 +419,54 @@ private void handleUpdate( List<PolyValue> curr ) throws IOException {
     @Nullable
     private List<PolyValue> fileToRow( final File currentFile ) throws IOException {
         List<PolyValue> curr = new ArrayList<>( Collections.nCopies( numOfCols, null ) );
-        int i = 0;
+        return readColumns( currentFile, curr, null ) ? curr : null;
+    }
+
+
+    /**
+     * Reads the values of a row for the given columns
+     *
+     * @param currentFile The filename of the {@code currentFile} is used to find the files in the respective column folders
+     * @param row The row into which the values are read
+     * @param columns The columns to read or {@code null} to read all columns
+     * @return Whether any of the read columns has a value
+     */
+    private boolean readColumns( final File currentFile, final List<PolyValue> row, @Nullable final boolean[] columns ) throws IOException {
         boolean allNull = true;
-        for ( File colFolder : columnFolders ) {
+        for ( int i = 0; i < numOfCols; i++ ) {
+            if ( columns != null && !columns[i] ) {
+                continue;
+            }
+            File colFolder = columnFolders.get( i );
             File f = new File( colFolder, currentFile.getName() );
             String s;
 
             if ( f.exists() ) {
                 s = Files.readString( f.toPath(), FileStore.CHARSET );
                 if ( s.isEmpty() ) {
-                    curr.set( i, null );
-                    i++;
+                    row.set( i, null );
                     continue;
                 }
             } else {
-                curr.set( i, null );
-                i++;
+                row.set( i, null );
                 continue;
             }
             allNull = false;
             if ( columnTypes.get( i ).getType().getPolyType().getFamily() == PolyTypeFamily.MULTIMEDIA ) {
                 if ( dataContext.getStatement().getTransaction().getFlavor() == MultimediaFlavor.DEFAULT ) {
-                    curr.set( i, PolyTypeUtil.stringToObject( s, columnTypes.get( i ) ) );
+                    row.set( i, PolyTypeUtil.stringToObject( s, columnTypes.get( i ) ) );
                 } else {
                     File hardLink = new File( hardlinkFolder, colFolder.getName() + "_" + f.getName() );
                     if ( !hardLink.exists() ) {
                         Files.createLink( hardLink.toPath(), f.toPath() );
                     }
-                    //curr[i] = f;
-                    curr.set( i, PolyBlob.of( hardLink ) );
+                    row.set( i, PolyBlob.of( hardLink ) );
                 }
             } else {
-                curr.set( i, PolyTypeUtil.stringToObject( s, columnTypes.get( i ) ) );
+                row.set( i, PolyTypeUtil.stringToObject( s, columnTypes.get( i ) ) );
             }
-            i++;
         }
-        return allNull ? null : curr;
+        return !allNull;
     }
 
 
@@ -435,10 +492,15 @@ public void close() {
     }
 
 
+    int hashRow( final List<PolyValue> row ) {
+        return hashRow( row, pkMapping );
+    }
+
+
     /**
      * Hash only the elements of a row that are part of the primary key
      */
-    int hashRow( final List<PolyValue> row ) {
+    public static int hashRow( final List<PolyValue> row, final Integer[] pkMapping ) {
         Object[] toHash = new Object[pkMapping.length];
         for ( int i = 0; i < pkMapping.length; i++ ) {
             PolyValue obj = row.get( pkMapping[i] );
@@ -33,6 +33,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.experimental.Delegate;
@@ -46,6 +47,9 @@
 import org.polypheny.db.adapter.DeployMode;
 import org.polypheny.db.adapter.RelationalModifyDelegate;
 import org.polypheny.db.adapter.annotations.AdapterProperties;
+import org.polypheny.db.adapter.annotations.AdapterSettingList;
+import org.polypheny.db.adapter.file.segment.SegmentMigration;
+import org.polypheny.db.adapter.file.segment.SegmentTable;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.catalogs.RelAdapterCatalog;
 import org.polypheny.db.catalog.entity.allocation.AllocationTable;
@@ -77,6 +81,8 @@
         description = "An adapter that stores all data as files. It is especially suitable for multimedia collections.",
         usedModes = DeployMode.EMBEDDED,
         defaultMode = DeployMode.EMBEDDED)
+@AdapterSettingList(name = "storageFormat", options = { "files", "segments" }, defaultValue = "files", required = false, modifiable = true,
+        description = "Whether the values of a table are packed into segments or stored as one file per value. Switching to segments migrates all tables.")
 public class FileStore extends DataStore<RelAdapterCatalog> {
 
     @Delegate(excludes = Exclude.class)
@@ -101,6 +107,8 @@ public class FileStore extends DataStore<RelAdapterCatalog> {
     @Getter
     private final List<PolyType> unsupportedTypes = ImmutableList.of( PolyType.ARRAY, PolyType.MAP );
 
+    private final Map<Long, SegmentTable> segmentTables = new ConcurrentHashMap<>();
+
 
     public FileStore( final long storeId, final String uniqueName, final Map<String, String> settings ) {
         super( storeId, uniqueName, settings, true, new RelAdapterCatalog( storeId ) );
@@ -174,10 +182,14 @@ public List<PhysicalEntity> createTable( Context context, LogicalTableWrapper lo
                 logical.columns.stream().collect( Collectors.toMap( c -> c.id, c -> c ) ),
                 logical.pkIds, allocationWrapper );
 
-        for ( LogicalColumn col : logical.columns ) {
-            File newColumnFolder = getColumnFolder( col.id, allocationWrapper.table.id );
-            if ( !newColumnFolder.mkdir() ) {
-                throw new GenericRuntimeException( "Could not create column folder " + newColumnFolder.getAbsolutePath() );
+        if ( isSegmented() ) {
+            getSegmentTable( allocationWrapper.table.id );
+        } else {
+            for ( LogicalColumn col : logical.columns ) {
+                File newColumnFolder = getColumnFolder( col.id, allocationWrapper.table.id );
+                if ( !newColumnFolder.mkdir() ) {
+                    throw new GenericRuntimeException( "Could not create column folder " + newColumnFolder.getAbsolutePath() );
+                }
             }
         }
 
@@ -199,6 +211,15 @@ public void dropTable( Context context, long allocId ) {
         // TODO check if it is on this store?
 
         PhysicalTable table = adapterCatalog.fromAllocation( allocId );
+        SegmentTable segmentTable = segmentTables.remove( allocId );
+        File tableFolder = new File( rootDir, getPhysicalTableName( allocId ) );
+        if ( segmentTable != null || tableFolder.exists() ) {
+            try {
+                FileUtils.deleteDirectory( tableFolder );
+            } catch ( IOException e ) {
+                throw new GenericRuntimeException( "Could not drop table " + allocId, e );
+            }
+        }
         for ( long colId : table.getColumnIds() ) {
             File f = getColumnFolder( colId, allocId );
             try {
@@ -234,16 +255,26 @@ public void addColumn( Context context, long allocId, LogicalColumn logicalColum
         int max = adapterCatalog.getColumns( allocId ).stream().max( Comparator.comparingInt( a -> a.position ) ).orElseThrow().position;
         PhysicalColumn column = adapterCatalog.addColumn( getPhysicalColumnName( logicalColumn.id, allocId ), allocId, max + 1, logicalColumn );
 
-        File newColumnFolder = getColumnFolder( column.id, allocId );
-        if ( !newColumnFolder.mkdir() ) {
-            throw new GenericRuntimeException( "Could not create column folder " + newColumnFolder.getName() );
-        }
-
         PolyValue value = PolyNull.NULL;
         // Add default values
         if ( column.defaultValue != null ) {
             value = column.defaultValue.value;
         }
+
+        if ( isSegmented() ) {
+            try {
+                getSegmentTable( allocId ).addColumn( column.id, value );
+            } catch ( IOException e ) {
+                throw new GenericRuntimeException( "Caught exception while inserting default values", e );
+            }
+            updateNativePhysical( allocId, table.getPkIds() );
+            return;
+        }
+
+        File newColumnFolder = getColumnFolder( column.id, allocId );
+        if ( !newColumnFolder.mkdir() ) {
+            throw new GenericRuntimeException( "Could not create column folder " + newColumnFolder.getName() );
+        }
         try {
             File primaryKeyDir = new File( rootDir, getPhysicalColumnName( table.columns.get( 0 ).id, allocId ) );
             for ( File entry : Objects.requireNonNull( primaryKeyDir.listFiles() ) ) {
@@ -273,6 +304,9 @@ public void dropColumn( Context context, long allocId, long columnId ) {
         File columnFile = getColumnFolder( columnId, allocId );
         try {
             FileUtils.deleteDirectory( columnFile );
+            if ( isSegmented() ) {
+                getSegmentTable( allocId ).dropColumn( columnId );
+            }
         } catch ( IOException e ) {
             throw new GenericRuntimeException( "Could not delete column folder", e );
         }
@@ -387,7 +421,7 @@ public void commitOrRollback( final PolyXid xid, final boolean commit ) {
             movePrefix = "_del_" + xidHash;
         }
         if ( rootDir.listFiles() != null ) {
-            for ( File columnFolder : rootDir.listFiles( File::isDirectory ) ) {
+            for ( File columnFolder : rootDir.listFiles( f -> f.isDirectory() && f.getName().startsWith( "col" ) ) ) {
                 for ( File data : columnFolder.listFiles( f -> !f.isHidden() && f.getName().startsWith( deletePrefix ) ) ) {
                     data.delete();
                 }
@@ -421,10 +455,31 @@ public void commitOrRollback( final PolyXid xid, final boolean commit ) {
                 }
             }
         }
+        commitOrRollbackSegments( xidHash, commit );
         cleanupHardlinks( xid );
     }
 
 
+    private void commitOrRollbackSegments( final String xidHash, final boolean commit ) {
+        File[] tableFolders = rootDir.listFiles( f -> f.isDirectory() && f.getName().startsWith( "tab" ) );
+        if ( tableFolders == null ) {
+            return;
+        }
+        for ( File tableFolder : tableFolders ) {
+            SegmentTable table = getSegmentTable( Long.parseLong( tableFolder.getName().substring( 3 ) ) );
+            try {
+                if ( commit ) {
+                    table.commit( xidHash );
+                } else {
+                    table.rollback( xidHash );
+                }
+            } catch ( IOException e ) {
+                throw new GenericRuntimeException( "Could not " + (commit ? "commit" : "roll back") + " the segments of " + tableFolder.getName(), e );
+            }
+        }
+    }
+
+
     private void cleanupHardlinks( final PolyXid xid ) {
         File hardlinkFolder = new File( rootDir, "hardlinks/" + SHA.hashString( xid.toString(), FileStore.CHARSET ).toString() );
         if ( hardlinkFolder.exists() ) {
@@ -442,6 +497,10 @@ public void truncate( Context context, long allocId ) {
         //context.getStatement().getTransaction().registerInvolvedStore( this );
         PhysicalTable table = adapterCatalog.fromAllocation( allocId ).unwrap( FileTranslatableEntity.class ).orElseThrow();
         try {
+            if ( isSegmented() ) {
+                getSegmentTable( allocId ).truncate();
+                return;
+            }
             for ( PhysicalColumn column : table.columns ) {
                 File columnFolder = getColumnFolder( column.id, allocId );
                 FileUtils.cleanDirectory( columnFolder );
@@ -494,7 +553,49 @@ public void shutdown() {
 
     @Override
     protected void reloadSettings( List<String> updatedSettings ) {
-        throw new UnsupportedOperationException( "Cannot change directory" );
+        if ( !updatedSettings.equals( List.of( "storageFormat" ) ) ) {
+            throw new UnsupportedOperationException( "Cannot change directory" );
+        }
+        if ( isSegmented() ) {
+            migrateToSegments();
+        } else if ( Objects.requireNonNull( rootDir.list( ( dir, name ) -> name.startsWith( "tab" ) ) ).length > 0 ) {
+            settings.put( "storageFormat", "segments" );
+            throw new GenericRuntimeException( "Tables stored in segments cannot be converted back to one file per value" );
+        }
+    }
+
+
+    /**
+     * Converts all tables of this store from one file per value into segments.
+     */
+    private void migrateToSegments() {
+        for ( PhysicalEntity entity : adapterCatalog.physicals.values() ) {
+            FileTranslatableEntity table = entity.unwrap( FileTranslatableEntity.class ).orElse( null );
+            if ( table == null ) {
+                continue;
+            }
+            List<Long> columnIds = table.columns.stream().map( c -> c.id ).toList();
+            List<File> columnFolders = columnIds.stream().map( id -> getColumnFolder( id, table.allocationId ) ).toList();
+            try {
+                SegmentMigration.migrate( columnFolders, columnIds, table.getPkIds(), getSegmentTable( table.allocationId ) );
+            } catch ( IOException e ) {
+                throw new GenericRuntimeException( "Could not migrate table " + table.name, e );
+            }
+        }
+    }
+
+
+    /**
+     * Whether the tables are stored in segments instead of one file per value.
+     * Stores created before the segments were introduced have no setting and use files.
+     */
+    public boolean isSegmented() {
+        return "segments".equals( settings.get( "storageFormat" ) );
+    }
+
+
+    public SegmentTable getSegmentTable( final long allocId ) {
+        return segmentTables.computeIfAbsent( allocId, id -> new SegmentTable( new File( rootDir, getPhysicalTableName( id ) ) ) );
     }
 
 
@@ -31,6 +31,9 @@
 import org.polypheny.db.adapter.AdapterManager;
 import org.polypheny.db.adapter.DataContext;
 import org.polypheny.db.adapter.file.FileAlg.FileImplementor.Operation;
+import org.polypheny.db.adapter.file.segment.SegmentEnumerator;
+import org.polypheny.db.adapter.file.segment.SegmentModifier;
+import org.polypheny.db.adapter.file.segment.SegmentTable;
 import org.polypheny.db.catalog.entity.physical.PhysicalTable;
 import org.polypheny.db.schema.Namespace;
 import org.polypheny.db.type.entity.PolyValue;
@@ -93,7 +96,17 @@ public static Enumerable<PolyValue[]> execute(
             final @Nullable List<Value> projectionMapping,
             final Condition condition,
             final List<List<PolyValue>> updates ) {
-        dataContext.getStatement().getTransaction().registerInvolvedAdapter( AdapterManager.getInstance().getAdapter( adapterId ).orElseThrow() );
+        final Adapter<?> adapter = AdapterManager.getInstance().getAdapter( adapterId ).orElseThrow();
+        dataContext.getStatement().getTransaction().registerInvolvedAdapter( adapter );
+        if ( adapter instanceof FileStore store && store.isSegmented() ) {
+            final SegmentTable table = store.getSegmentTable( allocId );
+            return new AbstractEnumerable<>() {
+                @Override
+                public Enumerator<PolyValue[]> enumerator() {
+                    return new SegmentEnumerator( operation, table, columnIds, entity, pkIds, projectionMapping, dataContext, condition, updates );
+                }
+            };
+        }
         return new AbstractEnumerable<>() {
             @Override
             public Enumerator<PolyValue[]> enumerator() {
@@ -121,7 +134,8 @@ public static Enumerable<PolyValue[]> executeModify(
             final Boolean isBatch,
             final List<List<PolyValue>> insertValues,
             final Condition condition ) {
-        dataContext.getStatement().getTransaction().registerInvolvedAdapter( AdapterManager.getInstance().getAdapter( adapterId ).orElseThrow() );
+        final Adapter<?> adapter = AdapterManager.getInstance().getAdapter( adapterId ).orElseThrow();
+        dataContext.getStatement().getTransaction().registerInvolvedAdapter( adapter );
         final List<List<PolyValue>> insert;
 
         List<List<PolyValue>> rows = new ArrayList<>();
@@ -148,6 +162,15 @@ public static Enumerable<PolyValue[]> executeModify(
         }
         insert = rows;
 
+        if ( adapter instanceof FileStore store && store.isSegmented() ) {
+            final SegmentTable table = store.getSegmentTable( allocId );
+            return new AbstractEnumerable<>() {
+                @Override
+                public Enumerator<PolyValue[]> enumerator() {
+                    return new SegmentModifier( operation, table, columnIds, entity, pkIds, dataContext, insert, condition );
+                }
+            };
+        }
         return new AbstractEnumerable<>() {
             @Override
             public Enumerator<PolyValue[]> enumerator() {
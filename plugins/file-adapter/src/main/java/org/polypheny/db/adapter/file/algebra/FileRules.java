@@ -24,11 +24,11 @@
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.adapter.file.Condition;
 import org.polypheny.db.adapter.file.FileConvention;
 import org.polypheny.db.adapter.file.FileSchema;
 import org.polypheny.db.adapter.file.FileTranslatableEntity;
 import org.polypheny.db.algebra.AlgNode;
-import org.polypheny.db.algebra.constant.Kind;
 import org.polypheny.db.algebra.convert.ConverterRule;
 import org.polypheny.db.algebra.core.AlgFactories;
 import org.polypheny.db.algebra.core.Filter;
@@ -361,7 +361,7 @@ private static class CheckingFunctionVisitor extends RexVisitorImpl<Void> {
 
         @Override
         public Void visitCall( RexCall call ) {
-            if ( !isProject && call.getKind() == Kind.EQUALS ) {
+            if ( !isProject && Condition.SUPPORTED_OPERATORS.contains( call.getKind() ) ) {
                 return super.visitCall( call );
             }
             containsFunction = true;
@@ -19,6 +19,7 @@
  * File Adapter
  *
  * The File Adapter stores all data as files. It is especially suitable for multimedia collections.
+ * Tables are either stored as one file per value or packed into segments, see {@link org.polypheny.db.adapter.file.segment.SegmentTable}.
  */
 
 package org.polypheny.db.adapter.file;
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.adapter.file.FileStore;
+import org.polypheny.db.type.entity.PolyNull;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.category.PolyBlob;
+
+
+/**
+ * A directory holding a batch of rows of a table in columnar form.
+ * <p>
+ * Every column is stored in a values file ({@code <columnId>.val}) containing the typed JSON of every row as
+ * {@code [int length][bytes]}, a length of {@code -1} denotes {@code null}. The offset index ({@code <columnId>.off})
+ * contains the start of every row in the values file. Additionally, the segment holds the hashes of the primary keys
+ * ({@code pk}), which also determine the number of rows, a bitmap of the deleted rows ({@code del}) and a
+ * {@link ZoneMap} per column ({@code <columnId>.zm}).
+ * <p>
+ * Committed segments are only modified by replacing their tombstone bitmap. Rows are appended only to the pending
+ * segment of a transaction.
+ */
+public class Segment {
+
+    public static final long PENDING = -1;
+
+    static final String PK_FILE = "pk";
+    static final String TOMBSTONE_FILE = "del";
+    static final String VALUES_SUFFIX = ".val";
+    static final String OFFSETS_SUFFIX = ".off";
+
+    @Getter
+    private final long id;
+    @Getter
+    private final File directory;
+
+
+    Segment( long id, File directory ) {
+        this.id = id;
+        this.directory = directory;
+    }
+
+
+    public int getRowCount() {
+        return (int) (new File( directory, PK_FILE ).length() / Integer.BYTES);
+    }
+
+
+    public BitSet readTombstones() throws IOException {
+        final File file = new File( directory, TOMBSTONE_FILE );
+        if ( !file.exists() ) {
+            return new BitSet();
+        }
+        return BitSet.valueOf( Files.readAllBytes( file.toPath() ) );
+    }
+
+
+    void writeTombstones( BitSet tombstones ) throws IOException {
+        final File tmp = new File( directory, TOMBSTONE_FILE + ".tmp" );
+        Files.write( tmp.toPath(), tombstones.toByteArray() );
+        Files.move( tmp.toPath(), new File( directory, TOMBSTONE_FILE ).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+
+    public int[] readPrimaryKeyHashes() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( new File( directory, PK_FILE ).toPath() ) );
+        final int[] hashes = new int[buffer.remaining() / Integer.BYTES];
+        buffer.asIntBuffer().get( hashes );
+        return hashes;
+    }
+
+
+    public Set<Long> getColumnIds() {
+        final Set<Long> columnIds = new HashSet<>();
+        for ( final String name : Objects.requireNonNull( directory.list( ( dir, name ) -> name.endsWith( VALUES_SUFFIX ) ) ) ) {
+            columnIds.add( Long.parseLong( name.substring( 0, name.length() - VALUES_SUFFIX.length() ) ) );
+        }
+        return columnIds;
+    }
+
+
+    /**
+     * Opens a cursor over the values of the given column. If the column is not present in this segment, e.g. because
+     * it was added without a default value, the cursor returns {@code null} for every row.
+     */
+    public ColumnCursor openColumn( long columnId ) throws IOException {
+        final File file = valuesFile( directory, columnId );
+        if ( !file.exists() ) {
+            return new ColumnCursor( null );
+        }
+        return new ColumnCursor( file );
+    }
+
+
+    /**
+     * Reads the zone map of a column. A column which is not present in this segment is {@code null} in every row.
+     */
+    public ZoneMap readZoneMap( long columnId ) throws IOException {
+        final int rows = getRowCount();
+        if ( !valuesFile( directory, columnId ).exists() ) {
+            return ZoneMap.ofNulls( rows );
+        }
+        return ZoneMap.read( directory, columnId, rows );
+    }
+
+
+    /**
+     * Reads a single value of a column using the offset index.
+     */
+    @Nullable
+    public byte[] readEncoded( long columnId, int row ) throws IOException {
+        final File values = valuesFile( directory, columnId );
+        if ( !values.exists() ) {
+            return null;
+        }
+        try ( FileChannel offsets = FileChannel.open( offsetsFile( directory, columnId ).toPath(), StandardOpenOption.READ );
+                FileChannel channel = FileChannel.open( values.toPath(), StandardOpenOption.READ ) ) {
+            final long position = readFully( offsets, ByteBuffer.allocate( Long.BYTES ), (long) row * Long.BYTES ).getLong();
+            final int length = readFully( channel, ByteBuffer.allocate( Integer.BYTES ), position ).getInt();
+            if ( length < 0 ) {
+                return null;
+            }
+            return readFully( channel, ByteBuffer.allocate( length ), position + Integer.BYTES ).array();
+        }
+    }
+
+
+    private static ByteBuffer readFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            if ( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                throw new IOException( "Unexpected end of segment file" );
+            }
+        }
+        return buffer.flip();
+    }
+
+
+    static File valuesFile( File directory, long columnId ) {
+        return new File( directory, columnId + VALUES_SUFFIX );
+    }
+
+
+    static File offsetsFile( File directory, long columnId ) {
+        return new File( directory, columnId + OFFSETS_SUFFIX );
+    }
+
+
+    @Nullable
+    static byte[] encode( @Nullable PolyValue value ) {
+        if ( value == null || value.isNull() ) {
+            return null;
+        }
+        if ( value.isBlob() ) {
+            // Streams cannot be serialized, blobs are stored inline
+            value = PolyBlob.of( value.asBlob().asByteArray() );
+        }
+        return value.toTypedJson().getBytes( FileStore.CHARSET );
+    }
+
+
+    public static PolyValue decode( @Nullable byte[] bytes ) {
+        if ( bytes == null || bytes.length == 0 ) {
+            return PolyNull.NULL;
+        }
+        return PolyValue.fromTypedJson( new String( bytes, FileStore.CHARSET ), PolyValue.class );
+    }
+
+
+    /**
+     * Sequentially reads the values of a column. Files which fit into a single mapping are memory-mapped, larger files
+     * are read through a buffered stream.
+     */
+    public static class ColumnCursor implements Closeable {
+
+        private final MappedByteBuffer mapped;
+        private final DataInputStream stream;
+
+
+        private ColumnCursor( @Nullable File file ) throws IOException {
+            if ( file == null ) {
+                this.mapped = null;
+                this.stream = null;
+            } else if ( file.length() <= Integer.MAX_VALUE ) {
+                try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+                    this.mapped = channel.map( MapMode.READ_ONLY, 0, channel.size() );
+                }
+                this.stream = null;
+            } else {
+                this.mapped = null;
+                this.stream = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) );
+            }
+        }
+
+
+        /**
+         * @return The encoded next value or {@code null}
+         */
+        @Nullable
+        public byte[] next() throws IOException {
+            if ( mapped == null && stream == null ) {
+                return null;
+            }
+            final int length = mapped != null ? mapped.getInt() : stream.readInt();
+            if ( length < 0 ) {
+                return null;
+            }
+            final byte[] bytes = new byte[length];
+            if ( mapped != null ) {
+                mapped.get( bytes );
+            } else {
+                stream.readFully( bytes );
+            }
+            return bytes;
+        }
+
+
+        public void skip() throws IOException {
+            if ( mapped == null && stream == null ) {
+                return;
+            }
+            final int length = mapped != null ? mapped.getInt() : stream.readInt();
+            if ( length <= 0 ) {
+                return;
+            }
+            if ( mapped != null ) {
+                mapped.position( mapped.position() + length );
+            } else {
+                stream.skipNBytes( length );
+            }
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            if ( stream != null ) {
+                stream.close();
+            }
+        }
+
+    }
+
+}
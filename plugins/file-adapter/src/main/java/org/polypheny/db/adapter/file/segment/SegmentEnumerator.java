@@ -0,0 +1,383 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.adapter.file.Condition;
+import org.polypheny.db.adapter.file.FileAlg.FileImplementor.Operation;
+import org.polypheny.db.adapter.file.FileEnumerator;
+import org.polypheny.db.adapter.file.FileEnumerator.EnumerableDataContext;
+import org.polypheny.db.adapter.file.FileStore;
+import org.polypheny.db.adapter.file.FileTranslatableEntity;
+import org.polypheny.db.adapter.file.Value;
+import org.polypheny.db.adapter.file.Value.InputValue;
+import org.polypheny.db.adapter.file.Value.ValueType;
+import org.polypheny.db.algebra.type.AlgDataTypeField;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.numerical.PolyLong;
+
+
+/**
+ * Counterpart of the {@link FileEnumerator} for tables stored in {@link Segment segments}.
+ * <p>
+ * The enumerator reads the committed segments followed by the pending segment of the transaction, skipping rows
+ * that are marked as deleted in the tombstones of a segment or in the pending deletes of the transaction.
+ * <p>
+ * Segments whose {@link ZoneMap zone maps} rule out a match of the condition are skipped entirely. Within a segment,
+ * only the columns of the condition are read for every row, the remaining required columns are only decoded for the
+ * matching rows.
+ */
+public class SegmentEnumerator implements Enumerator<PolyValue[]> {
+
+    PolyValue[] current;
+    final Operation operation;
+    final SegmentTable table;
+    final List<Long> columnIds;
+    final DataContext dataContext;
+    final String xidHash;
+    final Integer[] pkMapping;
+    private final Condition condition;
+    private final List<Value> projectionMapping;
+    private final List<AlgDataTypeField> columnTypes;
+    private final Map<Integer, Value> updates = new HashMap<>();
+    // Columns which are read for every row, respectively only for rows matching the condition
+    private final boolean[] filterColumns;
+    private final boolean[] lateColumns;
+
+    // State of the current scan
+    private List<Segment> sources = null;
+    private Map<Long, BitSet> pendingDeletes;
+    private int sourceIndex;
+    private Segment segment;
+    private int rows;
+    private int row;
+    private BitSet deleted;
+    private final Segment.ColumnCursor[] cursors;
+    private List<PolyValue> values;
+    // Whether the late columns of the current row have neither been read nor skipped
+    private boolean latePending = false;
+    private boolean exhausted = false;
+    private boolean ongoing = true;
+
+
+    public SegmentEnumerator(
+            final Operation operation,
+            final SegmentTable table,
+            final Long[] columnIds,
+            final FileTranslatableEntity entity,
+            final List<Long> pkIds,
+            final @Nullable List<Value> projectionMapping,
+            final DataContext dataContext,
+            final @Nullable Condition condition,
+            final @Nullable List<List<PolyValue>> updates ) {
+        this.operation = operation;
+        if ( operation == Operation.DELETE || operation == Operation.UPDATE ) {
+            current = new PolyLong[]{ PolyLong.of( 0L ) };
+        }
+        this.table = table;
+        this.columnIds = List.of( columnIds );
+        this.dataContext = operation == Operation.INSERT ? dataContext : new EnumerableDataContext( dataContext );
+        this.xidHash = FileStore.SHA.hashString( dataContext.getStatement().getTransaction().getXid().toString(), FileStore.CHARSET ).toString();
+        this.condition = condition;
+        this.projectionMapping = projectionMapping;
+        this.columnTypes = entity.getTupleType().getFields();
+        if ( updates != null ) {
+            for ( PolyValue update : updates.get( 0 ) ) {
+                this.updates.put( ((Value) update).getColumnReference(), (Value) update );
+            }
+        }
+
+        this.pkMapping = new Integer[pkIds.size()];
+        for ( int i = 0; i < pkIds.size(); i++ ) {
+            pkMapping[i] = this.columnIds.indexOf( pkIds.get( i ) );
+        }
+
+        // The columns of the condition are read first, the remaining columns are only read for matching rows.
+        // A SELECT needs the projected columns, a DELETE no further columns and an UPDATE the complete row.
+        this.filterColumns = new boolean[columnIds.length];
+        this.lateColumns = new boolean[columnIds.length];
+        if ( condition != null ) {
+            condition.getColumnReferences().forEach( index -> filterColumns[index] = true );
+        }
+        if ( operation == Operation.SELECT && projectionMapping != null ) {
+            for ( Value value : projectionMapping ) {
+                if ( value.valueType == ValueType.INPUT ) {
+                    lateColumns[((InputValue) value).getIndex()] = true;
+                }
+            }
+        } else if ( operation != Operation.DELETE ) {
+            Arrays.fill( lateColumns, true );
+        }
+        for ( int i = 0; i < columnIds.length; i++ ) {
+            lateColumns[i] &= !filterColumns[i];
+        }
+        this.cursors = new Segment.ColumnCursor[columnIds.length];
+    }
+
+
+    @Override
+    public PolyValue[] current() {
+        return current;
+    }
+
+
+    @Override
+    public boolean moveNext() {
+        try {
+            if ( operation == Operation.SELECT ) {
+                if ( sources == null ) {
+                    if ( exhausted ) {
+                        return false;
+                    }
+                    startScan();
+                }
+                while ( !dataContext.getStatement().getTransaction().getCancelFlag().get() && advance() ) {
+                    if ( condition == null || condition.matches( values, columnTypes, dataContext ) ) {
+                        materialize();
+                        current = (projectionMapping == null ? values : project( values )).toArray( new PolyValue[0] );
+                        return true;
+                    }
+                }
+                exhausted = true;
+                finishScan();
+                return false;
+            } else if ( operation == Operation.INSERT ) {
+                throw new GenericRuntimeException( "Not supported" );
+            }
+            if ( !ongoing ) {
+                return false;
+            }
+            current = new PolyLong[]{ PolyLong.of( modify() ) };
+            if ( ((EnumerableDataContext) dataContext).isEmpty() ) {
+                ongoing = false;
+            } else {
+                ((EnumerableDataContext) dataContext).next();
+            }
+            return true;
+        } catch ( IOException | RuntimeException e ) {
+            throw new GenericRuntimeException( e );
+        }
+    }
+
+
+    /**
+     * Executes a DELETE or UPDATE for the current batch of parameters.
+     *
+     * @return The number of modified rows
+     */
+    private long modify() throws IOException {
+        final Map<Long, BitSet> deletes = new HashMap<>();
+        final List<List<PolyValue>> inserts = new ArrayList<>();
+        final List<Integer> hashes = new ArrayList<>();
+        long count = 0;
+        startScan();
+        try {
+            while ( advance() ) {
+                if ( dataContext.getStatement().getTransaction().getCancelFlag().get() ) {
+                    break;
+                }
+                if ( condition != null && !condition.matches( values, columnTypes, dataContext ) ) {
+                    continue;
+                }
+                deletes.computeIfAbsent( segment.getId(), k -> new BitSet() ).set( row - 1 );
+                if ( operation == Operation.UPDATE ) {
+                    materialize();
+                    final List<PolyValue> updated = new ArrayList<>( values );
+                    for ( Map.Entry<Integer, Value> update : updates.entrySet() ) {
+                        updated.set( update.getKey(), update.getValue().getValue( values, dataContext, 0 ) );
+                    }
+                    inserts.add( updated );
+                    hashes.add( FileEnumerator.hashRow( updated, pkMapping ) );
+                }
+                count++;
+            }
+        } finally {
+            finishScan();
+        }
+        // Only written after the scan, so the scan does not see its own changes
+        if ( !deletes.isEmpty() ) {
+            table.appendPendingDeletes( xidHash, deletes );
+        }
+        if ( !inserts.isEmpty() ) {
+            table.append( xidHash, columnIds, inserts, hashes );
+        }
+        return count;
+    }
+
+
+    /**
+     * Moves to the next row which is not deleted and reads its filter columns into {@link #values}.
+     * The remaining columns are read by {@link #materialize()}.
+     */
+    private boolean advance() throws IOException {
+        if ( latePending ) {
+            moveColumns( lateColumns, false );
+            latePending = false;
+        }
+        for ( ; ; ) {
+            if ( segment != null && row < rows ) {
+                final boolean visible = !deleted.get( row++ );
+                moveColumns( filterColumns, visible );
+                if ( visible ) {
+                    latePending = true;
+                    return true;
+                }
+                moveColumns( lateColumns, false );
+                continue;
+            }
+            closeCursors();
+            if ( sourceIndex >= sources.size() ) {
+                return false;
+            }
+            openSegment( sources.get( sourceIndex++ ) );
+        }
+    }
+
+
+    /**
+     * Reads the late columns of the current row into {@link #values}.
+     */
+    private void materialize() throws IOException {
+        if ( latePending ) {
+            moveColumns( lateColumns, true );
+            latePending = false;
+        }
+    }
+
+
+    private void moveColumns( boolean[] columns, boolean read ) throws IOException {
+        for ( int i = 0; i < cursors.length; i++ ) {
+            if ( !columns[i] || cursors[i] == null ) {
+                continue;
+            }
+            if ( read ) {
+                values.set( i, Segment.decode( cursors[i].next() ) );
+            } else {
+                cursors[i].skip();
+            }
+        }
+    }
+
+
+    private void startScan() throws IOException {
+        final List<Segment> segments = new ArrayList<>( table.openScan() );
+        final Segment pending = table.getPendingSegment( xidHash );
+        if ( pending != null ) {
+            segments.add( pending );
+        }
+        this.sources = segments;
+        this.pendingDeletes = table.readPendingDeletes( xidHash );
+        this.sourceIndex = 0;
+        this.segment = null;
+        this.latePending = false;
+        this.values = new ArrayList<>( Collections.nCopies( cursors.length, null ) );
+    }
+
+
+    private void openSegment( Segment segment ) throws IOException {
+        this.segment = segment;
+        this.rows = segment.getRowCount();
+        this.row = 0;
+        this.deleted = segment.readTombstones();
+        final BitSet pending = pendingDeletes.get( segment.getId() );
+        if ( pending != null ) {
+            deleted.or( pending );
+        }
+        if ( condition != null && RuntimeConfig.FILE_ZONE_MAP_PRUNING.getBoolean() && !mayMatch( segment ) ) {
+            // No row of the segment can match, skip it without opening its columns
+            this.rows = 0;
+            return;
+        }
+        for ( int i = 0; i < cursors.length; i++ ) {
+            if ( filterColumns[i] || lateColumns[i] ) {
+                cursors[i] = segment.openColumn( columnIds.get( i ) );
+            }
+        }
+    }
+
+
+    private boolean mayMatch( Segment segment ) throws IOException {
+        final ZoneMap[] zones = new ZoneMap[columnIds.size()];
+        for ( int i = 0; i < zones.length; i++ ) {
+            if ( filterColumns[i] ) {
+                zones[i] = segment.readZoneMap( columnIds.get( i ) );
+            }
+        }
+        return condition.mayMatch( index -> zones[index], dataContext );
+    }
+
+
+    private void closeCursors() throws IOException {
+        for ( int i = 0; i < cursors.length; i++ ) {
+            if ( cursors[i] != null ) {
+                cursors[i].close();
+                cursors[i] = null;
+            }
+        }
+        segment = null;
+    }
+
+
+    private void finishScan() throws IOException {
+        if ( sources == null ) {
+            return;
+        }
+        closeCursors();
+        sources = null;
+        table.closeScan();
+    }
+
+
+    private List<PolyValue> project( final List<PolyValue> row ) {
+        final List<PolyValue> out = new ArrayList<>( projectionMapping.size() );
+        for ( Value value : projectionMapping ) {
+            out.add( value.getValue( row, dataContext, 0 ) );
+        }
+        return out;
+    }
+
+
+    @Override
+    public void reset() {
+        exhausted = false;
+        try {
+            finishScan();
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( e );
+        }
+    }
+
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.polypheny.db.adapter.file.FileEnumerator;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Converts a table stored as one file per value into a single {@link Segment}.
+ * <p>
+ * The value files already contain the typed JSON of the values, they are copied into the segment without decoding them.
+ * The column folders are only deleted once the segment is committed. If the migration is interrupted in between, it is
+ * finished by deleting the remaining folders on the next attempt.
+ */
+@Slf4j
+public final class SegmentMigration {
+
+    private SegmentMigration() {
+        // Utility class
+    }
+
+
+    /**
+     * @param columnFolders The folders of the columns of the table, in the order of the columns
+     * @param columnIds The ids of the columns
+     * @param pkIds The ids of the primary key columns
+     * @param target The (empty) table to migrate into
+     */
+    public static void migrate( List<File> columnFolders, List<Long> columnIds, List<Long> pkIds, SegmentTable target ) throws IOException {
+        if ( columnFolders.stream().noneMatch( File::exists ) ) {
+            return;
+        }
+        for ( final File folder : columnFolders ) {
+            if ( folder.exists() && Objects.requireNonNull( folder.list( ( dir, name ) -> name.startsWith( "_" ) ) ).length > 0 ) {
+                throw new GenericRuntimeException( "Could not migrate " + folder.getName() + " because there are uncommitted changes" );
+            }
+        }
+
+        if ( target.isEmpty() ) {
+            final Integer[] pkMapping = pkIds.stream().map( columnIds::indexOf ).toArray( Integer[]::new );
+            final String[] rows = Objects.requireNonNull( columnFolders.get( 0 ).list( ( dir, name ) -> !name.startsWith( "." ) && !name.startsWith( "~$" ) ) );
+            target.load(
+                    columnIds,
+                    () -> Arrays.stream( rows ).map( name -> readRow( columnFolders, name ) ).iterator(),
+                    row -> {
+                        final List<PolyValue> decoded = new ArrayList<>( Collections.nCopies( row.size(), null ) );
+                        for ( final int index : pkMapping ) {
+                            decoded.set( index, row.get( index ) == null ? null : Segment.decode( row.get( index ) ) );
+                        }
+                        return FileEnumerator.hashRow( decoded, pkMapping );
+                    } );
+            log.info( "Migrated {} rows of {} into a segment", rows.length, target.getDirectory().getName() );
+        }
+        for ( final File folder : columnFolders ) {
+            FileUtils.deleteDirectory( folder );
+        }
+    }
+
+
+    private static List<byte[]> readRow( List<File> columnFolders, String name ) {
+        final List<byte[]> row = new ArrayList<>( columnFolders.size() );
+        for ( final File folder : columnFolders ) {
+            final File file = new File( folder, name );
+            try {
+                final byte[] bytes = file.exists() ? Files.readAllBytes( file.toPath() ) : null;
+                row.add( bytes == null || bytes.length == 0 ? null : bytes );
+            } catch ( IOException e ) {
+                throw new GenericRuntimeException( "Could not read " + file.getAbsolutePath(), e );
+            }
+        }
+        return row;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.adapter.file.Condition;
+import org.polypheny.db.adapter.file.FileAlg.FileImplementor.Operation;
+import org.polypheny.db.adapter.file.FileEnumerator;
+import org.polypheny.db.adapter.file.FileTranslatableEntity;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.numerical.PolyLong;
+
+
+/**
+ * Appends inserted rows to the pending segment of the transaction.
+ */
+public class SegmentModifier extends SegmentEnumerator {
+
+    private final List<List<PolyValue>> insertValues;
+    private boolean inserted = false;
+
+
+    public SegmentModifier(
+            final Operation operation,
+            final SegmentTable table,
+            final Long[] columnIds,
+            final FileTranslatableEntity entity,
+            final List<Long> pkIds,
+            final DataContext dataContext,
+            final List<List<PolyValue>> insertValues,
+            final Condition condition ) {
+        super( operation, table, columnIds, entity, pkIds, null, dataContext, condition, null );
+        this.insertValues = insertValues;
+    }
+
+
+    @Override
+    public boolean moveNext() {
+        if ( dataContext.getStatement().getTransaction().getCancelFlag().get() || inserted ) {
+            return false;
+        }
+        final List<Integer> hashes = new ArrayList<>( insertValues.size() );
+        for ( List<PolyValue> row : insertValues ) {
+            hashes.add( FileEnumerator.hashRow( row, pkMapping ) );
+        }
+        try {
+            table.append( xidHash, columnIds, insertValues, hashes );
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( e );
+        }
+        current = new PolyLong[]{ PolyLong.of( insertValues.size() ) };
+        inserted = true;
+        return true;
+    }
+
+
+    @Override
+    public void reset() {
+        // Rows are only inserted once
+    }
+
+}
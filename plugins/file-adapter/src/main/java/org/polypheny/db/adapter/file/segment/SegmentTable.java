@@ -0,0 +1,417 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.ToIntFunction;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Stores the rows of a table partition in {@link Segment segments}.
+ * <p>
+ * Every transaction appends its inserted rows to its own pending segment ({@code _ins_<xid hash>}) and records the
+ * rows it deleted in a pending delete log ({@code _del_<xid hash>}). On commit, the deletions are merged into the
+ * tombstone bitmaps of the affected segments and the pending segment is atomically renamed into a committed one. Both
+ * steps can be repeated, which allows the write ahead log of the {@link org.polypheny.db.adapter.file.FileStore} to
+ * replay an interrupted commit.
+ * <p>
+ * Small segments and segments consisting mostly of deleted rows are merged as soon as there are enough of them.
+ */
+@Slf4j
+public class SegmentTable {
+
+    static final int COMPACTION_THRESHOLD = 8;
+    static final int SMALL_SEGMENT_ROWS = 1 << 14;
+
+    private static final String SEGMENT_PREFIX = "seg";
+    private static final String INSERT_PREFIX = "_ins_";
+    private static final String DELETE_PREFIX = "_del_";
+    private static final String MERGE_DIRECTORY = "_merge";
+    private static final String REPLACES_FILE = "replaces";
+
+    @Getter
+    private final File directory;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private long nextId = 0;
+    private int activeScans = 0;
+    // Hashes of the primary keys of all committed rows which are not deleted, loaded on the first commit
+    private Set<Integer> primaryKeys = null;
+
+
+    public SegmentTable( File directory ) {
+        this.directory = directory;
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new GenericRuntimeException( "Could not create table folder " + directory.getAbsolutePath() );
+        }
+        recover();
+    }
+
+
+    /**
+     * Loads the committed segments and finishes an interrupted compaction.
+     */
+    private void recover() {
+        try {
+            FileUtils.deleteDirectory( new File( directory, MERGE_DIRECTORY ) );
+            for ( final File file : Objects.requireNonNull( directory.listFiles( f -> f.isDirectory() && f.getName().startsWith( SEGMENT_PREFIX ) ) ) ) {
+                final long id = Long.parseLong( file.getName().substring( SEGMENT_PREFIX.length() ) );
+                segments.put( id, new Segment( id, file ) );
+                nextId = Math.max( nextId, id + 1 );
+            }
+            for ( final Segment segment : List.copyOf( segments.values() ) ) {
+                final File replaces = new File( segment.getDirectory(), REPLACES_FILE );
+                if ( !replaces.exists() ) {
+                    continue;
+                }
+                for ( final String line : Files.readAllLines( replaces.toPath() ) ) {
+                    final Segment replaced = segments.remove( Long.parseLong( line ) );
+                    if ( replaced != null ) {
+                        FileUtils.deleteDirectory( replaced.getDirectory() );
+                    }
+                }
+                Files.delete( replaces.toPath() );
+            }
+        } catch ( IOException e ) {
+            throw new GenericRuntimeException( "Could not load the segments of " + directory.getAbsolutePath(), e );
+        }
+    }
+
+
+    /**
+     * Returns the committed segments and registers a scan over them. Segments are not compacted while scans are
+     * active, every call has to be followed by a call to {@link #closeScan()}.
+     */
+    public synchronized List<Segment> openScan() {
+        activeScans++;
+        return List.copyOf( segments.values() );
+    }
+
+
+    public synchronized void closeScan() {
+        activeScans--;
+    }
+
+
+    @Nullable
+    public Segment getPendingSegment( String xidHash ) {
+        final File pending = new File( directory, INSERT_PREFIX + xidHash );
+        return pending.exists() ? new Segment( Segment.PENDING, pending ) : null;
+    }
+
+
+    public void append( String xidHash, List<Long> columnIds, List<List<PolyValue>> rows, List<Integer> primaryKeyHashes ) throws IOException {
+        try ( SegmentWriter writer = new SegmentWriter( new File( directory, INSERT_PREFIX + xidHash ), columnIds ) ) {
+            for ( int i = 0; i < rows.size(); i++ ) {
+                writer.append( rows.get( i ), primaryKeyHashes.get( i ) );
+            }
+        }
+    }
+
+
+    /**
+     * Reads the rows deleted by the given transaction, by segment. The rows of the pending segment are stored under
+     * {@link Segment#PENDING}.
+     */
+    public Map<Long, BitSet> readPendingDeletes( String xidHash ) throws IOException {
+        final Map<Long, BitSet> deletes = new HashMap<>();
+        final File file = new File( directory, DELETE_PREFIX + xidHash );
+        if ( !file.exists() ) {
+            return deletes;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) );
+        while ( buffer.remaining() >= Long.BYTES + Integer.BYTES ) {
+            deletes.computeIfAbsent( buffer.getLong(), k -> new BitSet() ).set( buffer.getInt() );
+        }
+        return deletes;
+    }
+
+
+    public void appendPendingDeletes( String xidHash, Map<Long, BitSet> deletes ) throws IOException {
+        final File file = new File( directory, DELETE_PREFIX + xidHash );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, true ) ) ) ) {
+            for ( final Entry<Long, BitSet> entry : deletes.entrySet() ) {
+                for ( int row = entry.getValue().nextSetBit( 0 ); row >= 0; row = entry.getValue().nextSetBit( row + 1 ) ) {
+                    out.writeLong( entry.getKey() );
+                    out.writeInt( row );
+                }
+            }
+        }
+    }
+
+
+    public synchronized void commit( String xidHash ) throws IOException {
+        final File pendingDirectory = new File( directory, INSERT_PREFIX + xidHash );
+        final File deleteLog = new File( directory, DELETE_PREFIX + xidHash );
+        if ( !pendingDirectory.exists() && !deleteLog.exists() ) {
+            return;
+        }
+        final Map<Long, BitSet> deletes = readPendingDeletes( xidHash );
+        final Set<Integer> committed = getPrimaryKeys();
+
+        // Check the uniqueness before anything is changed
+        final Set<Integer> removed = new HashSet<>();
+        for ( final Entry<Long, BitSet> entry : deletes.entrySet() ) {
+            final Segment segment = segments.get( entry.getKey() );
+            if ( segment == null ) {
+                continue;
+            }
+            final BitSet tombstones = segment.readTombstones();
+            final int[] hashes = segment.readPrimaryKeyHashes();
+            for ( int row = entry.getValue().nextSetBit( 0 ); row >= 0; row = entry.getValue().nextSetBit( row + 1 ) ) {
+                if ( !tombstones.get( row ) ) {
+                    removed.add( hashes[row] );
+                }
+            }
+        }
+        final List<Integer> added = new ArrayList<>();
+        if ( pendingDirectory.exists() ) {
+            final BitSet tombstones = deletes.getOrDefault( Segment.PENDING, new BitSet() );
+            final int[] hashes = new Segment( Segment.PENDING, pendingDirectory ).readPrimaryKeyHashes();
+            final Set<Integer> unique = new HashSet<>();
+            for ( int row = 0; row < hashes.length; row++ ) {
+                if ( tombstones.get( row ) ) {
+                    continue;
+                }
+                if ( !unique.add( hashes[row] ) || (committed.contains( hashes[row] ) && !removed.contains( hashes[row] )) ) {
+                    throw new GenericRuntimeException( "Could not commit uniqueness constraint was invalidated" );
+                }
+                added.add( hashes[row] );
+            }
+        }
+
+        for ( final Entry<Long, BitSet> entry : deletes.entrySet() ) {
+            if ( entry.getKey() == Segment.PENDING ) {
+                new Segment( Segment.PENDING, pendingDirectory ).writeTombstones( entry.getValue() );
+                continue;
+            }
+            final Segment segment = segments.get( entry.getKey() );
+            if ( segment != null ) {
+                final BitSet tombstones = segment.readTombstones();
+                tombstones.or( entry.getValue() );
+                segment.writeTombstones( tombstones );
+            }
+        }
+        if ( pendingDirectory.exists() ) {
+            final long id = nextId++;
+            final File target = new File( directory, SEGMENT_PREFIX + id );
+            Files.move( pendingDirectory.toPath(), target.toPath() );
+            segments.put( id, new Segment( id, target ) );
+        }
+        Files.deleteIfExists( deleteLog.toPath() );
+
+        committed.removeAll( removed );
+        committed.addAll( added );
+        compactIfNecessary();
+    }
+
+
+    public synchronized void rollback( String xidHash ) throws IOException {
+        FileUtils.deleteDirectory( new File( directory, INSERT_PREFIX + xidHash ) );
+        Files.deleteIfExists( new File( directory, DELETE_PREFIX + xidHash ).toPath() );
+    }
+
+
+    /**
+     * Whether there are changes of transactions which are neither committed nor rolled back.
+     */
+    public boolean hasPendingChanges() {
+        return Objects.requireNonNull( directory.list( ( dir, name ) -> name.startsWith( INSERT_PREFIX ) || name.startsWith( DELETE_PREFIX ) ) ).length > 0;
+    }
+
+
+    private Set<Integer> getPrimaryKeys() throws IOException {
+        if ( primaryKeys == null ) {
+            final Set<Integer> hashes = new HashSet<>();
+            for ( final Segment segment : segments.values() ) {
+                final BitSet tombstones = segment.readTombstones();
+                final int[] rows = segment.readPrimaryKeyHashes();
+                for ( int row = 0; row < rows.length; row++ ) {
+                    if ( !tombstones.get( row ) ) {
+                        hashes.add( rows[row] );
+                    }
+                }
+            }
+            primaryKeys = hashes;
+        }
+        return primaryKeys;
+    }
+
+
+    /**
+     * Merges small segments and segments which consist mostly of deleted rows. This is only possible if neither scans
+     * nor pending deletes refer to the segments.
+     */
+    private void compactIfNecessary() throws IOException {
+        if ( activeScans > 0 || Objects.requireNonNull( directory.list( ( dir, name ) -> name.startsWith( DELETE_PREFIX ) ) ).length > 0 ) {
+            return;
+        }
+        final List<Segment> candidates = new ArrayList<>();
+        for ( final Segment segment : segments.values() ) {
+            final int rows = segment.getRowCount();
+            if ( rows < SMALL_SEGMENT_ROWS || segment.readTombstones().cardinality() * 2 > rows ) {
+                candidates.add( segment );
+            }
+        }
+        if ( candidates.size() < COMPACTION_THRESHOLD ) {
+            return;
+        }
+
+        final Set<Long> columnIds = new TreeSet<>();
+        candidates.forEach( segment -> columnIds.addAll( segment.getColumnIds() ) );
+        final List<Long> columns = List.copyOf( columnIds );
+        final File merge = new File( directory, MERGE_DIRECTORY );
+        FileUtils.deleteDirectory( merge );
+        try ( SegmentWriter writer = new SegmentWriter( merge, columns ) ) {
+            for ( final Segment segment : candidates ) {
+                copyLiveRows( segment, columns, writer );
+            }
+        }
+        final List<String> replaced = candidates.stream().map( segment -> String.valueOf( segment.getId() ) ).toList();
+        Files.write( new File( merge, REPLACES_FILE ).toPath(), replaced );
+
+        // Once the merged segment is in place, the replaced segments are obsolete, also in case of a crash
+        final long id = nextId++;
+        final File target = new File( directory, SEGMENT_PREFIX + id );
+        Files.move( merge.toPath(), target.toPath() );
+        for ( final Segment segment : candidates ) {
+            segments.remove( segment.getId() );
+            FileUtils.deleteDirectory( segment.getDirectory() );
+        }
+        Files.delete( new File( target, REPLACES_FILE ).toPath() );
+        segments.put( id, new Segment( id, target ) );
+        log.debug( "Merged {} segments of {} into segment {}", candidates.size(), directory.getName(), id );
+    }
+
+
+    private static void copyLiveRows( Segment segment, List<Long> columns, SegmentWriter writer ) throws IOException {
+        final BitSet tombstones = segment.readTombstones();
+        final int[] hashes = segment.readPrimaryKeyHashes();
+        final List<Segment.ColumnCursor> cursors = new ArrayList<>();
+        try {
+            for ( final long columnId : columns ) {
+                cursors.add( segment.openColumn( columnId ) );
+            }
+            final List<byte[]> row = new ArrayList<>( columns.size() );
+            for ( int i = 0; i < hashes.length; i++ ) {
+                row.clear();
+                for ( final Segment.ColumnCursor cursor : cursors ) {
+                    row.add( cursor.next() );
+                }
+                if ( !tombstones.get( i ) ) {
+                    writer.appendEncoded( row, hashes[i] );
+                }
+            }
+        } finally {
+            for ( final Segment.ColumnCursor cursor : cursors ) {
+                cursor.close();
+            }
+        }
+    }
+
+
+    /**
+     * Adds a new committed segment containing the given encoded rows, used to migrate existing data.
+     */
+    public synchronized void load( List<Long> columnIds, Iterable<List<byte[]>> rows, ToIntFunction<List<byte[]>> primaryKeyHash ) throws IOException {
+        final File merge = new File( directory, MERGE_DIRECTORY );
+        FileUtils.deleteDirectory( merge );
+        try ( SegmentWriter writer = new SegmentWriter( merge, columnIds ) ) {
+            for ( final List<byte[]> row : rows ) {
+                writer.appendEncoded( row, primaryKeyHash.applyAsInt( row ) );
+            }
+        }
+        final long id = nextId++;
+        final File target = new File( directory, SEGMENT_PREFIX + id );
+        Files.move( merge.toPath(), target.toPath() );
+        segments.put( id, new Segment( id, target ) );
+        primaryKeys = null;
+    }
+
+
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+
+    /**
+     * Adds a column to all committed segments, filled with the given default value.
+     */
+    public synchronized void addColumn( long columnId, @Nullable PolyValue defaultValue ) throws IOException {
+        final byte[] encoded = Segment.encode( defaultValue );
+        if ( encoded == null ) {
+            // Missing columns are read as null
+            return;
+        }
+        final File merge = new File( directory, MERGE_DIRECTORY );
+        for ( final Segment segment : segments.values() ) {
+            final int rows = segment.getRowCount();
+            try ( SegmentWriter writer = new SegmentWriter( merge, List.of( columnId ) ) ) {
+                for ( int i = 0; i < rows; i++ ) {
+                    writer.appendEncoded( List.of( encoded ), 0 );
+                }
+            }
+            Files.move( Segment.valuesFile( merge, columnId ).toPath(), Segment.valuesFile( segment.getDirectory(), columnId ).toPath() );
+            Files.move( Segment.offsetsFile( merge, columnId ).toPath(), Segment.offsetsFile( segment.getDirectory(), columnId ).toPath() );
+            Files.move( ZoneMap.file( merge, columnId ).toPath(), ZoneMap.file( segment.getDirectory(), columnId ).toPath(), StandardCopyOption.REPLACE_EXISTING );
+            FileUtils.deleteDirectory( merge );
+        }
+    }
+
+
+    public synchronized void dropColumn( long columnId ) throws IOException {
+        for ( final File segment : Objects.requireNonNull( directory.listFiles( File::isDirectory ) ) ) {
+            Files.deleteIfExists( Segment.valuesFile( segment, columnId ).toPath() );
+            Files.deleteIfExists( Segment.offsetsFile( segment, columnId ).toPath() );
+            Files.deleteIfExists( ZoneMap.file( segment, columnId ).toPath() );
+        }
+    }
+
+
+    public synchronized void truncate() throws IOException {
+        for ( final Segment segment : segments.values() ) {
+            FileUtils.deleteDirectory( segment.getDirectory() );
+        }
+        segments.clear();
+        primaryKeys = null;
+    }
+
+}
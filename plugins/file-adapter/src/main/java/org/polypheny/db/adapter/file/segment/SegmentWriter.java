@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Appends rows to a segment directory and maintains the {@link ZoneMap zone maps} of its columns. The primary key
+ * hashes are written last, so the rows which are visible through {@link Segment#getRowCount()} are always complete.
+ */
+class SegmentWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final List<DataOutputStream> values = new ArrayList<>();
+    private final List<DataOutputStream> offsets = new ArrayList<>();
+    private final long[] positions;
+    private final ZoneMap[] zones;
+    private final File directory;
+    private final List<Long> columnIds;
+    private final DataOutputStream primaryKeys;
+
+
+    SegmentWriter( File directory, List<Long> columnIds ) throws IOException {
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new GenericRuntimeException( "Could not create segment " + directory.getAbsolutePath() );
+        }
+        final int rows = new Segment( Segment.PENDING, directory ).getRowCount();
+        this.directory = directory;
+        this.columnIds = columnIds;
+        this.positions = new long[columnIds.size()];
+        this.zones = new ZoneMap[columnIds.size()];
+        for ( int i = 0; i < columnIds.size(); i++ ) {
+            final File valuesFile = Segment.valuesFile( directory, columnIds.get( i ) );
+            final boolean added = !valuesFile.exists();
+            zones[i] = added || rows == 0 ? ZoneMap.empty() : ZoneMap.read( directory, columnIds.get( i ), rows );
+            positions[i] = valuesFile.length();
+            values.add( open( valuesFile ) );
+            offsets.add( open( Segment.offsetsFile( directory, columnIds.get( i ) ) ) );
+            if ( added ) {
+                // The column did not exist when the previous rows were written
+                for ( int row = 0; row < rows; row++ ) {
+                    zones[i].add( null );
+                    write( i, null );
+                }
+            }
+        }
+        this.primaryKeys = open( new File( directory, Segment.PK_FILE ) );
+    }
+
+
+    void append( List<PolyValue> row, int primaryKeyHash ) throws IOException {
+        for ( int i = 0; i < positions.length; i++ ) {
+            zones[i].add( row.get( i ) );
+            write( i, Segment.encode( row.get( i ) ) );
+        }
+        primaryKeys.writeInt( primaryKeyHash );
+    }
+
+
+    /**
+     * Appends an already encoded row, as read by a {@link Segment.ColumnCursor}.
+     */
+    void appendEncoded( List<byte[]> row, int primaryKeyHash ) throws IOException {
+        for ( int i = 0; i < positions.length; i++ ) {
+            zones[i].addEncoded( row.get( i ) );
+            write( i, row.get( i ) );
+        }
+        primaryKeys.writeInt( primaryKeyHash );
+    }
+
+
+    private void write( int column, @Nullable byte[] value ) throws IOException {
+        offsets.get( column ).writeLong( positions[column] );
+        final DataOutputStream out = values.get( column );
+        if ( value == null ) {
+            out.writeInt( -1 );
+            positions[column] += Integer.BYTES;
+        } else {
+            out.writeInt( value.length );
+            out.write( value );
+            positions[column] += Integer.BYTES + value.length;
+        }
+    }
+
+
+    private static DataOutputStream open( File file ) throws IOException {
+        return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, true ), BUFFER_SIZE ) );
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        for ( final DataOutputStream out : values ) {
+            out.close();
+        }
+        for ( final DataOutputStream out : offsets ) {
+            out.close();
+        }
+        // Zone maps cover a fixed number of rows, if the primary keys are not written completely, they are ignored
+        for ( int i = 0; i < zones.length; i++ ) {
+            zones[i].write( directory, columnIds.get( i ) );
+        }
+        primaryKeys.close();
+    }
+
+}
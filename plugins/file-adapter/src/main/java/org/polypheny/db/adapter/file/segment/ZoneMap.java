@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+import org.polypheny.db.type.entity.PolyValue;
+
+
+/**
+ * Minimum, maximum and number of nulls of a column in a {@link Segment}, stored in {@code <columnId>.zm}.
+ * <p>
+ * The zone map is maintained by the {@link SegmentWriter} and only ever widened, deleting rows leaves it untouched.
+ * Its bounds are therefore conservative: no live row of the segment lies outside of them. Bounds are only kept for
+ * values with a natural order (numbers, strings, temporal values and booleans).
+ */
+public class ZoneMap {
+
+    static final String SUFFIX = ".zm";
+
+    /**
+     * Number of rows covered by the zone map
+     */
+    @Getter
+    private long rows;
+    @Getter
+    private long nulls;
+    /**
+     * Whether {@link #min} and {@link #max} bound all non-null values
+     */
+    @Getter
+    private boolean bounded;
+    @Getter
+    @Nullable
+    private PolyValue min;
+    @Getter
+    @Nullable
+    private PolyValue max;
+
+
+    private ZoneMap( long rows, long nulls, boolean bounded, @Nullable PolyValue min, @Nullable PolyValue max ) {
+        this.rows = rows;
+        this.nulls = nulls;
+        this.bounded = bounded;
+        this.min = min;
+        this.max = max;
+    }
+
+
+    static ZoneMap empty() {
+        return new ZoneMap( 0, 0, true, null, null );
+    }
+
+
+    /**
+     * Zone map of a column which has no values file in a segment and is therefore {@code null} in every row.
+     */
+    static ZoneMap ofNulls( long rows ) {
+        return new ZoneMap( rows, rows, true, null, null );
+    }
+
+
+    /**
+     * Zone map for rows about which nothing is known, e.g. because they were written before zone maps existed.
+     */
+    static ZoneMap unknown( long rows ) {
+        return new ZoneMap( rows, -1, false, null, null );
+    }
+
+
+    boolean isUnknown() {
+        return nulls < 0;
+    }
+
+
+    /**
+     * @return Whether all rows are {@code null}
+     */
+    public boolean isAllNull() {
+        return nulls == rows;
+    }
+
+
+    /**
+     * @return Whether there is at least one {@code null} value
+     */
+    public boolean hasNulls() {
+        return nulls != 0;
+    }
+
+
+    void add( @Nullable PolyValue value ) {
+        rows++;
+        if ( isUnknown() ) {
+            return;
+        }
+        if ( value == null || value.isNull() ) {
+            nulls++;
+            return;
+        }
+        if ( !bounded ) {
+            return;
+        }
+        if ( !(value.isNumber() || value.isString() || value.isTemporal() || value.isBoolean()) ) {
+            bounded = false;
+            min = max = null;
+            return;
+        }
+        try {
+            if ( min == null || value.compareTo( min ) < 0 ) {
+                min = value;
+            }
+            if ( max == null || value.compareTo( max ) > 0 ) {
+                max = value;
+            }
+        } catch ( RuntimeException e ) {
+            // Values of the column are not comparable with each other
+            bounded = false;
+            min = max = null;
+        }
+    }
+
+
+    /**
+     * Adds an encoded value, which is only decoded if it can narrow the bounds.
+     */
+    void addEncoded( @Nullable byte[] encoded ) {
+        if ( encoded != null && bounded && !isUnknown() ) {
+            add( Segment.decode( encoded ) );
+            return;
+        }
+        rows++;
+        if ( encoded == null && !isUnknown() ) {
+            nulls++;
+        }
+    }
+
+
+    static File file( File directory, long columnId ) {
+        return new File( directory, columnId + SUFFIX );
+    }
+
+
+    /**
+     * Reads the zone map of a column. If it is missing or does not cover the given number of rows, e.g. because a
+     * write was interrupted, the zone map is {@link #unknown(long) unknown}.
+     */
+    static ZoneMap read( File directory, long columnId, long rows ) throws IOException {
+        final File file = file( directory, columnId );
+        if ( !file.exists() ) {
+            return unknown( rows );
+        }
+        try ( DataInputStream in = new DataInputStream( Files.newInputStream( file.toPath() ) ) ) {
+            final long covered = in.readLong();
+            final long nulls = in.readLong();
+            final boolean bounded = in.readBoolean();
+            final PolyValue min = readValue( in );
+            final PolyValue max = readValue( in );
+            if ( covered != rows ) {
+                return unknown( rows );
+            }
+            return new ZoneMap( covered, nulls, bounded, min, max );
+        }
+    }
+
+
+    void write( File directory, long columnId ) throws IOException {
+        final File target = file( directory, columnId );
+        if ( isUnknown() ) {
+            Files.deleteIfExists( target.toPath() );
+            return;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( DataOutputStream out = new DataOutputStream( bytes ) ) {
+            out.writeLong( rows );
+            out.writeLong( nulls );
+            out.writeBoolean( bounded );
+            writeValue( out, min );
+            writeValue( out, max );
+        }
+        final File tmp = new File( directory, columnId + SUFFIX + ".tmp" );
+        Files.write( tmp.toPath(), bytes.toByteArray() );
+        Files.move( tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+
+    @Nullable
+    private static PolyValue readValue( DataInputStream in ) throws IOException {
+        final int length = in.readInt();
+        if ( length < 0 ) {
+            return null;
+        }
+        return Segment.decode( in.readNBytes( length ) );
+    }
+
+
+    private static void writeValue( DataOutputStream out, @Nullable PolyValue value ) throws IOException {
+        final byte[] encoded = Segment.encode( value );
+        if ( encoded == null ) {
+            out.writeInt( -1 );
+        } else {
+            out.writeInt( encoded.length );
+            out.write( encoded );
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.type.entity.PolyNull;
+import org.polypheny.db.type.entity.PolyString;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.numerical.PolyInteger;
+
+
+/**
+ * Tests for the {@link SegmentTable}, covering commits, deletes, compaction and the recovery after a crash.
+ */
+public class SegmentTableTest {
+
+    private static final List<Long> COLUMNS = List.of( 1L, 2L );
+    private static final String XID = "xid";
+
+    @TempDir
+    File folder;
+
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        SegmentTable table = new SegmentTable( folder );
+        insert( table, XID, row( 1, "a" ), row( 2, null ), row( 3, "c" ) );
+
+        // Pending rows are only visible through the pending segment of the transaction
+        Assertions.assertTrue( table.isEmpty() );
+        Assertions.assertTrue( table.hasPendingChanges() );
+        Assertions.assertEquals( 3, table.getPendingSegment( XID ).getRowCount() );
+
+        table.commit( XID );
+        Assertions.assertFalse( table.hasPendingChanges() );
+        Assertions.assertNull( table.getPendingSegment( XID ) );
+        Assertions.assertEquals( List.of( row( 1, "a" ), row( 2, null ), row( 3, "c" ) ), scan( table ) );
+
+        Segment segment = table.openScan().get( 0 );
+        table.closeScan();
+        Assertions.assertEquals( row( 2, null ).get( 1 ), Segment.decode( segment.readEncoded( 2L, 1 ) ) );
+        Assertions.assertEquals( PolyString.of( "c" ), Segment.decode( segment.readEncoded( 2L, 2 ) ) );
+        // A column without values file is null in every row
+        Assertions.assertNull( segment.readEncoded( 3L, 0 ) );
+        Assertions.assertEquals( 3, segment.readZoneMap( 3L ).getNulls() );
+
+        // The segments are found again after a restart
+        Assertions.assertEquals( scan( table ), scan( new SegmentTable( folder ) ) );
+    }
+
+
+    @Test
+    public void testRollback() throws IOException {
+        SegmentTable table = new SegmentTable( folder );
+        insert( table, XID, row( 1, "a" ) );
+        table.commit( XID );
+
+        insert( table, "other", row( 2, "b" ) );
+        table.appendPendingDeletes( "other", Map.of( 0L, bits( 0 ) ) );
+        table.rollback( "other" );
+
+        Assertions.assertFalse( table.hasPendingChanges() );
+        Assertions.assertEquals( List.of( row( 1, "a" ) ), scan( table ) );
+    }
+
+
+    @Test
+    public void testUpdateAndDelete() throws IOException {
+        SegmentTable table = new SegmentTable( folder );
+        insert( table, XID, row( 1, "a" ), row( 2, "b" ), row( 3, "c" ) );
+        table.commit( XID );
+
+        // An update deletes the old version of a row and inserts the new one
+        table.appendPendingDeletes( "update", Map.of( 0L, bits( 0, 2 ) ) );
+        insert( table, "update", row( 1, "updated" ) );
+        // Rows inserted and deleted by the same transaction never become visible
+        insert( table, "update", row( 4, "d" ) );
+        table.appendPendingDeletes( "update", Map.of( Segment.PENDING, bits( 1 ) ) );
+        table.commit( "update" );
+
+        Assertions.assertEquals( List.of( row( 2, "b" ), row( 1, "updated" ) ), scan( table ) );
+        Segment first = table.openScan().get( 0 );
+        table.closeScan();
+        Assertions.assertEquals( bits( 0, 2 ), first.readTombstones() );
+
+        // Inserting a primary key which is still alive violates the uniqueness
+        insert( table, "duplicate", row( 2, "again" ) );
+        Assertions.assertThrows( GenericRuntimeException.class, () -> table.commit( "duplicate" ) );
+        table.rollback( "duplicate" );
+        Assertions.assertEquals( List.of( row( 2, "b" ), row( 1, "updated" ) ), scan( table ) );
+    }
+
+
+    @Test
+    public void testCompaction() throws IOException {
+        SegmentTable table = new SegmentTable( folder );
+        List<List<PolyValue>> expected = new ArrayList<>();
+        for ( int i = 0; i < SegmentTable.COMPACTION_THRESHOLD; i++ ) {
+            insert( table, XID + i, row( 2 * i, "even" ), row( 2 * i + 1, "odd" ) );
+            table.appendPendingDeletes( XID + i, Map.of( Segment.PENDING, bits( 1 ) ) );
+            table.commit( XID + i );
+            expected.add( row( 2 * i, "even" ) );
+        }
+
+        // The small segments were merged into one, without the deleted rows
+        List<Segment> segments = table.openScan();
+        table.closeScan();
+        Assertions.assertEquals( 1, segments.size() );
+        Assertions.assertEquals( SegmentTable.COMPACTION_THRESHOLD, segments.get( 0 ).getRowCount() );
+        Assertions.assertTrue( segments.get( 0 ).readTombstones().isEmpty() );
+        Assertions.assertEquals( expected, scan( table ) );
+    }
+
+
+    @Test
+    public void testReplayInterruptedCommit() throws IOException {
+        SegmentTable table = new SegmentTable( folder );
+        insert( table, XID, row( 1, "a" ), row( 2, "b" ) );
+        table.commit( XID );
+
+        table.appendPendingDeletes( "update", Map.of( 0L, bits( 0 ) ) );
+        insert( table, "update", row( 1, "updated" ) );
+
+        // Crash after the tombstones were written, but before the pending segment was renamed
+        Segment segment = table.openScan().get( 0 );
+        table.closeScan();
+        segment.writeTombstones( bits( 0 ) );
+
+        SegmentTable recovered = new SegmentTable( folder );
+        Assertions.assertTrue( recovered.hasPendingChanges() );
+        recovered.commit( "update" );
+        // Replaying the commit once more has no effect
+        recovered.commit( "update" );
+
+        Assertions.assertFalse( recovered.hasPendingChanges() );
+        Assertions.assertEquals( List.of( row( 2, "b" ), row( 1, "updated" ) ), scan( recovered ) );
+    }
+
+
+    @Test
+    public void testRecoverInterruptedCompaction() throws IOException {
+        SegmentTable table = new SegmentTable( folder );
+        insert( table, XID, row( 1, "a" ) );
+        table.commit( XID );
+        insert( table, "second", row( 2, "b" ) );
+        table.commit( "second" );
+        List<List<PolyValue>> rows = scan( table );
+
+        // Crash while the merged segment was written, it is discarded
+        File merge = new File( folder, "_merge" );
+        FileUtils.copyDirectory( new File( folder, "seg0" ), merge );
+        Assertions.assertEquals( rows, scan( new SegmentTable( folder ) ) );
+        Assertions.assertFalse( merge.exists() );
+
+        // Crash after the merged segment was put in place, the segments it replaces are removed
+        File merged = new File( folder, "seg2" );
+        SegmentTable source = new SegmentTable( new File( folder, "source" ) );
+        insert( source, XID, row( 1, "a" ), row( 2, "b" ) );
+        source.commit( XID );
+        FileUtils.copyDirectory( new File( source.getDirectory(), "seg0" ), merged );
+        FileUtils.deleteDirectory( source.getDirectory() );
+        Files.write( new File( merged, "replaces" ).toPath(), List.of( "0", "1" ) );
+
+        SegmentTable recovered = new SegmentTable( folder );
+        Assertions.assertEquals( rows, scan( recovered ) );
+        Assertions.assertFalse( new File( folder, "seg0" ).exists() );
+        Assertions.assertFalse( new File( folder, "seg1" ).exists() );
+        Assertions.assertFalse( new File( merged, "replaces" ).exists() );
+        Assertions.assertEquals( 1, recovered.openScan().size() );
+        recovered.closeScan();
+    }
+
+
+    @SafeVarargs
+    private static void insert( SegmentTable table, String xid, List<PolyValue>... rows ) throws IOException {
+        List<Integer> hashes = new ArrayList<>();
+        for ( List<PolyValue> row : rows ) {
+            // the first column is the primary key
+            hashes.add( row.get( 0 ).hashCode() );
+        }
+        table.append( xid, COLUMNS, List.of( rows ), hashes );
+    }
+
+
+    /**
+     * Reads the live rows of all committed segments.
+     */
+    private static List<List<PolyValue>> scan( SegmentTable table ) throws IOException {
+        List<List<PolyValue>> result = new ArrayList<>();
+        try {
+            for ( Segment segment : table.openScan() ) {
+                BitSet tombstones = segment.readTombstones();
+                try ( Segment.ColumnCursor ids = segment.openColumn( 1L ); Segment.ColumnCursor names = segment.openColumn( 2L ) ) {
+                    for ( int i = 0; i < segment.getRowCount(); i++ ) {
+                        List<PolyValue> row = List.of( Segment.decode( ids.next() ), Segment.decode( names.next() ) );
+                        if ( !tombstones.get( i ) ) {
+                            result.add( row );
+                        }
+                    }
+                }
+            }
+        } finally {
+            table.closeScan();
+        }
+        return result;
+    }
+
+
+    private static List<PolyValue> row( int id, String name ) {
+        return List.of( PolyInteger.of( id ), name == null ? PolyNull.NULL : PolyString.of( name ) );
+    }
+
+
+    private static BitSet bits( int... rows ) {
+        BitSet bits = new BitSet();
+        for ( int row : rows ) {
+            bits.set( row );
+        }
+        return bits;
+    }
+
+}
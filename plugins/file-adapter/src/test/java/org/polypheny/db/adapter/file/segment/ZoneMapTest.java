@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019-2024 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.file.segment;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.polypheny.db.adapter.file.Condition;
+import org.polypheny.db.adapter.file.Value;
+import org.polypheny.db.adapter.file.Value.InputValue;
+import org.polypheny.db.adapter.file.Value.LiteralValue;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.type.entity.PolyList;
+import org.polypheny.db.type.entity.PolyNull;
+import org.polypheny.db.type.entity.PolyValue;
+import org.polypheny.db.type.entity.numerical.PolyInteger;
+
+
+/**
+ * Tests the pruning of segments with {@link Condition#mayMatch} based on {@link ZoneMap zone maps}.
+ */
+public class ZoneMapTest {
+
+    @TempDir
+    File folder;
+
+
+    @Test
+    public void testComparisons() {
+        // Column 0 holds the values 10 to 20
+        ZoneMap zone = zoneOf( PolyInteger.of( 10 ), PolyInteger.of( 20 ), PolyInteger.of( 15 ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.EQUALS, 10 ), zone ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.EQUALS, 20 ), zone ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.EQUALS, 9 ), zone ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.EQUALS, 21 ), zone ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.GREATER_THAN, 19 ), zone ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.GREATER_THAN, 20 ), zone ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.GREATER_THAN_OR_EQUAL, 20 ), zone ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.LESS_THAN, 11 ), zone ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.LESS_THAN, 10 ), zone ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.LESS_THAN_OR_EQUAL, 10 ), zone ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.NOT_EQUALS, 10 ), zone ) );
+
+        // All values are equal to the constant
+        ZoneMap constant = zoneOf( PolyInteger.of( 5 ), PolyInteger.of( 5 ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.NOT_EQUALS, 5 ), constant ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.NOT_EQUALS, 6 ), constant ) );
+    }
+
+
+    @Test
+    public void testFlippedOperands() {
+        ZoneMap zone = zoneOf( PolyInteger.of( 10 ), PolyInteger.of( 20 ) );
+        // 25 > col holds for all rows, 5 > col for none
+        Assertions.assertTrue( mayMatch( flipped( Kind.GREATER_THAN, 25 ), zone ) );
+        Assertions.assertFalse( mayMatch( flipped( Kind.GREATER_THAN, 5 ), zone ) );
+        Assertions.assertFalse( mayMatch( flipped( Kind.GREATER_THAN, 10 ), zone ) );
+        Assertions.assertTrue( mayMatch( flipped( Kind.GREATER_THAN_OR_EQUAL, 10 ), zone ) );
+        Assertions.assertFalse( mayMatch( flipped( Kind.LESS_THAN, 20 ), zone ) );
+        Assertions.assertTrue( mayMatch( flipped( Kind.LESS_THAN_OR_EQUAL, 20 ), zone ) );
+        Assertions.assertTrue( mayMatch( flipped( Kind.EQUALS, 15 ), zone ) );
+        Assertions.assertFalse( mayMatch( flipped( Kind.EQUALS, 30 ), zone ) );
+    }
+
+
+    @Test
+    public void testNulls() {
+        ZoneMap allNull = zoneOf( PolyNull.NULL, null );
+        Assertions.assertTrue( allNull.isAllNull() );
+        // Comparisons with null never match
+        Assertions.assertFalse( mayMatch( compare( Kind.EQUALS, 1 ), allNull ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.NOT_EQUALS, 1 ), allNull ) );
+        Assertions.assertFalse( mayMatch( flipped( Kind.LESS_THAN, 1 ), allNull ) );
+        Assertions.assertTrue( mayMatch( unary( Kind.IS_NULL ), allNull ) );
+        Assertions.assertFalse( mayMatch( unary( Kind.IS_NOT_NULL ), allNull ) );
+
+        ZoneMap someNull = zoneOf( PolyInteger.of( 3 ), PolyNull.NULL );
+        Assertions.assertTrue( mayMatch( unary( Kind.IS_NULL ), someNull ) );
+        Assertions.assertTrue( mayMatch( unary( Kind.IS_NOT_NULL ), someNull ) );
+        Assertions.assertTrue( mayMatch( compare( Kind.EQUALS, 3 ), someNull ) );
+        Assertions.assertFalse( mayMatch( compare( Kind.EQUALS, 4 ), someNull ) );
+
+        ZoneMap noNull = zoneOf( PolyInteger.of( 3 ) );
+        Assertions.assertFalse( mayMatch( unary( Kind.IS_NULL ), noNull ) );
+        Assertions.assertTrue( mayMatch( unary( Kind.IS_NOT_NULL ), noNull ) );
+
+        // Comparing with a null constant matches no row
+        Condition nullConstant = new Condition( Kind.EQUALS, List.of(), List.of( new InputValue( null, 0 ), new LiteralValue( null, null ) ) );
+        Assertions.assertFalse( mayMatch( nullConstant, noNull ) );
+    }
+
+
+    @Test
+    public void testUnboundedZones() {
+        // Lists have no natural order, the zone map only counts the nulls
+        ZoneMap unbounded = zoneOf( PolyInteger.of( 1 ), PolyList.of( List.of( PolyInteger.of( 2 ) ) ) );
+        Assertions.assertFalse( unbounded.isBounded() );
+        Assertions.assertTrue( mayMatch( compare( Kind.EQUALS, 100 ), unbounded ) );
+        Assertions.assertTrue( mayMatch( flipped( Kind.LESS_THAN, 100 ), unbounded ) );
+        Assertions.assertFalse( mayMatch( unary( Kind.IS_NULL ), unbounded ) );
+
+        // Rows written before the zone map existed
+        ZoneMap unknown = ZoneMap.unknown( 4 );
+        Assertions.assertTrue( mayMatch( compare( Kind.EQUALS, 100 ), unknown ) );
+        Assertions.assertTrue( mayMatch( unary( Kind.IS_NULL ), unknown ) );
+        Assertions.assertTrue( mayMatch( unary( Kind.IS_NOT_NULL ), unknown ) );
+    }
+
+
+    @Test
+    public void testAndOr() {
+        ZoneMap zone = zoneOf( PolyInteger.of( 10 ), PolyInteger.of( 20 ) );
+        Condition inside = compare( Kind.EQUALS, 15 );
+        Condition outside = compare( Kind.EQUALS, 30 );
+
+        Assertions.assertTrue( mayMatch( new Condition( Kind.AND, List.of( inside, compare( Kind.LESS_THAN, 20 ) ), List.of() ), zone ) );
+        Assertions.assertFalse( mayMatch( new Condition( Kind.AND, List.of( inside, outside ), List.of() ), zone ) );
+        Assertions.assertTrue( mayMatch( new Condition( Kind.OR, List.of( inside, outside ), List.of() ), zone ) );
+        Assertions.assertFalse( mayMatch( new Condition( Kind.OR, List.of( outside, flipped( Kind.LESS_THAN, 20 ) ), List.of() ), zone ) );
+        // Nested conditions
+        Condition nested = new Condition( Kind.OR, List.of( outside, new Condition( Kind.AND, List.of( inside, unary( Kind.IS_NULL ) ), List.of() ) ), List.of() );
+        Assertions.assertFalse( mayMatch( nested, zone ) );
+        Assertions.assertTrue( mayMatch( nested, zoneOf( PolyInteger.of( 15 ), PolyNull.NULL ) ) );
+    }
+
+
+    @Test
+    public void testPersistedZoneMap() throws IOException {
+        File directory = new File( folder, "seg0" );
+        try ( SegmentWriter writer = new SegmentWriter( directory, List.of( 1L ) ) ) {
+            writer.append( List.of( PolyInteger.of( 7 ) ), 1 );
+            writer.append( List.of( PolyNull.NULL ), 2 );
+            writer.append( List.of( PolyInteger.of( -3 ) ), 3 );
+        }
+        ZoneMap zone = new Segment( 0, directory ).readZoneMap( 1L );
+        Assertions.assertEquals( 3, zone.getRows() );
+        Assertions.assertEquals( 1, zone.getNulls() );
+        Assertions.assertEquals( PolyInteger.of( -3 ), zone.getMin() );
+        Assertions.assertEquals( PolyInteger.of( 7 ), zone.getMax() );
+
+        // A zone map which does not cover all rows, e.g. after an interrupted append, is not trusted
+        Assertions.assertTrue( ZoneMap.read( directory, 1L, 4 ).isUnknown() );
+    }
+
+
+    private static boolean mayMatch( Condition condition, ZoneMap zone ) {
+        return condition.mayMatch( index -> zone, null );
+    }
+
+
+    private static ZoneMap zoneOf( PolyValue... values ) {
+        ZoneMap zone = ZoneMap.empty();
+        for ( PolyValue value : values ) {
+            zone.add( value );
+        }
+        return zone;
+    }
+
+
+    /**
+     * Creates {@code <column> <operator> <constant>}.
+     */
+    private static Condition compare( Kind operator, int constant ) {
+        return new Condition( operator, List.of(), List.of( new InputValue( null, 0 ), new LiteralValue( null, PolyInteger.of( constant ) ) ) );
+    }
+
+
+    /**
+     * Creates {@code <constant> <operator> <column>}.
+     */
+    private static Condition flipped( Kind operator, int constant ) {
+        return new Condition( operator, List.of(), List.of( new LiteralValue( null, PolyInteger.of( constant ) ), new InputValue( null, 0 ) ) );
+    }
+
+
+    private static Condition unary( Kind operator ) {
+        return new Condition( operator, List.<Condition>of(), List.<Value>of( new InputValue( null, 0 ) ) );
+    }
+
+}
@@ -220,4 +220,10 @@ public String getDefaultPhysicalSchemaName() {
     }
 
 
+    @Override
+    public boolean supportsConsistentReads() {
+        return settings.get( "trxControlMode" ).equals( "mvcc" );
+    }
+
+
 }
@@ -155,6 +155,25 @@ public ConnectionHandler getConnectionHandler( DataContext dataContext ) {
     }
 
 
+    /**
+     * Returns the number of rows the JDBC driver should fetch from the store at once. The batch size requested by the
+     * consumer of the result is bounded by the {@code fetchSize} setting of the adapter, where 0 leaves the choice to the
+     * driver. Adapters without this setting use the batch size of the consumer.
+     */
+    // Used by generated code (see class JdbcToEnumerableConverter).
+    public int getFetchSize( DataContext dataContext ) {
+        final String setting = adapter.getCurrentSettings().get( "fetchSize" );
+        final int fetchSize = setting == null ? -1 : Integer.parseInt( setting );
+        if ( fetchSize == 0 ) {
+            return 0;
+        }
+        if ( dataContext.get( DataContext.Variable.FETCH_SIZE.camelName ) instanceof Integer batch && batch > 0 ) {
+            return fetchSize < 0 ? batch : Math.min( batch, fetchSize );
+        }
+        return Math.max( fetchSize, 0 );
+    }
+
+
     protected Multimap<String, Function> getFunctions() {
         // TODO: populate map from JDBC metadata
         return ImmutableMultimap.of();
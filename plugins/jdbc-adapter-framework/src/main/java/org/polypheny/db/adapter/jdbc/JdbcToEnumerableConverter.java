@@ -125,6 +125,14 @@ public class JdbcToEnumerableConverter extends ConverterImpl implements Enumerab
             ResultSetEnumerable.class,
             "setTimeout",
             DataContext.class );
+    public static final Method JDBC_SCHEMA_GET_FETCH_SIZE_METHOD = Types.lookupMethod(
+            JdbcSchema.class,
+            "getFetchSize",
+            DataContext.class );
+    public static final Method RESULT_SET_ENUMERABLE_SET_FETCH_SIZE_METHOD = Types.lookupMethod(
+            ResultSetEnumerable.class,
+            "setFetchSize",
+            int.class );
     public static final Method RESULT_SET_ENUMERABLE_OF_METHOD = Types.lookupMethod(
             ResultSetEnumerable.class,
             "of",
@@ -268,6 +276,15 @@ public Result implement( EnumerableAlgImplementor implementor, Prefer pref ) {
                                 enumerable,
                                 RESULT_SET_ENUMERABLE_SET_TIMEOUT_METHOD,
                                 DataContext.ROOT ) ) );
+        builder0.add(
+                Expressions.statement(
+                        Expressions.call(
+                                enumerable,
+                                RESULT_SET_ENUMERABLE_SET_FETCH_SIZE_METHOD,
+                                Expressions.call(
+                                        Schemas.unwrap( jdbcConvention.expression, JdbcSchema.class ),
+                                        JDBC_SCHEMA_GET_FETCH_SIZE_METHOD,
+                                        DataContext.ROOT ) ) ) );
         builder0.add( Expressions.return_( null, enumerable ) );
         return implementor.result( physType, builder0.toBlock() );
     }
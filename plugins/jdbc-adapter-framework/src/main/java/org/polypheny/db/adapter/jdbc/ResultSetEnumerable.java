@@ -62,6 +62,7 @@
 import org.polypheny.db.adapter.jdbc.connection.ConnectionHandler;
 import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.catalog.exceptions.GenericRuntimeException;
+import org.polypheny.db.runtime.Hook;
 import org.polypheny.db.type.PolyType;
 import org.polypheny.db.type.entity.PolyValue;
 import org.polypheny.db.type.entity.numerical.PolyLong;
@@ -90,6 +91,7 @@ public class ResultSetEnumerable extends AbstractEnumerable<PolyValue[]> {
     private Long queryStart;
     private long timeout;
     private boolean timeoutSetFailed;
+    private int fetchSize;
 
     private static final Function1<ResultSet, Function0<PolyValue[]>> AUTO_ROW_BUILDER_FACTORY =
             resultSet -> {
@@ -219,6 +221,15 @@ public void setTimeout( DataContext context ) {
     }
 
 
+    /**
+     * Sets the number of rows fetched from the store at once, which allows drivers such as the ones of PostgreSQL and
+     * MonetDB to stream the result instead of materializing it completely. 0 leaves the choice to the driver.
+     */
+    public void setFetchSize( int fetchSize ) {
+        this.fetchSize = fetchSize;
+    }
+
+
     /**
      * Called from generated code that proposes to create a {@code ResultSetEnumerable} over a prepared statement.
      */
@@ -226,7 +237,12 @@ public void setTimeout( DataContext context ) {
     public static PreparedStatementEnricher createEnricher( Integer[] indexes, DataContext context ) {
         return ( preparedStatement, connectionHandler ) -> {
             boolean batch = context.getParameterValues().size() > 1;
+            // Requested once per statement instead of once per value
+            int[] sqlTypes = null;
             for ( Map<Long, PolyValue> values : context.getParameterValues() ) {
+                if ( sqlTypes == null && indexes.length > 0 ) {
+                    sqlTypes = connectionHandler.getParameterTypes( preparedStatement );
+                }
                 for ( int i = 0; i < indexes.length; i++ ) {
                     final long index = indexes[i];
                     setDynamicParam(
@@ -234,7 +250,7 @@ public static PreparedStatementEnricher createEnricher( Integer[] indexes, DataC
                             i + 1,
                             values.get( index ),
                             context.getParameterType( index ),
-                            preparedStatement.getParameterMetaData().getParameterType( i + 1 ),
+                            sqlTypes[i],
                             connectionHandler );
                 }
                 if ( batch ) {
@@ -361,10 +377,12 @@ private Enumerator<PolyValue[]> enumeratorBasedOnStatement() {
         try {
             statement = connectionHandler.getStatement();
             setTimeoutIfPossible( statement );
+            applyFetchSize( statement );
             if ( statement.execute( sql ) ) {
                 final ResultSet resultSet = statement.getResultSet();
+                final Statement resultStatement = statement;
                 statement = null;
-                return new ResultSetEnumerator( resultSet, rowBuilderFactory );
+                return new ResultSetEnumerator( resultSet, resultStatement, rowBuilderFactory, connectionHandler );
             } else {
                 int updateCount = statement.getUpdateCount();
                 return Linq4j.singletonEnumerator( new PolyValue[]{ PolyLong.of( updateCount ) } );
@@ -382,6 +400,7 @@ private Enumerator<PolyValue[]> enumeratorBasedOnPreparedStatement() {
         try {
             preparedStatement = connectionHandler.prepareStatement( sql );
             setTimeoutIfPossible( preparedStatement );
+            applyFetchSize( preparedStatement );
             if ( preparedStatementEnricher.enrich( preparedStatement, connectionHandler ) ) {
                 // batch
                 int[] count = preparedStatement.executeBatch();
@@ -390,15 +409,25 @@ private Enumerator<PolyValue[]> enumeratorBasedOnPreparedStatement() {
             } else {
                 if ( preparedStatement.execute() ) {
                     final ResultSet resultSet = preparedStatement.getResultSet();
+                    final Statement resultStatement = preparedStatement;
                     preparedStatement = null;
-                    return new ResultSetEnumerator( resultSet, rowBuilderFactory );
+                    return new ResultSetEnumerator( resultSet, resultStatement, rowBuilderFactory, connectionHandler );
                 } else {
                     int updateCount = preparedStatement.getUpdateCount();
                     return Linq4j.singletonEnumerator( new PolyValue[]{ PolyLong.of( updateCount ) } );
                 }
             }
         } catch ( SQLException e ) {
+            // The statement might no longer be valid or still contain parts of a batch
+            if ( preparedStatement != null ) {
+                connectionHandler.discardStatement( preparedStatement );
+            }
             throw Static.RESOURCE.exceptionWhilePerformingQueryOnJdbcSubSchema( sql ).ex( e );
+        } catch ( RuntimeException e ) {
+            if ( preparedStatement != null ) {
+                connectionHandler.discardStatement( preparedStatement );
+            }
+            throw e;
         } finally {
             closeIfPossible( preparedStatement );
         }
@@ -430,13 +459,16 @@ private void setTimeoutIfPossible( Statement statement ) throws SQLException {
     }
 
 
+    private void applyFetchSize( Statement statement ) throws SQLException {
+        // Always set, as cached statements keep the fetch size of their previous execution
+        statement.setFetchSize( fetchSize );
+        Hook.JDBC_FETCH_SIZE.run( fetchSize );
+    }
+
+
     private void closeIfPossible( Statement statement ) {
         if ( statement != null ) {
-            try {
-                statement.close();
-            } catch ( SQLException e ) {
-                // ignore
-            }
+            connectionHandler.closeStatement( statement );
         }
     }
 
@@ -447,12 +479,16 @@ private void closeIfPossible( Statement statement ) {
     private static class ResultSetEnumerator implements Enumerator<PolyValue[]> {
 
         private final Function0<PolyValue[]> rowBuilder;
+        private final Statement statement;
+        private final ConnectionHandler connectionHandler;
         private ResultSet resultSet;
 
 
-        ResultSetEnumerator( ResultSet resultSet, Function1<ResultSet, Function0<PolyValue[]>> rowBuilderFactory ) {
+        ResultSetEnumerator( ResultSet resultSet, Statement statement, Function1<ResultSet, Function0<PolyValue[]>> rowBuilderFactory, ConnectionHandler connectionHandler ) {
             this.resultSet = resultSet;
+            this.statement = statement;
             this.rowBuilder = rowBuilderFactory.apply( resultSet );
+            this.connectionHandler = connectionHandler;
         }
 
 
@@ -488,13 +524,11 @@ public void close() {
             if ( savedResultSet != null ) {
                 try {
                     resultSet = null;
-                    final Statement statement = savedResultSet.getStatement();
                     savedResultSet.close();
-                    if ( statement != null ) {
-                        statement.close();
-                    }
                 } catch ( SQLException e ) {
                     // ignore
+                } finally {
+                    connectionHandler.closeStatement( statement );
                 }
             }
         }
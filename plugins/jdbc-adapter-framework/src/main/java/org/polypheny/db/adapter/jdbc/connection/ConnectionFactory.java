@@ -31,6 +31,11 @@ public interface ConnectionFactory {
 
     void close() throws SQLException;
 
+    /**
+     * Closes the cached prepared statements of all connections, e.g. after the schema of a table has changed.
+     */
+    void clearStatementCaches();
+
     int getMaxTotal();
 
     int getNumActive();
@@ -19,12 +19,18 @@
 
 import java.sql.Array;
 import java.sql.Connection;
+import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.sql.language.SqlDialect;
 
 
@@ -43,6 +49,12 @@ public abstract class ConnectionHandler {
      */
     protected ConcurrentLinkedQueue<Statement> openStatements;
 
+    /**
+     * Prepared statements which are kept open across transactions, in the order of their last use
+     */
+    private final Map<String, CachedStatement> cachedStatements = new LinkedHashMap<>( 16, 0.75f, true );
+    private final Map<Statement, CachedStatement> cachedByStatement = new IdentityHashMap<>();
+
 
     public int executeUpdate( final String sql ) throws SQLException {
         log.trace( "Executing query on database: {}", sql );
@@ -72,7 +84,33 @@ public Statement getStatement() throws SQLException {
     }
 
 
+    /**
+     * Returns a prepared statement for the given SQL, which is reused if it has been prepared on this connection before.
+     * The statement has to be handed back using {@link #closeStatement(Statement)}.
+     */
     public PreparedStatement prepareStatement( String sql ) throws SQLException {
+        final int cacheSize = RuntimeConfig.JDBC_STATEMENT_CACHE_SIZE.getInteger();
+        if ( cacheSize > 0 ) {
+            synchronized ( cachedStatements ) {
+                CachedStatement cached = cachedStatements.get( sql );
+                if ( cached != null && cached.statement.isClosed() ) {
+                    remove( cached );
+                    cached = null;
+                }
+                if ( cached == null ) {
+                    cached = new CachedStatement( connection.prepareStatement( sql ) );
+                    cachedStatements.put( sql, cached );
+                    cachedByStatement.put( cached.statement, cached );
+                    evict( cacheSize );
+                }
+                // A statement in use, e.g. by an open result set, is not shared
+                if ( !cached.inUse ) {
+                    cached.inUse = true;
+                    cached.statement.clearParameters();
+                    return cached.statement;
+                }
+            }
+        }
         if ( openStatements == null ) {
             openStatements = new ConcurrentLinkedQueue<>();
         }
@@ -82,6 +120,140 @@ public PreparedStatement prepareStatement( String sql ) throws SQLException {
     }
 
 
+    /**
+     * Returns the SQL types of the parameters of a prepared statement. They are only requested from the database once
+     * per cached statement.
+     */
+    public int[] getParameterTypes( PreparedStatement preparedStatement ) throws SQLException {
+        final CachedStatement cached;
+        synchronized ( cachedStatements ) {
+            cached = cachedByStatement.get( preparedStatement );
+            if ( cached != null && cached.parameterTypes != null ) {
+                return cached.parameterTypes;
+            }
+        }
+        final ParameterMetaData metaData = preparedStatement.getParameterMetaData();
+        final int[] types = new int[metaData.getParameterCount()];
+        for ( int i = 0; i < types.length; i++ ) {
+            types[i] = metaData.getParameterType( i + 1 );
+        }
+        if ( cached != null ) {
+            cached.parameterTypes = types;
+        }
+        return types;
+    }
+
+
+    /**
+     * Closes a statement, or keeps it open for reuse if it is cached.
+     */
+    public void closeStatement( Statement statement ) {
+        synchronized ( cachedStatements ) {
+            final CachedStatement cached = cachedByStatement.get( statement );
+            if ( cached != null && !cached.stale ) {
+                cached.inUse = false;
+                return;
+            }
+            cachedByStatement.remove( statement );
+        }
+        try {
+            statement.close();
+        } catch ( SQLException e ) {
+            // ignore
+        }
+    }
+
+
+    /**
+     * Removes a statement from the cache, e.g. because its execution failed and it might no longer be valid.
+     */
+    public void discardStatement( Statement statement ) {
+        synchronized ( cachedStatements ) {
+            final CachedStatement cached = cachedByStatement.get( statement );
+            if ( cached != null ) {
+                remove( cached );
+            }
+        }
+    }
+
+
+    /**
+     * Closes all cached prepared statements, because the tables they access might have changed. Some databases, like
+     * PostgreSQL, reject executing a prepared statement whose result type changed. Statements which are in use are
+     * closed when they are handed back or at the end of the transaction.
+     */
+    public void clearStatementCache() {
+        synchronized ( cachedStatements ) {
+            for ( CachedStatement cached : cachedStatements.values() ) {
+                if ( cached.inUse ) {
+                    cached.stale = true;
+                } else {
+                    cachedByStatement.remove( cached.statement );
+                    close( cached.statement );
+                }
+            }
+            cachedStatements.clear();
+        }
+    }
+
+
+    /**
+     * Closes all statements of the current transaction. Cached prepared statements are kept open for the next transaction.
+     */
+    protected void closeStatements() throws SQLException {
+        try {
+            if ( openStatements != null ) {
+                for ( Statement openStatement : openStatements ) {
+                    openStatement.close();
+                }
+            }
+        } finally {
+            openStatements = null;
+            synchronized ( cachedStatements ) {
+                cachedStatements.values().forEach( c -> c.inUse = false );
+                // Cleared from the cache while they were in use
+                final Iterator<CachedStatement> iterator = cachedByStatement.values().iterator();
+                while ( iterator.hasNext() ) {
+                    final CachedStatement cached = iterator.next();
+                    if ( cached.stale ) {
+                        iterator.remove();
+                        close( cached.statement );
+                    }
+                }
+            }
+        }
+    }
+
+
+    private void evict( int cacheSize ) {
+        final Iterator<CachedStatement> iterator = cachedStatements.values().iterator();
+        while ( cachedStatements.size() > cacheSize && iterator.hasNext() ) {
+            final CachedStatement cached = iterator.next();
+            if ( !cached.inUse ) {
+                iterator.remove();
+                cachedByStatement.remove( cached.statement );
+                close( cached.statement );
+            }
+        }
+    }
+
+
+    private void remove( CachedStatement cached ) {
+        cachedStatements.values().remove( cached );
+        cachedByStatement.remove( cached.statement );
+        close( cached.statement );
+    }
+
+
+    private static void close( Statement statement ) {
+        try {
+            statement.close();
+        } catch ( SQLException e ) {
+            log.debug( "Exception while closing a cached statement", e );
+        }
+    }
+
+
     public abstract boolean prepare() throws ConnectionHandlerException;
 
     public abstract void commit() throws ConnectionHandlerException;
@@ -101,4 +273,19 @@ private Statement createStatement() throws SQLException {
 
     public abstract SqlDialect getDialect();
 
+
+    private static class CachedStatement {
+
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean stale;
+        private int[] parameterTypes;
+
+
+        CachedStatement( PreparedStatement statement ) {
+            this.statement = statement;
+        }
+
+    }
+
 }
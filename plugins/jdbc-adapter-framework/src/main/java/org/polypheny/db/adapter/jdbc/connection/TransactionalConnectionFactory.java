@@ -19,7 +19,6 @@
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -113,6 +112,13 @@ private TransactionalConnectionHandler getFreeTransactionHandler() throws Connec
     }
 
 
+    @Override
+    public void clearStatementCaches() {
+        activeInstances.values().forEach( ConnectionHandler::clearStatementCache );
+        freeInstances.forEach( ConnectionHandler::clearStatementCache );
+    }
+
+
     @Override
     public int getMaxTotal() {
         return maxConnections;
@@ -184,15 +190,10 @@ public void rollback() throws ConnectionHandlerException {
         private void close() {
             log.debug( "Closing a transaction handler. Size of freeInstances before closing: {}", freeInstances.size() );
             try {
-                if ( openStatements != null ) {
-                    for ( Statement openStatement : openStatements ) {
-                        openStatement.close();
-                    }
-                }
+                closeStatements();
             } catch ( SQLException e ) {
                 log.debug( "Exception while closing connections in connection handler", e );
             } finally {
-                openStatements = null;
                 activeInstances.remove( xid );
                 xid = null;
                 freeInstances.add( this );
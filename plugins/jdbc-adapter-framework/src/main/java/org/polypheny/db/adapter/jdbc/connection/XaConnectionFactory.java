@@ -18,7 +18,6 @@
 
 
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -116,6 +115,13 @@ private XaConnectionHandler getFreeTransactionHandler() throws ConnectionHandler
     }
 
 
+    @Override
+    public void clearStatementCaches() {
+        activeInstances.values().forEach( ConnectionHandler::clearStatementCache );
+        freeInstances.forEach( ConnectionHandler::clearStatementCache );
+    }
+
+
     @Override
     public int getMaxTotal() {
         return maxConnections;
@@ -207,15 +213,10 @@ public void rollback() throws ConnectionHandlerException {
         private void close() {
             log.debug( "Closing a transaction handler. Size of freeInstances before closing: {}", freeInstances.size() );
             try {
-                if ( openStatements != null ) {
-                    for ( Statement openStatement : openStatements ) {
-                        openStatement.close();
-                    }
-                }
+                closeStatements();
             } catch ( SQLException e ) {
                 log.debug( "Exception while closing connections in connection handler", e );
             } finally {
-                openStatements = null;
                 activeInstances.remove( xid );
                 xid = null;
                 freeInstances.add( this );
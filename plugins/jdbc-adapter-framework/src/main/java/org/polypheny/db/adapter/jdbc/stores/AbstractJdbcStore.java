@@ -23,6 +23,8 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import lombok.SneakyThrows;
 import lombok.experimental.Delegate;
@@ -70,6 +72,11 @@ public abstract class AbstractJdbcStore extends DataStore<RelAdapterCatalog> imp
 
     protected int dockerInstanceId;
 
+    /**
+     * Transactions which changed the schema of the store, the cached prepared statements are cleared again when they end
+     */
+    private final Set<PolyXid> schemaChanges = ConcurrentHashMap.newKeySet();
+
 
     public AbstractJdbcStore(
             final long storeId,
@@ -402,7 +409,11 @@ public void truncate( Context context, long allocId ) {
     protected void executeUpdate( StringBuilder builder, Context context ) {
         try {
             context.getStatement().getTransaction().registerInvolvedAdapter( this );
-            connectionFactory.getOrCreateConnectionHandler( context.getStatement().getTransaction().getXid() ).executeUpdate( builder.toString() );
+            PolyXid xid = context.getStatement().getTransaction().getXid();
+            connectionFactory.getOrCreateConnectionHandler( xid ).executeUpdate( builder.toString() );
+            // Statements prepared before the change might refer to the old schema
+            schemaChanges.add( xid );
+            connectionFactory.clearStatementCaches();
         } catch ( SQLException | ConnectionHandlerException e ) {
             throw new GenericRuntimeException( e );
         }
@@ -444,6 +455,7 @@ public void commit( PolyXid xid ) {
         } else {
             log.warn( "There is no connection to commit (Uniquename: {}, XID: {})!", getUniqueName(), xid );
         }
+        clearStatementCachesAfterSchemaChange( xid );
     }
 
 
@@ -455,6 +467,18 @@ public void rollback( PolyXid xid ) {
         } else {
             log.warn( "There is no connection to rollback (Uniquename: {}, XID: {})!", getUniqueName(), xid );
         }
+        clearStatementCachesAfterSchemaChange( xid );
+    }
+
+
+    /**
+     * Statements prepared while the schema change was not yet committed, or which were prepared by the transaction
+     * itself and rolled back, might still refer to the wrong schema.
+     */
+    private void clearStatementCachesAfterSchemaChange( PolyXid xid ) {
+        if ( schemaChanges.remove( xid ) ) {
+            connectionFactory.clearStatementCaches();
+        }
     }
 
 
@@ -69,6 +69,7 @@
 @AdapterSettingString(name = "username", defaultValue = "polypheny", description = "Username to be used for authenticating at the remote instance.", position = 4, appliesTo = DeploySetting.REMOTE)
 @AdapterSettingString(name = "password", defaultValue = "polypheny", description = "Password to be used for authenticating at the remote instance.", appliesTo = DeploySetting.REMOTE)
 @AdapterSettingInteger(name = "maxConnections", defaultValue = 25, description = "Maximum number of concurrent connections opened by Polypheny-DB to this data store.")
+@AdapterSettingInteger(name = "fetchSize", defaultValue = 1000, required = false, modifiable = true, description = "Maximum number of rows fetched from MonetDB at once when reading results. 0 leaves the choice to the driver.")
 public class MonetdbStore extends AbstractJdbcStore {
 
     private String host;
@@ -384,4 +385,11 @@ private boolean testConnection() {
     }
 
 
+    @Override
+    public boolean supportsConsistentReads() {
+        // MonetDB uses optimistic concurrency control, readers always see a committed snapshot
+        return true;
+    }
+
+
 }
@@ -78,6 +78,8 @@
         description = "Password to be used for authenticating at the remote instance.", appliesTo = DeploySetting.REMOTE)
 @AdapterSettingInteger(name = "maxConnections", defaultValue = 25, position = 6,
         description = "Maximum number of concurrent JDBC connections.")
+@AdapterSettingInteger(name = "fetchSize", defaultValue = 1000, position = 7, required = false, modifiable = true,
+        description = "Maximum number of rows fetched from PostgreSQL at once when reading results. 0 fetches the whole result at once.")
 public class PostgresqlStore extends AbstractJdbcStore {
 
 
@@ -417,6 +419,13 @@ private boolean testConnection() {
     }
 
 
+    @Override
+    public boolean supportsConsistentReads() {
+        // PostgreSQL never exposes uncommitted data and every statement reads from its own MVCC snapshot
+        return true;
+    }
+
+
     @Override
     public void restoreTable( AllocationTable alloc, List<PhysicalEntity> entities, Context context ) {
         PhysicalEntity table = entities.get( 0 );
@@ -26,6 +26,7 @@
 import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.PolyImplementation;
 import org.polypheny.db.ResultIterator;
@@ -53,6 +54,7 @@
 import org.polypheny.db.plan.AlgCluster;
 import org.polypheny.db.plan.AlgPlanner;
 import org.polypheny.db.restapi.RequestParser.Filters;
+import org.polypheny.db.restapi.RestResult.StreamFormat;
 import org.polypheny.db.restapi.exception.RestException;
 import org.polypheny.db.restapi.models.requests.ResourceDeleteRequest;
 import org.polypheny.db.restapi.models.requests.ResourceGetRequest;
@@ -84,12 +86,16 @@ public class Rest {
     private final TransactionManager transactionManager;
     private final long databaseId;
     private final long userId;
+    // Number of rows fetched at once for streamed results
+    @Setter
+    private volatile int streamBatchSize;
 
 
-    Rest( final TransactionManager transactionManager, final long userId, final long databaseId ) {
+    Rest( final TransactionManager transactionManager, final long userId, final long databaseId, final int streamBatchSize ) {
         this.transactionManager = transactionManager;
         this.databaseId = databaseId;
         this.userId = userId;
+        this.streamBatchSize = streamBatchSize;
     }
 
 
@@ -540,14 +546,21 @@ private Transaction getTransaction() {
 
     String executeAndTransformPolyAlg( AlgRoot algRoot, final Statement statement, final Context ctx ) {
         RestResult restResult;
+        boolean streamed = false;
         try {
             // Prepare
             PolyImplementation result = statement.getQueryProcessor().prepareQuery( algRoot, true );
             log.debug( "AlgRoot was prepared." );
 
-            final ResultIterator iter = result.execute( statement, 1 );
+            final StreamFormat streamFormat = RestResult.getRequestedStreamFormat( ctx );
+            final ResultIterator iter = result.execute( statement, streamFormat != null ? streamBatchSize : 1 );
             restResult = new RestResult( algRoot.kind, iter, result.tupleType, result.getFields() );
-            restResult.transform();
+            if ( streamFormat != null && restResult.isStreamable() ) {
+                streamed = true;
+                restResult.stream( ctx, streamFormat );
+            } else {
+                restResult.transform();
+            }
             long executionTime = restResult.getExecutionTime();
             if ( !algRoot.kind.belongsTo( Kind.DML ) ) {
                 result.getExecutionTimeMonitor().setExecutionTime( executionTime );
@@ -563,6 +576,10 @@ String executeAndTransformPolyAlg( AlgRoot algRoot, final Statement statement, f
             }
             return null;
         }
+        if ( streamed ) {
+            // The result has already been written to the response
+            return "";
+        }
         Pair<String, Integer> result = restResult.getResult( ctx );
 
         return result.left;
@@ -92,6 +92,7 @@ public void afterCatalogInit() {
         Map<String, String> restSettings = new HashMap<>();
         restSettings.put( "port", "8089" );
         restSettings.put( "maxUploadSizeMb", "10000" );
+        restSettings.put( "streamBatchSize", "10000" );
         QueryInterfaceManager.addInterfaceType( "rest", HttpRestServer.class, restSettings );
     }
 
@@ -113,7 +114,8 @@ public static class HttpRestServer extends QueryInterface {
         @SuppressWarnings("WeakerAccess")
         public static final List<QueryInterfaceSetting> AVAILABLE_SETTINGS = ImmutableList.of(
                 new QueryInterfaceSettingInteger( "port", false, true, false, 8089 ),
-                new QueryInterfaceSettingInteger( "maxUploadSizeMb", false, true, true, 10000 )
+                new QueryInterfaceSettingInteger( "maxUploadSizeMb", false, true, true, 10000 ),
+                new QueryInterfaceSettingInteger( "streamBatchSize", false, false, true, 10000 )
         );
 
         private final Gson gson = new Gson();
@@ -131,6 +133,7 @@ public static class HttpRestServer extends QueryInterface {
         private final MonitoringPage monitoringPage;
 
         private Javalin restServer;
+        private Rest rest;
 
 
         public HttpRestServer( TransactionManager transactionManager, Authenticator authenticator, long ifaceId, String uniqueName, Map<String, String> settings ) {
@@ -169,7 +172,7 @@ public void run() {
                 } ) );
             } ).start( port );*/
 
-            Rest rest = new Rest( transactionManager, Catalog.defaultUserId, Catalog.defaultNamespaceId );
+            rest = new Rest( transactionManager, Catalog.defaultUserId, Catalog.defaultNamespaceId, getStreamBatchSize() );
             restRoutes( restServer, rest );
 
             log.info( "{} started and is listening on port {}.", INTERFACE_NAME, port );
@@ -375,7 +378,15 @@ public void shutdown() {
 
         @Override
         protected void reloadSettings( List<String> updatedSettings ) {
-            // There is no modifiable setting for this query interface
+            if ( updatedSettings.contains( "streamBatchSize" ) && rest != null ) {
+                rest.setStreamBatchSize( getStreamBatchSize() );
+            }
+        }
+
+
+        private int getStreamBatchSize() {
+            // Interfaces deployed before the setting existed do not have it
+            return Integer.parseInt( settings.getOrDefault( "streamBatchSize", "10000" ) );
         }
 
 
@@ -18,24 +18,29 @@
 
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.j256.simplemagic.ContentInfo;
 import com.j256.simplemagic.ContentInfoUtil;
 import io.javalin.http.Context;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PushbackInputStream;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import lombok.Getter;
@@ -43,6 +48,7 @@
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.time.StopWatch;
+import org.jetbrains.annotations.Nullable;
 import org.polypheny.db.ResultIterator;
 import org.polypheny.db.algebra.constant.Kind;
 import org.polypheny.db.algebra.type.AlgDataType;
@@ -56,6 +62,9 @@
 @Slf4j
 public class RestResult {
 
+    private static final Gson GSON = new Gson();
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
     private final Kind kind;
     private final ResultIterator iterator;
     private final AlgDataType dataType;
@@ -121,66 +130,144 @@ private void transformNonDML() {
             PolyValue[] row = iterator.getArrayRows().get( 0 );
 
             Map<String, Object> temp = new HashMap<>();
-            int i = 0;
-            for ( AlgDataTypeField type : dataType.getFields() ) {
-                PolyValue o = row[i];
-
-                String columnName = columns.get( i ).columnName;
-                if ( o == null ) {
-                    temp.put( columnName, null );
-                    continue;
-                }
+            for ( int i = 0; i < dataType.getFieldCount(); i++ ) {
+                temp.put( columns.get( i ).columnName, toJsonValue( dataType.getFields().get( i ), row[i] ) );
+            }
+            result.add( temp );
+        }
+        stopWatch.stop();
+        this.executionTime = stopWatch.getNanoTime();
+        this.result = result;
+    }
+
+
+    /**
+     * Streams the result to the client, batch by batch, instead of collecting it in memory first.
+     * The response is compressed on the fly if the client accepts gzip.
+     * Results containing multimedia columns cannot be streamed, as they are sent as zip archive.
+     *
+     * @param ctx The context of the request
+     * @param format The format of the response
+     */
+    public void stream( final Context ctx, final StreamFormat format ) throws IOException {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+        ctx.contentType( format.contentType );
+        OutputStream out = ctx.res.getOutputStream();
+        GZIPOutputStream gzip = null;
+        if ( acceptsGzip( ctx ) ) {
+            ctx.header( "Content-Encoding", "gzip" );
+            // Sync flush, so every flushed batch reaches the client
+            gzip = new GZIPOutputStream( out, STREAM_BUFFER_SIZE, true );
+            out = gzip;
+        }
+        Writer buffered = new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ), STREAM_BUFFER_SIZE );
+        JsonWriter writer = new JsonWriter( buffered );
+        // Like Gson, null values are omitted
+        writer.setSerializeNulls( false );
+        writer.setLenient( true );
 
-                if ( type.getType().getPolyType().getFamily() == PolyTypeFamily.MULTIMEDIA ) {
-                    temp.put( columnName, o );
-                } else {
-                    switch ( type.getType().getPolyType() ) {
-                        case TIMESTAMP:
-                            LocalDateTime localDateTime = o.asTimestamp().asSqlTimestamp().toInstant().atOffset( ZoneOffset.UTC ).toLocalDateTime();//.toLocalDateTime(); //LocalDateTime.ofEpochSecond( nanoSeconds / 1000L, (int) ((nanoSeconds % 1000) * 1000), ZoneOffset.UTC );
-                            temp.put( columnName, localDateTime.toString() );
-                            break;
-                        case TIME:
-                            temp.put( columnName, o.asTime().ofDay );
-                            break;
-                        case VARCHAR:
-                            temp.put( columnName, o.asString().value );
-                            break;
-                        case DOUBLE:
-                            temp.put( columnName, o.asNumber().DoubleValue() );
-                            break;
-                        case REAL:
-                        case FLOAT:
-                            temp.put( columnName, o.asNumber().FloatValue() );
-                            break;
-                        case DECIMAL:
-                            temp.put( columnName, o.asNumber().bigDecimalValue() );
-                            break;
-                        case BOOLEAN:
-                            temp.put( columnName, o.asBoolean().value );
-                            break;
-                        case BIGINT:
-                            temp.put( columnName, o.asNumber().LongValue() );
-                            break;
-                        case TINYINT:
-                        case SMALLINT:
-                        case INTEGER:
-                            temp.put( columnName, o.asNumber().IntValue() );
-                            break;
-                        case DATE:
-                            temp.put( columnName, o.asDate().getDaysSinceEpoch() );
-                            break;
-                        default:
-                            temp.put( columnName, o );
-                            break;
+        if ( format == StreamFormat.JSON ) {
+            writer.beginObject();
+            writer.name( "result" );
+            writer.beginArray();
+        }
+        long size = 0;
+        while ( iterator.hasMoreRows() ) {
+            for ( List<PolyValue> row : iterator.getNextBatch() ) {
+                writer.beginObject();
+                for ( int i = 0; i < dataType.getFieldCount(); i++ ) {
+                    writer.name( columns.get( i ).columnName );
+                    Object value = toJsonValue( dataType.getFields().get( i ), row.get( i ) );
+                    if ( value == null ) {
+                        writer.nullValue();
+                    } else {
+                        GSON.toJson( value, value.getClass(), writer );
                     }
                 }
-                i++;
+                writer.endObject();
+                if ( format == StreamFormat.NDJSON ) {
+                    buffered.write( '\n' );
+                }
+                size++;
             }
-            result.add( temp );
+            writer.flush();
+        }
+        if ( format == StreamFormat.JSON ) {
+            writer.endArray();
+            writer.name( "size" );
+            writer.value( size );
+            writer.endObject();
+        }
+        writer.flush();
+        if ( gzip != null ) {
+            gzip.finish();
         }
+        // The response stream is closed by the web server
+        ctx.res.getOutputStream().flush();
         stopWatch.stop();
         this.executionTime = stopWatch.getNanoTime();
-        this.result = result;
+    }
+
+
+    private static boolean acceptsGzip( final Context ctx ) {
+        String acceptEncoding = ctx.header( "Accept-Encoding" );
+        return acceptEncoding != null && acceptEncoding.toLowerCase( Locale.ROOT ).contains( "gzip" );
+    }
+
+
+    /**
+     * Checks whether this result can be streamed, which is the case for queries without multimedia columns
+     */
+    public boolean isStreamable() {
+        return !kind.belongsTo( Kind.DML ) && dataType.getFields().stream().noneMatch( f -> f.getType().getPolyType().getFamily() == PolyTypeFamily.MULTIMEDIA );
+    }
+
+
+    /**
+     * Determines the requested streaming format, either by the {@code Accept} header or the {@code _stream} parameter.
+     *
+     * @return The format or {@code null} if the client did not request a streamed result
+     */
+    @Nullable
+    public static StreamFormat getRequestedStreamFormat( final Context ctx ) {
+        String accept = ctx.header( "Accept" );
+        if ( accept != null && accept.contains( StreamFormat.NDJSON.contentType ) ) {
+            return StreamFormat.NDJSON;
+        }
+        String stream = ctx.queryParam( "_stream" );
+        if ( stream == null ) {
+            return null;
+        }
+        return switch ( stream.toLowerCase( Locale.ROOT ) ) {
+            case "true", "json" -> StreamFormat.JSON;
+            case "ndjson" -> StreamFormat.NDJSON;
+            default -> null;
+        };
+    }
+
+
+    @Nullable
+    private static Object toJsonValue( AlgDataTypeField type, @Nullable PolyValue o ) {
+        if ( o == null ) {
+            return null;
+        }
+        if ( type.getType().getPolyType().getFamily() == PolyTypeFamily.MULTIMEDIA ) {
+            return o;
+        }
+        return switch ( type.getType().getPolyType() ) {
+            case TIMESTAMP -> o.asTimestamp().asSqlTimestamp().toInstant().atOffset( ZoneOffset.UTC ).toLocalDateTime().toString();
+            case TIME -> o.asTime().ofDay;
+            case VARCHAR -> o.asString().value;
+            case DOUBLE -> o.asNumber().DoubleValue();
+            case REAL, FLOAT -> o.asNumber().FloatValue();
+            case DECIMAL -> o.asNumber().bigDecimalValue();
+            case BOOLEAN -> o.asBoolean().value;
+            case BIGINT -> o.asNumber().LongValue();
+            case TINYINT, SMALLINT, INTEGER -> o.asNumber().IntValue();
+            case DATE -> o.asDate().getDaysSinceEpoch();
+            default -> o;
+        };
     }
 
 
@@ -253,19 +340,40 @@ private String getContentType( Object o ) {
     }
 
 
+    /**
+     * Format of a streamed result
+     */
+    public enum StreamFormat {
+        /**
+         * The same document as for a result which is not streamed
+         */
+        JSON( "application/json" ),
+        /**
+         * Newline delimited JSON, one object per row
+         */
+        NDJSON( "application/x-ndjson" );
+
+        private final String contentType;
+
+
+        StreamFormat( String contentType ) {
+            this.contentType = contentType;
+        }
+    }
+
+
     public Pair<String, Integer> getResult( final Context ctx ) {
-        Gson gson = new Gson();
         Map<String, Object> finalResult = new HashMap<>();
         finalResult.put( "result", result );
         finalResult.put( "size", result.size() );
         if ( !containsFiles ) {
-            return new Pair<>( gson.toJson( finalResult ), finalResult.size() );
+            return new Pair<>( GSON.toJson( finalResult ), finalResult.size() );
         } else {
             OutputStream os;
             ZipEntry zipEntry = new ZipEntry( "data.json" );
             try {
                 zipOut.putNextEntry( zipEntry );
-                zipOut.write( gson.toJson( finalResult ).getBytes( StandardCharsets.UTF_8 ) );
+                zipOut.write( GSON.toJson( finalResult ).getBytes( StandardCharsets.UTF_8 ) );
                 zipOut.close();
                 fos.close();
                 ctx.contentType( "application/octet-stream" );